@@ -0,0 +1,128 @@
+package frc.robot;
+
+// Aims a shot into the speaker while the robot is moving. A note leaves the robot with the robot's velocity added to it, so while it is in the air it drifts by the robot velocity
+// times the time of flight. Aiming at a virtual target, offset from the speaker by that drift in the opposite direction, cancels it out. The time of flight depends on the distance
+// to the virtual target, which depends on the time of flight, so the solution is found by iterating a fixed number of times. Each iteration is a secant step on the difference between
+// the assumed time of flight and the time of flight it leads to. Simply reusing the new time of flight only shrinks the error by about half each time at full speed,
+// while secant steps are within microseconds after 3 iterations. The arm angle and flywheel speeds come from the shot table at the distance to the virtual target.
+// Every result is stored in a field, so solving does not allocate. Positions are in meters, velocities in meters per second, angles in degrees, and flywheel speeds in RPM.
+class AimSolver {
+  public static final int defaultIterations = 3; // The number of secant steps each time the solver runs, unless otherwise specified.
+  private static final double flywheelDiameter = 0.1016; // Unit: meters
+  private static final double noteSpeedRatio = 0.5; // The speed of the note as it leaves the flywheels, as a fraction of the surface speed of the flywheels.
+  private static final double releaseDelay = 0.05; // The time between the note being released and it leaving the flywheels. Unit: seconds
+  private final ShotTable shotTable;
+  private final int iterations; // The number of secant steps each time the solver runs.
+  private double heading = 180.0; // The heading that points the robot at the virtual target.
+  private double headingRate = 0.0; // How fast the heading to the virtual target is changing. Unit: degrees per second
+  private double armAngle = 0.0; // The arm angle for a shot at the virtual target.
+  private double vortex1Vel = 0.0; // The top flywheel speed for a shot at the virtual target.
+  private double vortex2Vel = 0.0; // The bottom flywheel speed for a shot at the virtual target.
+  private double distance = 0.0; // The distance from the robot to the speaker.
+  private double virtualDistance = 0.0; // The distance from the robot to the virtual target.
+  private double radialVel = 0.0; // The robot's velocity away from the speaker.
+  private double timeOfFlight = 0.0; // The time from the note being released to it reaching the speaker. Unit: seconds
+  private double residual = 0.0; // The difference between the time of flight found and the time of flight it leads to. A measure of how well the solution converged. Unit: seconds
+
+  public AimSolver(ShotTable _shotTable) {
+    this(_shotTable, defaultIterations);
+  }
+
+  public AimSolver(ShotTable _shotTable, int _iterations) {
+    shotTable = _shotTable;
+    iterations = _iterations;
+  }
+
+  // Finds the aim for a shot at the speaker from the given robot position and field-relative velocity. Should be called once per period, after the position has been updated.
+  public void solve(double x, double y, double xVel, double yVel, double speakerX, double speakerY) {
+    double xToSpeaker = speakerX - x;
+    double yToSpeaker = speakerY - y;
+    distance = Math.sqrt(xToSpeaker*xToSpeaker + yToSpeaker*yToSpeaker);
+    radialVel = distance > 0.0 ? -(xVel*xToSpeaker + yVel*yToSpeaker)/distance : 0.0;
+
+    double lastTimeOfFlight = 0.0; // The first guess is that the note arrives instantly, and the second is the time of flight it leads to.
+    double lastError = getTimeOfFlight(xToSpeaker, yToSpeaker, xVel, yVel, lastTimeOfFlight) - lastTimeOfFlight;
+    timeOfFlight = lastTimeOfFlight + lastError;
+    double error = getTimeOfFlight(xToSpeaker, yToSpeaker, xVel, yVel, timeOfFlight) - timeOfFlight;
+    for (int iteration = 0; iteration < iterations && error != lastError; iteration++) {
+      double nextTimeOfFlight = timeOfFlight - error*(timeOfFlight - lastTimeOfFlight)/(error - lastError);
+      lastTimeOfFlight = timeOfFlight;
+      lastError = error;
+      timeOfFlight = nextTimeOfFlight;
+      error = getTimeOfFlight(xToSpeaker, yToSpeaker, xVel, yVel, timeOfFlight) - timeOfFlight;
+    }
+    residual = error;
+
+    double xToTarget = xToSpeaker - xVel*timeOfFlight; // The virtual target moves against the robot's velocity by the distance the note drifts in flight.
+    double yToTarget = yToSpeaker - yVel*timeOfFlight;
+    virtualDistance = Math.sqrt(xToTarget*xToTarget + yToTarget*yToTarget);
+    if (virtualDistance > 0.0) {
+      heading = Math.atan2(yToTarget, xToTarget)*180.0/Math.PI;
+      headingRate = (yToTarget*xVel - xToTarget*yVel)/(virtualDistance*virtualDistance)*180.0/Math.PI; // The robot's velocity sweeps the line of sight to the target at (r x -v)/|r|^2.
+    } else {
+      headingRate = 0.0;
+    }
+    armAngle = shotTable.getArmAngle(virtualDistance, radialVel); // Rows of the table away from 0 radial velocity hold any correction still needed when shooting on the move.
+    vortex1Vel = shotTable.getVortex1Vel(virtualDistance, radialVel);
+    vortex2Vel = shotTable.getVortex2Vel(virtualDistance, radialVel);
+  }
+
+  // Returns the time of flight to the virtual target that a note in flight for the given time would aim at. Unit: seconds
+  private double getTimeOfFlight(double xToSpeaker, double yToSpeaker, double xVel, double yVel, double assumedTimeOfFlight) {
+    double xToTarget = xToSpeaker - xVel*assumedTimeOfFlight;
+    double yToTarget = yToSpeaker - yVel*assumedTimeOfFlight;
+    return getTimeOfFlight(Math.sqrt(xToTarget*xToTarget + yToTarget*yToTarget));
+  }
+
+  // Returns the time it takes a note to reach a target at the given distance when shot with the flywheel speeds from the shot table. Unit: seconds
+  private double getTimeOfFlight(double targetDistance) {
+    double flywheelVel = 0.5*(shotTable.getVortex1Vel(targetDistance, radialVel) + shotTable.getVortex2Vel(targetDistance, radialVel));
+    double noteSpeed = Math.max(flywheelVel/60.0*Math.PI*flywheelDiameter*noteSpeedRatio, 1.0); // Limited so that a stopped flywheel does not give an infinite time of flight.
+    return releaseDelay + targetDistance/noteSpeed;
+  }
+
+  // Returns the heading that points the robot at the virtual target. Unit: degrees
+  public double getHeading() {
+    return heading;
+  }
+
+  // Returns how fast the heading to the virtual target is changing because of the robot's velocity. Used as a feedforward when turning to the heading. Unit: degrees per second
+  public double getHeadingRate() {
+    return headingRate;
+  }
+
+  // Returns the arm angle for the shot. Unit: degrees
+  public double getArmAngle() {
+    return armAngle;
+  }
+
+  // Returns the top flywheel speed for the shot. Unit: RPM
+  public double getVortex1Vel() {
+    return vortex1Vel;
+  }
+
+  // Returns the bottom flywheel speed for the shot. Unit: RPM
+  public double getVortex2Vel() {
+    return vortex2Vel;
+  }
+
+  // Returns the distance from the robot to the speaker. Unit: meters
+  public double getDistance() {
+    return distance;
+  }
+
+  // Returns the distance from the robot to the virtual target. Unit: meters
+  public double getVirtualDistance() {
+    return virtualDistance;
+  }
+
+  // Returns the time of flight of the note. Unit: seconds
+  public double getTimeOfFlight() {
+    return timeOfFlight;
+  }
+
+  // Returns the difference between the time of flight found and the time of flight it leads to. Close to 0 when the solution has converged. Unit: seconds
+  public double getResidual() {
+    return residual;
+  }
+}
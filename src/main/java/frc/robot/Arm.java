@@ -4,49 +4,166 @@ import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.configs.TalonFXConfigurator;
 import com.ctre.phoenix6.controls.Follower;
-import com.ctre.phoenix6.controls.MotionMagicDutyCycle;
+import com.ctre.phoenix6.controls.MotionMagicVoltage;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import com.ctre.phoenix6.sim.ChassisReference;
+import com.ctre.phoenix6.sim.TalonFXSimState;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.DutyCycleEncoder;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DutyCycleEncoderSim;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
 
 public class Arm {
-  private final double armTol = 1.0; // The acceptable error in the angle of the arm in degrees.
-  private final double gearRatio = 288.0; // 72:12 chain. 3:1, 4:1, and 4:1 stacked planetaries.
+  static final double armTol = 1.0; // The acceptable error in the angle of the arm in degrees.
+  static final double armVelTol = 3.0; // The arm is only at its setpoint once it is moving slower than this, so it has stopped rather than passing through. Unit: degrees per second
+  static final double gearRatio = 288.0; // 72:12 chain. 3:1, 4:1, and 4:1 stacked planetaries.
+  static final double motionMagicCruiseVel = 80.0; // The top speed of an arm move. Unit: motor rotations per second
+  static final double motionMagicAcc = 200.0; // Unit: motor rotations per second squared
+  static final double motionMagicJerk = 500.0; // Unit: motor rotations per second cubed
+  private final double encoderAgreementTol = 2.0; // The most the two absolute encoders can disagree by before one of them is considered faulty. Unit: degrees
+  private final double reseedTol = 0.75; // The average error between the absolute encoders and the motor, measured while the arm is still, that re-seeds the motor. Unit: degrees
+  private final double jumpTol = 6.0; // An error larger than this re-seeds the motor right away, such as after the motor rebooted in a brownout. Unit: degrees
+  private final int reseedSamples = 25; // The number of periods the arm has to be still for before a small error is corrected.
+  private final double gravityFF = 0.1; // The voltage that holds the arm up when it is horizontal. Scaled by the cosine of the arm's angle. Unit: volts
   private final double lowLimit = -6.0; // The lower limit of the arm in degrees.
   private final double highLimit = 75.0; // The higher limit of the arm in degrees.
   private final TalonFX armMotorLeft = new TalonFX(12, "canivore"); // One of the motors that controls the arm.
   private final TalonFX armMotorRight = new TalonFX(11, "canivore"); // One of the motors that controls the arm.
   private final DutyCycleEncoder armEncoderLeft = new DutyCycleEncoder(0); // Keeps track of the angle of the arm.
   private final DutyCycleEncoder armEncoderRight = new DutyCycleEncoder(9); // Keeps track of the angle of the arm.
-  private boolean armMotorLeftFailure = false; // Indicates whether the left motor failed to configure on startup.
-  private boolean armMotorRightFailure = false; // Indicates whether the right motor failed to configure on startup.
+  private final DeviceConfigurator.Device armMotorLeftConfig; // Configures the left motor in the background.
+  private final DeviceConfigurator.Device armMotorRightConfig; // Configures the right motor in the background.
   private double armEncoderLeftZero = 0.696; // The reading of the left encoder in rotations when the arm is at 0 degrees.
   private double armEncoderRightZero = 0.659; // The reading of the right encoder in rotations when the arm is at 0 degrees.
   private double armMotorLeftInitialPos = 0.0; // The position of the left arm motor on startup in falcon rotations.
-  private double armEncoderInitialPos = 0.0; // The position of the arm encoder on startup in degrees, with a zero offset applied.
+  private double armEncoderInitialPos = 0.0; // The angle of the arm in degrees when the left motor was at armMotorLeftInitialPos. Set from the encoders on startup, and re-seeded by updatePosition().
+  private double encoderErrorSum = 0.0; // The sum of the errors between the absolute encoders and the motor since the arm was last moving. Unit: degrees
+  private int encoderErrorCount = 0; // The number of errors in encoderErrorSum.
+  private double encoderError = 0.0; // The most recent error between the absolute encoders and the motor. Unit: degrees
+  private boolean encoderFault = false; // Whether an encoder is disconnected, or the two encoders disagree.
+  private int reseedCount = 0; // The number of times the motor has been re-seeded from the absolute encoders.
   private double setpoint = 75.0; // The last requested setpoint of the arm in degrees. 0 degrees is horizontal and 90 degrees is vertical. 
+  private final MotionMagicVoltage motionMagicRequest = new MotionMagicVoltage(0.0).withSlot(0).withEnableFOC(true); // Reused each period, with the position and feedforward updated.
+  private final Follower followerRequest = new Follower(12, true);
+
+  // Simulation models. Null unless the robot is simulated.
+  private SingleJointedArmSim armSim; // Both arm motors lifting the arm against gravity.
+  private DutyCycleEncoderSim armEncoderLeftSim;
+  private DutyCycleEncoderSim armEncoderRightSim;
+
+  // Dashboard channels. Created once so that updateDashboard() only hands values off to the telemetry thread.
+  private final Telemetry.BooleanChannel leftMotorFailureChannel = Telemetry.addBoolean("Arm Left Motor Failure", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel rightMotorFailureChannel = Telemetry.addBoolean("Arm Right Motor Failure", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel atSetpointChannel = Telemetry.addBoolean("Arm atSetpoint", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel setpointChannel = Telemetry.addDouble("Arm Setpoint", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel encoderLeftChannel = Telemetry.addDouble("Arm Left Encoder", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel encoderRightChannel = Telemetry.addDouble("Arm Right Encoder", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel velocityChannel = Telemetry.addDouble("Arm Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel encoderAverageChannel = Telemetry.addDouble("Arm Average Encoder", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel encoderFaultChannel = Telemetry.addBoolean("Arm Encoder Fault", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel encoderErrorChannel = Telemetry.addDouble("Arm Encoder Error", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel reseedCountChannel = Telemetry.addDouble("Arm Re-seeds", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel motorPositionChannel = Telemetry.addDouble("Arm Motor Position", Telemetry.logOnly); // The rotor position, which does not include any re-seeds.
 
   public Arm() {
-    armMotorLeftFailure = !configArmMotor(armMotorLeft, false, 60.0, 3);
-    armMotorRightFailure = !configArmMotor(armMotorRight, true, 60.0, 3);
+    if (RobotBase.isSimulation()) {
+      armSim = new SingleJointedArmSim(DCMotor.getFalcon500Foc(2), gearRatio, 0.8, 0.6, Math.toRadians(lowLimit - 5.0), Math.toRadians(highLimit + 10.0), true, Math.toRadians(highLimit)); // Modeled as a 6.5 kg rod 0.6 m long. The arm starts stowed.
+      armEncoderLeftSim = new DutyCycleEncoderSim(armEncoderLeft);
+      armEncoderRightSim = new DutyCycleEncoderSim(armEncoderRight);
+      armMotorLeft.getSimState().Orientation = ChassisReference.CounterClockwise_Positive;
+      updateSimEncoders();
+    }
+    armMotorLeftConfig = DeviceConfigurator.submit("Arm Left Motor", () -> configArmMotor(armMotorLeft, false, 60.0, 3), armMotorLeft::hasResetOccurred);
+    armMotorRightConfig = DeviceConfigurator.submit("Arm Right Motor", () -> configArmMotor(armMotorRight, true, 60.0, 3), armMotorRight::hasResetOccurred);
+    DeviceConfigurator.waitFor(1.0, armMotorLeftConfig); // The initial position of the left motor is read below. The right motor only follows, so it is left to finish in the background.
     armMotorLeftInitialPos = armMotorLeft.getRotorPosition().getValueAsDouble();
     armEncoderInitialPos = getEncoderAverage();
     setpoint = armEncoderInitialPos;
   }
 
   // Should be called once teleopPeriodic() and autoPeriodic() sections of the main robot code. Neccesary for the class to function.
+  // The motors follow a Motion Magic profile in volts, so the gains do not change with the battery voltage. The feedforward holds the arm up against gravity at its current angle.
   public void periodic() {
     double motorSetpoint = armMotorLeftInitialPos + (setpoint-armEncoderInitialPos)*gearRatio/360.0;
-    armMotorLeft.setControl(new MotionMagicDutyCycle(motorSetpoint).withSlot(0).withEnableFOC(true));
-    armMotorRight.setControl(new Follower(12, true));
+    armMotorLeft.setControl(motionMagicRequest.withPosition(motorSetpoint).withFeedForward(gravityFF*Math.cos(Math.toRadians(getMotorAngle()))));
+    armMotorRight.setControl(followerRequest);
   }
 
-  // Returns true if the arm currently at the angle specified by armSetpoint, within the tolerance specified by armTol.
+  // Returns true if the arm is at the angle specified by armSetpoint, within the tolerance specified by armTol, and has stopped moving, within the tolerance specified by armVelTol.
   public boolean atSetpoint() {
-    double motorSetpoint = armMotorLeftInitialPos + (setpoint-armEncoderInitialPos)*gearRatio/360.0;
-    return Math.abs(armMotorLeft.getRotorPosition().getValueAsDouble() - motorSetpoint) < armTol*360.0/gearRatio;
+    return Math.abs(getMotorAngle() - setpoint) < armTol && Math.abs(getVelocity()) < armVelTol;
+  }
+
+  // Checks the angle measured by the motor against the absolute encoders, and re-seeds the motor's angle if they disagree, such as after the chain skips or the motor reboots.
+  // Small errors are only corrected once the arm has been still for reseedSamples periods, since the encoders lag the motor while the arm moves. Should be called every period,
+  // including while disabled.
+  public void updatePosition() {
+    boolean leftConnected = armEncoderLeft.isConnected();
+    boolean rightConnected = armEncoderRight.isConnected();
+    double left = getEncoderLeft();
+    double right = getEncoderRight();
+    double motorAngle = getMotorAngle();
+    encoderFault = !leftConnected || !rightConnected || Math.abs(left - right) > encoderAgreementTol;
+    double absoluteAngle;
+    if (!encoderFault) {
+      absoluteAngle = (left + right)/2.0;
+    } else if (leftConnected != rightConnected) {
+      absoluteAngle = leftConnected ? left : right; // Only one encoder is working, so it is trusted alone.
+    } else {
+      encoderErrorSum = 0.0; // Both encoders are connected but disagree, or neither is connected. There is no way to tell which reading is right, so the motor is left alone.
+      encoderErrorCount = 0;
+      return;
+    }
+    encoderError = absoluteAngle - motorAngle;
+
+    if (Math.abs(encoderError) > jumpTol) {
+      reseed(encoderError);
+    } else if (Math.abs(getVelocity()) > armVelTol) {
+      encoderErrorSum = 0.0;
+      encoderErrorCount = 0;
+    } else {
+      encoderErrorSum += encoderError;
+      encoderErrorCount++;
+      if (encoderErrorCount >= reseedSamples) {
+        double averageError = encoderErrorSum/encoderErrorCount;
+        if (Math.abs(averageError) > reseedTol) {
+          reseed(averageError);
+        }
+        encoderErrorSum = 0.0;
+        encoderErrorCount = 0;
+      }
+    }
+  }
+
+  // Shifts the angle measured by the motor by the given correction in degrees. The motor's setpoint moves with it, so the arm moves to the corrected angle on the next periodic().
+  // The correction is kept in software rather than written with TalonFX.setPosition(). setPosition() would also correct the rotor position this code reads, but it waits on the CAN bus
+  // for the motor to acknowledge it, which would stall the main loop, and the new position is only read back once the next status frame arrives. The software offset applies in the same period.
+  // The motor's own position is therefore no longer the arm angle times the gear ratio after a re-seed, and only converts to arm degrees through armMotorLeftInitialPos and armEncoderInitialPos.
+  private void reseed(double correction) {
+    armEncoderInitialPos += correction;
+    encoderErrorSum = 0.0;
+    encoderErrorCount = 0;
+    reseedCount++;
+  }
+
+  // Returns true if an absolute encoder is disconnected, or the two encoders disagree.
+  public boolean getEncoderFault() {
+    return encoderFault;
+  }
+
+  // Returns the angle of the arm in degrees, measured by the left motor and re-seeded from the absolute encoders.
+  private double getMotorAngle() {
+    return armEncoderInitialPos + (armMotorLeft.getRotorPosition().getValueAsDouble() - armMotorLeftInitialPos)*360.0/gearRatio;
+  }
+
+  // Returns how fast the arm is moving, measured by the left motor. Positive is upward. Units: degrees per second
+  public double getVelocity() {
+    return armMotorLeft.getRotorVelocity().getValueAsDouble()*360.0/gearRatio;
   }
 
   // Changes the angle that the arm will move to. Units: degrees
@@ -80,25 +197,48 @@ public class Arm {
     return (getEncoderLeft() + getEncoderRight())/2.0;
   }
 
-  // Returns true if the left arm motor failed to configure on startup.
+  // Returns true if the left arm motor failed its most recent configuration, either on startup or after a reset.
   public boolean getLeftMotorFailure() {
-    return armMotorLeftFailure;
+    return armMotorLeftConfig.failed();
   }
 
-  // Returns true if the right arm motor failed to configure on startup.
+  // Returns true if the right arm motor failed its most recent configuration, either on startup or after a reset.
   public boolean getRightMotorFailure() {
-    return armMotorRightFailure;
+    return armMotorRightConfig.failed();
+  }
+
+  // Advances the simulated arm by one period. The left motor leads, so its output voltage drives both motors in the model. Should be called in simulationPeriodic().
+  public void simulationPeriodic() {
+    TalonFXSimState motorSimState = armMotorLeft.getSimState();
+    motorSimState.setSupplyVoltage(RobotController.getBatteryVoltage());
+    armSim.setInputVoltage(motorSimState.getMotorVoltage());
+    armSim.update(TimedRobot.kDefaultPeriod);
+    motorSimState.setRawRotorPosition((Math.toDegrees(armSim.getAngleRads()) - highLimit)*gearRatio/360.0); // The motor starts at 0 rotations with the arm stowed.
+    motorSimState.setRotorVelocity(Math.toDegrees(armSim.getVelocityRadPerSec())*gearRatio/360.0);
+    updateSimEncoders();
+  }
+
+  // Sets the simulated encoders to the angle of the simulated arm.
+  private void updateSimEncoders() {
+    double angle = Math.toDegrees(armSim.getAngleRads());
+    armEncoderLeftSim.setAbsolutePosition(armEncoderLeftZero - angle/360.0);
+    armEncoderRightSim.setAbsolutePosition(armEncoderRightZero - angle/360.0);
   }
 
   // Sends information to the dashboard each period. This is handled automatically by the class.
   public void updateDashboard() {
-    SmartDashboard.putBoolean("Arm Left Motor Failure", getLeftMotorFailure());
-    SmartDashboard.putBoolean("Arm Right Motor Failure", getLeftMotorFailure());
-    SmartDashboard.putBoolean("Arm atSetpoint", atSetpoint());
-    SmartDashboard.putNumber("Arm Setpoint", getSetpoint());
-    SmartDashboard.putNumber("Arm Left Encoder", getEncoderLeft());
-    SmartDashboard.putNumber("Arm Right Encoder", getEncoderRight());
-    SmartDashboard.putNumber("Arm Average Encoder", getEncoderAverage());
+    leftMotorFailureChannel.set(getLeftMotorFailure());
+    rightMotorFailureChannel.set(getRightMotorFailure());
+    atSetpointChannel.set(atSetpoint());
+    setpointChannel.set(getSetpoint());
+    velocityChannel.set(getVelocity());
+    encoderLeftChannel.set(getEncoderLeft());
+    encoderRightChannel.set(getEncoderRight());
+    encoderAverageChannel.set(getEncoderAverage());
+    encoderFaultChannel.set(getEncoderFault());
+    encoderErrorChannel.set(encoderError);
+    reseedCountChannel.set(reseedCount);
+    motorPositionChannel.set(armMotorLeft.getRotorPosition().getValueAsDouble());
   }
 
   // Attempts to configure the arm motor. Sets inverts, neutral mode, and PID constants. Returns true if the motor successfully configued.
@@ -116,18 +256,19 @@ public class Arm {
     motorConfigs.CurrentLimits.SupplyCurrentThreshold = currentLimit;
     motorConfigs.CurrentLimits.SupplyTimeThreshold = 0.5;
 
-    // Setting Motion Magic parameters
-    motorConfigs.Slot0.kP = 0.8;
-    motorConfigs.Slot0.kI = 2.0;
-    motorConfigs.Slot0.kD = 0.006;
-    motorConfigs.MotionMagic.MotionMagicAcceleration = 200.0;
-    motorConfigs.MotionMagic.MotionMagicCruiseVelocity = 80.0;
-    motorConfigs.MotionMagic.MotionMagicJerk = 500.0;
+    // Setting Motion Magic parameters. The gains are in volts.
+    motorConfigs.Slot0.kP = 9.6;
+    motorConfigs.Slot0.kI = 6.0; // Lower than before the gravity feedforward, since the integrator no longer has to hold the arm up.
+    motorConfigs.Slot0.kD = 0.072;
+    motorConfigs.Slot0.kV = 0.12; // The voltage per rotor rotation per second of the profile's velocity. The free speed of a Falcon 500 with FOC is about 100 rotations per second.
+    motorConfigs.MotionMagic.MotionMagicAcceleration = motionMagicAcc;
+    motorConfigs.MotionMagic.MotionMagicCruiseVelocity = motionMagicCruiseVel;
+    motorConfigs.MotionMagic.MotionMagicJerk = motionMagicJerk;
 
     // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
     int motorErrors = 0;
     boolean motorFailure = false;
-    while (motorConfigurator.apply(motorConfigs, 0.03) != StatusCode.OK) {
+    while (DeviceConfigurator.apply(motorConfigurator, motorConfigs, 0.03) != StatusCode.OK) { // Skips the write if the motor already has these configs.
       motorErrors++;
       motorFailure = motorErrors > maxMotorErrors;
       if (motorFailure) {
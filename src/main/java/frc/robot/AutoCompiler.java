@@ -0,0 +1,657 @@
+package frc.robot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// Compiles the autonomous routines described in a JSON file in the deploy directory. Each routine has a name, a list of init actions, a list of steps, and a list of end actions.
+// Each step has a name, a list of actions to run every period ("run"), and a list of transitions. Each transition has a condition ("if"), actions to run once ("then"),
+// and the name of the next step ("next"), which defaults to the following step. "End" ends the routine. Actions and conditions are written as short commands:
+//
+// Actions:
+//   driveTo <x> <y> <heading>     Drives to a point. x and y may be "here", the position when the step started, plus an optional offset such as "here+2.0".
+//   aimDrive <xVel> <yVel> <heading>   Drives at a velocity while turning to a heading.
+//   followPath <index>            Follows a path loaded in robotInit().
+//   followTrajectory <name>       Follows one of the routine's trajectories. atDriveGoal is true at its end.
+//   stop                          Stops the drivetrain.
+//   aimThrower                    Aims the arm and flywheels at the speaker.
+//   arm <angle>                   Moves the arm. angle is in degrees, or one of drive, intake, amp, or hold (the current position).
+//   commandThrow, commandAmpScore, resetClimbers, restartArmTimer
+//   disableFlywheel <true|false>
+//   <action> if <condition>       Only runs the action while the condition is true.
+// Conditions, joined with "and", each optionally preceded by "not":
+//   always, atDriveGoal, armAtSetpoint, armSettled <seconds>, shotReady <seconds>, inRange, noteThrown, noteScored, sensor1, hasNote, xAbove <x>, atPathEnd <index>, climbersDown
+//   armSettled is true once the arm has been at its setpoint for the given time. shotReady is atDriveGoal, armAtSetpoint, and armSettled together.
+//
+// A routine may also list trajectories, which are generated when the routine is compiled. Each has a name and a list of waypoints written as "<x> <y> <heading> <speed>".
+// The speed is the speed at the start or end of the trajectory, 0 to stop there, and caps the speed near a waypoint in the middle, 0 for no cap. The first waypoint may instead be
+// "continue", which starts where the trajectory before it in the list ends, at the same speed and direction, so the robot can be handed from one to the other without stopping.
+//
+// A routine may also say where the robot is placed at the start, as "start": "<x> <y> <heading>". It is only used by AutoAnalyzer to time the routine.
+//
+// Headings may be "speaker" to aim at the speaker. Positions and headings are written for the blue alliance and mirrored across the field for the red alliance.
+// A trajectory waypoint aimed at the speaker is generated with the heading from the waypoint, but followed with getAimHeading(), which leads the speaker while the robot is moving.
+// The heading that atDriveGoal checks at the end of a trajectory is then the heading aimThrower() aims the shot with.
+// A routine that does not compile is reported and left off the chooser, so a mistake in one routine does not stop the others from running.
+class AutoCompiler {
+  private static final double speakerY = 5.548; // The y-coordinate of the center of the blue speaker slot. Unit: meters
+  // Every action and condition, with the kinds of arguments it takes, as described in checkArgs(). AutoAnalyzer reads routines through the same tables.
+  private static final Map<String, String> actionArgs = Map.ofEntries(
+    Map.entry("driveTo", "cch"), Map.entry("aimDrive", "nnh"), Map.entry("followPath", "p"), Map.entry("followTrajectory", "t"), Map.entry("stop", ""),
+    Map.entry("aimThrower", ""), Map.entry("arm", "a"), Map.entry("commandThrow", ""), Map.entry("commandAmpScore", ""), Map.entry("disableFlywheel", "b"),
+    Map.entry("resetClimbers", ""), Map.entry("restartArmTimer", ""));
+  private static final Map<String, String> conditionArgs = Map.ofEntries(
+    Map.entry("always", ""), Map.entry("atDriveGoal", ""), Map.entry("armAtSetpoint", ""), Map.entry("armSettled", "n"), Map.entry("shotReady", "n"),
+    Map.entry("inRange", ""), Map.entry("noteThrown", ""), Map.entry("noteScored", ""), Map.entry("sensor1", ""), Map.entry("hasNote", ""), Map.entry("xAbove", "n"),
+    Map.entry("atPathEnd", "p"), Map.entry("climbersDown", ""));
+  private final Robot robot;
+  private final Drivetrain swerve;
+  private final Arm arm;
+  private final Thrower thrower;
+  private final Climber climber;
+  private HashMap<String, AutoTrajectory> trajectories = new HashMap<>(); // The trajectories of the routine being compiled, by name.
+
+  public AutoCompiler(Robot _robot, Drivetrain _swerve, Arm _arm, Thrower _thrower, Climber _climber) {
+    robot = _robot;
+    swerve = _swerve;
+    arm = _arm;
+    thrower = _thrower;
+    climber = _climber;
+  }
+
+  // Compiles every routine in the given file in the deploy directory, in the order they appear. Returns an empty list if the file cannot be read.
+  public ArrayList<AutoRoutine> load(String fileName) {
+    ArrayList<AutoRoutine> routines = new ArrayList<>();
+    File file = new File(Filesystem.getDeployDirectory(), fileName);
+    JsonNode root;
+    try {
+      root = new ObjectMapper().readTree(file);
+    } catch (IOException e) {
+      DriverStation.reportError("Could not read the auto routines from " + file + ". " + e.getMessage(), false);
+      return routines;
+    }
+    for (JsonNode routineNode : root.path("routines")) {
+      String name = routineNode.path("name").asText("Unnamed");
+      try {
+        routines.add(compileRoutine(parseRoutine(routineNode)));
+      } catch (RuntimeException e) {
+        DriverStation.reportError("Could not compile the auto routine \"" + name + "\". " + e.getMessage(), false);
+      }
+    }
+    return routines;
+  }
+
+  // Returns a routine that only stops the robot. Used when no routines could be loaded.
+  public AutoRoutine createStopRoutine() {
+    return new AutoRoutine("None", new AutoRoutine.Action[0], new AutoRoutine.Step[0], new AutoRoutine.Action[] {compileAction(parseAction("stop", trajectories))});
+  }
+
+  // Parses a routine and checks it against the grammar, without binding it to the robot. Every action and condition is checked against the tables below, with its arguments, and
+  // every "next" has to name a step. Used by both the compiler and AutoAnalyzer, so a routine is read the same way by both, and a mistake is reported by both.
+  static ParsedRoutine parseRoutine(JsonNode routineNode) {
+    String name = routineNode.path("name").asText("Unnamed");
+    HashMap<String, AutoTrajectory> routineTrajectories = compileTrajectories(routineNode.path("trajectories"));
+    double[] start = null;
+    if (routineNode.has("start")) {
+      String[] words = routineNode.get("start").asText().trim().split("\\s+");
+      if (words.length != 3) {
+        throw new IllegalArgumentException("The start \"" + routineNode.get("start").asText() + "\" should be written as \"<x> <y> <heading>\".");
+      }
+      start = new double[] {parseNumber(words[0]), parseNumber(words[1]), parseNumber(words[2])};
+    }
+    JsonNode stepNodes = routineNode.path("steps");
+    HashMap<String, Integer> stepIndexes = new HashMap<>();
+    for (int stepIndex = 0; stepIndex < stepNodes.size(); stepIndex++) {
+      stepIndexes.put(stepNodes.get(stepIndex).path("name").asText("Step " + (stepIndex + 1)), stepIndex);
+    }
+    ParsedStep[] steps = new ParsedStep[stepNodes.size()];
+    for (int stepIndex = 0; stepIndex < steps.length; stepIndex++) {
+      JsonNode stepNode = stepNodes.get(stepIndex);
+      String stepName = stepNode.path("name").asText("Step " + (stepIndex + 1));
+      try {
+        JsonNode transitionNodes = stepNode.path("transitions");
+        ParsedTransition[] transitions = new ParsedTransition[transitionNodes.size()];
+        for (int transitionIndex = 0; transitionIndex < transitions.length; transitionIndex++) {
+          JsonNode transitionNode = transitionNodes.get(transitionIndex);
+          int next = stepIndex + 1 < steps.length ? stepIndex + 1 : AutoRoutine.end;
+          if (transitionNode.has("next")) {
+            String nextName = transitionNode.get("next").asText();
+            if (nextName.equals("End")) {
+              next = AutoRoutine.end;
+            } else if (stepIndexes.containsKey(nextName)) {
+              next = stepIndexes.get(nextName);
+            } else {
+              throw new IllegalArgumentException("There is no step named \"" + nextName + "\".");
+            }
+          }
+          transitions[transitionIndex] = new ParsedTransition(parseCondition(transitionNode.path("if").asText("always")), parseActions(transitionNode.path("then"), routineTrajectories), next);
+        }
+        steps[stepIndex] = new ParsedStep(stepName, parseActions(stepNode.path("run"), routineTrajectories), transitions);
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Step \"" + stepName + "\": " + e.getMessage(), e);
+      }
+    }
+    return new ParsedRoutine(name, start, routineTrajectories, parseActions(routineNode.path("init"), routineTrajectories), steps, parseActions(routineNode.path("end"), routineTrajectories));
+  }
+
+  private static Command[] parseActions(JsonNode actionNodes, HashMap<String, AutoTrajectory> routineTrajectories) {
+    Command[] actions = new Command[actionNodes.size()];
+    for (int actionIndex = 0; actionIndex < actions.length; actionIndex++) {
+      actions[actionIndex] = parseAction(actionNodes.get(actionIndex).asText(), routineTrajectories);
+    }
+    return actions;
+  }
+
+  // Parses an action, with its guard if it has one.
+  static Command parseAction(String text, HashMap<String, AutoTrajectory> routineTrajectories) {
+    int guardIndex = text.indexOf(" if ");
+    if (guardIndex >= 0) {
+      Command action = parseAction(text.substring(0, guardIndex), routineTrajectories);
+      return new Command(text.trim(), action.keyword, action.args, parseCondition(text.substring(guardIndex + 4)));
+    }
+    String[] words = text.trim().split("\\s+");
+    String argKinds = actionArgs.get(words[0]);
+    if (argKinds == null) {
+      throw new IllegalArgumentException("Unknown action \"" + text + "\".");
+    }
+    checkArgs(words, argKinds, routineTrajectories);
+    return new Command(text.trim(), words[0], Arrays.copyOfRange(words, 1, words.length), null);
+  }
+
+  // Parses a condition, a list of terms joined with "and".
+  static Condition parseCondition(String text) {
+    String[] termTexts = text.trim().split("\\s+and\\s+");
+    Term[] terms = new Term[termTexts.length];
+    for (int termIndex = 0; termIndex < terms.length; termIndex++) {
+      terms[termIndex] = parseTerm(termTexts[termIndex].trim());
+    }
+    return new Condition(text.trim(), terms);
+  }
+
+  private static Term parseTerm(String text) {
+    String[] words = text.split("\\s+");
+    if (words[0].equals("not")) {
+      Term term = parseTerm(text.substring(3).trim());
+      return new Term(!term.negated, term.command);
+    }
+    String argKinds = conditionArgs.get(words[0]);
+    if (argKinds == null) {
+      throw new IllegalArgumentException("Unknown condition \"" + text + "\".");
+    }
+    checkArgs(words, argKinds, null);
+    return new Term(false, new Command(text, words[0], Arrays.copyOfRange(words, 1, words.length), null));
+  }
+
+  // Generates the trajectories of a routine. A trajectory that continues from the one before it starts at its last waypoint, and both are generated knowing about the other
+  // so that they leave and enter the shared waypoint in the same direction.
+  static HashMap<String, AutoTrajectory> compileTrajectories(JsonNode trajectoryNodes) {
+    AutoTrajectory.Waypoint[][] waypointLists = new AutoTrajectory.Waypoint[trajectoryNodes.size()][];
+    boolean[] continues = new boolean[trajectoryNodes.size()]; // Whether each trajectory continues from the one before it.
+    for (int trajectoryIndex = 0; trajectoryIndex < waypointLists.length; trajectoryIndex++) {
+      JsonNode waypointNodes = trajectoryNodes.get(trajectoryIndex).path("waypoints");
+      continues[trajectoryIndex] = waypointNodes.path(0).asText().trim().equals("continue");
+      if (continues[trajectoryIndex] && trajectoryIndex == 0) {
+        throw new IllegalArgumentException("The first trajectory cannot continue from another trajectory.");
+      }
+      AutoTrajectory.Waypoint[] waypoints = new AutoTrajectory.Waypoint[waypointNodes.size()];
+      for (int waypointIndex = 0; waypointIndex < waypoints.length; waypointIndex++) {
+        if (waypointIndex == 0 && continues[trajectoryIndex]) {
+          AutoTrajectory.Waypoint[] previous = waypointLists[trajectoryIndex - 1];
+          waypoints[0] = previous[previous.length - 1];
+        } else {
+          waypoints[waypointIndex] = parseWaypoint(waypointNodes.get(waypointIndex).asText());
+        }
+      }
+      waypointLists[trajectoryIndex] = waypoints;
+    }
+    HashMap<String, AutoTrajectory> compiled = new HashMap<>();
+    for (int trajectoryIndex = 0; trajectoryIndex < waypointLists.length; trajectoryIndex++) {
+      String trajectoryName = trajectoryNodes.get(trajectoryIndex).path("name").asText("Trajectory " + (trajectoryIndex + 1));
+      AutoTrajectory.Waypoint[] previous = continues[trajectoryIndex] ? waypointLists[trajectoryIndex - 1] : null;
+      AutoTrajectory.Waypoint[] next = trajectoryIndex + 1 < waypointLists.length && continues[trajectoryIndex + 1] ? waypointLists[trajectoryIndex + 1] : null;
+      AutoTrajectory.Waypoint before = previous != null && previous.length > 1 ? previous[previous.length - 2] : null;
+      AutoTrajectory.Waypoint after = next != null && next.length > 1 ? next[1] : null;
+      try {
+        compiled.put(trajectoryName, new AutoTrajectory(waypointLists[trajectoryIndex], before, after));
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Trajectory \"" + trajectoryName + "\": " + e.getMessage(), e);
+      }
+    }
+    return compiled;
+  }
+
+  // Parses a waypoint written as "<x> <y> <heading> <speed>". A heading of "speaker" points at the speaker from the waypoint, and is aimed with the lead from getAimHeading() when followed.
+  private static AutoTrajectory.Waypoint parseWaypoint(String text) {
+    String[] words = text.trim().split("\\s+");
+    if (words.length != 4) {
+      throw new IllegalArgumentException("The waypoint \"" + text + "\" should be written as \"<x> <y> <heading> <speed>\".");
+    }
+    double x = parseNumber(words[0]);
+    double y = parseNumber(words[1]);
+    boolean speaker = words[2].equals("speaker");
+    double heading = speaker ? Math.atan2(speakerY - y, -x)*180.0/Math.PI : parseNumber(words[2]); // Replaced by the aim heading when the trajectory is followed.
+    return new AutoTrajectory.Waypoint(x, y, heading, parseNumber(words[3]), speaker);
+  }
+
+  private AutoRoutine compileRoutine(ParsedRoutine routine) {
+    trajectories = routine.trajectories;
+    AutoRoutine.Step[] steps = new AutoRoutine.Step[routine.steps.length];
+    for (int stepIndex = 0; stepIndex < steps.length; stepIndex++) {
+      ParsedStep step = routine.steps[stepIndex];
+      AutoRoutine.Transition[] transitions = new AutoRoutine.Transition[step.transitions.length];
+      for (int transitionIndex = 0; transitionIndex < transitions.length; transitionIndex++) {
+        ParsedTransition transition = step.transitions[transitionIndex];
+        transitions[transitionIndex] = new AutoRoutine.Transition(compileCondition(transition.condition), compileActions(transition.actions), transition.next);
+      }
+      steps[stepIndex] = new AutoRoutine.Step(step.name, compileActions(step.actions), transitions);
+    }
+    return new AutoRoutine(routine.name, compileActions(routine.initActions), steps, compileActions(routine.endActions));
+  }
+
+  private AutoRoutine.Action[] compileActions(Command[] commands) {
+    AutoRoutine.Action[] actions = new AutoRoutine.Action[commands.length];
+    for (int actionIndex = 0; actionIndex < actions.length; actionIndex++) {
+      actions[actionIndex] = compileAction(commands[actionIndex]);
+    }
+    return actions;
+  }
+
+  // Binds a parsed action to the robot. The arguments were checked when the action was parsed.
+  private AutoRoutine.Action compileAction(Command command) {
+    if (command.guard != null) {
+      AutoRoutine.Action action = compileAction(new Command(command.text, command.keyword, command.args, null));
+      BooleanSupplier guard = compileCondition(command.guard);
+      return new AutoRoutine.Action() {
+        public void prepare(boolean redAlliance) {
+          action.prepare(redAlliance);
+        }
+
+        public void start() {
+          action.start();
+        }
+
+        public void run() {
+          if (guard.getAsBoolean()) {
+            action.run();
+          }
+        }
+      };
+    }
+    String[] args = command.args;
+    switch (command.keyword) {
+      case "driveTo":
+        return new DriveToAction(args[0], args[1], args[2]);
+      case "aimDrive":
+        return new AimDriveAction(parseNumber(args[0]), parseNumber(args[1]), args[2]);
+      case "followPath": {
+        int pathIndex = (int) parseNumber(args[0]);
+        return new AutoRoutine.Action() {
+          public void prepare(boolean redAlliance) {
+            swerve.resetPathController(pathIndex); // Warms up the path follower for this path.
+            swerve.followPath(pathIndex);
+          }
+
+          public void start() {
+            swerve.resetPathController(pathIndex);
+          }
+
+          public void run() {
+            swerve.followPath(pathIndex);
+          }
+        };
+      }
+      case "followTrajectory": {
+        AutoTrajectory trajectory = trajectories.get(args[0]);
+        return new AutoRoutine.Action() {
+          public void prepare(boolean redAlliance) {
+            swerve.resetTrajectoryController(trajectory, robot.getAimHeading()); // Warms up the trajectory controllers and the sampling of this trajectory.
+            swerve.followTrajectory(trajectory, robot.getAimHeading());
+          }
+
+          public void start() {
+            swerve.resetTrajectoryController(trajectory, robot.getAimHeading());
+          }
+
+          public void run() {
+            swerve.followTrajectory(trajectory, robot.getAimHeading());
+          }
+        };
+      }
+      case "stop":
+        return () -> swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0);
+      case "aimThrower":
+        return robot::aimThrower;
+      case "arm":
+        switch (args[0]) {
+          case "drive": return () -> arm.updateSetpoint(Robot.armDriveSetpoint);
+          case "intake": return () -> arm.updateSetpoint(Robot.armIntakeSetpoint);
+          case "amp": return () -> arm.updateSetpoint(Robot.armAmpSetpoint);
+          case "hold": return () -> arm.updateSetpoint(arm.getEncoderAverage());
+          default: {
+            double angle = parseNumber(args[0]);
+            return () -> arm.updateSetpoint(angle);
+          }
+        }
+      case "commandThrow":
+        return thrower::commandThrow;
+      case "commandAmpScore":
+        return thrower::commandAmpScore;
+      case "disableFlywheel": {
+        boolean disable = parseBoolean(args[0]);
+        return () -> thrower.setDisableFlywheel(disable);
+      }
+      case "resetClimbers":
+        return climber::resetClimbers;
+      case "restartArmTimer":
+        return robot::restartArmTimer;
+      default:
+        throw new IllegalArgumentException("The action \"" + command.keyword + "\" is in the table but is not compiled.");
+    }
+  }
+
+  private BooleanSupplier compileCondition(Condition condition) {
+    BooleanSupplier[] terms = new BooleanSupplier[condition.terms.length];
+    for (int termIndex = 0; termIndex < terms.length; termIndex++) {
+      terms[termIndex] = compileTerm(condition.terms[termIndex]);
+    }
+    if (terms.length == 1) {
+      return terms[0];
+    }
+    return () -> {
+      for (BooleanSupplier term : terms) {
+        if (!term.getAsBoolean()) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+
+  private BooleanSupplier compileTerm(Term term) {
+    BooleanSupplier condition = compileTerm(term.command);
+    return term.negated ? () -> !condition.getAsBoolean() : condition;
+  }
+
+  // Binds a parsed condition term, without its "not", to the robot. The arguments were checked when the term was parsed.
+  private BooleanSupplier compileTerm(Command command) {
+    String[] args = command.args;
+    switch (command.keyword) {
+      case "always":
+        return () -> true;
+      case "atDriveGoal":
+        return swerve::atDriveGoal;
+      case "armAtSetpoint":
+        return arm::atSetpoint;
+      case "armSettled": {
+        double settleTime = parseNumber(args[0]);
+        return () -> robot.getArmSettledTime() > settleTime;
+      }
+      case "shotReady": {
+        double settleTime = parseNumber(args[0]);
+        return () -> swerve.atDriveGoal() && arm.atSetpoint() && robot.getArmSettledTime() > settleTime;
+      }
+      case "inRange":
+        return robot::aimShotAvailable;
+      case "noteThrown":
+        return () -> !thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2();
+      case "noteScored":
+        return () -> !thrower.isAmpScoring() && !thrower.hasNote();
+      case "sensor1":
+        return thrower::getSensor1;
+      case "hasNote":
+        return thrower::hasNote;
+      case "xAbove": {
+        double x = parseNumber(args[0]);
+        return () -> swerve.getXPos() > x;
+      }
+      case "atPathEnd": {
+        int pathIndex = (int) parseNumber(args[0]);
+        return () -> swerve.atPathEndpoint(pathIndex);
+      }
+      case "climbersDown":
+        return () -> climber.getLeftLimitSensor() && climber.getRightLimitSensor();
+      default:
+        throw new IllegalArgumentException("The condition \"" + command.keyword + "\" is in the table but is not compiled.");
+    }
+  }
+
+  // Checks the arguments of an action or condition against the kinds it takes, one letter per argument: n a number, c a coordinate, which may be "here" with an optional offset,
+  // h a heading, which may be "speaker", a an arm angle, which may be drive, intake, amp, or hold, b true or false, p the index of a path loaded in robotInit(), and t the name
+  // of one of the routine's trajectories.
+  private static void checkArgs(String[] words, String argKinds, HashMap<String, AutoTrajectory> routineTrajectories) {
+    if (words.length - 1 != argKinds.length()) {
+      throw new IllegalArgumentException("\"" + words[0] + "\" takes " + argKinds.length() + " arguments, but has " + (words.length - 1) + ".");
+    }
+    for (int argIndex = 0; argIndex < argKinds.length(); argIndex++) {
+      String word = words[argIndex + 1];
+      switch (argKinds.charAt(argIndex)) {
+        case 'n':
+          parseNumber(word);
+          break;
+        case 'c':
+          new Coordinate(word);
+          break;
+        case 'h':
+          new Heading(word);
+          break;
+        case 'a':
+          if (!word.equals("drive") && !word.equals("intake") && !word.equals("amp") && !word.equals("hold")) {
+            parseNumber(word);
+          }
+          break;
+        case 'b':
+          parseBoolean(word);
+          break;
+        case 'p': {
+          double pathIndex = parseNumber(word);
+          if (pathIndex != Math.floor(pathIndex) || pathIndex < 0 || pathIndex >= Robot.pathNames.length) {
+            throw new IllegalArgumentException("There is no path with the index " + word + ".");
+          }
+          break;
+        }
+        case 't':
+          if (!routineTrajectories.containsKey(word)) {
+            throw new IllegalArgumentException("There is no trajectory named \"" + word + "\".");
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown argument kind '" + argKinds.charAt(argIndex) + "'.");
+      }
+    }
+  }
+
+  private static double parseNumber(String word) {
+    try {
+      return Double.parseDouble(word);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("\"" + word + "\" is not a number.");
+    }
+  }
+
+  private static boolean parseBoolean(String word) {
+    if (!word.equals("true") && !word.equals("false")) {
+      throw new IllegalArgumentException("\"" + word + "\" is not true or false.");
+    }
+    return word.equals("true");
+  }
+
+  // A position along one axis, either fixed or relative to the robot's position when the step started.
+  private static class Coordinate {
+    private final boolean relative; // Whether the coordinate is relative to the robot's position when the step started.
+    private final double value; // The position, or the offset from the robot's position. Unit: meters
+
+    private Coordinate(String word) {
+      relative = word.startsWith("here");
+      value = relative ? (word.length() > 4 ? parseNumber(word.substring(4)) : 0.0) : parseNumber(word);
+    }
+  }
+
+  // A heading, either fixed or aimed at the speaker.
+  private static class Heading {
+    private final boolean speaker; // Whether the heading aims at the speaker.
+    private final double value; // Unit: degrees
+
+    private Heading(String word) {
+      speaker = word.equals("speaker");
+      value = speaker ? 0.0 : parseNumber(word);
+    }
+  }
+
+  // Drives to a point with driveTo(). The point is mirrored for the red alliance when the routine is prepared. Positions relative to the robot are found when the step starts.
+  private class DriveToAction implements AutoRoutine.Action {
+    private final Coordinate x;
+    private final Coordinate y;
+    private final Heading heading;
+    private boolean red = false; // Whether the action was prepared for the red alliance.
+    private double targetX = 0.0; // Unit: meters
+    private double targetY = 0.0; // Unit: meters
+    private double targetHeading = 0.0; // Unit: degrees
+
+    private DriveToAction(String xWord, String yWord, String headingWord) {
+      x = new Coordinate(xWord);
+      y = new Coordinate(yWord);
+      heading = new Heading(headingWord);
+    }
+
+    public void prepare(boolean redAlliance) {
+      red = redAlliance;
+      targetX = x.value;
+      targetY = red ? Drivetrain.fieldWidth - y.value : y.value;
+      targetHeading = red ? -heading.value : heading.value;
+    }
+
+    public void start() {
+      if (x.relative) {
+        targetX = swerve.getXPos() + x.value;
+      }
+      if (y.relative) {
+        targetY = swerve.getYPos() + (red ? -y.value : y.value);
+      }
+      swerve.resetDriveController(heading.speaker ? robot.getAimHeading() : targetHeading);
+    }
+
+    public void run() {
+      swerve.driveTo(targetX, targetY, heading.speaker ? robot.getAimHeading() : targetHeading);
+    }
+  }
+
+  // Drives at a velocity with aimDrive(). The velocity and heading are mirrored for the red alliance when the routine is prepared.
+  private class AimDriveAction implements AutoRoutine.Action {
+    private final double xVel; // Unit: meters per second
+    private final double yVel; // Unit: meters per second
+    private final Heading heading;
+    private double targetYVel = 0.0; // Unit: meters per second
+    private double targetHeading = 0.0; // Unit: degrees
+
+    private AimDriveAction(double _xVel, double _yVel, String headingWord) {
+      xVel = _xVel;
+      yVel = _yVel;
+      heading = new Heading(headingWord);
+    }
+
+    public void prepare(boolean redAlliance) {
+      targetYVel = redAlliance ? -yVel : yVel;
+      targetHeading = redAlliance ? -heading.value : heading.value;
+    }
+
+    public void start() {
+      swerve.resetDriveController(heading.speaker ? robot.getAimHeading() : targetHeading);
+    }
+
+    public void run() {
+      if (heading.speaker) {
+        swerve.aimDrive(xVel, targetYVel, robot.getAimHeading(), robot.getAimHeadingRate(), true);
+      } else {
+        swerve.aimDrive(xVel, targetYVel, targetHeading, true);
+      }
+    }
+  }
+
+  // A routine as parsed by parseRoutine(), before it is bound to the robot. start is the x, y, and heading the routine says the robot is placed at, or null.
+  static class ParsedRoutine {
+    final String name;
+    final double[] start;
+    final HashMap<String, AutoTrajectory> trajectories;
+    final Command[] initActions;
+    final ParsedStep[] steps;
+    final Command[] endActions;
+
+    private ParsedRoutine(String _name, double[] _start, HashMap<String, AutoTrajectory> _trajectories, Command[] _initActions, ParsedStep[] _steps, Command[] _endActions) {
+      name = _name;
+      start = _start;
+      trajectories = _trajectories;
+      initActions = _initActions;
+      steps = _steps;
+      endActions = _endActions;
+    }
+  }
+
+  static class ParsedStep {
+    final String name;
+    final Command[] actions;
+    final ParsedTransition[] transitions;
+
+    private ParsedStep(String _name, Command[] _actions, ParsedTransition[] _transitions) {
+      name = _name;
+      actions = _actions;
+      transitions = _transitions;
+    }
+  }
+
+  static class ParsedTransition {
+    final Condition condition;
+    final Command[] actions;
+    final int next; // The index of the step to move to, or AutoRoutine.end.
+
+    private ParsedTransition(Condition _condition, Command[] _actions, int _next) {
+      condition = _condition;
+      actions = _actions;
+      next = _next;
+    }
+  }
+
+  // An action or a condition term: its keyword from the tables above and its arguments, which have been checked. An action may have a guard, the condition it runs under, or null.
+  static class Command {
+    final String text; // As written, for reports.
+    final String keyword;
+    final String[] args;
+    final Condition guard;
+
+    private Command(String _text, String _keyword, String[] _args, Condition _guard) {
+      text = _text;
+      keyword = _keyword;
+      args = _args;
+      guard = _guard;
+    }
+  }
+
+  // A condition, true when all of its terms are true.
+  static class Condition {
+    final String text; // As written, for reports.
+    final Term[] terms;
+
+    private Condition(String _text, Term[] _terms) {
+      text = _text;
+      terms = _terms;
+    }
+  }
+
+  // A condition term, which is true when its command is, or when it is not if the term is negated with "not".
+  static class Term {
+    final boolean negated;
+    final Command command;
+
+    private Term(boolean _negated, Command _command) {
+      negated = _negated;
+      command = _command;
+    }
+  }
+}
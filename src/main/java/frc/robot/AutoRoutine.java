@@ -0,0 +1,153 @@
+package frc.robot;
+
+import java.util.function.BooleanSupplier;
+
+// An autonomous routine, compiled by AutoCompiler from a description in the deploy directory. A routine is a list of steps. While a step is active, its actions run every period,
+// all at once. Each step has transitions, which are checked in order after the actions run. The first transition whose condition is true runs its one time actions and moves the
+// routine to its next step. After the last step, the routine runs its end actions, usually stopping the robot, until auto is over.
+// Everything is resolved when the routine is compiled, so each period only runs the actions of the current step and checks its conditions. Nothing is looked up by name.
+// Anything that depends on the alliance is worked out by prepare() while the robot is disabled, so starting the routine does as little as possible.
+class AutoRoutine {
+  public static final int end = -1; // The index of the end of the routine, used as the next step of a transition.
+  private final String name;
+  private final Action[] initActions; // Run once when the routine starts.
+  private final Step[] steps;
+  private final Action[] endActions; // Run every period after the last step.
+  private int stepIndex = 0; // The index of the current step, or end.
+  private boolean stepStarted = false; // Whether the actions of the current step have been started.
+  private boolean prepared = false; // Whether prepare() has been called.
+  private boolean preparedRed = false; // The alliance the routine was last prepared for. true for red.
+
+  public AutoRoutine(String _name, Action[] _initActions, Step[] _steps, Action[] _endActions) {
+    name = _name;
+    initActions = _initActions;
+    steps = _steps;
+    endActions = _endActions;
+  }
+
+  // Works out everything in the routine that depends on the alliance, such as mirrored targets, and warms up the controllers its actions use. Should be called while the robot is
+  // disabled, whenever the selected routine or the alliance changes, so that init() does not have to.
+  public void prepare(boolean redAlliance) {
+    prepareActions(initActions, redAlliance);
+    for (Step step : steps) {
+      prepareActions(step.actions, redAlliance);
+      for (Transition transition : step.transitions) {
+        prepareActions(transition.actions, redAlliance);
+      }
+    }
+    prepareActions(endActions, redAlliance);
+    prepared = true;
+    preparedRed = redAlliance;
+  }
+
+  private static void prepareActions(Action[] actions, boolean redAlliance) {
+    for (Action action : actions) {
+      action.prepare(redAlliance);
+    }
+  }
+
+  // Returns true if prepare() has been called for the given alliance.
+  public boolean isPreparedFor(boolean redAlliance) {
+    return prepared && preparedRed == redAlliance;
+  }
+
+  // Starts the routine from its first step. Should be called in autonomousInit(), after the routine has been prepared for the current alliance.
+  public void init() {
+    for (Action action : initActions) {
+      action.start();
+      action.run();
+    }
+    stepIndex = steps.length > 0 ? 0 : end;
+    stepStarted = false;
+    if (stepIndex == end) {
+      for (Action action : endActions) {
+        action.start();
+      }
+    }
+  }
+
+  // Runs the current step, then moves to the next step if one of its transitions is true. Should be called once in autonomousPeriodic().
+  public void periodic() {
+    if (stepIndex == end) {
+      runActions(endActions);
+      return;
+    }
+    Step step = steps[stepIndex];
+    if (!stepStarted) {
+      for (Action action : step.actions) {
+        action.start();
+      }
+      stepStarted = true;
+    }
+    runActions(step.actions);
+    for (Transition transition : step.transitions) {
+      if (transition.condition.getAsBoolean()) {
+        for (Action action : transition.actions) {
+          action.start();
+          action.run();
+        }
+        stepIndex = transition.next;
+        stepStarted = false;
+        if (stepIndex == end) {
+          for (Action action : endActions) {
+            action.start();
+          }
+        }
+        break;
+      }
+    }
+  }
+
+  private static void runActions(Action[] actions) {
+    for (Action action : actions) {
+      action.run();
+    }
+  }
+
+  // Returns the name of the routine, as shown on the auto chooser.
+  public String getName() {
+    return name;
+  }
+
+  // Returns the number of the current step, starting at 1, or -1 after the last step.
+  public int getStepNumber() {
+    return stepIndex == end ? -1 : stepIndex + 1;
+  }
+
+  // Returns the name of the current step, or "End" after the last step.
+  public String getStepName() {
+    return stepIndex == end ? "End" : steps[stepIndex].name;
+  }
+
+  // Something the robot does. start() is called once when the step that contains the action begins, and run() is called every period while the step is active.
+  // prepare() is called while the robot is disabled, before the routine starts.
+  interface Action {
+    default void prepare(boolean redAlliance) {}
+    default void start() {}
+    void run();
+  }
+
+  static class Step {
+    private final String name;
+    private final Action[] actions; // Run every period while the step is active.
+    private final Transition[] transitions; // Checked in order after the actions run.
+
+    public Step(String _name, Action[] _actions, Transition[] _transitions) {
+      name = _name;
+      actions = _actions;
+      transitions = _transitions;
+    }
+  }
+
+  static class Transition {
+    private final BooleanSupplier condition;
+    private final Action[] actions; // Run once when the transition is taken.
+    private final int next; // The index of the step to move to, or end.
+
+    public Transition(BooleanSupplier _condition, Action[] _actions, int _next) {
+      condition = _condition;
+      actions = _actions;
+      next = _next;
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.math.trajectory.constraint.CentripetalAccelerationConstraint;
+import edu.wpi.first.math.trajectory.constraint.EllipticalRegionConstraint;
+import edu.wpi.first.math.trajectory.constraint.MaxVelocityConstraint;
+import java.util.ArrayList;
+
+// A time-optimal trajectory through a list of auto waypoints, generated once when the autos are compiled. The robot does not have to stop at the waypoints: the path is a spline
+// that passes through each one, and the speed along it is as fast as the velocity, acceleration, and centripetal acceleration limits allow. Trajectories can start and end moving,
+// so consecutive steps of a routine can hand the robot from one trajectory to the next without stopping. A waypoint inside a trajectory may cap the speed near it, which is
+// used to drive over a note at a speed the intake can pick it up at. The heading is independent of the direction of travel, and turns evenly from one waypoint to the next.
+// A waypoint aimed at the speaker stores the heading from the waypoint itself, which is only right for a robot stopped there. When the trajectory is followed, the aim heading
+// is passed in when sampling and used instead, so the heading leads the speaker like aimThrower() does, and atDriveGoal() checks the heading the shot is aimed with.
+// Trajectories are generated for the blue alliance and mirrored across the field when they are sampled on the red alliance. Sampling stores the results in fields.
+class AutoTrajectory {
+  private static final double maxVel = 4.0; // The fastest the trajectory drives. Below maxVelAuto so the correction controllers have room to catch up. Unit: meters per second
+  private static final double maxAcc = Drivetrain.maxAccAuto; // Unit: meters per second squared
+  private static final double maxCentripetalAcc = Drivetrain.maxAccAuto; // Limits the speed through turns. Unit: meters per second squared
+  private static final double speedCapRadius = 0.3; // The distance from a waypoint within which its speed cap applies. Unit: meters
+  private final Trajectory trajectory;
+  private final double[] waypointTimes; // The time at which the trajectory passes each waypoint. Unit: seconds
+  private final double[] waypointHeadings; // The heading at each waypoint on the blue alliance. Unit: degrees
+  private final boolean[] waypointSpeaker; // Whether each waypoint aims at the speaker.
+  private final double endVel; // The speed at the end of the trajectory. 0 if the robot stops there. Unit: meters per second
+  private final double endX; // The position at the end of the trajectory on the blue alliance. Unit: meters
+  private final double endY; // Unit: meters
+  private int waypointIndex = 0; // The waypoint most recently passed when sampling. Kept between samples since the time usually only moves forward.
+  private double xPos = 0.0; // Unit: meters
+  private double yPos = 0.0; // Unit: meters
+  private double xVel = 0.0; // Unit: meters per second
+  private double yVel = 0.0; // Unit: meters per second
+  private double xAcc = 0.0; // Unit: meters per second squared
+  private double yAcc = 0.0; // Unit: meters per second squared
+  private double heading = 0.0; // Unit: degrees
+  private double headingVel = 0.0; // Unit: degrees per second
+
+  // Generates the trajectory through the given waypoints. before is the waypoint ahead of the first one when the trajectory continues from another trajectory, and after is the
+  // waypoint after the last one when another trajectory continues from this one. Otherwise they are null. They make the direction of travel match across the handoff.
+  // Throws an exception if the trajectory cannot be generated, for example if the end speed cannot be reached from the start speed.
+  public AutoTrajectory(Waypoint[] waypoints, Waypoint before, Waypoint after) {
+    if (waypoints.length < 2) {
+      throw new IllegalArgumentException("A trajectory needs at least 2 waypoints.");
+    }
+    Waypoint first = waypoints[0];
+    Waypoint last = waypoints[waypoints.length - 1];
+    TrajectoryConfig config = new TrajectoryConfig(maxVel, maxAcc);
+    config.setStartVelocity(first.vel);
+    config.setEndVelocity(last.vel);
+    config.addConstraint(new CentripetalAccelerationConstraint(maxCentripetalAcc));
+    ArrayList<Pose2d> poses = new ArrayList<>();
+    for (int index = 0; index < waypoints.length; index++) {
+      Waypoint previous = index > 0 ? waypoints[index - 1] : (first.vel > 0.0 ? before : null); // A trajectory that starts or ends stopped does not need to line up with its neighbor.
+      Waypoint next = index < waypoints.length - 1 ? waypoints[index + 1] : (last.vel > 0.0 ? after : null);
+      poses.add(new Pose2d(waypoints[index].x, waypoints[index].y, getTangent(waypoints[index], previous, next)));
+      if (index > 0 && index < waypoints.length - 1 && waypoints[index].vel > 0.0) {
+        config.addConstraint(new EllipticalRegionConstraint(new Translation2d(waypoints[index].x, waypoints[index].y), 2.0*speedCapRadius, 2.0*speedCapRadius, new Rotation2d(), new MaxVelocityConstraint(waypoints[index].vel)));
+      }
+    }
+    trajectory = TrajectoryGenerator.generateTrajectory(poses, config);
+    endVel = last.vel;
+    endX = last.x;
+    endY = last.y;
+
+    // Finds when the trajectory passes each waypoint, so the heading can be spread evenly over the time between waypoints.
+    waypointTimes = new double[waypoints.length];
+    waypointHeadings = new double[waypoints.length];
+    waypointSpeaker = new boolean[waypoints.length];
+    int stateIndex = 0;
+    for (int index = 0; index < waypoints.length; index++) {
+      waypointHeadings[index] = waypoints[index].heading;
+      waypointSpeaker[index] = waypoints[index].speaker;
+      if (index == 0) {
+        waypointTimes[index] = 0.0;
+      } else if (index == waypoints.length - 1) {
+        waypointTimes[index] = trajectory.getTotalTimeSeconds();
+      } else {
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for (int searchIndex = stateIndex; searchIndex < trajectory.getStates().size(); searchIndex++) {
+          double distance = trajectory.getStates().get(searchIndex).poseMeters.getTranslation().getDistance(new Translation2d(waypoints[index].x, waypoints[index].y));
+          if (distance < closestDistance) {
+            closestDistance = distance;
+            stateIndex = searchIndex;
+          }
+        }
+        waypointTimes[index] = trajectory.getStates().get(stateIndex).timeSeconds;
+      }
+    }
+  }
+
+  // The direction of travel through a waypoint. Points from the previous waypoint to the next one, so the path curves smoothly through it.
+  private static Rotation2d getTangent(Waypoint waypoint, Waypoint previous, Waypoint next) {
+    Waypoint from = previous != null ? previous : waypoint;
+    Waypoint to = next != null ? next : waypoint;
+    return new Rotation2d(to.x - from.x, to.y - from.y);
+  }
+
+  // Samples the trajectory at the given time since it started. Mirrored across the field width for the red alliance. Read the results with the getters below.
+  // Waypoints aimed at the speaker use the heading from the waypoint, as if the robot were stopped there.
+  public void sample(double time, boolean redAlliance) {
+    sample(time, redAlliance, Double.NaN);
+  }
+
+  // Samples the trajectory like sample(time, redAlliance), but waypoints aimed at the speaker use aimHeading, the heading that aims the shot from where the robot is now,
+  // on the robot's alliance. NaN uses the heading from the waypoint. Unit: degrees
+  public void sample(double time, boolean redAlliance, double aimHeading) {
+    Trajectory.State state = trajectory.sample(time);
+    double cos = state.poseMeters.getRotation().getCos();
+    double sin = state.poseMeters.getRotation().getSin();
+    double tangentialAcc = state.accelerationMetersPerSecondSq;
+    double normalAcc = state.velocityMetersPerSecond*state.velocityMetersPerSecond*state.curvatureRadPerMeter;
+    xPos = state.poseMeters.getX();
+    yPos = state.poseMeters.getY();
+    xVel = state.velocityMetersPerSecond*cos;
+    yVel = state.velocityMetersPerSecond*sin;
+    xAcc = tangentialAcc*cos - normalAcc*sin;
+    yAcc = tangentialAcc*sin + normalAcc*cos;
+
+    // Turns evenly from the heading of the last waypoint passed to the heading of the next one, the short way around.
+    if (waypointIndex >= waypointTimes.length - 1 || time < waypointTimes[waypointIndex]) {
+      waypointIndex = 0;
+    }
+    while (waypointIndex < waypointTimes.length - 2 && time >= waypointTimes[waypointIndex + 1]) {
+      waypointIndex++;
+    }
+    double blueAimHeading = redAlliance ? -aimHeading : aimHeading; // The headings are interpolated on the blue alliance, then mirrored.
+    double segmentTime = waypointTimes[waypointIndex + 1] - waypointTimes[waypointIndex];
+    double startHeading = getWaypointHeading(waypointIndex, blueAimHeading);
+    double headingChange = Math.IEEEremainder(getWaypointHeading(waypointIndex + 1, blueAimHeading) - startHeading, 360.0);
+    if (time >= getTotalTime() || segmentTime <= 0.0) {
+      heading = getWaypointHeading(waypointHeadings.length - 1, blueAimHeading);
+      headingVel = 0.0;
+    } else {
+      double fraction = Math.max(time - waypointTimes[waypointIndex], 0.0)/segmentTime;
+      heading = Math.IEEEremainder(startHeading + headingChange*fraction, 360.0);
+      headingVel = headingChange/segmentTime;
+    }
+
+    if (redAlliance) {
+      yPos = Drivetrain.fieldWidth - yPos;
+      yVel = -yVel;
+      yAcc = -yAcc;
+      heading = -heading;
+      headingVel = -headingVel;
+    }
+  }
+
+  // Returns the heading at a waypoint on the blue alliance. A waypoint aimed at the speaker uses the aim heading, if there is one.
+  private double getWaypointHeading(int index, double blueAimHeading) {
+    return waypointSpeaker[index] && !Double.isNaN(blueAimHeading) ? blueAimHeading : waypointHeadings[index];
+  }
+
+  // Returns the time it takes to drive the trajectory. Unit: seconds
+  public double getTotalTime() {
+    return trajectory.getTotalTimeSeconds();
+  }
+
+  // Returns the speed at the end of the trajectory. 0 if the trajectory ends stopped. Unit: meters per second
+  public double getEndVel() {
+    return endVel;
+  }
+
+  // Returns the x-position at the end of the trajectory. Unit: meters
+  public double getEndX() {
+    return endX;
+  }
+
+  // Returns the y-position at the end of the trajectory on the blue alliance. Not mirrored for the red alliance. Unit: meters
+  public double getEndY() {
+    return endY;
+  }
+
+  public double getXPos() {
+    return xPos;
+  }
+
+  public double getYPos() {
+    return yPos;
+  }
+
+  public double getXVel() {
+    return xVel;
+  }
+
+  public double getYVel() {
+    return yVel;
+  }
+
+  public double getXAcc() {
+    return xAcc;
+  }
+
+  public double getYAcc() {
+    return yAcc;
+  }
+
+  public double getHeading() {
+    return heading;
+  }
+
+  public double getHeadingVel() {
+    return headingVel;
+  }
+
+  // A point the trajectory passes through on the blue alliance. vel is the speed at the start or end of a trajectory, and caps the speed near a waypoint in the middle. 0 in the middle means no cap.
+  static class Waypoint {
+    private final double x; // Unit: meters
+    private final double y; // Unit: meters
+    private final double heading; // Unit: degrees
+    private final double vel; // Unit: meters per second
+    private final boolean speaker; // Whether the heading aims at the speaker. heading is then the heading from the waypoint.
+
+    public Waypoint(double _x, double _y, double _heading, double _vel, boolean _speaker) {
+      x = _x;
+      y = _y;
+      heading = _heading;
+      vel = _vel;
+      speaker = _speaker;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+// Records the calls made into a subsystem during each period, in order and with their arguments, so that a replay can make the same calls in the same order.
+// Each period is recorded as an array of numbers. Each call is written as its letter, the number of arguments, then the arguments. For example, "O" then "V" with 3 arguments is
+// recorded as {'O', 0, 'V', 3, 0.04, 0.04, 10.0}. The calls are written into a preallocated array, so recording a call does not allocate or format any text.
+class CallLog {
+  private static final int maxLength = 256; // The most numbers recorded in one period. Calls past this are dropped.
+  private final double[] calls = new double[maxLength]; // The calls made so far this period.
+  private int length = 0; // The number of values in calls.
+  private boolean overflowReported = false; // Whether a dropped call has been reported.
+  private final String name;
+  private final Telemetry.DoubleArrayChannel channel;
+
+  public CallLog(String _name) {
+    name = _name;
+    channel = Telemetry.addDoubleArray(name, maxLength);
+  }
+
+  // Records a call that has no arguments.
+  public void add(char call) {
+    if (start(call, 0)) {
+      length += 2;
+    }
+  }
+
+  // Records a call and its argument. Booleans should be passed in as 1.0 for true and 0.0 for false.
+  public void add(char call, double arg0) {
+    if (start(call, 1)) {
+      calls[length + 2] = arg0;
+      length += 3;
+    }
+  }
+
+  // Records a call and its arguments.
+  public void add(char call, double arg0, double arg1) {
+    if (start(call, 2)) {
+      calls[length + 2] = arg0;
+      calls[length + 3] = arg1;
+      length += 4;
+    }
+  }
+
+  // Records a call and its arguments.
+  public void add(char call, double arg0, double arg1, double arg2) {
+    if (start(call, 3)) {
+      calls[length + 2] = arg0;
+      calls[length + 3] = arg1;
+      calls[length + 4] = arg2;
+      length += 5;
+    }
+  }
+
+  // Records a call and its arguments. Used by Drivetrain.drive().
+  public void add(char call, double arg0, double arg1, double arg2, double arg3, double arg4, double arg5, double arg6, double arg7) {
+    if (start(call, 8)) {
+      calls[length + 2] = arg0;
+      calls[length + 3] = arg1;
+      calls[length + 4] = arg2;
+      calls[length + 5] = arg3;
+      calls[length + 6] = arg4;
+      calls[length + 7] = arg5;
+      calls[length + 8] = arg6;
+      calls[length + 9] = arg7;
+      length += 10;
+    }
+  }
+
+  // Writes the letter and the argument count of a call. Returns false if the call does not fit in this period, in which case it is dropped and reported once.
+  private boolean start(char call, int argCount) {
+    if (length + 2 + argCount > maxLength) {
+      if (!overflowReported) {
+        DriverStation.reportWarning(name + " dropped calls. More than " + maxLength + " values were recorded in one period.", false);
+        overflowReported = true;
+      }
+      return false;
+    }
+    calls[length] = call;
+    calls[length + 1] = argCount;
+    return true;
+  }
+
+  // Records the calls made this period and starts a new period. Should be called once each period, after all of the calls have been made.
+  public void flush() {
+    channel.set(calls, length);
+    length = 0;
+  }
+
+  // Discards the calls recorded so far this period. Used for calls made by a constructor, since those are repeated when the subsystem is constructed for a replay.
+  public void clear() {
+    length = 0;
+  }
+
+  // Returns the letter identifying the call that starts at callIndex in a recorded period.
+  public static char getCall(double[] period, int callIndex) {
+    return (char) period[callIndex];
+  }
+
+  // Returns the index of the call after the one that starts at callIndex in a recorded period. Equal to the length of the period after the last call.
+  public static int getNextCall(double[] period, int callIndex) {
+    return callIndex + 2 + (int) period[callIndex + 1];
+  }
+
+  // Returns the arguments of the call that starts at callIndex in a recorded period.
+  public static double[] getArgs(double[] period, int callIndex) {
+    double[] args = new double[(int) period[callIndex + 1]];
+    System.arraycopy(period, callIndex + 2, args, 0, args.length);
+    return args;
+  }
+}
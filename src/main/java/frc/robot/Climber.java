@@ -9,85 +9,124 @@ import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class Climber {
   private final TalonFX leftClimbMotor = new TalonFX(10, "canivore"); // The Falcon 500 motor that controls the left climber.
   private final TalonFX rightClimbMotor = new TalonFX(9, "canivore"); // The other Falcon 500 motor that controls the right climber.
   private final DigitalInput leftLimitSensor = new DigitalInput(2); // Hall effect sensor that detects whether a magnet is present. Triggered when the climber is bottomed out.
   private final DigitalInput rightLimitSensor = new DigitalInput(1); // Hall effect sensor that detects whether a magnet is present. Triggered when the climber is bottomed out.
-  private final double rotationsToTop = 180.0; // The approximate number of rotations between the bottom and top of the climber's useful range of motion.
-  private boolean leftClimbMotorFailure = false; // Indicates whether the motor failed to configure on startup.
-  private boolean rightClimbMotorFailure = false; // Indicates whether the motor failed to configure on startup.
-  private double leftClimbMotorZero = 0.0; // The rotor position that corresponds to bottoming out the left climber.
-  private double rightClimbMotorZero = 0.0; // The rotor position that corresponds to bottoming out the right climber.
-  private boolean limitSensorDetected = false; // Indicates whether the climber detected both limit sensors on startup. The climber is locked out if both sensors are not detected.
+  private final double rotationsToTop = 180.0; // The approximate number of rotations between the bottom and top of the climber's useful range of motion. Enforced by the motors as a soft limit.
+  private final double syncPosGain = 0.02; // In a synchronized climb, the power taken from the side that is ahead, per rotation it is ahead of the other side.
+  private final double syncRollGain = 0.03; // In a synchronized climb, the power taken from the side that is higher, per degree of roll.
+  private final double maxSyncCorrection = 0.4; // The most power either side can be corrected by in a synchronized climb.
+  private final DeviceConfigurator.Device leftClimbMotorConfig = DeviceConfigurator.submit("Climber Left Motor", () -> configClimbMotor(leftClimbMotor, true, 60.0, 3), leftClimbMotor::hasResetOccurred);
+  private final DeviceConfigurator.Device rightClimbMotorConfig = DeviceConfigurator.submit("Climber Right Motor", () -> configClimbMotor(rightClimbMotor, false, 60.0, 3), rightClimbMotor::hasResetOccurred);
+  private final DutyCycleOut leftPowerRequest = new DutyCycleOut(0.0).withEnableFOC(true); // Reused each period with the output and the state of the limit sensor updated.
+  private final DutyCycleOut rightPowerRequest = new DutyCycleOut(0.0).withEnableFOC(true);
+  private final MotionMagicDutyCycle leftPositionRequest = new MotionMagicDutyCycle(0.0).withEnableFOC(true);
+  private final MotionMagicDutyCycle rightPositionRequest = new MotionMagicDutyCycle(0.0).withEnableFOC(true);
+  private double syncCorrection = 0.0; // The power taken from the left side and given to the right side in the last synchronized climb.
+  private boolean limitSensorDetected = false; // Indicates whether the climber detected both limit sensors on startup. The climber is locked out if both sensors are not detected, or if a motor reset away from its sensor.
   private boolean userLockout = true; // Prevents the user from moving the climber if true. Prevents accidental collisions between the arm and the climber.
 
+  // Dashboard channels. Created once so that updateDashboard() only hands values off to the telemetry thread.
+  private final Telemetry.BooleanChannel leftMotorFailureChannel = Telemetry.addBoolean("Climber Left Motor Failure", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel rightMotorFailureChannel = Telemetry.addBoolean("Climber Right Motor Failure", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel leftLimitSensorChannel = Telemetry.addBoolean("Climber Left Limit Sensor", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel rightLimitSensorChannel = Telemetry.addBoolean("Climber Right Limit Sensor", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel userLockoutChannel = Telemetry.addBoolean("Climber User Lockout", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel limitSensorDetectedChannel = Telemetry.addBoolean("Climber Limit Sensor Detected", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel leftMotorPositionChannel = Telemetry.addDouble("Climber Left Motor Position", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel rightMotorPositionChannel = Telemetry.addDouble("Climber Right Motor Position", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel syncCorrectionChannel = Telemetry.addDouble("Climber Sync Correction", Telemetry.slowRate);
+
   public Climber() {
-    leftClimbMotorFailure = !configClimbMotor(leftClimbMotor, true, 60.0, 3);
-    rightClimbMotorFailure = !configClimbMotor(rightClimbMotor, false, 60.0, 3);
-    leftClimbMotorZero = leftClimbMotor.getRotorPosition().getValueAsDouble();
-    rightClimbMotorZero = rightClimbMotor.getRotorPosition().getValueAsDouble();
+    DeviceConfigurator.waitFor(1.0, leftClimbMotorConfig, rightClimbMotorConfig); // The positions of the motors are zeroed below.
     limitSensorDetected = getLeftLimitSensor() && getRightLimitSensor();
+    if (limitSensorDetected) {
+      leftClimbMotor.setPosition(0.0);
+      rightClimbMotor.setPosition(0.0);
+    }
   }
 
-  // Should be called during teleopInit() and autoInit()
+  // Should be called during teleopInit() and autoInit(). Zeroes the positions of the motors if both climbers are bottomed out, so the soft limit at the top is measured from the bottom.
   public void init() {
-    leftClimbMotorZero = leftClimbMotor.getRotorPosition().getValueAsDouble();
-    rightClimbMotorZero = rightClimbMotor.getRotorPosition().getValueAsDouble();
     limitSensorDetected = getLeftLimitSensor() && getRightLimitSensor();
+    if (limitSensorDetected) {
+      leftClimbMotor.setPosition(0.0, 0.0); // Does not wait for the motors to confirm, so init() does not hold up the first period.
+      rightClimbMotor.setPosition(0.0, 0.0);
+    }
     userLockout = true;
   }
 
+  // Should be called each period. A motor that resets, such as after a brownout, counts its position from 0 again, wherever the climber is. The motor is zeroed again if its climber
+  // is bottomed out. Otherwise its position no longer measures from the bottom, so the climber is locked out until init() finds both climbers bottomed out.
+  public void updateResets() {
+    if (leftClimbMotorConfig.takeReset()) {
+      if (getLeftLimitSensor()) {
+        leftClimbMotor.setPosition(0.0, 0.0);
+      } else {
+        limitSensorDetected = false;
+      }
+    }
+    if (rightClimbMotorConfig.takeReset()) {
+      if (getRightLimitSensor()) {
+        rightClimbMotor.setPosition(0.0, 0.0);
+      } else {
+        limitSensorDetected = false;
+      }
+    }
+  }
+
   // Sets the output of each climb motor. the ClimbPower inputs can range from -1 to 1. -1 corresponds to full power down and +1 is full power up.
+  // The motors stop themselves at the top of the range with their soft limits, and at the bottom when the limit sensor is passed along with the request.
   public void setManual(double leftClimbPower, double rightClimbPower) {
     if (!userLockout && limitSensorDetected) {
-      if (getLeftLimitSensor() && leftClimbPower < 0.0) {
-        leftClimbPower = 0.0;
-      }
-      if (limitSensorDetected && getLeftMotorPosition() > leftClimbMotorZero + rotationsToTop && leftClimbPower > 0.0) {
-        leftClimbPower = 0.0;
-      }
-      leftClimbMotor.setControl(new DutyCycleOut(leftClimbPower).withEnableFOC(true));
+      setPower(leftClimbPower, rightClimbPower);
+    }
+  }
 
-      if (getRightLimitSensor() && rightClimbPower < 0.0) {
-        rightClimbPower = 0.0;
-      }
-      if (limitSensorDetected && getRightMotorPosition() > rightClimbMotorZero + rotationsToTop && rightClimbPower > 0.0) {
-        rightClimbPower = 0.0;
-      }
-      rightClimbMotor.setControl(new DutyCycleOut(rightClimbPower).withEnableFOC(true));
+  // Moves both climbers together. climbPower ranges from -1 to 1. -1 corresponds to full power down and +1 is full power up. roll is the roll of the robot in degrees, with an
+  // elevated left side positive. Power is moved from one side to the other in proportion to how far that side is ahead of the other and how much higher it is, so the robot stays
+  // level while it hangs. Full power is reduced by the size of the correction, so a side never saturates and the robot stays level at the fastest climb the motors allow.
+  public void setSynchronized(double climbPower, double roll) {
+    if (!userLockout && limitSensorDetected) {
+      syncCorrection = syncPosGain*(getLeftMotorPosition() - getRightMotorPosition()) - syncRollGain*roll; // A side that is ahead or higher is slowed, and the other side is sped up.
+      syncCorrection = Math.max(-maxSyncCorrection, Math.min(syncCorrection, maxSyncCorrection));
+      double maxClimbPower = 1.0 - Math.abs(syncCorrection);
+      climbPower = Math.max(-maxClimbPower, Math.min(climbPower, maxClimbPower));
+      setPower(climbPower - syncCorrection, climbPower + syncCorrection);
     }
   }
 
   // Slowly lowers both climbers until both limit sensors are triggered. Does not require the userLockout to be disabled. Should not be used during a match, only between matches.
   public void resetClimbers() {
-    double leftClimbPower = -0.3;
-    double rightClimbPower = -0.3;
-    if(getLeftLimitSensor()) {
-      leftClimbPower = 0.0;
-    }
-    if(getRightLimitSensor()) {
-      rightClimbPower = 0.0;
-    }
-    leftClimbMotor.setControl(new DutyCycleOut(leftClimbPower).withEnableFOC(true));
-    rightClimbMotor.setControl(new DutyCycleOut(rightClimbPower).withEnableFOC(true));
+    setPower(-0.3, -0.3);
+  }
+
+  // Sends the power to each motor along with the state of its limit sensor. The motor will not move down while its sensor is triggered, in any control mode.
+  private void setPower(double leftClimbPower, double rightClimbPower) {
+    leftClimbMotor.setControl(leftPowerRequest.withOutput(leftClimbPower).withLimitReverseMotion(getLeftLimitSensor()));
+    rightClimbMotor.setControl(rightPowerRequest.withOutput(rightClimbPower).withLimitReverseMotion(getRightLimitSensor()));
+  }
+
+  // Sends each motor to a position in rotations from the bottom, along with the state of its limit sensor.
+  private void setPosition(double leftPosition, double rightPosition) {
+    leftClimbMotor.setControl(leftPositionRequest.withPosition(leftPosition).withLimitReverseMotion(getLeftLimitSensor()));
+    rightClimbMotor.setControl(rightPositionRequest.withPosition(rightPosition).withLimitReverseMotion(getRightLimitSensor()));
   }
 
   // Moves the climbers to the bottom position.
   public void setToBottom() {
     if (!userLockout && limitSensorDetected) {
-      leftClimbMotor.setControl(new MotionMagicDutyCycle(leftClimbMotorZero).withEnableFOC(true));
-      rightClimbMotor.setControl(new MotionMagicDutyCycle(rightClimbMotorZero).withEnableFOC(true));
+      setPosition(0.0, 0.0);
     }
   }
 
   // Moves the climbers to the top position.
   public void setToTop() {
     if (!userLockout && limitSensorDetected) {
-      leftClimbMotor.setControl(new MotionMagicDutyCycle(leftClimbMotorZero + rotationsToTop).withEnableFOC(true));
-      rightClimbMotor.setControl(new MotionMagicDutyCycle(rightClimbMotorZero + rotationsToTop).withEnableFOC(true));
+      setPosition(rotationsToTop, rotationsToTop);
     }
   }
 
@@ -100,8 +139,7 @@ public class Climber {
       if (desiredPosition > 1.0) {
         desiredPosition = 1.0;
       }
-      leftClimbMotor.setControl(new MotionMagicDutyCycle(leftClimbMotorZero + rotationsToTop*desiredPosition).withEnableFOC(true));
-      rightClimbMotor.setControl(new MotionMagicDutyCycle(rightClimbMotorZero + rotationsToTop*desiredPosition).withEnableFOC(true));
+      setPosition(rotationsToTop*desiredPosition, rotationsToTop*desiredPosition);
     }
   }
 
@@ -125,14 +163,14 @@ public class Climber {
     return userLockout;
   }
 
-  // Returns the rotor position of the left climb motor.
+  // Returns the position of the left climb motor in rotations from the bottom. Only measured from the bottom if the limit sensors were detected in init().
   public double getLeftMotorPosition() {
-     return leftClimbMotor.getRotorPosition().getValueAsDouble();
+     return leftClimbMotor.getPosition().getValueAsDouble();
   }
 
-  // Returns the rotor position of the right climb motor.
+  // Returns the position of the right climb motor in rotations from the bottom. Only measured from the bottom if the limit sensors were detected in init().
   public double getRightMotorPosition() {
-     return rightClimbMotor.getRotorPosition().getValueAsDouble();
+     return rightClimbMotor.getPosition().getValueAsDouble();
   } 
 
   // Returns true if both climbers triggered the limit sensors on startup.
@@ -140,26 +178,27 @@ public class Climber {
     return limitSensorDetected;
   }
 
-  // Returns true if the left motor failed to configure on startup.
+  // Returns true if the left motor failed its most recent configuration, either on startup or after a reset.
   public boolean getLeftClimbMotorFailure() {
-    return leftClimbMotorFailure;
+    return leftClimbMotorConfig.failed();
   }
 
-  // Returns true if the right motor failed to configure on startup.
+  // Returns true if the right motor failed its most recent configuration, either on startup or after a reset.
   public boolean getRightClimbMotorFailure() {
-    return rightClimbMotorFailure;
+    return rightClimbMotorConfig.failed();
   }
 
   // Updates any important values on the dashboard.
   public void updateDashboard() {
-    SmartDashboard.putBoolean("Climber Left Motor Failure", getLeftClimbMotorFailure());
-    SmartDashboard.putBoolean("Climber Right Motor Failure", getRightClimbMotorFailure());
-    SmartDashboard.putBoolean("Climber Left Limit Sensor", getLeftLimitSensor());
-    SmartDashboard.putBoolean("Climber Right Limit Sensor", getRightLimitSensor());
-    SmartDashboard.putBoolean("Climber User Lockout", getUserLockout());
-    SmartDashboard.putBoolean("Climber Limit Sensor Detected", getLimitSensorDetected());
-    SmartDashboard.putNumber("Climber Left Motor Position", getLeftMotorPosition());
-    SmartDashboard.putNumber("Climber Right Motor Position", getRightMotorPosition());
+    leftMotorFailureChannel.set(getLeftClimbMotorFailure());
+    rightMotorFailureChannel.set(getRightClimbMotorFailure());
+    leftLimitSensorChannel.set(getLeftLimitSensor());
+    rightLimitSensorChannel.set(getRightLimitSensor());
+    userLockoutChannel.set(getUserLockout());
+    limitSensorDetectedChannel.set(getLimitSensorDetected());
+    leftMotorPositionChannel.set(getLeftMotorPosition());
+    rightMotorPositionChannel.set(getRightMotorPosition());
+    syncCorrectionChannel.set(syncCorrection);
   }
 
   // Attempts to configure the climb motor. Sets inverts, neutral mode, and PID constants. Returns true if the motor successfully configued.
@@ -185,10 +224,14 @@ public class Climber {
     motorConfigs.MotionMagic.MotionMagicCruiseVelocity = 50.0;
     motorConfigs.MotionMagic.MotionMagicJerk = 500.0;
 
+    // Stops the climber at the top of its range on the motor itself, between control frames. The bottom is set by the limit sensors, which are passed along with each request.
+    motorConfigs.SoftwareLimitSwitch.ForwardSoftLimitEnable = true;
+    motorConfigs.SoftwareLimitSwitch.ForwardSoftLimitThreshold = rotationsToTop;
+
     // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
     int motorErrors = 0;
     boolean motorFailure = false;
-    while (motorConfigurator.apply(motorConfigs, 0.03) != StatusCode.OK) {
+    while (DeviceConfigurator.apply(motorConfigurator, motorConfigs, 0.03) != StatusCode.OK) { // Skips the write if the motor already has these configs.
       motorErrors++;
       motorFailure = motorErrors > maxMotorErrors;
       if (motorFailure) {
@@ -0,0 +1,281 @@
+package frc.robot;
+
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.configs.TalonFXConfigurator;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+// Configures the motor controllers in the background while the robot code starts. Every device is configured on its own thread, so the devices on the CANivore and the rio bus
+// are configured at the same time instead of one after another, and a device that does not respond only delays itself. Each config function retries a bounded number of times.
+// Subsystems submit their devices from their constructors and only wait for the ones they need to read from right away. robotInit() waits for the rest.
+// After that, a monitor thread watches every device for resets, such as after a brownout, and configures it again in the background. A reset device also loses anything its owner read
+// from it on start up, such as the rotor position an offset was taken from, so the owner calls takeReset() each period to find out about resets and re-seed those values.
+class DeviceConfigurator {
+  private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "Device Config");
+    thread.setDaemon(true); // Does not keep the program running if it exits during a configuration.
+    return thread;
+  });
+  private static final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "Device Monitor");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static final double monitorPeriod = 0.1; // How often every device is checked for a reset. Unit: seconds
+  private static final double failureRetryPeriod = 1.0; // How long to wait before configuring a device again after its configuration failed. Unit: seconds
+  private static final double errorReportPeriod = 10.0; // The shortest time between two reports of a device whose checks keep failing. Unit: seconds
+  private static final CopyOnWriteArrayList<Device> devices = new CopyOnWriteArrayList<>(); // Every device that has been submitted, in the order they were submitted. Read by the monitor thread.
+  private static final long startTime = System.nanoTime(); // When the first device was submitted.
+  private static final Telemetry.DoubleChannel bootTimeChannel = Telemetry.addDouble("Config/Boot Time (ms)", Telemetry.slowRate);
+  private static final Telemetry.DoubleChannel failuresChannel = Telemetry.addDouble("Config/Failures", Telemetry.slowRate);
+
+  // Starts configuring a device in the background. config should return true if the device was successfully configured.
+  // resetCheck should return true if the device has reset since the last time it was called. A device that resets loses any configs that were not saved, so it is configured again.
+  public static Device submit(String name, BooleanSupplier config, BooleanSupplier resetCheck) {
+    Device device = new Device(name, config, resetCheck);
+    devices.add(device);
+    return device;
+  }
+
+  // Starts checking every device for resets in the background. A device that has reset, or whose last configuration failed, is configured again without blocking the main loop.
+  // Should be called once in robotInit(), after the devices have been configured for the first time.
+  public static void startMonitor() {
+    monitor.scheduleAtFixedRate(() -> {
+      for (Device device : devices) {
+        try {
+          device.check();
+        } catch (RuntimeException e) { // Keeps the monitor running. An exception would cancel every future check.
+          device.reportCheckError(e);
+        }
+      }
+    }, 0, (long) (monitorPeriod*1.0e9), TimeUnit.NANOSECONDS);
+  }
+
+  // Waits until each of the given devices has finished configuring, or until timeout has passed. Returns true if every device finished. Unit: seconds
+  public static boolean waitFor(double timeout, Device... devicesToWaitFor) {
+    long deadline = System.nanoTime() + (long) (timeout*1.0e9);
+    boolean finished = true;
+    for (Device device : devicesToWaitFor) {
+      finished = device.waitFor(deadline) && finished;
+    }
+    return finished;
+  }
+
+  // Waits until every submitted device has finished configuring, or until timeout has passed. Returns true if every device finished. Unit: seconds
+  public static boolean waitForAll(double timeout) {
+    return waitFor(timeout, devices.toArray(new Device[0]));
+  }
+
+  // Applies configs to a TalonFX only if they differ from the configs already on the device. The device saves every applied config to flash,
+  // so this skips the write, and the wait for the device to finish it, on every boot after the first. Returns the result of the read or the write.
+  public static StatusCode apply(TalonFXConfigurator configurator, TalonFXConfiguration configs, double timeout) {
+    TalonFXConfiguration liveConfigs = new TalonFXConfiguration();
+    if (configurator.refresh(liveConfigs, timeout) == StatusCode.OK && configsMatch(liveConfigs, configs)) {
+      return StatusCode.OK;
+    }
+    return configurator.apply(configs, timeout);
+  }
+
+  // Returns true if a value read back from a device matches the value that was written to it. Devices store some values at a lower precision than a double, so a small error is allowed.
+  public static boolean valuesMatch(double liveValue, double value) {
+    return Math.abs(liveValue - value) <= 1.0e-6 + 1.0e-4*Math.abs(value);
+  }
+
+  // Returns true if the configs read back from a TalonFX match the configs in every field of the groups the subsystems set: the motor output, the current limits,
+  // both gain slots, Motion Magic, and the soft limits. Every field of those groups is compared, including the ones left at their defaults, so a value changed on the device
+  // is written over. A subsystem that starts setting a field in another group should add that group here, or the change would never be written.
+  private static boolean configsMatch(TalonFXConfiguration live, TalonFXConfiguration configs) {
+    return live.MotorOutput.NeutralMode == configs.MotorOutput.NeutralMode
+      && live.MotorOutput.Inverted == configs.MotorOutput.Inverted
+      && valuesMatch(live.MotorOutput.DutyCycleNeutralDeadband, configs.MotorOutput.DutyCycleNeutralDeadband)
+      && valuesMatch(live.MotorOutput.PeakForwardDutyCycle, configs.MotorOutput.PeakForwardDutyCycle)
+      && valuesMatch(live.MotorOutput.PeakReverseDutyCycle, configs.MotorOutput.PeakReverseDutyCycle)
+      && live.CurrentLimits.SupplyCurrentLimitEnable == configs.CurrentLimits.SupplyCurrentLimitEnable
+      && valuesMatch(live.CurrentLimits.SupplyCurrentLimit, configs.CurrentLimits.SupplyCurrentLimit)
+      && valuesMatch(live.CurrentLimits.SupplyCurrentThreshold, configs.CurrentLimits.SupplyCurrentThreshold)
+      && valuesMatch(live.CurrentLimits.SupplyTimeThreshold, configs.CurrentLimits.SupplyTimeThreshold)
+      && live.CurrentLimits.StatorCurrentLimitEnable == configs.CurrentLimits.StatorCurrentLimitEnable
+      && valuesMatch(live.CurrentLimits.StatorCurrentLimit, configs.CurrentLimits.StatorCurrentLimit)
+      && valuesMatch(live.Slot0.kP, configs.Slot0.kP)
+      && valuesMatch(live.Slot0.kI, configs.Slot0.kI)
+      && valuesMatch(live.Slot0.kD, configs.Slot0.kD)
+      && valuesMatch(live.Slot0.kS, configs.Slot0.kS)
+      && valuesMatch(live.Slot0.kV, configs.Slot0.kV)
+      && valuesMatch(live.Slot0.kA, configs.Slot0.kA)
+      && valuesMatch(live.Slot0.kG, configs.Slot0.kG)
+      && live.Slot0.GravityType == configs.Slot0.GravityType
+      && valuesMatch(live.Slot1.kP, configs.Slot1.kP)
+      && valuesMatch(live.Slot1.kI, configs.Slot1.kI)
+      && valuesMatch(live.Slot1.kD, configs.Slot1.kD)
+      && valuesMatch(live.Slot1.kS, configs.Slot1.kS)
+      && valuesMatch(live.Slot1.kV, configs.Slot1.kV)
+      && valuesMatch(live.Slot1.kA, configs.Slot1.kA)
+      && valuesMatch(live.Slot1.kG, configs.Slot1.kG)
+      && live.Slot1.GravityType == configs.Slot1.GravityType
+      && valuesMatch(live.MotionMagic.MotionMagicCruiseVelocity, configs.MotionMagic.MotionMagicCruiseVelocity)
+      && valuesMatch(live.MotionMagic.MotionMagicAcceleration, configs.MotionMagic.MotionMagicAcceleration)
+      && valuesMatch(live.MotionMagic.MotionMagicJerk, configs.MotionMagic.MotionMagicJerk)
+      && live.SoftwareLimitSwitch.ForwardSoftLimitEnable == configs.SoftwareLimitSwitch.ForwardSoftLimitEnable
+      && valuesMatch(live.SoftwareLimitSwitch.ForwardSoftLimitThreshold, configs.SoftwareLimitSwitch.ForwardSoftLimitThreshold)
+      && live.SoftwareLimitSwitch.ReverseSoftLimitEnable == configs.SoftwareLimitSwitch.ReverseSoftLimitEnable
+      && valuesMatch(live.SoftwareLimitSwitch.ReverseSoftLimitThreshold, configs.SoftwareLimitSwitch.ReverseSoftLimitThreshold);
+  }
+
+  // Publishes the status of each device, how many devices failed to configure, and how long configuration took. Devices still configuring are reported as such.
+  public static void updateDashboard() {
+    int failures = 0;
+    long lastFinishTime = startTime;
+    boolean allFinished = true;
+    for (Device device : devices) {
+      device.statusChannel.set(device.getStatus());
+      if (device.failed()) {
+        failures++;
+      }
+      if (device.bootFinishTime != 0) {
+        lastFinishTime = Math.max(lastFinishTime, device.bootFinishTime);
+      } else {
+        allFinished = false;
+      }
+    }
+    failuresChannel.set(failures);
+    if (allFinished) {
+      bootTimeChannel.set((lastFinishTime - startTime)/1.0e6);
+    }
+  }
+
+  static class Device {
+    private final String name;
+    private final BooleanSupplier config;
+    private final BooleanSupplier resetCheck;
+    private volatile CompletableFuture<Boolean> result; // The result of the most recent configuration.
+    private final Telemetry.StringChannel statusChannel;
+    private volatile long bootFinishTime = 0; // When the first configuration finished. Unit: nanoseconds
+    private volatile long attemptTime = 0; // When the most recent configuration started. Unit: nanoseconds
+    private volatile long duration = 0; // How long the most recent configuration took. Unit: nanoseconds
+    private volatile int reconfigurations = 0; // The number of times the device has been configured again after a reset or a failure.
+    private volatile int checkErrors = 0; // The number of times a check of the device by the monitor thread threw an exception.
+    private long lastErrorReportTime = 0; // When a failed check was last reported. Only used by the monitor thread. Unit: nanoseconds
+    private int resets = 0; // The number of resets detected since the first configuration finished. Guarded by this device.
+    private int resetsConfigured = 0; // The number of resets the monitor thread has configured the device again for. Only used by the monitor thread.
+    private int resetsTaken = 0; // The number of resets the owner has been told about. Only used by the owner's thread.
+
+    private Device(String _name, BooleanSupplier _config, BooleanSupplier _resetCheck) {
+      name = _name;
+      config = _config;
+      resetCheck = _resetCheck;
+      statusChannel = Telemetry.addString("Config/" + name, Telemetry.slowRate);
+      result = start();
+    }
+
+    // Runs the config function in the background.
+    private CompletableFuture<Boolean> start() {
+      attemptTime = System.nanoTime();
+      return CompletableFuture.supplyAsync(() -> {
+        detectResets(); // Clears the reset flag, so that only resets after this configuration are detected. A reset detected here is configured for again by the monitor thread.
+        boolean success = config.getAsBoolean();
+        long finishTime = System.nanoTime();
+        duration = finishTime - attemptTime;
+        if (bootFinishTime == 0) {
+          bootFinishTime = finishTime;
+        }
+        return success;
+      }, executor).exceptionally(exception -> false); // A config function that throws is treated as a failed configuration.
+    }
+
+    // Called by the monitor thread. Configures the device again if it has reset since it was configured, or if its last configuration failed a while ago.
+    private void check() {
+      if (!result.isDone()) {
+        return;
+      }
+      int detectedResets = detectResets();
+      boolean reset = detectedResets != resetsConfigured;
+      resetsConfigured = detectedResets;
+      boolean retry = failed() && System.nanoTime() - attemptTime > (long) (failureRetryPeriod*1.0e9);
+      if (reset || retry) {
+        reconfigurations++;
+        result = start();
+      }
+    }
+
+    // Called by the monitor thread when a check of the device throws. Reports the first failure, then at most one every errorReportPeriod, so a device that keeps failing is not missed
+    // but does not flood the driver station. The count is also shown in the status of the device.
+    private void reportCheckError(RuntimeException exception) {
+      checkErrors++;
+      long time = System.nanoTime();
+      if (checkErrors == 1 || time - lastErrorReportTime > (long) (errorReportPeriod*1.0e9)) {
+        lastErrorReportTime = time;
+        DriverStation.reportError("Checking " + name + " for resets failed (" + checkErrors + " times): " + exception, false);
+      }
+    }
+
+    // Checks the device for a reset, and counts it if the device had already finished its first configuration. Both the monitor thread and the owner check for resets,
+    // and the device only reports each reset once, so every check goes through this count. Returns the number of resets detected so far.
+    private synchronized int detectResets() {
+      if (resetCheck.getAsBoolean() && bootFinishTime != 0) { // The reset on start up is not counted.
+        resets++;
+      }
+      return resets;
+    }
+
+    // Returns true once for each reset of the device since the last call. The owner should call this each period, before it reads the device, and re-seed anything it read from the
+    // device before the reset. Checks the device directly, so a reset is seen in the period it is reported instead of on the next monitor check. Should only be called by the owner.
+    public boolean takeReset() {
+      int detectedResets = detectResets();
+      boolean reset = detectedResets != resetsTaken;
+      resetsTaken = detectedResets;
+      return reset;
+    }
+
+    // Returns true once the configuration has finished, whether or not it succeeded.
+    public boolean isDone() {
+      return result.isDone();
+    }
+
+    // Returns true if the most recent configuration finished and failed. A device that is still configuring has not failed yet.
+    public boolean failed() {
+      CompletableFuture<Boolean> currentResult = result;
+      return currentResult.isDone() && !currentResult.getNow(false);
+    }
+
+    // Returns a short description of the state of the configuration, such as "OK in 120 ms".
+    public String getStatus() {
+      String status;
+      if (!isDone()) {
+        status = reconfigurations > 0 ? "Reconfiguring" : "Configuring";
+      } else {
+        status = (failed() ? "FAILED after " : "OK in ") + Math.round(duration/1.0e6) + " ms";
+      }
+      if (reconfigurations > 0) {
+        status += ", reconfigured " + reconfigurations + " times";
+      }
+      if (checkErrors > 0) {
+        status += ", reset check failed " + checkErrors + " times";
+      }
+      return status;
+    }
+
+    // Waits until the configuration has finished or the deadline has passed. Returns true if the configuration finished. Unit: nanoseconds
+    private boolean waitFor(long deadline) {
+      try {
+        result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        return true;
+      } catch (ExecutionException e) { // Finished by throwing, which is a failed configuration.
+        return true;
+      } catch (TimeoutException e) { // Timed out before the configuration finished.
+        return false;
+      } catch (InterruptedException e) { // Stops waiting, and keeps the interrupt for the caller.
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+}
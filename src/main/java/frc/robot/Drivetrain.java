@@ -1,7 +1,6 @@
 package frc.robot;
 
 import java.util.ArrayList;
-import com.ctre.phoenix6.hardware.Pigeon2;
 import com.pathplanner.lib.path.PathPlannerPath;
 import com.pathplanner.lib.path.PathPlannerTrajectory;
 import edu.wpi.first.math.VecBuilder;
@@ -19,7 +18,6 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 class Drivetrain {
   public static final double fieldWidth = 8.0137; // The width of the field in meters. Used to translate between Blue and Red coordinate systems.
@@ -31,6 +29,11 @@ class Drivetrain {
   public static final double maxAngularVelAuto = 5.27*Math.PI; // User defined maximum rotational speed of the robot. Enforced during auto. Unit: raidans per second
   public static final double maxAccAuto = 7.0; // User defined maximum acceleration of the robot. Enforced during auto. Unit: meters per second^2
   public static final double maxAngularAccAuto = 7.0*Math.PI; // User defined maximum rotational acceleration of the robot. Enforced during auto. Unit: raidans per second^2
+  public static final double loopPeriod = 0.02; // The amount of time between calls to drive(). Used to discretize the commanded chassis speeds. Unit: seconds
+  static final double defaultPosTol = 0.07; // The allowable error in the x and y position of the robot in meters, unless changed with setTolerance().
+  static final double defaultAngTol = 2.5; // The allowable error in the angle of the robot in degrees, unless changed with setTolerance().
+  static final double driveToPosP = 3.0; // The proportional gain of the x and y controllers in driveTo(). Unit: meters per second per meter
+  static final double driveToAngP = 4.0; // The proportional gain of the angle controller in driveTo() and aimDrive(). Unit: radians per second per radian
 
   // Positions of the swerve modules relative to the center of the roboot. +x points towards the robot's front. +y points to the robot's left. Units: meters.
   private static final Translation2d frontLeftModulePos = new Translation2d(0.30162, 0.22542);
@@ -39,14 +42,13 @@ class Drivetrain {
   private static final Translation2d backLeftModulePos = new Translation2d(-0.30162, 0.22542);
   private static final SwerveDriveKinematics kinematics = new SwerveDriveKinematics(frontLeftModulePos, frontRightModulePos, backRightModulePos, backLeftModulePos);
 
-  // Initializes each swerve module.
-  private final SwerveModule frontLeftModule = new SwerveModule(1, 2, 0, false, -175.0, "canivore"); 
-  private final SwerveModule frontRightModule = new SwerveModule(3, 4, 1, true, 94.5, "canivore");
-  private final SwerveModule backRightModule = new SwerveModule(5, 6, 2, true, 146.6, "canivore");
-  private final SwerveModule backLeftModule = new SwerveModule(7, 8, 3, false, -172.6, "canivore");
-  private final SwerveModule[] modules = {frontLeftModule, frontRightModule, backRightModule, backLeftModule};
+  // The swerve modules, in the order front left, front right, back right, back left. Created in the constructor from the hardware passed in.
+  private static final double[] wheelEncoderZeros = {-175.0, 94.5, 146.6, -172.6}; // The reading of each wheel encoder in degrees when the wheel is pointed forwards.
+  private final SwerveModule[] modules;
+  private final SwerveModuleIO[] moduleIOs; // The hardware of each swerve module. Follows the same order as modules.
 
-  private final Pigeon2 pigeon = new Pigeon2(0, "canivore"); // Pigeon 2.0 CAN Gyroscope
+  private final GyroIO gyro; // Pigeon 2.0 CAN Gyroscope
+  private final VisionIO limelight; // Limelight April Tag detection
 
   // Limelight (LL) Variables
   private final int maxCalibrationFrames = 50; // The number of LL frames that will be averaged to determine the position of the robot when it is disabled() or being calibrated.
@@ -58,65 +60,185 @@ class Drivetrain {
 
   // Path Following and Targeting Variables
   private ArrayList<PathPlannerTrajectory> paths = new ArrayList<PathPlannerTrajectory>(); // Stores the trajectories generated by Path Planner.
-  private final SwerveDrivePoseEstimator odometry = new SwerveDrivePoseEstimator(kinematics, new Rotation2d(), getSMPs(), new Pose2d(), VecBuilder.fill(0.02, 0.02, Units.degreesToRadians(0.5)), VecBuilder.fill(0.1, 0.1, Units.degreesToRadians(5.0))); // Uses the limelight, motor encoders, and gyroscope to track the position of the robot on the field.
+  private final SwerveDrivePoseEstimator odometry; // Uses the limelight, motor encoders, and gyroscope to track the position of the robot on the field. Created in the constructor once the modules exist.
   private final Timer pathTimer = new Timer(); // Keeps track of how long the robot has been following a path. Used to sample Path Planner trajectories.
   private final ProfiledPIDController xController = new ProfiledPIDController(3.0, 0.0, 0.0, new TrapezoidProfile.Constraints(maxVelAuto, maxAccAuto)); // Controls the x-position of the robot.
   private final ProfiledPIDController yController = new ProfiledPIDController(3.0, 0.0, 0.0, new TrapezoidProfile.Constraints(maxVelAuto, maxAccAuto)); // Controls the y-position of the robot.
   private final ProfiledPIDController angleController = new ProfiledPIDController(4.0, 0.0, 0.0, new TrapezoidProfile.Constraints(maxAngularVelAuto, maxAngularAccAuto)); // Controls the angle of the robot.
   private boolean atDriveGoal = false; // Whether the robot is at the target within the tolerance specified by posTol and angTol when controlled by aimDrive() or moveToTarget()
-  private double posTol = 0.07; // The allowable error in the x and y position of the robot in meters.
-  private double angTol = 2.5; // The allowable error in the angle of the robot in degrees.
+  private double posTol = defaultPosTol; // The allowable error in the x and y position of the robot in meters.
+  private double angTol = defaultAngTol; // The allowable error in the angle of the robot in degrees.
+  private final TrapezoidProfile driveProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(maxVelAuto, maxAccAuto)); // Predicts when driveTo() will reach its goal. Same constraints as the x and y controllers.
+
+  // Where the robot will stop, set by the drive functions that have an endpoint. Lets other mechanisms prepare for the robot's arrival while it is still driving.
+  private boolean hasDriveGoal = false; // Whether the last drive command is taking the robot to a point where it will stop.
+  private double driveGoalX = 0.0; // Unit: meters
+  private double driveGoalY = 0.0; // Unit: meters
+  private double timeToDriveGoal = 0.0; // The predicted time until the robot arrives at the drive goal. Unit: seconds
   
   // These variables are updated each period so they can be passed along to the user or the dashboard.
   private double xVel = 0.0; // Unit: meters per second
   private double yVel = 0.0; // Unit: meters per second
   private double angVel = 0.0; // Unit: degrees per second
+  private double measuredXVel = 0.0; // The field-relative velocity measured by the swerve modules. Unit: meters per second
+  private double measuredYVel = 0.0; // Unit: meters per second
   private double pathXPos = 0.0; // Unit: meters
   private double pathYPos = 0.0; // Unit: meters
   private double pathAngPos = 0.0; // Unit degrees
 
+  // Dashboard channels. Created once so that updateDash() only hands values off to the telemetry thread.
+  private static final String[] moduleNames = {"Front Left", "Front Right", "Back Right", "Back Left"}; // Follows the same order as the modules array.
+  private final Telemetry.DoubleChannel[] modulePosChannels = new Telemetry.DoubleChannel[moduleNames.length];
+  private final Telemetry.DoubleChannel[] moduleVelChannels = new Telemetry.DoubleChannel[moduleNames.length];
+  private final Telemetry.DoubleChannel[] moduleTurnAngleChannels = new Telemetry.DoubleChannel[moduleNames.length];
+  private final Telemetry.DoubleChannel[] moduleWheelEncoderChannels = new Telemetry.DoubleChannel[moduleNames.length];
+  private final Telemetry.BooleanChannel[] moduleTurnFailureChannels = new Telemetry.BooleanChannel[moduleNames.length];
+  private final Telemetry.BooleanChannel[] moduleDriveFailureChannels = new Telemetry.BooleanChannel[moduleNames.length];
+  private final Telemetry.StructArrayChannel<SwerveModuleState> moduleStatesChannel = Telemetry.addStructArray("Swerve Module States", SwerveModuleState.struct, Telemetry.fastRate);
+  private final Telemetry.StructArrayChannel<SwerveModuleState> moduleSetpointsChannel = Telemetry.addStructArray("Swerve Module Setpoints", SwerveModuleState.struct, Telemetry.fastRate);
+  private final Telemetry.StructChannel<Pose2d> poseChannel = Telemetry.addStruct("Robot Pose", Pose2d.struct, Telemetry.fastRate);
+  private final Telemetry.DoubleChannel xPosChannel = Telemetry.addDouble("Robot X Position", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel yPosChannel = Telemetry.addDouble("Robot Y Position", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel fusedAngChannel = Telemetry.addDouble("Robot Angular Position (Fused)", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel gyroAngChannel = Telemetry.addDouble("Robot Angular Position (Gyro)", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel pitchChannel = Telemetry.addDouble("Robot Pitch", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel xVelChannel = Telemetry.addDouble("Robot Demanded X Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel yVelChannel = Telemetry.addDouble("Robot Demanded Y Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel angVelChannel = Telemetry.addDouble("Robot Demanded Angular Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel pathXPosChannel = Telemetry.addDouble("Path X Position", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel pathYPosChannel = Telemetry.addDouble("Path Y Position", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel pathAngPosChannel = Telemetry.addDouble("Path Angular Position", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel pathPosErrorChannel = Telemetry.addDouble("Path Position Error", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel pathAngleErrorChannel = Telemetry.addDouble("Path Angle Error", Telemetry.fastRate);
+  private final Telemetry.BooleanChannel pathAtEndpointChannel = Telemetry.addBoolean("Path At Endpoint", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel isRedAllianceChannel = Telemetry.addBoolean("isRedAllaince", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel isBlueAllianceChannel = Telemetry.addBoolean("isBlueAllaince", Telemetry.slowRate);
+  private final CallLog calls = new CallLog("Drivetrain Calls"); // Records the calls that affect the position estimate and the module outputs, so that they can be replayed.
+
   public Drivetrain() {
+    this(createModuleIOs(), new GyroIOPigeon2(0, "canivore"), new VisionIOLimelight("limelight"));
+  }
+
+  // Creates the hardware of each swerve module. All 8 motors are configured at the same time, and this waits for them to finish so that the modules can read their initial positions.
+  private static SwerveModuleIOHardware[] createModuleIOs() {
+    SwerveModuleIOHardware[] moduleIOs = new SwerveModuleIOHardware[] {
+      new SwerveModuleIOHardware(moduleNames[0], 1, 2, 0, false, "canivore"),
+      new SwerveModuleIOHardware(moduleNames[1], 3, 4, 1, true, "canivore"),
+      new SwerveModuleIOHardware(moduleNames[2], 5, 6, 2, true, "canivore"),
+      new SwerveModuleIOHardware(moduleNames[3], 7, 8, 3, false, "canivore")
+    };
+    for (SwerveModuleIOHardware moduleIO : moduleIOs) {
+      moduleIO.waitForConfig(2.0);
+    }
+    return moduleIOs;
+  }
+
+  // Creates a drivetrain from the given hardware. Used to replay recorded matches without the robot. moduleIOs should follow the same order as moduleNames.
+  public Drivetrain(SwerveModuleIO[] _moduleIOs, GyroIO _gyro, VisionIO _limelight) {
+    moduleIOs = _moduleIOs;
+    gyro = _gyro;
+    limelight = _limelight;
+    readInputs(); // The modules read their initial positions.
+    modules = new SwerveModule[moduleIOs.length];
+    for (int moduleIndex = 0; moduleIndex < moduleIOs.length; moduleIndex++) {
+      modules[moduleIndex] = new SwerveModule(moduleIOs[moduleIndex], wheelEncoderZeros[moduleIndex]);
+    }
+    odometry = new SwerveDrivePoseEstimator(kinematics, new Rotation2d(), getSMPs(), new Pose2d(), VecBuilder.fill(0.02, 0.02, Units.degreesToRadians(0.5)), VecBuilder.fill(0.1, 0.1, Units.degreesToRadians(5.0)));
+    for (int moduleIndex = 0; moduleIndex < moduleNames.length; moduleIndex++) {
+      modulePosChannels[moduleIndex] = Telemetry.addDouble(moduleNames[moduleIndex] + " Swerve Module Position", Telemetry.fastRate);
+      moduleVelChannels[moduleIndex] = Telemetry.addDouble(moduleNames[moduleIndex] + " Swerve Module Velocity", Telemetry.fastRate);
+      moduleTurnAngleChannels[moduleIndex] = Telemetry.addDouble(moduleNames[moduleIndex] + " Swerve Module Turn Motor Angle", Telemetry.fastRate);
+      moduleWheelEncoderChannels[moduleIndex] = Telemetry.addDouble(moduleNames[moduleIndex] + " Swerve Module Wheel Encoder Angle", Telemetry.slowRate);
+      moduleTurnFailureChannels[moduleIndex] = Telemetry.addBoolean(moduleNames[moduleIndex] + " Swerve Module Turn Motor Failure", Telemetry.slowRate);
+      moduleDriveFailureChannels[moduleIndex] = Telemetry.addBoolean(moduleNames[moduleIndex] + " Swerve Module Drive Motor Failure", Telemetry.slowRate);
+    }
     xController.setIntegratorRange(-maxVelAuto*0.8, maxVelAuto*0.8);
     yController.setIntegratorRange(-maxVelAuto*0.8, maxVelAuto*0.8);
     angleController.setIntegratorRange(-maxAngularVelAuto*0.8, maxAngularVelAuto*0.8);
     resetGyro(); // Sets the gyro angle to 0 based on the current heading of the robot.
+    calls.clear();
   }
   
   // Drives the robot at a certain speed and rotation rate. Units: meters per second for xVel and yVel, radians per second for angVel. 
   // fieldRelative determines field-oriented control vs. robot-oriented control. field-relative control is automatically disabled in the case of a gyro failure.
   // Center of Rotation variables define where the robot will rotate from. 0,0 corresponds to rotations about the center of the robot. +x is towards the front. +y is to the left side.
   public void drive(double _xVel, double _yVel, double _angVel, boolean fieldRelative, double centerOfRotationX, double centerOfRotationY) {
+    drive(_xVel, _yVel, _angVel, fieldRelative, centerOfRotationX, centerOfRotationY, 0.0, 0.0);
+  }
+
+  // Drives the robot at a certain speed and rotation rate while accelerating at the given rate. Units: meters per second^2 for xAcc and yAcc, which follow the same frame as xVel and yVel.
+  // The acceleration is used as a feedforward for the drive motors, so the velocity controllers do not have to wait for error to build up before responding.
+  public void drive(double _xVel, double _yVel, double _angVel, boolean fieldRelative, double centerOfRotationX, double centerOfRotationY, double xAcc, double yAcc) {
+    calls.add('D', _xVel, _yVel, _angVel, fieldRelative ? 1.0 : 0.0, centerOfRotationX, centerOfRotationY, xAcc, yAcc);
+    hasDriveGoal = false; // The drive functions with an endpoint set the goal again after calling drive().
     xVel = _xVel;
     yVel = _yVel;
     angVel = _angVel*180.0/Math.PI;
-    SwerveModuleState[] moduleStates = fieldRelative
-      ? kinematics.toSwerveModuleStates(ChassisSpeeds.fromFieldRelativeSpeeds(_xVel, _yVel, _angVel, Rotation2d.fromDegrees(getFusedAng())), new Translation2d(centerOfRotationX, centerOfRotationY))
-      : kinematics.toSwerveModuleStates(new ChassisSpeeds(_xVel, _yVel, _angVel), new Translation2d(centerOfRotationX, centerOfRotationY));
+    ChassisSpeeds chassisSpeeds = fieldRelative
+      ? ChassisSpeeds.fromFieldRelativeSpeeds(_xVel, _yVel, _angVel, Rotation2d.fromDegrees(getFusedAng()))
+      : new ChassisSpeeds(_xVel, _yVel, _angVel);
+    chassisSpeeds = ChassisSpeeds.discretize(chassisSpeeds, loopPeriod); // Accounts for the robot rotating during the period. Without this, the robot arcs away from the commanded direction when translating and rotating at the same time.
+    SwerveModuleState[] moduleStates = kinematics.toSwerveModuleStates(chassisSpeeds, new Translation2d(centerOfRotationX, centerOfRotationY));
+    double maxModuleVel = 0.0;
+    for (SwerveModuleState moduleState : moduleStates) {
+      maxModuleVel = Math.max(maxModuleVel, Math.abs(moduleState.speedMetersPerSecond));
+    }
     SwerveDriveKinematics.desaturateWheelSpeeds(moduleStates, maxVelTeleop); // Makes sure the calculated velocities are attainable. If they are not, all modules velocities are scaled back.
+    double desaturationScale = maxModuleVel > maxVelTeleop ? maxVelTeleop/maxModuleVel : 1.0; // The factor that the module velocities were scaled back by.
+    double robotXAcc = xAcc;
+    double robotYAcc = yAcc;
+    if (fieldRelative) { // Rotates the acceleration into the robot's frame of reference.
+      double robotAngle = getFusedAng()*Math.PI/180.0;
+      robotXAcc = xAcc*Math.cos(robotAngle) + yAcc*Math.sin(robotAngle);
+      robotYAcc = -xAcc*Math.sin(robotAngle) + yAcc*Math.cos(robotAngle);
+    }
     for (int moduleIndex = 0; moduleIndex < modules.length; moduleIndex++) {
-      modules[moduleIndex].setSMS(moduleStates[moduleIndex]); // Sets the module angles and velocities.
+      double steerVel = fieldRelative ? getModuleSteerVel(moduleStates[moduleIndex], chassisSpeeds, desaturationScale) : 0.0; // Robot-oriented commands do not rotate relative to the robot, so the module angles stay constant.
+      double driveAcc = robotXAcc*moduleStates[moduleIndex].angle.getCos() + robotYAcc*moduleStates[moduleIndex].angle.getSin(); // The component of the robot's acceleration along the direction the module is pointed.
+      modules[moduleIndex].setSMS(moduleStates[moduleIndex], steerVel, driveAcc); // Sets the module angles and velocities.
     }
   }
 
+  // Calculates how fast a module's angle will change in degrees per second while the robot rotates under a field-oriented command. Used as a feedforward for the turn motors.
+  // The robot-oriented translation vector rotates at -angVel, so the module angle changes at -angVel*(moduleVel . robotVel)/|moduleVel|^2.
+  private double getModuleSteerVel(SwerveModuleState moduleState, ChassisSpeeds chassisSpeeds, double desaturationScale) {
+    double moduleXVel = moduleState.speedMetersPerSecond*moduleState.angle.getCos();
+    double moduleYVel = moduleState.speedMetersPerSecond*moduleState.angle.getSin();
+    double moduleVelSquared = moduleXVel*moduleXVel + moduleYVel*moduleYVel;
+    if (moduleVelSquared < 1e-4) { // The module angle is not well defined at very low speeds.
+      return 0.0;
+    }
+    double robotXVel = chassisSpeeds.vxMetersPerSecond*desaturationScale;
+    double robotYVel = chassisSpeeds.vyMetersPerSecond*desaturationScale;
+    double robotAngVel = chassisSpeeds.omegaRadiansPerSecond*desaturationScale;
+    return -robotAngVel*(moduleXVel*robotXVel + moduleYVel*robotYVel)/moduleVelSquared*180.0/Math.PI;
+  }
+
   // Should be called immediately prior to aimDrive() or driveTo(). Resets the PID controllers. Target angle specifies the first angle that will be demanded.
   public void resetDriveController(double targetAngle) {
     xController.reset(getXPos(), 0.0);
     yController.reset(getYPos(), 0.0);
     angleController.reset(getAngleDistance(getFusedAng(), targetAngle)*Math.PI/180.0, 0.0);
-    xController.setPID(3.0, 0.0, 0.0);
-    yController.setPID(3.0, 0.0, 0.0);
-    angleController.setPID(4.0, 0.0, 0.0);
+    xController.setPID(driveToPosP, 0.0, 0.0);
+    yController.setPID(driveToPosP, 0.0, 0.0);
+    angleController.setPID(driveToAngP, 0.0, 0.0);
     atDriveGoal = false;
   }
 
   // Should be called periodically to rotate the robot to the demanded angle in degrees while translating the robot at the specified speed in meter per second.
   public void aimDrive(double _xVel, double _yVel, double targetAngle, boolean fieldRelative) {
+    aimDrive(_xVel, _yVel, targetAngle, 0.0, fieldRelative);
+  }
+
+  // Same as above, but also turns the robot at targetAngleVel in degrees per second. Used when the demanded angle is moving, such as when aiming while driving, so the robot keeps up with it instead of lagging behind.
+  public void aimDrive(double _xVel, double _yVel, double targetAngle, double targetAngleVel, boolean fieldRelative) {
     double angleDistance = getAngleDistance(getFusedAng(), targetAngle);
     atDriveGoal = Math.abs(angleDistance) < angTol;
     double _angVel = angleController.calculate(angleDistance*Math.PI/180.0, 0.0);
     if (atDriveGoal) {
       _angVel = 0.0;
     }
+    _angVel += targetAngleVel*Math.PI/180.0;
     if (Math.abs(_angVel) > Drivetrain.maxAngularVelAuto) {
       _angVel = _angVel > 0.0 ? Drivetrain.maxAngularVelAuto : -Drivetrain.maxAngularVelAuto;
     }
@@ -157,6 +279,40 @@ class Drivetrain {
     }
 
     drive(xVelSetpoint, yVelSetpoint, angVelSetpoint, true, 0.0, 0.0);
+
+    // The robot arrives once the slower of the x and y profiles reaches the target.
+    driveProfile.calculate(loopPeriod, xController.getSetpoint(), xController.getGoal());
+    double xTime = driveProfile.totalTime();
+    driveProfile.calculate(loopPeriod, yController.getSetpoint(), yController.getGoal());
+    setDriveGoal(targetX, targetY, atDriveGoal ? 0.0 : Math.max(xTime, driveProfile.totalTime()));
+  }
+
+  // Records where the robot will stop and how long it will take to get there. Should be called after drive() in each of the drive functions that has an endpoint.
+  private void setDriveGoal(double goalX, double goalY, double timeToGoal) {
+    hasDriveGoal = true;
+    driveGoalX = goalX;
+    driveGoalY = goalY;
+    timeToDriveGoal = Math.max(timeToGoal, 0.0);
+  }
+
+  // Whether the last drive command is taking the robot to a point where it will stop: driveTo(), followPath(), or followTrajectory() with a trajectory that ends stopped.
+  public boolean hasDriveGoal() {
+    return hasDriveGoal;
+  }
+
+  // Returns the x-position where the robot will stop. Only valid if hasDriveGoal() is true. Unit: meters
+  public double getDriveGoalX() {
+    return driveGoalX;
+  }
+
+  // Returns the y-position where the robot will stop. Only valid if hasDriveGoal() is true. Unit: meters
+  public double getDriveGoalY() {
+    return driveGoalY;
+  }
+
+  // Returns the predicted time until the robot stops at the drive goal. Only valid if hasDriveGoal() is true. Unit: seconds
+  public double getTimeToDriveGoal() {
+    return timeToDriveGoal;
   }
 
   // Whether the robot has reached the angle specified in the last call to aimDrive() or driveTo(). Should be called after aimDrive() or driveTo() is called within a period.
@@ -212,7 +368,16 @@ class Drivetrain {
     pathYPos = isRedAlliance() ? fieldWidth - currentGoal.positionMeters.getY() : currentGoal.positionMeters.getY();
     pathAngPos = currentGoal.targetHolonomicRotation.getDegrees();
     double pathXVel = currentGoal.velocityMps*currentGoal.heading.getCos();
-    double pathYVel = currentGoal.velocityMps*currentGoal.heading.getSin();
+    double pathYVel = isRedAlliance() ? -currentGoal.velocityMps*currentGoal.heading.getSin() : currentGoal.velocityMps*currentGoal.heading.getSin(); // The path is mirrored across the field width on the red alliance.
+
+    // The acceleration of the trajectory. The tangential component comes from the velocity profile and the normal component comes from the curvature of the path.
+    double pathTangentialAcc = currentGoal.accelerationMpsSq;
+    double pathNormalAcc = currentGoal.velocityMps*currentGoal.velocityMps*currentGoal.curvatureRadPerMeter;
+    double pathXAcc = pathTangentialAcc*currentGoal.heading.getCos() - pathNormalAcc*currentGoal.heading.getSin();
+    double pathYAcc = pathTangentialAcc*currentGoal.heading.getSin() + pathNormalAcc*currentGoal.heading.getCos();
+    if (isRedAlliance()) {
+      pathYAcc = -pathYAcc;
+    }
     double xVelCorrection = xController.calculate(getXPos(), pathXPos);
     double yVelCorrection = yController.calculate(getYPos(), pathYPos);
     double angleDistance = getAngleDistance(getFusedAng(), pathAngPos);
@@ -226,6 +391,8 @@ class Drivetrain {
       xVelSetpoint = 0.0;
       yVelSetpoint = 0.0;
       angVelSetpoint = 0.0;
+      pathXAcc = 0.0;
+      pathYAcc = 0.0;
     }
 
     // Caps the velocities if the PID controllers return values above the specified maximums.
@@ -239,7 +406,9 @@ class Drivetrain {
       angVelSetpoint = angVelSetpoint > 0.0 ? maxAngularVelAuto : -maxAngularVelAuto;
     }
 
-    drive(xVelSetpoint, yVelSetpoint, angVelSetpoint, true, 0.0, 0.0);
+    drive(xVelSetpoint, yVelSetpoint, angVelSetpoint, true, 0.0, 0.0, pathXAcc, pathYAcc);
+    PathPlannerTrajectory.State endState = paths.get(pathIndex).getEndState();
+    setDriveGoal(endState.positionMeters.getX(), isRedAlliance() ? fieldWidth - endState.positionMeters.getY() : endState.positionMeters.getY(), paths.get(pathIndex).getTotalTimeSeconds() - pathTimer.get());
   }
   
   // Tells whether the robot has reached the endpoint of the path, within the specified tolerance.
@@ -252,22 +421,108 @@ class Drivetrain {
       && Math.abs(getYPos() - endStateYPos) < posTol;
   }
 
+  // Should be called once exactly 1 period prior to the start of calls to followTrajectory() each time a new trajectory is followed. The correction controllers start at the
+  // trajectory's initial velocity, so a trajectory that continues from another one picks the robot up without slowing it down.
+  public void resetTrajectoryController(AutoTrajectory trajectory, double aimHeading) {
+    trajectory.sample(0.0, isRedAlliance(), aimHeading);
+    xController.reset(getXPos(), trajectory.getXVel());
+    yController.reset(getYPos(), trajectory.getYVel());
+    angleController.reset(getAngleDistance(getFusedAng(), trajectory.getHeading())*Math.PI/180.0, 0.0);
+    xController.setPID(1.5, 0.0, 0.001);
+    yController.setPID(1.5, 0.0, 0.001);
+    angleController.setPID(2.0, 0.0, 0.001);
+    atDriveGoal = false;
+    pathTimer.restart();
+  }
+
+  // Tracks a trajectory generated for an auto routine. Should be called each period. The trajectory controller should be reset if followTrajectory() is not called for a period or more.
+  // atDriveGoal() becomes true at the end of the trajectory. For a trajectory that ends stopped, the robot also has to be within the tolerance of the endpoint. A trajectory that ends
+  // moving is done as soon as its time is up, so the next step can hand the robot to the next trajectory while it is still moving. aimHeading is the heading that aims the shot,
+  // from Robot.getAimHeading(), and is tracked in place of the heading of waypoints aimed at the speaker. Unit: degrees
+  public void followTrajectory(AutoTrajectory trajectory, double aimHeading) {
+    trajectory.sample(pathTimer.get(), isRedAlliance(), aimHeading);
+    pathXPos = trajectory.getXPos();
+    pathYPos = trajectory.getYPos();
+    pathAngPos = trajectory.getHeading();
+    double pathXAcc = trajectory.getXAcc();
+    double pathYAcc = trajectory.getYAcc();
+    double angleDistance = getAngleDistance(getFusedAng(), pathAngPos);
+    double xVelSetpoint = trajectory.getXVel() + xController.calculate(getXPos(), pathXPos);
+    double yVelSetpoint = trajectory.getYVel() + yController.calculate(getYPos(), pathYPos);
+    double angVelSetpoint = angleController.calculate(angleDistance*Math.PI/180.0, 0.0) + trajectory.getHeadingVel()*Math.PI/180.0;
+
+    boolean finished = pathTimer.get() >= trajectory.getTotalTime();
+    if (trajectory.getEndVel() > 0.0) {
+      atDriveGoal = finished;
+    } else {
+      // Checks to see if all 3 targets have been achieved. Sets velocities to 0 to prevent twitchy robot motions at near 0 velocities.
+      atDriveGoal = finished && Math.abs(getXPos() - pathXPos) < posTol && Math.abs(getYPos() - pathYPos) < posTol && Math.abs(angleDistance) < angTol;
+      if (atDriveGoal) {
+        xVelSetpoint = 0.0;
+        yVelSetpoint = 0.0;
+        angVelSetpoint = 0.0;
+        pathXAcc = 0.0;
+        pathYAcc = 0.0;
+      }
+    }
+
+    // Caps the velocities if the PID controllers return values above the specified maximums.
+    if (Math.abs(xVelSetpoint) > maxVelAuto) {
+      xVelSetpoint = xVelSetpoint > 0.0 ?  maxVelAuto : -maxVelAuto;
+    }
+    if (Math.abs(yVelSetpoint) > maxVelAuto) {
+      yVelSetpoint = yVelSetpoint > 0.0 ? maxVelAuto : -maxVelAuto;
+    }
+    if (Math.abs(angVelSetpoint) > maxAngularVelAuto) {
+      angVelSetpoint = angVelSetpoint > 0.0 ? maxAngularVelAuto : -maxAngularVelAuto;
+    }
+
+    drive(xVelSetpoint, yVelSetpoint, angVelSetpoint, true, 0.0, 0.0, pathXAcc, pathYAcc);
+    if (trajectory.getEndVel() == 0.0) { // A trajectory that ends moving hands the robot to the next one, so it has no point to stop at.
+      setDriveGoal(trajectory.getEndX(), isRedAlliance() ? fieldWidth - trajectory.getEndY() : trajectory.getEndY(), trajectory.getTotalTime() - pathTimer.get());
+    }
+  }
+
+  // Reads the swerve modules, gyro, and Limelight. Should be called once at the start of every period, before anything else uses the drivetrain.
+  // Everything that reads the drivetrain during the period sees the same values, so a replay of the recorded values takes the same steps the robot did.
+  public void updateInputs() {
+    calls.add('I');
+    readInputs();
+    for (SwerveModule module : modules) {
+      module.updateResets(); // Re-seeds a module whose motor reset before its positions are used.
+    }
+  }
+
+  // Reads the inputs of the hardware.
+  private void readInputs() {
+    for (SwerveModuleIO moduleIO : moduleIOs) {
+      moduleIO.updateInputs();
+    }
+    gyro.updateInputs();
+    limelight.updateInputs();
+  }
+
   // Updates the position of the robot on the field. Should be called each period to remain accurate. Tends to noticably drift for periods of time >15 sec.
   public void updateOdometry() {
+    calls.add('O');
     odometry.update(Rotation2d.fromDegrees(getGyroAng()), getSMPs());
+    ChassisSpeeds measuredSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(kinematics.toChassisSpeeds(getSMSs()), Rotation2d.fromDegrees(getFusedAng())); // Rotates the speeds measured by the modules onto the field.
+    measuredXVel = measuredSpeeds.vxMetersPerSecond;
+    measuredYVel = measuredSpeeds.vyMetersPerSecond;
   }
 
   // Incorporates vision information to determine the position of the robot on the field. Should be used only when vision information is deemed to be highly reliable (>1 april tag, close to april tag...)
   // xSD, ySD, and angSD tell the pose estimator how much to trust vision estimates. Larger values are less trustworthy. Units: xSD and ySD are in meters and angSD is in degrees. Default values can be found in pose estimate initialization.
   public void addVisionEstimate(double xSD, double ySD, double angSD) {
-    long currentFrame = LimelightHelpers.getLimelightNTTableEntry("limelight", "hb").getInteger(0); // Gets the Limelight frame number from network tables.
-    double thor = LimelightHelpers.getLimelightNTTableEntry("limelight", "thor").getDouble(0); // The horizontal width of the box bounding the April Tags in pixels.
-    double tvert = LimelightHelpers.getLimelightNTTableEntry("limelight", "tvert").getDouble(0); // The vertical width of the box bounding the April Tags in pixels.
-    double ta = LimelightHelpers.getTA(""); // The area of the box bounding the April Tags in percent of the screen.
-    boolean tv = LimelightHelpers.getTV(""); // Whether a target is detected.
+    calls.add('V', xSD, ySD, angSD);
+    long currentFrame = limelight.getFrame(); // Gets the Limelight frame number from network tables.
+    double thor = limelight.getTargetWidth(); // The horizontal width of the box bounding the April Tags in pixels.
+    double tvert = limelight.getTargetHeight(); // The vertical width of the box bounding the April Tags in pixels.
+    double ta = limelight.getTargetArea(); // The area of the box bounding the April Tags in percent of the screen.
+    boolean tv = limelight.hasTarget(); // Whether a target is detected.
     boolean isSquare = Math.abs(tvert / thor - 1.0) < 0.2; // Checks to see if the box bounding the April Tags is square, indicating that 1 April Tag is likely detected.
     if (currentFrame != lastFrame && tv && !isSquare && ta > 1.5 && getXVel() < 0.1 && getYVel() < 0.1 && getAngVel() < 0.1) { // >1 April Tag is detected, the robot is relatively close to the April Tags, the robot is relatively stationary, and there is a new frame.
-      double[] botpose = isBlueAlliance() ? LimelightHelpers.getBotPose_wpiBlue("") : LimelightHelpers.getBotPose_wpiRed(""); // Transforms the vision position estimate to the appropriate coordinate system for the robot's alliance color
+      double[] botpose = limelight.getBotPose(isBlueAlliance()); // Transforms the vision position estimate to the appropriate coordinate system for the robot's alliance color
       odometry.addVisionMeasurement(new Pose2d(botpose[0], botpose[1], Rotation2d.fromDegrees(getFusedAng())), Timer.getFPGATimestamp()-botpose[6]/1000.0, VecBuilder.fill(xSD, ySD, Units.degreesToRadians(angSD)));      
       lastFrame = currentFrame;
     }
@@ -275,6 +530,7 @@ class Drivetrain {
 
   // Should be called during disabledInit(). Wipes previous calibration data from the calibrator.
   public void resetCalibration() {
+    calls.add('R');
     calibrationArray = new double[3][maxCalibrationFrames];
     calibrationIndex = 0;
     calibrationFrames = 0;
@@ -283,11 +539,12 @@ class Drivetrain {
 
   // Should be called during disabled(). Calibrates the robot's starting position based on any April Tags in sight of the Limelight.
   public void addCalibrationEstimate() {
-    long currentFrame = LimelightHelpers.getLimelightNTTableEntry("limelight", "hb").getInteger(0); // Gets the Limelight frame number from network tables.
-    boolean tv = LimelightHelpers.getTV(""); // Whether a target is detected.
+    calls.add('A');
+    long currentFrame = limelight.getFrame(); // Gets the Limelight frame number from network tables.
+    boolean tv = limelight.hasTarget(); // Whether a target is detected.
     if (tv && currentFrame != lastFrame) { // Checks to see whether there is at least 1 vision target and the LL has provided a new frame.
       lastFrame = currentFrame;
-      double[] botpose = isBlueAlliance() ? LimelightHelpers.getBotPose_wpiBlue("") : LimelightHelpers.getBotPose_wpiRed(""); // Transforms the vision position estimate to the appropriate coordinate system for the robot's alliance color
+      double[] botpose = limelight.getBotPose(isBlueAlliance()); // Transforms the vision position estimate to the appropriate coordinate system for the robot's alliance color
       calibrationArray[0][calibrationIndex] = botpose[0]; // Adds an x-position entry to the calibrationPosition array. 
       calibrationArray[1][calibrationIndex] = botpose[1]; // Adds a y-position entry to the calibrationPosition array. 
       calibrationArray[2][calibrationIndex] = botpose[5]; // Adds a angle-position entry to the calibrationPosition array. 
@@ -300,6 +557,7 @@ class Drivetrain {
 
   // Should be called during autoInit() or teleopInit() to update the robot's starting position based on its April Tag calibration
   public void pushCalibration() {
+    calls.add('P');
     if (calibrationFrames > minCalibrationFrames) {
       double[] calibrationSum = new double[5];
       for (int index = 0; index < calibrationFrames; index++) {
@@ -316,18 +574,24 @@ class Drivetrain {
 
   // Resets the gyro to 0 based on the current orientation of the robot.
   public void resetGyro() {
-    pigeon.setYaw(0.0);
+    calls.add('G');
+    gyro.setYaw(0.0);
     odometry.resetPosition(new Rotation2d(), getSMPs(), new Pose2d(getXPos(), getYPos(), new Rotation2d()));
   }
   
   // Returns the angular position of the robot in degrees. The angular position is referenced to the starting angle of the robot. CCW is positive. Will return 0 in the case of a gyro failure.
   public double getGyroAng() {
-    return pigeon.getYaw().getValueAsDouble();
+    return gyro.getYaw();
   }
 
   // Returns the pitch of the robot in degrees. An elevated front is positive. An elevated rear is negative.
   public double getGyroPitch() {
-    return pigeon.getPitch().getValueAsDouble();
+    return gyro.getPitch();
+  }
+
+  // Returns the roll of the robot in degrees. An elevated left side is positive. An elevated right side is negative.
+  public double getGyroRoll() {
+    return gyro.getRoll();
   }
 
   // Returns true if the robot is on the red alliance.
@@ -350,6 +614,16 @@ class Drivetrain {
     return yVel;
   }
 
+  // Returns the x-velocity of the robot measured by the swerve modules in the last updateOdometry(), in meters per second. Unlike getXVel(), this is how the robot is actually moving.
+  public double getMeasuredXVel() {
+    return measuredXVel;
+  }
+
+  // Returns the y-velocity of the robot measured by the swerve modules in the last updateOdometry(), in meters per second. Unlike getYVel(), this is how the robot is actually moving.
+  public double getMeasuredYVel() {
+    return measuredYVel;
+  }
+
   // Returns the last commanded angular-velocity of the robot in degrees per second.
   public double getAngVel() {
     return angVel;
@@ -380,48 +654,60 @@ class Drivetrain {
     return getAngleDistance(getFusedAng(), pathAngPos);
   }
   
-  // Publishes all values to the dashboard. Should be called each period. Uncomment individual lines to publish that information.
+  // Publishes all values to the dashboard. Should be called each period. Values are handed off to the telemetry thread, which publishes them in the background.
   public void updateDash() {
-    SmartDashboard.putNumber("Front Left Swerve Module Position", frontLeftModule.getDriveMotorPos());
-    SmartDashboard.putNumber("Front Right Swerve Module Position", frontRightModule.getDriveMotorPos());
-    SmartDashboard.putNumber("Back Right Swerve Module Position", backRightModule.getDriveMotorPos());
-    SmartDashboard.putNumber("Back Left Swerve Module Position", backLeftModule.getDriveMotorPos());
-    SmartDashboard.putNumber("Front Left Swerve Module Velocity", frontLeftModule.getDriveMotorVel());
-    SmartDashboard.putNumber("Front Right Swerve Module Velocity", frontRightModule.getDriveMotorVel());
-    SmartDashboard.putNumber("Back Right Swerve Module Velocity", backRightModule.getDriveMotorVel());
-    SmartDashboard.putNumber("Back Left Swerve Module Velocity", backLeftModule.getDriveMotorVel());
-    SmartDashboard.putNumber("Front Left Swerve Module Turn Motor Angle", frontLeftModule.getTurnMotorAngle());
-    SmartDashboard.putNumber("Front Right Swerve Module Turn Motor Angle", frontRightModule.getTurnMotorAngle());
-    SmartDashboard.putNumber("Back Right Swerve Module Turn Motor Angle", backRightModule.getTurnMotorAngle());
-    SmartDashboard.putNumber("Back Left Swerve Module Turn Motor Angle", backLeftModule.getTurnMotorAngle());
-    SmartDashboard.putNumber("Front Left Swerve Module Wheel Encoder Angle", frontLeftModule.getWheelEncoderAngle());
-    SmartDashboard.putNumber("Front Right Swerve Module Wheel Encoder Angle", frontRightModule.getWheelEncoderAngle());
-    SmartDashboard.putNumber("Back Right Swerve Module Wheel Encoder Angle", backRightModule.getWheelEncoderAngle());
-    SmartDashboard.putNumber("Back Left Swerve Module Wheel Encoder Angle", backLeftModule.getWheelEncoderAngle());
-    SmartDashboard.putBoolean("Front Left Swerve Module Turn Motor Failure", frontLeftModule.getTurnMotorFailure());
-    SmartDashboard.putBoolean("Front Right Swerve Module Turn Motor Failure", frontRightModule.getTurnMotorFailure());
-    SmartDashboard.putBoolean("Back Right Swerve Module Turn Motor Failure", backRightModule.getTurnMotorFailure());
-    SmartDashboard.putBoolean("Back Left Swerve Module Turn Motor Failure", backLeftModule.getTurnMotorFailure());
-    SmartDashboard.putBoolean("Front Left Swerve Module Drive Motor Failure", frontLeftModule.getDriveMotorFailure());
-    SmartDashboard.putBoolean("Front Right Swerve Module Drive Motor Failure", frontRightModule.getDriveMotorFailure());
-    SmartDashboard.putBoolean("Back Right Swerve Module Drive Motor Failure", backRightModule.getDriveMotorFailure());
-    SmartDashboard.putBoolean("Back Left Swerve Module Drive Motor Failure", backLeftModule.getDriveMotorFailure());
-    SmartDashboard.putNumber("Robot X Position", getXPos());
-    SmartDashboard.putNumber("Robot Y Position", getYPos());
-    SmartDashboard.putNumber("Robot Angular Position (Fused)", getFusedAng());
-    SmartDashboard.putNumber("Robot Angular Position (Gyro)", getGyroAng());
-    SmartDashboard.putNumber("Robot Pitch", getGyroPitch());
-    SmartDashboard.putNumber("Robot Demanded X Velocity", getXVel());
-    SmartDashboard.putNumber("Robot Demanded Y Velocity", getYVel());
-    SmartDashboard.putNumber("Robot Demanded Angular Velocity", getAngVel());
-    SmartDashboard.putNumber("Path X Position", pathXPos);
-    SmartDashboard.putNumber("Path Y Position", pathYPos);
-    SmartDashboard.putNumber("Path Angular Position", pathAngPos);
-    SmartDashboard.putNumber("Path Position Error", getPathPosError());
-    SmartDashboard.putNumber("Path Angle Error", getPathAngleError());
-    SmartDashboard.putBoolean("Path At Endpoint", atPathEndpoint(0));
-    SmartDashboard.putBoolean("isRedAllaince", isRedAlliance());
-    SmartDashboard.putBoolean("isBlueAllaince", isBlueAlliance());   
+    for (int moduleIndex = 0; moduleIndex < modules.length; moduleIndex++) {
+      modulePosChannels[moduleIndex].set(modules[moduleIndex].getDriveMotorPos());
+      moduleVelChannels[moduleIndex].set(modules[moduleIndex].getDriveMotorVel());
+      moduleTurnAngleChannels[moduleIndex].set(modules[moduleIndex].getTurnMotorAngle());
+      moduleWheelEncoderChannels[moduleIndex].set(modules[moduleIndex].getWheelEncoderAngle());
+      moduleTurnFailureChannels[moduleIndex].set(modules[moduleIndex].getTurnMotorFailure());
+      moduleDriveFailureChannels[moduleIndex].set(modules[moduleIndex].getDriveMotorFailure());
+    }
+    moduleStatesChannel.set(getSMSs());
+    moduleSetpointsChannel.set(getSetpointSMSs());
+    poseChannel.set(odometry.getEstimatedPosition());
+    xPosChannel.set(getXPos());
+    yPosChannel.set(getYPos());
+    fusedAngChannel.set(getFusedAng());
+    gyroAngChannel.set(getGyroAng());
+    pitchChannel.set(getGyroPitch());
+    xVelChannel.set(getXVel());
+    yVelChannel.set(getYVel());
+    angVelChannel.set(getAngVel());
+    pathXPosChannel.set(pathXPos);
+    pathYPosChannel.set(pathYPos);
+    pathAngPosChannel.set(pathAngPos);
+    pathPosErrorChannel.set(getPathPosError());
+    pathAngleErrorChannel.set(getPathAngleError());
+    pathAtEndpointChannel.set(atPathEndpoint(0));
+    isRedAllianceChannel.set(isRedAlliance());
+    isBlueAllianceChannel.set(isBlueAlliance());
+    calls.flush();
+  }
+
+  // Advances the simulated swerve modules and gyro by one period. Should be called in simulationPeriodic().
+  public void simulationPeriodic() {
+    for (SwerveModuleIO moduleIO : moduleIOs) {
+      moduleIO.simulationPeriodic();
+    }
+    gyro.simulationPeriodic(kinematics.toChassisSpeeds(getSMSs()).omegaRadiansPerSecond*180.0/Math.PI); // The robot turns at the rate implied by the simulated module velocities.
+  }
+
+  private SwerveModuleState[] getSMSs() {
+    SwerveModuleState[] SMSs = new SwerveModuleState[modules.length];
+    for (int moduleIndex = 0; moduleIndex < modules.length; moduleIndex++) {
+      SMSs[moduleIndex] = modules[moduleIndex].getSMS();
+    }
+    return SMSs;
+  }
+
+  private SwerveModuleState[] getSetpointSMSs() {
+    SwerveModuleState[] SMSs = new SwerveModuleState[modules.length];
+    for (int moduleIndex = 0; moduleIndex < modules.length; moduleIndex++) {
+      SMSs[moduleIndex] = modules[moduleIndex].getSetpointSMS();
+    }
+    return SMSs;
   }
 
   private SwerveModulePosition[] getSMPs() {
@@ -0,0 +1,62 @@
+package frc.robot;
+
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.KalmanFilter;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.system.LinearSystem;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.TimedRobot;
+
+// Estimates the true speed of a flywheel. The Spark Flex filters its encoder velocity heavily, so the reported velocity lags behind the wheel while it spins up.
+// A Kalman filter combines that velocity with a kV/kA model of the flywheel driven by the voltage the motor is applying. The filtered velocity still describes the wheel
+// as the encoder saw it measurementDelay ago, so the model is used once more to carry it forward to the present. All velocities are in RPM.
+class FlywheelObserver {
+  private static final double kV = 0.00196; // The voltage needed to hold a speed. Matches the feedforward configured on the motors. Unit: volts per RPM
+  private static final double kA = 0.0007; // The voltage needed to accelerate. Estimated from the Vortex motor constants and the moment of inertia of the flywheel. Unit: volts per RPM per second
+  private static final double measurementDelay = 0.04; // How far the reported velocity lags behind the wheel. Unit: seconds
+  private static final double maxAcc = 8000.0; // The Smart Velocity acceleration limit configured on the motors. Unit: RPM per second
+  private static final double nominalVoltage = 12.0; // The voltage assumed to be available when predicting how long a spin up will take. Unit: volts
+  private final KalmanFilter<N1, N1, N1> filter;
+  private double voltage = 0.0; // The voltage applied to the motor in the previous period. Unit: volts
+
+  public FlywheelObserver() {
+    LinearSystem<N1, N1, N1> plant = LinearSystemId.identifyVelocitySystem(kV, kA);
+    filter = new KalmanFilter<>(Nat.N1(), Nat.N1(), plant, VecBuilder.fill(100.0), VecBuilder.fill(150.0), TimedRobot.kDefaultPeriod); // Standard deviations of the model and of the encoder in RPM. The model is trusted more than the lagging encoder.
+  }
+
+  // Sets the estimate to the given velocity. Should be called when the thrower is initialized.
+  public void reset(double vel) {
+    filter.setXhat(0, vel);
+    voltage = 0.0;
+  }
+
+  // Updates the estimate with the velocity reported by the motor and the voltage the motor is applying. Should be called once per period. Unit: volts for appliedVoltage
+  public void update(double measuredVel, double appliedVoltage) {
+    filter.predict(VecBuilder.fill(voltage), TimedRobot.kDefaultPeriod);
+    filter.correct(VecBuilder.fill(voltage), VecBuilder.fill(measuredVel));
+    voltage = appliedVoltage;
+  }
+
+  // Returns the estimated speed of the flywheel now, rather than when the encoder measured it.
+  public double getVel() {
+    double steadyStateVel = voltage/kV; // The speed the flywheel would settle at with the current voltage.
+    return steadyStateVel + (filter.getXhat(0) - steadyStateVel)*Math.exp(-measurementDelay*kV/kA);
+  }
+
+  // Returns a prediction of how long it will take the flywheel to come within tolerance of the given setpoint. Returns 0 if it already is.
+  // Assumes the flywheel accelerates at the lower of the Smart Velocity limit and what the motor can deliver at the setpoint, so the prediction errs on the long side. Unit: seconds
+  public double getTimeToReady(double setpoint, double tolerance) {
+    return getSpinUpTime(getVel(), setpoint, tolerance);
+  }
+
+  // Returns a prediction of how long it will take a flywheel spinning at vel to come within tolerance of the given setpoint, with the same assumptions as getTimeToReady(). Unit: seconds
+  static double getSpinUpTime(double vel, double setpoint, double tolerance) {
+    double error = Math.abs(setpoint - vel) - tolerance;
+    if (error <= 0.0) {
+      return 0.0;
+    }
+    double acc = Math.min(maxAcc, Math.max(nominalVoltage - kV*Math.abs(setpoint), 0.0)/kA);
+    return acc > 0.0 ? error/acc : Double.POSITIVE_INFINITY;
+  }
+}
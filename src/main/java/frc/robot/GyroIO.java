@@ -0,0 +1,22 @@
+package frc.robot;
+
+// The gyroscope used by the drivetrain. Separates the drivetrain logic from the device so that recorded match data can be replayed through the same logic.
+interface GyroIO {
+  // Reads every input of the gyro and records it. Should be called once at the start of each period. The getters return the values read by the last call.
+  void updateInputs();
+
+  // Returns the yaw of the robot in degrees. CCW is positive.
+  double getYaw();
+
+  // Returns the pitch of the robot in degrees. An elevated front is positive.
+  double getPitch();
+
+  // Returns the roll of the robot in degrees. An elevated left side is positive.
+  double getRoll();
+
+  // Sets the yaw of the robot to the given angle in degrees.
+  void setYaw(double yaw);
+
+  // Advances the simulated gyro by one period while the robot turns at yawRate degrees per second. Only called in simulation.
+  default void simulationPeriodic(double yawRate) {}
+}
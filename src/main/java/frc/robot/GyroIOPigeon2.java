@@ -0,0 +1,63 @@
+package frc.robot;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.hardware.Pigeon2;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
+
+// A Pigeon 2.0 CAN gyroscope. Every input is read from the hardware once per period and recorded so that it can be replayed later.
+class GyroIOPigeon2 implements GyroIO {
+  private final Pigeon2 pigeon; // Pigeon 2.0 CAN Gyroscope
+  private final StatusSignal<Double> yaw;
+  private final StatusSignal<Double> pitch;
+  private final StatusSignal<Double> roll;
+  private double yawValue = 0.0; // The inputs read by the last call to updateInputs(). Unit: degrees
+  private double pitchValue = 0.0;
+  private double rollValue = 0.0;
+  private double simYaw = 0.0; // The simulated heading of the robot in degrees. Only used in simulation.
+
+  // Records the inputs of the gyro.
+  private final Telemetry.DoubleChannel yawInput = Telemetry.addDouble("Inputs/Gyro Yaw", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel pitchInput = Telemetry.addDouble("Inputs/Gyro Pitch", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel rollInput = Telemetry.addDouble("Inputs/Gyro Roll", Telemetry.logOnly);
+
+  public GyroIOPigeon2(int deviceID, String canbus) {
+    pigeon = new Pigeon2(deviceID, canbus);
+    yaw = pigeon.getYaw();
+    pitch = pigeon.getPitch();
+    roll = pigeon.getRoll();
+  }
+
+  public void updateInputs() {
+    BaseStatusSignal.refreshAll(yaw, pitch, roll);
+    yawValue = yaw.getValueAsDouble();
+    pitchValue = pitch.getValueAsDouble();
+    rollValue = roll.getValueAsDouble();
+    yawInput.set(yawValue);
+    pitchInput.set(pitchValue);
+    rollInput.set(rollValue);
+  }
+
+  public double getYaw() {
+    return yawValue;
+  }
+
+  public double getPitch() {
+    return pitchValue;
+  }
+
+  public double getRoll() {
+    return rollValue;
+  }
+
+  public void setYaw(double _yaw) {
+    pigeon.setYaw(_yaw);
+  }
+
+  public void simulationPeriodic(double yawRate) {
+    simYaw += yawRate*TimedRobot.kDefaultPeriod;
+    pigeon.getSimState().setSupplyVoltage(RobotController.getBatteryVoltage());
+    pigeon.getSimState().setRawYaw(simYaw);
+  }
+}
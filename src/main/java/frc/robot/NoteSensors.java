@@ -0,0 +1,99 @@
+package frc.robot;
+
+import edu.wpi.first.math.filter.Debouncer;
+import edu.wpi.first.math.filter.Debouncer.DebounceType;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+// The three proximity sensors in the thrower, read once at the start of each period. Everything that checks for a note during the period sees the same values,
+// and each sensor is only read from the hardware once. A note is detected as soon as a sensor sees it, but has to be gone for debounceTime before it counts as cleared,
+// so a flicker at the edge of a note does not look like the note leaving. Each sensor also reports whether it changed this period, and when it last changed.
+// The times of the changes come from the sensor interrupts, so they are when the note reached or left the sensor rather than when the change was noticed.
+class NoteSensors {
+  private static final double debounceTime = 0.03; // How long a sensor has to stop seeing the note before the note counts as cleared. Unit: seconds
+  public final Sensor sensor1; // Sensor closest to the intake.
+  public final Sensor sensor2; // Sensor in the middle.
+  public final Sensor sensor3; // Sensor closest to the shooter.
+
+  public NoteSensors(ThrowerIO io) {
+    sensor1 = new Sensor(io::getSensor1, io::getSensor1DetectTime, io::getSensor1ClearTime);
+    sensor2 = new Sensor(io::getSensor2, io::getSensor2DetectTime, io::getSensor2ClearTime);
+    sensor3 = new Sensor(io::getSensor3, io::getSensor3DetectTime, io::getSensor3ClearTime);
+  }
+
+  // Reads each sensor. Should be called once at the start of each period, before anything checks the sensors.
+  public void update() {
+    double time = Timer.getFPGATimestamp();
+    sensor1.update(time);
+    sensor2.update(time);
+    sensor3.update(time);
+  }
+
+  // Returns true if any of the sensors detects a note.
+  public boolean hasNote() {
+    return sensor1.get() || sensor2.get() || sensor3.get();
+  }
+
+  static class Sensor {
+    private final BooleanSupplier reader;
+    private final DoubleSupplier detectTimeReader; // The interrupt time of the last note arriving.
+    private final DoubleSupplier clearTimeReader; // The interrupt time of the last note leaving.
+    private final Debouncer debouncer = new Debouncer(debounceTime, DebounceType.kFalling);
+    private boolean detected = false; // Whether the sensor detects a note, after debouncing.
+    private boolean rising = false; // Whether the sensor started detecting a note this period.
+    private boolean falling = false; // Whether the sensor stopped detecting a note this period.
+    private double risingTime = -1.0; // The FPGA time when the sensor last started detecting a note, measured by the interrupt. -1 if it never has. Unit: seconds
+    private double fallingTime = -1.0; // The FPGA time when the sensor last stopped detecting a note, measured by the interrupt. -1 if it never has. Unit: seconds
+
+    private Sensor(BooleanSupplier _reader, DoubleSupplier _detectTimeReader, DoubleSupplier _clearTimeReader) {
+      reader = _reader;
+      detectTimeReader = _detectTimeReader;
+      clearTimeReader = _clearTimeReader;
+    }
+
+    private void update(double time) {
+      boolean lastDetected = detected;
+      detected = debouncer.calculate(reader.getAsBoolean());
+      rising = detected && !lastDetected;
+      falling = !detected && lastDetected;
+      if (rising) {
+        risingTime = getEdgeTime(detectTimeReader.getAsDouble(), time);
+      }
+      if (falling) {
+        fallingTime = getEdgeTime(clearTimeReader.getAsDouble(), time);
+      }
+    }
+
+    // Returns the interrupt time of a change, or the time of the period it was noticed in if the interrupt did not record it. An interrupt time from before the last change belongs to an earlier note.
+    private double getEdgeTime(double interruptTime, double periodTime) {
+      return interruptTime > Math.max(risingTime, fallingTime) ? interruptTime : periodTime;
+    }
+
+    // Returns true if the sensor detects a note.
+    public boolean get() {
+      return detected;
+    }
+
+    // Returns true if the sensor started detecting a note this period.
+    public boolean isRising() {
+      return rising;
+    }
+
+    // Returns true if the sensor stopped detecting a note this period.
+    public boolean isFalling() {
+      return falling;
+    }
+
+    // Returns the FPGA time when the sensor last started detecting a note, measured by the interrupt, or -1 if it never has. Unit: seconds
+    public double getRisingTime() {
+      return risingTime;
+    }
+
+    // Returns the FPGA time when the sensor last stopped detecting a note, measured by the interrupt, or -1 if it never has. Unit: seconds
+    // This is when the note left the sensor, which is debounceTime or more before isFalling() reports it.
+    public double getFallingTime() {
+      return fallingTime;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Measures how long each part of the periodic code takes. Each section is wrapped in begin() and end() calls, and its run times are counted in a histogram whose buckets grow exponentially,
+// so a few hundred counters cover everything from 1 microsecond to minutes with about 12% resolution. Recording a time only reads System.nanoTime() and increments a counter.
+// Every section runs on the main loop, so no locks or atomics are needed. Once per second the median, 99th percentile, and maximum of each section over that second are published and logged.
+// Each section has a time budget. The first section to exceed its budget in a period is published as the offender, so a loop overrun can be traced to the call that caused it.
+class Profiler {
+  private static final int subBucketBits = 3; // Each power of 2 is split into 2^subBucketBits buckets.
+  private static final int subBuckets = 1 << subBucketBits;
+  private static final int bucketCount = subBuckets*34; // Covers run times up to 2^36 microseconds.
+  private static final int reportPeriods = 50; // The number of periods between reports. 50 periods is 1 second.
+  private static final ArrayList<Section> sections = new ArrayList<>(); // Every section that has been created, in the order they were created.
+  private static final Telemetry.StringChannel offenderChannel = Telemetry.addString("Profiler/First Offender", Telemetry.slowRate);
+  private static final Telemetry.DoubleChannel overrunsChannel = Telemetry.addDouble("Profiler/Overruns", Telemetry.slowRate);
+  private static Section offender = null; // The first section that exceeded its budget this period. Null if every section was within budget.
+  private static long offenderTime = 0; // How long the offending section took. Unit: nanoseconds
+  private static long overruns = 0; // The number of periods in which a section exceeded its budget.
+  private static int periodCount = 0; // The number of periods since the last report.
+
+  // Creates a section. name is how the section is published, and budget is the longest the section should take to run. Unit: milliseconds
+  public static Section addSection(String name, double budget) {
+    Section section = new Section(name, budget);
+    sections.add(section);
+    return section;
+  }
+
+  // Should be called once at the end of each period, after every section has ended. Reports the offending section, and publishes the timing of every section once per second.
+  public static void endCycle() {
+    if (offender != null) {
+      overruns++;
+      offenderChannel.set(offender.name + " took " + String.format("%.2f", offenderTime/1.0e6) + " ms, budget " + String.format("%.2f", offender.budget/1.0e6) + " ms");
+      overrunsChannel.set(overruns);
+      offender = null;
+    }
+    periodCount++;
+    if (periodCount >= reportPeriods) {
+      for (Section section : sections) {
+        section.report();
+      }
+      periodCount = 0;
+    }
+  }
+
+  // Returns the histogram bucket that holds the given time. Unit: microseconds
+  private static int getBucket(long time) {
+    if (time < subBuckets) {
+      return (int) Math.max(time, 0);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(time); // The position of the highest set bit. At least subBucketBits.
+    int subBucket = (int) (time >> (exponent - subBucketBits)) & (subBuckets - 1); // The next subBucketBits bits below the highest set bit.
+    return Math.min(subBuckets + (exponent - subBucketBits)*subBuckets + subBucket, bucketCount - 1);
+  }
+
+  // Returns the largest time that falls into the given bucket. Unit: microseconds
+  private static long getBucketMax(int bucket) {
+    if (bucket < subBuckets) {
+      return bucket;
+    }
+    int exponent = (bucket - subBuckets)/subBuckets + subBucketBits;
+    long subBucket = (bucket - subBuckets) % subBuckets;
+    return ((subBuckets + subBucket + 1) << (exponent - subBucketBits)) - 1;
+  }
+
+  static class Section {
+    private final String name;
+    private final long budget; // Unit: nanoseconds
+    private final long[] counts = new long[bucketCount]; // The number of run times in each bucket since the last report.
+    private long count = 0; // The number of run times since the last report.
+    private long max = 0; // The longest run time since the last report. Unit: nanoseconds
+    private long startTime = 0; // When the section last began. Unit: nanoseconds
+    private final Telemetry.DoubleChannel p50Channel;
+    private final Telemetry.DoubleChannel p99Channel;
+    private final Telemetry.DoubleChannel maxChannel;
+
+    private Section(String _name, double _budget) {
+      name = _name;
+      budget = (long) (_budget*1.0e6);
+      p50Channel = Telemetry.addDouble("Profiler/" + name + " p50 (ms)", Telemetry.slowRate);
+      p99Channel = Telemetry.addDouble("Profiler/" + name + " p99 (ms)", Telemetry.slowRate);
+      maxChannel = Telemetry.addDouble("Profiler/" + name + " Max (ms)", Telemetry.slowRate);
+    }
+
+    // Should be called immediately before the code being measured.
+    public void begin() {
+      startTime = System.nanoTime();
+    }
+
+    // Should be called immediately after the code being measured.
+    public void end() {
+      long time = System.nanoTime() - startTime;
+      counts[getBucket(time/1000)]++;
+      count++;
+      if (time > max) {
+        max = time;
+      }
+      if (time > budget && offender == null) {
+        offender = this;
+        offenderTime = time;
+      }
+    }
+
+    // Publishes the timing of the section since the last report, then starts a new report.
+    private void report() {
+      if (count == 0) {
+        return;
+      }
+      p50Channel.set(getPercentile(0.5)/1000.0);
+      p99Channel.set(getPercentile(0.99)/1000.0);
+      maxChannel.set(max/1.0e6);
+      Arrays.fill(counts, 0);
+      count = 0;
+      max = 0;
+    }
+
+    // Returns the time that the given fraction of run times were at or below. Unit: microseconds
+    private long getPercentile(double fraction) {
+      long target = (long) Math.ceil(fraction*count);
+      long total = 0;
+      for (int bucket = 0; bucket < bucketCount; bucket++) {
+        total += counts[bucket];
+        if (total >= target) {
+          return getBucketMax(bucket);
+        }
+      }
+      return getBucketMax(bucketCount - 1);
+    }
+  }
+}
@@ -3,12 +3,14 @@ package frc.robot;
 import com.ctre.phoenix.led.CANdle;
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.filter.SlewRateLimiter;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import java.util.ArrayList;
 
 public class Robot extends TimedRobot {
   private final XboxController driver = new XboxController(0); // Initializes the driver controller.
@@ -24,23 +26,18 @@ public class Robot extends TimedRobot {
   private final Drivetrain swerve = new Drivetrain(); // Contains the Swerve Modules, Gyro, Path Follower, Target Tracking, Odometry, and Vision Calibration.
   private final Thrower thrower = new Thrower();
   private final Arm arm = new Arm();
+  private final ShotTable shotTable = new ShotTable("shotTable.json"); // The arm angles and flywheel speeds for shots into the speaker. Loaded from the deploy directory.
+  private final AimSolver aimSolver = new AimSolver(shotTable); // Aims shots into the speaker, accounting for the robot's velocity.
+  private final AimSolver arrivalAimSolver = new AimSolver(shotTable); // Aims from where the robot will stop, while it is still driving there.
+  private final double flywheelVelResolution = 50.0; // The flywheel speeds from the shot table are rounded to this many RPM.
   private final Climber climber = new Climber();
 
   // Auto Chooser Variables
-  private final SendableChooser<String> autoChooser = new SendableChooser<>();
-  private static final String auto1 = "1 Piece Mid";
-  private static final String auto2 = "2 Piece";
-  private static final String auto3 = "3 Piece";
-  private static final String auto4 = "CLIMBER_RESET";
-  private static final String auto5 = "Auto 5 Amp(?)";
-  private static final String auto6 = "Auto 6 (?)";
-  private static final String auto7 = "1 Piece Side";
-  private static final String auto8 = "4 piece (WIP)";
-  private static final String auto9 = "4 piece (Zone)";
-  private static final String auto10 = "2 Piece Side ";
-  private static final String auto11 = "Troll Auto (Right)";
-  private String autoSelected;
-  private int autoStage = 1;
+  private final SendableChooser<AutoRoutine> autoChooser = new SendableChooser<>();
+  private AutoRoutine autoRoutine; // The routine selected when auto started. Compiled from the routines in the deploy directory in robotInit().
+  private AutoRoutine selectedRoutine; // The routine currently selected on the chooser. Prepared for the alliance while the robot is disabled.
+  static final String[] pathNames = {"Rush Center", "Return From Center"}; // The Path Planner paths used by the auto routines, in the order of their indexes.
+  static final double[] pathInitialAngles = {120.0, 180.0}; // The robot's angle at the begining of each path. Units: degrees
 
   // LED Variables
   private final CANdle candle0 = new CANdle(0, "rio"); // Initialzes the LEDs on the left.
@@ -66,37 +63,77 @@ public class Robot extends TimedRobot {
     MANUAL_SHOOT;
   }
   ArmState currArmState = ArmState.INTAKE; // Stores the current arm state. The robot will default to the value intialized here when teleop is first entered.
-  private final double armDriveSetpoint = 75.0; // The arm's driving position in degrees.
-  private final double armAmpSetpoint = 48.0; // The arm's inital amp scoring position in degrees.
-  private final double armIntakeSetpoint = -5.0; // The arm's intake position in degrees.
+  static final double armDriveSetpoint = 75.0; // The arm's driving position in degrees.
+  static final double armAmpSetpoint = 48.0; // The arm's inital amp scoring position in degrees.
+  static final double armIntakeSetpoint = -5.0; // The arm's intake position in degrees.
   private final double armAmpRaiseRate = 6.0; // The rate at which the arm is raised during amp scoring in deg/sec.
   private final double armManualSetpoint = 8.0; // THe arm's manual shooting position in degrees.
   private final Timer armTimer = new Timer(); // Tracks the number of secound that the arm is at the setpoint
   private final Timer ampTimer = new Timer(); // Controls the inclination of the arm during amp scoring.
   private boolean lastIsAmpScoring = false; // Stores whether the thrower was amp scoring in the previous period.
 
+  // Dashboard channels. Created once so that updateDash() only hands values off to the telemetry thread.
+  private final Telemetry.DoubleChannel autoStageChannel = Telemetry.addDouble("Auto Stage", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel speedScaleFactorChannel = Telemetry.addDouble("Speed Scale Factor", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel distToSpeakerChannel = Telemetry.addDouble("Distance to Speaker", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel virtualDistChannel = Telemetry.addDouble("Aim Virtual Distance", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel timeOfFlightChannel = Telemetry.addDouble("Aim Time of Flight", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel driveArrivalChannel = Telemetry.addDouble("Drive Arrival Time", Telemetry.slowRate); // The predicted time until the robot stops at its drive goal. 0 without a goal.
+  private final Telemetry.StringChannel autoStepChannel = Telemetry.addString("Auto Step", Telemetry.slowRate);
+  private final Telemetry.StringChannel autoSelectedChannel = Telemetry.addString("Auto Selected", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel autoPreparedChannel = Telemetry.addBoolean("Auto Prepared", Telemetry.slowRate); // Whether the selected routine is ready to start for the current alliance.
+  private final Telemetry.StringChannel armStateChannel = Telemetry.addString("Arm State", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel cycleChannel = Telemetry.addDouble("Robot Cycle", Telemetry.logOnly); // Counts the periods. Marks the start of every period in the log so that it can be replayed.
+  private long cycleCount = 0;
+
+  // Profiler sections. Each measures how long a part of the periodic code takes. Budgets are in milliseconds.
+  private final Profiler.Section loopSection = Profiler.addSection("Robot Loop", 20.0);
+  private final Profiler.Section robotPeriodicSection = Profiler.addSection("Robot.robotPeriodic", 6.0);
+  private final Profiler.Section autonomousPeriodicSection = Profiler.addSection("Robot.autonomousPeriodic", 8.0);
+  private final Profiler.Section teleopPeriodicSection = Profiler.addSection("Robot.teleopPeriodic", 8.0);
+  private final Profiler.Section disabledPeriodicSection = Profiler.addSection("Robot.disabledPeriodic", 2.0);
+  private final Profiler.Section prepareAutoSection = Profiler.addSection("Robot.prepareAuto", 20.0); // Only runs while disabled, when the selected routine or the alliance changes.
+  private final Profiler.Section odometrySection = Profiler.addSection("Drivetrain.updateOdometry", 1.0);
+  private final Profiler.Section visionSection = Profiler.addSection("Drivetrain.addVisionEstimate", 1.0);
+  private final Profiler.Section swerveDashSection = Profiler.addSection("Drivetrain.updateDash", 2.0);
+  private final Profiler.Section armPeriodicSection = Profiler.addSection("Arm.periodic", 1.0);
+  private final Profiler.Section armPositionSection = Profiler.addSection("Arm.updatePosition", 0.5);
+  private final Profiler.Section armDashSection = Profiler.addSection("Arm.updateDashboard", 1.0);
+  private final Profiler.Section throwerPeriodicSection = Profiler.addSection("Thrower.periodic", 1.0);
+  private final Profiler.Section throwerDashSection = Profiler.addSection("Thrower.updateDashboard", 1.0);
+  private final Profiler.Section climberDashSection = Profiler.addSection("Climber.updateDashboard", 1.0);
+  private final Profiler.Section robotDashSection = Profiler.addSection("Robot.updateDash", 0.5);
+  private final Profiler.Section ledSection = Profiler.addSection("Robot.controlLEDs", 1.0);
+
   public void robotInit() {
-    // Allows the user to choose which auto to do
-    autoChooser.setDefaultOption(auto1, auto1);
-    autoChooser.addOption(auto2, auto2);
-    autoChooser.addOption(auto3, auto3);
-    autoChooser.addOption(auto4, auto4);
-    autoChooser.addOption(auto5, auto5);
-    autoChooser.addOption(auto6, auto6);
-    autoChooser.addOption(auto7, auto7);
-    autoChooser.addOption(auto8, auto8);
-    autoChooser.addOption(auto9, auto9);
-    autoChooser.addOption(auto10, auto10);
-    autoChooser.addOption(auto11, auto11);
+    // Allows the user to choose which auto to do. The routines are compiled once here, so auto does not look anything up by name.
+    AutoCompiler autoCompiler = new AutoCompiler(this, swerve, arm, thrower, climber);
+    ArrayList<AutoRoutine> autoRoutines = autoCompiler.load("autos.json");
+    if (autoRoutines.isEmpty()) {
+      autoRoutines.add(autoCompiler.createStopRoutine()); // The routines could not be loaded. Auto will only stop the robot.
+    }
+    autoChooser.setDefaultOption(autoRoutines.get(0).getName(), autoRoutines.get(0));
+    for (int routineIndex = 1; routineIndex < autoRoutines.size(); routineIndex++) {
+      autoChooser.addOption(autoRoutines.get(routineIndex).getName(), autoRoutines.get(routineIndex));
+    }
+    autoRoutine = autoRoutines.get(0);
+    selectedRoutine = autoRoutines.get(0);
+    autoChooser.onChange(routine -> selectedRoutine = routine); // Called from the main loop when the dashboard changes the selection. The routine is prepared in disabledPeriodic().
     SmartDashboard.putData("Autos", autoChooser);
+    Telemetry.start(); // Begins publishing dashboard values in the background.
 
     ampTimer.restart(); // Gets the amp timer started. Used in teleop to incline the arm.
     armTimer.restart(); // Gets the arm timer started.
 
-    swerve.loadPath("Rush Center", 0.0, 0.0, 0.0, 120.0); // Loads the path. All paths should be loaded in robotInit() because this call is computationally expensive.
-    swerve.loadPath("Return From Center", 0.0, 0.0, 0.0, 180.0);
+    DeviceConfigurator.waitForAll(3.0); // The motors have been configuring in the background since the subsystems were created. Makes sure they are ready before the robot can be enabled.
+    DeviceConfigurator.startMonitor(); // Configures any motor that resets from now on, such as after a brownout.
+
+    for (int pathIndex = 0; pathIndex < pathNames.length; pathIndex++) {
+      swerve.loadPath(pathNames[pathIndex], 0.0, 0.0, 0.0, pathInitialAngles[pathIndex]); // Loads the path. All paths should be loaded in robotInit() because this call is computationally expensive.
+    }
 
     // Helps prevent loop overruns when the robot is first enabled. These calls cause the robot to initialize code in other parts of the program so it does not need to be initialized during autonomousInit() or teleopInit(), saving computational resources.
+    swerve.updateInputs();
     swerve.resetDriveController(0.0);
     swerve.aimDrive(0.01, 0.0, 0.0, true);
     swerve.driveTo(0.0, 0.0, 0.0);
@@ -110,20 +147,53 @@ public class Robot extends TimedRobot {
     swerve.updateDash();
     climber.setManual(0.0, 0.0);
     arm.atSetpoint();
+    arm.updatePosition();
     arm.periodic();
     arm.updateSetpoint(arm.getEncoderAverage());
+    thrower.updateInputs();
     thrower.init();
     thrower.periodic();
     robotPeriodic();
+    Profiler.endCycle(); // Keeps the timing of these warm up calls separate from the first period.
+  }
+
+  // Runs once at the start of every period, before any of the other periodic functions.
+  protected void loopFunc() {
+    Telemetry.beginCycle(); // Timestamps every value recorded this period.
+    cycleCount++;
+    cycleChannel.set(cycleCount);
+    loopSection.begin();
+    swerve.updateInputs(); // Everything this period sees the same drivetrain and thrower inputs.
+    thrower.updateInputs();
+    super.loopFunc();
+    loopSection.end();
+    Profiler.endCycle();
   }
 
   public void robotPeriodic() {
+    robotPeriodicSection.begin();
+    armPositionSection.begin();
+    arm.updatePosition(); // Re-seeds the arm from its absolute encoders if the motor has slipped. Runs in every mode so the arm is correct when the robot is enabled.
+    armPositionSection.end();
+    swerveDashSection.begin();
     swerve.updateDash(); // Pushes drivetrain information to the Dashboard.
+    swerveDashSection.end();
+    armDashSection.begin();
     arm.updateDashboard();
+    armDashSection.end();
+    throwerDashSection.begin();
     thrower.updateDashboard();
+    throwerDashSection.end();
+    climberDashSection.begin();
+    climber.updateResets(); // Re-zeroes or locks out a climber whose motor reset.
     climber.updateDashboard();
+    climberDashSection.end();
+    robotDashSection.begin();
     updateDash();
+    robotDashSection.end();
+    ledSection.begin();
     controlLEDs();
+    ledSection.end();
 
     // Resets the arm timer to 0 if the arm is not at the current setpoint.
     if (!arm.atSetpoint()) {
@@ -134,722 +204,36 @@ public class Robot extends TimedRobot {
     if (driver.getRawButtonPressed(8)) {
       swerve.resetGyro();
     }
+    robotPeriodicSection.end();
   }
 
   public void autonomousInit() {
     swerve.pushCalibration(); // Updates the robot's position on the field.
+    updateAim();
     thrower.init(); // Must be called during autoInit() and teleopInit() for the thrower to work properly.
     armTimer.restart();
     climber.init();
-    autoStage = 1;
-    autoSelected = autoChooser.getSelected();
-    switch (autoSelected) {
-      case auto1:
-        // AutoInit 1 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-
-      case auto2:
-        // AutoInit 2 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-
-      case auto3:
-        // AutoInit 3 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-
-      case auto4:
-        // AutoInit 4 code goes here.
-        arm.updateSetpoint(armIntakeSetpoint);
-        thrower.setDisableFlywheel(true);
-        break;
-
-      case auto5:
-        // AutoInit 5 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        break;
-
-      case auto6:
-        // AutoInit 6 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-
-      case auto7:
-        // AutoInit 7 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-
-      case auto8:
-        // AutoInit 8 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-      case auto9:
-        // AutoInit 9 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-      case auto10:
-        // AutoInit 10 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
-
-      case auto11:
-        // AutoInit 11 code goes here.
-        swerve.resetDriveController(getAimHeading());
-        arm.updateSetpoint(getAimArmAngle());
-        thrower.setDisableFlywheel(false);
-        break;
+    autoRoutine = selectedRoutine; // Normally already prepared while disabled, so the routine only has to be swapped in.
+    if (!autoRoutine.isPreparedFor(swerve.isRedAlliance())) {
+      autoRoutine.prepare(swerve.isRedAlliance()); // The selection or the alliance changed too late to be prepared while disabled.
     }
+    autoRoutine.init();
   }
 
   public void autonomousPeriodic() {
+    autonomousPeriodicSection.begin();
+    odometrySection.begin();
     swerve.updateOdometry();
+    odometrySection.end();
+    updateAim();
+    throwerPeriodicSection.begin();
     thrower.periodic();
+    throwerPeriodicSection.end();
+    armPeriodicSection.begin();
     arm.periodic();
-    switch (autoSelected) {
-      case auto1:
-        switch (autoStage) {
-          case 1:
-            // Auto 1 code goes here.
-            swerve.driveTo(1.91, swerve.isBlueAlliance() ? 5.48 : Drivetrain.fieldWidth - 5.48, getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.5) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once (like an autoStageInit()), then move on to the next stage.
-                armTimer.restart();
-                arm.updateSetpoint(armDriveSetpoint);
-                autoStage = -1; // Goes to default case.
-              }
-            }
-            break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, false, 0.0, 0.0); // Stops the robot after auto is completed.
-            arm.updateSetpoint(armDriveSetpoint);
-            break;
-        }
-        break;
-
-      case auto2:
-        // Auto 2 code goes here.
-        switch (autoStage) {
-          case 1:
-            swerve.driveTo(1.91, swerve.isBlueAlliance() ? 5.48 : Drivetrain.fieldWidth - 5.48, getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { 
-                armTimer.restart();
-                arm.updateSetpoint(armIntakeSetpoint);
-                swerve.resetDriveController(180.0);
-                autoStage = 2;
-              }
-            }
-            break;
-
-          case 2:
-            swerve.aimDrive(0.0, 0.0, 180.0, true);
-
-            if (armTimer.get() > 0.3) {
-              autoStage = 3;
-            }
-            break;
-
-          case 3:
-            swerve.aimDrive(1.0, 0.0, 180.0, true);
-
-            if (thrower.getSensor1()) {
-              swerve.resetDriveController(getAimHeading());
-              arm.updateSetpoint(getAimArmAngle());
-              armTimer.restart();
-              autoStage = 4;
-            } else if (swerve.getXPos() > 4.0) {
-              autoStage = -1; // Goes to default case.
-            }
-            break;
-
-          case 4:
-            swerve.aimDrive(0.0, 0.0, getAimHeading(), true);
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once (like an autoStageInit()), then move on to the next stage.
-                autoStage = -1; // Default case
-              }
-            }
-            break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, false, 0, 0);
-            arm.updateSetpoint(armDriveSetpoint);
-            break;
-        }
-        break;
-
-      case auto3:
-        // Auto 3 code goes here.
-        switch (autoStage) {
-          case 1:
-            swerve.aimDrive(0.0, 0.0, getAimHeading(), true);
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once (like an autoStageInit()), then move on to the next stage.
-                swerve.resetPathController(0);
-                autoStage = 2;
-              }
-            }
-            break;
-
-          case 2:
-            swerve.followPath(0);
-
-            if (armTimer.get() > 2.5) {
-              arm.updateSetpoint(armIntakeSetpoint);
-            }
-
-            if (thrower.getSensor1()) {
-              swerve.resetPathController(1);
-              arm.updateSetpoint(getAimArmAngle());
-              autoStage = 3;
-            }
-            break;
-
-          case 3:
-            swerve.followPath(1);
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atPathEndpoint(1) && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once (like an autoStageInit()), then move on to the next stage.
-                arm.updateSetpoint(armDriveSetpoint);
-                autoStage = -1; // Default case
-              }
-            }
-            break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, false, 0.0, 0.0);
-            arm.updateSetpoint(armDriveSetpoint);
-            break;
-        }
-        break;
-
-      case auto4:
-        // Auto 4 code goes here.
-        swerve.drive(0.0, 0.0, 0.0, false, 0, 0);
-        if (climber.getLeftLimitSensor() && climber.getRightLimitSensor()) {
-          arm.updateSetpoint(armDriveSetpoint);
-        } else {
-          arm.updateSetpoint(arm.getEncoderAverage());
-        }
-        climber.resetClimbers();
-        break;
-
-      case auto5:
-        // Auto 5 code goes here.
-        switch (autoStage) {
-          case 1:
-            swerve.driveTo(2.0, (swerve.isBlueAlliance() ? 7.5 : Drivetrain.fieldWidth - 7.5),
-                (swerve.isBlueAlliance() ? -90.0 : 90.0));
-            arm.updateSetpoint(armAmpSetpoint);
-            thrower.setDisableFlywheel(true);
-
-            if (swerve.atDriveGoal() && arm.atSetpoint()) {
-              thrower.commandAmpScore();
-              if (!thrower.isAmpScoring() && !thrower.getSensor1() && !thrower.getSensor2() && !thrower.getSensor3()) {
-                swerve.resetDriveController(0.0);
-                autoStage = 2;
-              }
-            }
-            break;
-
-          case 2:
-            swerve.driveTo(3.5, (swerve.isBlueAlliance() ? 7.5 : 0.5), 0.0);
-            arm.updateSetpoint(armDriveSetpoint);
-            if (swerve.atDriveGoal()) {
-              swerve.resetDriveController(0.0);
-              autoStage = -1;
-            }
-            break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0);
-            arm.updateSetpoint(armDriveSetpoint);
-            break;
-        }
-
-      case auto6:
-        // Auto 6 code goes here.
-        switch (autoStage) {
-          case 1:
-            swerve.aimDrive(0.0, 0.0, getAimHeading(), true);
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.5) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once (like an autoStageInit()), then move on to the next stage.
-                armTimer.restart();
-                arm.updateSetpoint(armIntakeSetpoint);
-                swerve.resetDriveController(180.0);
-                autoStage = 2; // Goes to default case.
-              }
-            }
-            break;
-
-          case 2:
-            // 6.51 , 0.98
-            arm.updateSetpoint(armIntakeSetpoint);
-            swerve.driveTo(6.95, (swerve.isBlueAlliance() ? 0.80 : Drivetrain.fieldWidth - 0.80), 180.0);
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.5) {
-              armTimer.restart();
-              arm.updateSetpoint(armIntakeSetpoint);
-              swerve.resetDriveController(180.0);
-              autoStage = 3;
-            }
-          break;
-
-          case 3:
-
-          break;
-
-          default:
-            arm.updateSetpoint(armDriveSetpoint);
-            swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0);
-            break;
-        }
-        break;
-
-      case auto7:
-        switch (autoStage) {
-          case 1:
-            // Auto 7 code goes here
-            arm.updateSetpoint(getAimArmAngle()); // 1.61, 6.68
-            swerve.aimDrive(0.0, 0.0, getAimHeading(), true);
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.5) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once (like an autoStageInit()), then move on to the next stage.
-                armTimer.restart();
-                arm.updateSetpoint(armDriveSetpoint);
-                autoStage = -1; // Goes to default case.
-              }
-            }
-            break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, false, 0.0, 0.0); // Stops the robot after auto is completed.
-            arm.updateSetpoint(armDriveSetpoint);
-            break;
-        }
-        break;
-
-      case auto8:
-        switch (autoStage) {
-          case 1:
-          swerve.driveTo(swerve.getXPos(), swerve.getYPos(), getAimHeading());
-          arm.updateSetpoint(getAimArmAngle());
-
-          if (swerve.atDriveGoal() && arm.atSetpoint() && aimShotAvailable() && armTimer.get() > 0.5) {
-            thrower.commandThrow();
-
-            if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2() && !thrower.getSensor3()) {
-              armTimer.restart();
-              arm.updateSetpoint(armIntakeSetpoint);
-              swerve.resetDriveController(180.0);
-              autoStage = 2; // Goes to default case.
-            }
-          }
-
-        break;
-
-
-        case 2:
-        swerve.driveTo(swerve.getXPos(), swerve.getYPos(), 180.0);
-
-          if (armTimer.get() > 0.3) {
-            swerve.resetDriveController(0.0);
-            autoStage = 3;
-          }
-
-        break;
-
-
-        case 3:
-        swerve.aimDrive(1.0, 0.0, 180.0, true);
-
-          if (thrower.getSensor1()) {
-            swerve.resetDriveController(getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-            armTimer.restart();
-            autoStage = 4;
-          } else if (swerve.getXPos() > 4.0) {
-            autoStage = -1; // Goes to default case.
-          }
-
-        break;
-
-        case 4: 
-         swerve.driveTo(1.75, (swerve.isBlueAlliance() ? 3.72 : Drivetrain.fieldWidth - 3.72), getAimHeading());
-          arm.updateSetpoint(getAimArmAngle());
-
-          if (swerve.atDriveGoal() && arm.atSetpoint() && aimShotAvailable() && armTimer.get() > 0.5) {
-            thrower.commandThrow();
-
-            if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2() && !thrower.getSensor3()) {
-              armTimer.restart();
-              arm.updateSetpoint(armDriveSetpoint);
-              swerve.resetDriveController(180.0);
-              autoStage = 5;
-            }
-          }
-
-        break;
-
-        case 5:
-        swerve.driveTo(2.15, (swerve.isBlueAlliance() ? 5.58 : Drivetrain.fieldWidth - 5.58), 180);
-        arm.updateSetpoint(armIntakeSetpoint);
-
-        if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.5) {
-          armTimer.restart();
-          swerve.resetDriveController(180.0);
-          autoStage = 6;
-        }
-
-        break;
-
-
-        case 6:
-        swerve.aimDrive(1.0, 0.0, 180.0, true);
-
-          if (thrower.getSensor1()) {
-            swerve.resetDriveController(getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-            armTimer.restart();
-            autoStage = 7;
-          } else if (swerve.getXPos() > 4.0) {
-            autoStage = -1; 
-          }
-
-        break;
-
-
-        case 7:
-        swerve.driveTo(1.9, (swerve.isBlueAlliance() ? 3.72 : Drivetrain.fieldWidth - 3.72), getAimHeading());
-          arm.updateSetpoint(getAimArmAngle());
-
-          if (swerve.atDriveGoal() && arm.atSetpoint() && aimShotAvailable() && armTimer.get() > 0.5) {
-            thrower.commandThrow();
-
-            if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2() && !thrower.getSensor3()) {
-              armTimer.restart();
-              arm.updateSetpoint(armDriveSetpoint);
-              swerve.resetDriveController(180.0);
-              autoStage = 8;
-            }
-          }
-
-        break;
-
-
-        case 8:
-        swerve.driveTo(7.6, (swerve.isBlueAlliance() ? 0.75 : Drivetrain.fieldWidth - 0.75), 180.0);
-        if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.5) {
-          armTimer.restart();
-          swerve.resetDriveController(180.0);
-          autoStage = 9;
-        }
-
-        break;
-
-        case 9:
-          swerve.aimDrive(1.0, 0.0, 180.0, true);
-
-          if (thrower.getSensor1()) {
-            swerve.resetDriveController(getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-            armTimer.restart();
-            autoStage = 10;
-          } else if (swerve.getXPos() > 4.0) {
-            autoStage = -1; 
-          }
-
-        break;
-
-
-        case 10:
-          swerve.driveTo(1.9, (swerve.isBlueAlliance() ? 3.72 : Drivetrain.fieldWidth - 3.72), getAimHeading());
-          arm.updateSetpoint(getAimArmAngle());
-
-          if (swerve.atDriveGoal() && arm.atSetpoint() && aimShotAvailable() && armTimer.get() > 0.5) {
-            thrower.commandThrow();
-
-            if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2() && !thrower.getSensor3()) {
-              armTimer.restart();
-              arm.updateSetpoint(armDriveSetpoint);
-              swerve.resetDriveController(180.0);
-              autoStage = 11;
-            }
-          }
-        break;
-
-
-        case 11:
-        swerve.driveTo(swerve.getXPos() + 2.0, swerve.getYPos(), 180);
-        if (swerve.atDriveGoal()) {
-          swerve.resetDriveController(180);
-          autoStage = -1;
-        }
-        break;
-
-        default:
-          swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0);
-          break;
-        }
-        break;
-      case auto9:
-        switch (autoStage) {
-          case 1: //Put robot at shooting pos
-            swerve.driveTo(1.91, swerve.isBlueAlliance() ? 5.48 : Drivetrain.fieldWidth - 5.48, getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.0) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once ( like an autoStageInit() ), then move on to the next stage.
-                armTimer.restart();
-                arm.updateSetpoint(armIntakeSetpoint);
-                swerve.resetDriveController(180.0);
-                autoStage = 2;
-              } 
-            }          
-            break;
-          
-          case 2:
-          swerve.aimDrive(0.0, 0.0, 180.0, true);
-
-            if (armTimer.get() > 0) {
-              autoStage = 3;
-            }
-            break;
-
-          case 3: // gets the midile pice 
-            swerve.aimDrive(1.0, 0.0, 180.0, true);
-
-            if (thrower.getSensor1()) {
-              swerve.resetDriveController(getAimHeading());
-              arm.updateSetpoint(getAimArmAngle());
-              armTimer.restart();
-              autoStage = 4;
-            } else if (swerve.getXPos() > 4.0) {
-              autoStage = -1; // Goes to default case.
-            } 
-            break;
-          
-          case 4:
-            swerve.driveTo(1.91, swerve.isBlueAlliance() ? 5.48 : Drivetrain.fieldWidth - 5.48, getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.0) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once ( like an autoStageInit() ), then move on to the next stage.
-                armTimer.restart();
-                arm.updateSetpoint(armIntakeSetpoint);
-                swerve.resetDriveController(180.0);
-                autoStage = 5;
-              } 
-            }
-            break;
-          // Add delay if needed
-          case 5: // Gwt top pice
-            swerve.driveTo(2.67, swerve.isBlueAlliance() ? 6.65 : Drivetrain.fieldWidth - 6.65, swerve.isBlueAlliance() ? -120.0 : 120.0);
-
-            if (thrower.getSensor1()) {
-              swerve.resetDriveController(getAimHeading());
-              arm.updateSetpoint(getAimArmAngle());
-              armTimer.restart();
-              autoStage = 6;
-            } else if (swerve.getXPos() > 4.0) {
-              autoStage = -1; // Goes to default case.
-            }
-            break;
-          
-          case 6:
-            swerve.driveTo(1.91, swerve.isBlueAlliance() ? 5.48 : Drivetrain.fieldWidth - 5.48, getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.0) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once ( like an autoStageInit() ), then move on to the next stage.
-                armTimer.restart();
-                arm.updateSetpoint(armIntakeSetpoint);
-                swerve.resetDriveController(180.0);
-                autoStage = 7;
-              } 
-            }
-            break;
-          
-          case 7:// gets bottom pice
-            swerve.driveTo(2.67, swerve.isBlueAlliance() ? 4.36 : Drivetrain.fieldWidth - 4.36, swerve.isBlueAlliance() ? 120 : -120);
-
-            if (thrower.getSensor1()) {
-              swerve.resetDriveController(getAimHeading());
-              arm.updateSetpoint(getAimArmAngle());
-              armTimer.restart();
-              autoStage = 8;
-            }
-            break;
-
-          case 8:
-            swerve.driveTo(1.91, swerve.isBlueAlliance() ? 5.48 : Drivetrain.fieldWidth - 5.48, getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once ( like an autoStageInit() ), then move on to the next stage.
-                armTimer.restart();
-                arm.updateSetpoint(armIntakeSetpoint);
-                swerve.resetDriveController(180.0);
-                autoStage = 9;
-              }
-            }
-            break;
-
-          case 9: // Center note
-            swerve.driveTo(8.7, (swerve.isBlueAlliance() ? 7.3 : Drivetrain.fieldWidth - 7.3), 180.0);
-
-            if (swerve.atDriveGoal()) {
-              arm.updateSetpoint(armDriveSetpoint);
-              autoStage = -1;
-            }
-          break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0);
-            break;
-        }
-        break;
-
-      case auto10:
-        switch (autoStage) {
-          case 1:
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { 
-                armTimer.restart();
-                arm.updateSetpoint(armIntakeSetpoint);
-                swerve.resetDriveController(180.0);
-                autoStage = 2;
-              }
-            }
-            break;
-
-          case 2:
-            swerve.aimDrive(0.0, 0.0, 180.0, true);
-
-            if (armTimer.get() > 0.2) {
-              autoStage = 3;
-            }
-            break;
-
-          case 3:
-            swerve.aimDrive(1.0, 0.0, 180.0, true);
-
-            if (thrower.getSensor1()) {
-              swerve.resetDriveController(getAimHeading());
-              arm.updateSetpoint(getAimArmAngle());
-              armTimer.restart();
-              autoStage = 4;
-            } else if (swerve.getXPos() > 4.0) {
-              autoStage = -1; // Goes to default case.
-            }
-            break;
-
-          case 4:
-            swerve.aimDrive(0.0, 0.0, getAimHeading(), true);
-            arm.updateSetpoint(getAimArmAngle());
-
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { // Condition to move to the next stage. The code in the if statement will execute once (like an autoStageInit()), then move on to the next stage.
-                autoStage = -1; // Default case
-              }
-            }
-            break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, false, 0, 0);
-            arm.updateSetpoint(armDriveSetpoint);
-            break;
-        }
-        break;
-
-      case auto11:
-        switch (autoStage) {
-          case 1:
-            swerve.driveTo(swerve.getXPos(), swerve.getYPos(), getAimHeading());
-            arm.updateSetpoint(getAimArmAngle());
-            
-            if (swerve.atDriveGoal() && arm.atSetpoint() && armTimer.get() > 0.3) {
-              thrower.commandThrow();
-              if (!thrower.isThrowing() && !thrower.getSensor1() && !thrower.getSensor2()) { 
-                armTimer.restart();
-                  arm.updateSetpoint(armDriveSetpoint);
-                  swerve.resetDriveController(45.0);
-                  autoStage = 2;
-                }
-              }
-              break;
-
-          case 2:
-            swerve.driveTo(7.75, (swerve.isBlueAlliance() ? 0.73 : Drivetrain.fieldWidth - 0.73), 180.0);
-            if (swerve.atDriveGoal()) {
-              swerve.resetDriveController(45.0);
-              autoStage = 3;
-            }
-            break;
-
-          case 3:
-            swerve.driveTo(7.75, (swerve.isBlueAlliance() ? 7.0 : Drivetrain.fieldWidth - 7.0), (swerve.isBlueAlliance() ? 45.0 : -45.0)); 
-            if (swerve.atDriveGoal()) {
-              swerve.resetDriveController(180.0);
-              autoStage = -1;
-            }
-            break;
-
-          default:
-            swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0);
-            arm.updateSetpoint(armDriveSetpoint);
-            break;             
-        }
-        break;
-
-      default:
-        swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0);
-        arm.updateSetpoint(armDriveSetpoint);
-        break;
-    }
+    armPeriodicSection.end();
+    autoRoutine.periodic();
+    autonomousPeriodicSection.end();
   }
   
 
@@ -861,8 +245,14 @@ public class Robot extends TimedRobot {
   }
 
   public void teleopPeriodic() {
+    teleopPeriodicSection.begin();
+    odometrySection.begin();
     swerve.updateOdometry();
+    odometrySection.end();
+    visionSection.begin();
     swerve.addVisionEstimate(0.04, 0.04, 10); // Checks to see ifs there are reliable April Tags in sight of the Limelight and updates the robot position on the field.
+    visionSection.end();
+    updateAim();
     if (driver.getRawButtonPressed(4)) { // Y Button
       speedScaleFactor = 1.0;
     }
@@ -901,7 +291,7 @@ public class Robot extends TimedRobot {
     } else if (driver.getRawButton(5)) { // Left Bumper
       swerve.driveTo(1.8, (swerve.isBlueAlliance() ? 7.42 : Drivetrain.fieldWidth - 7.42), (swerve.isBlueAlliance() ? -90.0 : 90.0)); // Snap to amp.
     } else if (rightTriggerPressed) {
-      swerve.aimDrive(xVel, yVel, getAimHeading(), true);
+      swerve.aimDrive(xVel, yVel, getAimHeading(), getAimHeadingRate(), true);
     } else if (leftTriggerPressed) {
       swerve.aimDrive(xVel, yVel, swerve.isBlueAlliance() ? -90.0 : 90.0, true);
     } else {
@@ -919,7 +309,9 @@ public class Robot extends TimedRobot {
       swerve.pushCalibration(); // Updates the position of the robot on the field based on previous calculations.
     }
 
+    armPeriodicSection.begin();
     arm.periodic(); // Should be called in teleopPeriodic() and autoPeriodic(). Handles the internal logic of the arm.
+    armPeriodicSection.end();
     if (climber.getUserLockout()) { // Climber is not active.
       if (operator.getRawButtonPressed(1)) { // A Bytton
         currArmState = ArmState.DRIVE;
@@ -951,7 +343,7 @@ public class Robot extends TimedRobot {
           break;
 
         case SHOOT:
-          arm.updateSetpoint(getAimArmAngle());
+          aimThrower();
           thrower.setDisableFlywheel(false);
           lastIsAmpScoring = false;
           break;
@@ -982,7 +374,7 @@ public class Robot extends TimedRobot {
       }
     }
 
-    boolean hasNote = thrower.getSensor1() || thrower.getSensor2() || thrower.getSensor3(); // Rumble cue when the robot intakes a note.
+    boolean hasNote = thrower.hasNote(); // Rumble cue when the robot intakes a note.
     if ((hasNote && !hadNote) || (!hasNote && hadNote)) { // Note Pickup Rumble Cue
       rumbleTimer.restart();
       driver.setRumble(RumbleType.kBothRumble, 0.2);
@@ -994,7 +386,9 @@ public class Robot extends TimedRobot {
     }
     hadNote = hasNote;
 
+    throwerPeriodicSection.begin();
     thrower.periodic(); // Should be called in teleopPeriodic() and autoPeriodic(). Handles the internal logic of the thrower.
+    throwerPeriodicSection.end();
     if (climber.getUserLockout()) {
       if (operator.getRawButton(6)) { // Right Bumper
         if (currArmState == ArmState.SHOOT && arm.atSetpoint()) {
@@ -1010,7 +404,19 @@ public class Robot extends TimedRobot {
     if (operator.getRawButtonPressed(7) && arm.getEncoderLeft() < 10.0) { // Mode Button
       climber.disableUserLockout();
     }
-    climber.setManual(MathUtil.applyDeadband(-operator.getLeftY(), 0.1), MathUtil.applyDeadband(-operator.getRightY(), 0.1));
+    if (operator.getRawButton(5)) { // Left Bumper
+      climber.setSynchronized(MathUtil.applyDeadband(-operator.getLeftY(), 0.1), swerve.getGyroRoll()); // Both climbers follow the left stick, keeping the robot level.
+    } else {
+      climber.setManual(MathUtil.applyDeadband(-operator.getLeftY(), 0.1), MathUtil.applyDeadband(-operator.getRightY(), 0.1));
+    }
+    teleopPeriodicSection.end();
+  }
+
+  // Runs the physics models of the robot. Only called in simulation, after the other periodic functions.
+  public void simulationPeriodic() {
+    swerve.simulationPeriodic();
+    arm.simulationPeriodic();
+    thrower.simulationPeriodic();
   }
 
   public void disabledInit() {    
@@ -1018,18 +424,43 @@ public class Robot extends TimedRobot {
   }
 
   public void disabledPeriodic() {
+    disabledPeriodicSection.begin();
     swerve.addCalibrationEstimate(); // Collects additional data to calculate the position of the robot on the field based on visible April Tags.
+    disabledPeriodicSection.end();
+    prepareAuto();
+  }
+
+  // Prepares the selected auto routine for the current alliance if it is not already, so that autonomousInit() does not have to. Waits until the alliance is known.
+  private void prepareAuto() {
+    if (!isAutoAllianceKnown() || selectedRoutine.isPreparedFor(swerve.isRedAlliance())) {
+      return;
+    }
+    prepareAutoSection.begin();
+    selectedRoutine.prepare(swerve.isRedAlliance());
+    swerve.drive(0.0, 0.0, 0.0, true, 0.0, 0.0); // Leaves the drivetrain commanded to stop after the routine warmed up its controllers.
+    prepareAutoSection.end();
+  }
+
+  // Returns true once the driver station has reported the alliance. The auto routines are mirrored for the red alliance, so they cannot be prepared before then.
+  private boolean isAutoAllianceKnown() {
+    return DriverStation.getAlliance().isPresent();
   }
 
   // Sends information to the dashboard
   public void updateDash() {
-    SmartDashboard.putNumber("Auto Stage", autoStage);
-    SmartDashboard.putNumber("Speed Scale Factor", speedScaleFactor);
+    autoStageChannel.set(autoRoutine.getStepNumber());
+    autoStepChannel.set(autoRoutine.getStepName());
+    speedScaleFactorChannel.set(speedScaleFactor);
+    autoSelectedChannel.set(selectedRoutine.getName());
+    autoPreparedChannel.set(isAutoAllianceKnown() && selectedRoutine.isPreparedFor(swerve.isRedAlliance()));
+    armStateChannel.set(currArmState.name());
+    driveArrivalChannel.set(swerve.hasDriveGoal() ? swerve.getTimeToDriveGoal() : 0.0);
+    DeviceConfigurator.updateDashboard(); // Reports the result of configuring each motor, including any that were still configuring when robotInit() finished.
   }
 
   // Sets the LEDs based on whether a note is detected.
   public void controlLEDs() {
-    boolean hasNote = thrower.getSensor1() || thrower.getSensor2() || thrower.getSensor3();
+    boolean hasNote = thrower.hasNote();
     if (hasNote) {
       if (noteIterations % 4 == 0 && strobeIterations < 11) {
         lightsOn = !lightsOn;
@@ -1053,44 +484,54 @@ public class Robot extends TimedRobot {
     }
   }
 
-  // Calculates the angle the robot should be facing to make the shot in degrees.
-  public double getAimHeading() {
+  // Solves for the aim at the speaker from the robot's current position and velocity. Should be called once per period, after the robot's position has been updated.
+  public void updateAim() {
     double speakerY = swerve.isBlueAlliance() ? 5.548 : Drivetrain.fieldWidth - 5.548; // The y-coordinate of the center of the speaker slot in meters, adjusted for alliance.
-    if (swerve.getYPos() == speakerY) { // The robot is aligned with the speaker in the y-dimension. This prevents calls to atan() which would result in undefined returns.
-      return 180.0;
-    } else if (swerve.getYPos() < speakerY) {
-      return Math.atan(swerve.getXPos() / (speakerY - swerve.getYPos())) * 180.0 / Math.PI + 90.0; // The robot has a positive heading.
-    } else {
-      return Math.atan(swerve.getXPos() / (speakerY - swerve.getYPos())) * 180.0 / Math.PI - 90.0; // The robot has a negative heading.
-    }
+    aimSolver.solve(swerve.getXPos(), swerve.getYPos(), swerve.getMeasuredXVel(), swerve.getMeasuredYVel(), 0.0, speakerY); // The note leaves with the velocity the robot actually has, not the one it was commanded.
+    distToSpeakerChannel.set(aimSolver.getDistance());
+    virtualDistChannel.set(aimSolver.getVirtualDistance());
+    timeOfFlightChannel.set(aimSolver.getTimeOfFlight());
   }
 
-  // Calcualtes the arm angle that the robot should be at to make the shot. Uses a distance-angle calibration array and linear interpolation.
-  private double[] distCalArray = { 1.58, 2.25, 2.75 }; // Stores the distance between the center of the robot and the center of the speaker in meters. Should be sorted with smallest distances first.
-  private double[] armCalArray = { -4.00, 4.80, 13.50 }; // Stores the arm angle that corresponds with each distance value. This is the angle the arm should be at to make the shot in degrees.
-  public double getAimArmAngle() {
-    double speakerY = swerve.isBlueAlliance() ? 5.548 : Drivetrain.fieldWidth - 5.548; // The y-coordinate of the center of the speaker slot in meters, adjusted for alliance.
-    double distToSpeaker = Math.sqrt(Math.pow(speakerY - swerve.getYPos(), 2) + Math.pow(swerve.getXPos(), 2)); // The current distance to the speaker based on the robot's position on the field in meters.
-    SmartDashboard.putNumber("Distance to Speaker", distToSpeaker);
-    if (distToSpeaker >= distCalArray[distCalArray.length - 1]) { // If the distance to the speaker is larger than the largest calibration distance.
-      return armCalArray[armCalArray.length - 1]; // Return the arm angle that corresponds to the largest calibration distance in the array.
-    } else if (distToSpeaker <= distCalArray[0]) { // If the distance to the speaker is smaller than the smallest calibration distance.
-      return armCalArray[0]; // Return the arm angle that corresponds to the smallest calibration distance in the array.
-    } else { // The distance to the speaker is within the calibration distances tested.
-      int lowerIndex = -1; // The index that corresponds to the entry in the calibration array that is immediately smaller than the current robot distance to the speaker.
-      for (int i = 0; i < distCalArray.length - 1; i++) { // Iterate through the calibration array, except the last entry.
-        if (distCalArray[i + 1] > distToSpeaker && lowerIndex == -1) { // Find the first array element that is larger than the current distance to the speaker.
-          lowerIndex = i;
-        }
-      }
-      return armCalArray[lowerIndex] + ((armCalArray[lowerIndex + 1] - armCalArray[lowerIndex])
-        / (distCalArray[lowerIndex + 1] - distCalArray[lowerIndex])) * (distToSpeaker - distCalArray[lowerIndex]); // Linear interpolation
+  // Calculates the angle the robot should be facing to make the shot in degrees. Leads the speaker by the distance the note will drift while in flight.
+  public double getAimHeading() {
+    return aimSolver.getHeading();
+  }
+
+  // Returns how fast the aim heading is changing because the robot is moving, in degrees per second. Used as a feedforward for aimDrive().
+  public double getAimHeadingRate() {
+    return aimSolver.getHeadingRate();
+  }
+
+  // Returns how long the arm has been at its setpoint in seconds, or since restartArmTimer() was last called if that was more recent.
+  public double getArmSettledTime() {
+    return armTimer.get();
+  }
+
+  // Restarts the arm timer. Used by auto routines to wait for the arm to settle after a new setpoint.
+  public void restartArmTimer() {
+    armTimer.restart();
+  }
+
+  // Points the arm and sets the flywheel speeds for the shot found by updateAim(). While the drivetrain is taking the robot to a point where it will stop, the shot is aimed from
+  // that point instead. The arm and flywheels then head straight for their final setpoints and are ready by the time the robot arrives, rather than chasing the aim on the way.
+  // Should be called after the drive command for the period.
+  public void aimThrower() {
+    AimSolver solver = aimSolver;
+    if (swerve.hasDriveGoal()) {
+      double speakerY = swerve.isBlueAlliance() ? 5.548 : Drivetrain.fieldWidth - 5.548; // The y-coordinate of the center of the speaker slot in meters, adjusted for alliance.
+      arrivalAimSolver.solve(swerve.getDriveGoalX(), swerve.getDriveGoalY(), 0.0, 0.0, 0.0, speakerY); // The robot is stopped when it arrives.
+      solver = arrivalAimSolver;
     }
+    arm.updateSetpoint(solver.getArmAngle());
+    double vortex1Vel = Math.round(solver.getVortex1Vel()/flywheelVelResolution)*flywheelVelResolution; // Rounded so that small changes in position do not restart the spin up.
+    double vortex2Vel = Math.round(solver.getVortex2Vel()/flywheelVelResolution)*flywheelVelResolution;
+    thrower.setFlywheelVel(vortex1Vel, vortex2Vel);
   }
 
+  static final double maxShotDistance = 5.0; // The longest distance that the robot will make a shot from in meters.
   // Whether the robot is in range to make a shot reliably.
   public boolean aimShotAvailable() {
-    double maxShotDistance = 5.0; // The longest distance that the robot will make a shot from in meters.
     double speakerY = swerve.isBlueAlliance() ? 5.548 : Drivetrain.fieldWidth - 5.548; // The y-coordinate of the center of the speaker slot in meters, adjusted for alliance.
     double distToSpeaker = Math.sqrt(Math.pow(speakerY - swerve.getYPos(), 2) + Math.pow(swerve.getXPos(), 2)); // The current distance to the speaker based on the robot's position on the field in meters.
     return distToSpeaker < maxShotDistance;
@@ -0,0 +1,229 @@
+package frc.robot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// The arm angle and flywheel speeds that make a shot into the speaker, keyed on the distance to the speaker and the robot's velocity away from the speaker (radial velocity).
+// The calibration points are loaded once from a JSON file in the deploy directory, so they can be tuned without changing code. Points are grouped into rows that share a radial velocity.
+// When loaded, the points are interpolated onto a dense uniform grid. Each lookup then only finds its grid cell by division and blends the 4 corners, however many points there are.
+// Lookups outside the calibrated range use the nearest edge of the table.
+class ShotTable {
+  // The calibration used if the file cannot be loaded. Distances in meters, arm angles in degrees, flywheel velocities in RPM. All at a radial velocity of 0.
+  private static final double[] defaultDistances = {1.58, 2.25, 2.75};
+  private static final double[] defaultArmAngles = {-4.00, 4.80, 13.50};
+  private static final double defaultFlywheelVel = 4000.0;
+
+  private double minDistance; // The distance of the first grid column. Unit: meters
+  private double distanceStep; // The spacing between grid columns. Unit: meters
+  private int distanceCount; // The number of grid columns.
+  private double minRadialVel; // The radial velocity of the first grid row. Unit: meters per second
+  private double radialVelStep; // The spacing between grid rows. Unit: meters per second
+  private int radialVelCount; // The number of grid rows.
+  private double[] armAngleGrid; // The arm angle at each grid point, stored row by row. Unit: degrees
+  private double[] vortex1VelGrid; // The top flywheel velocity at each grid point, stored row by row. Unit: RPM
+  private double[] vortex2VelGrid; // The bottom flywheel velocity at each grid point, stored row by row. Unit: RPM
+  private final Telemetry.StringChannel statusChannel = Telemetry.addString("Shot Table", Telemetry.slowRate);
+
+  // Loads the table from the given file in the deploy directory. Falls back to the built in calibration if the file is missing or invalid.
+  public ShotTable(String fileName) {
+    File file = new File(Filesystem.getDeployDirectory(), fileName);
+    try {
+      load(new ObjectMapper().readTree(file));
+      statusChannel.set("Loaded " + fileName + ": " + distanceCount + " x " + radialVelCount + " grid");
+    } catch (IOException | RuntimeException e) {
+      DriverStation.reportWarning("Could not load the shot table from " + file + ". Using the default calibration. " + e.getMessage(), false);
+      loadDefault();
+      statusChannel.set("Default calibration: " + e.getMessage());
+    }
+  }
+
+  // Builds the table from calibration rows that have already been read, in the same format as the file. Throws if they are invalid. Used by the tests.
+  ShotTable(JsonNode root) {
+    load(root);
+    statusChannel.set("Loaded: " + distanceCount + " x " + radialVelCount + " grid");
+  }
+
+  // Returns the arm angle for a shot from the given distance and radial velocity. Units: meters, meters per second, and degrees
+  public double getArmAngle(double distance, double radialVel) {
+    return lookup(armAngleGrid, distance, radialVel);
+  }
+
+  // Returns the top flywheel velocity for a shot from the given distance and radial velocity. Units: meters, meters per second, and RPM
+  public double getVortex1Vel(double distance, double radialVel) {
+    return lookup(vortex1VelGrid, distance, radialVel);
+  }
+
+  // Returns the bottom flywheel velocity for a shot from the given distance and radial velocity. Units: meters, meters per second, and RPM
+  public double getVortex2Vel(double distance, double radialVel) {
+    return lookup(vortex2VelGrid, distance, radialVel);
+  }
+
+  // Returns the shortest distance in the table. Unit: meters
+  public double getMinDistance() {
+    return minDistance;
+  }
+
+  // Returns the longest distance in the table. Unit: meters
+  public double getMaxDistance() {
+    return minDistance + (distanceCount - 1)*distanceStep;
+  }
+
+  // Bilinear interpolation between the 4 grid points around the given distance and radial velocity.
+  private double lookup(double[] grid, double distance, double radialVel) {
+    double column = clamp((distance - minDistance)/distanceStep, distanceCount - 1);
+    double row = clamp((radialVel - minRadialVel)/radialVelStep, radialVelCount - 1);
+    int column0 = Math.min((int) column, Math.max(distanceCount - 2, 0));
+    int row0 = Math.min((int) row, Math.max(radialVelCount - 2, 0));
+    int column1 = Math.min(column0 + 1, distanceCount - 1);
+    int row1 = Math.min(row0 + 1, radialVelCount - 1);
+    double columnFraction = column - column0;
+    double rowFraction = row - row0;
+    double low = grid[row0*distanceCount + column0]*(1.0 - columnFraction) + grid[row0*distanceCount + column1]*columnFraction;
+    double high = grid[row1*distanceCount + column0]*(1.0 - columnFraction) + grid[row1*distanceCount + column1]*columnFraction;
+    return low*(1.0 - rowFraction) + high*rowFraction;
+  }
+
+  // Limits a grid coordinate to the grid.
+  private static double clamp(double coordinate, int maxCoordinate) {
+    return Math.max(0.0, Math.min(coordinate, maxCoordinate));
+  }
+
+  // Reads the calibration rows from the file and builds the grid.
+  private void load(JsonNode root) {
+    ArrayList<Row> rows = new ArrayList<>();
+    for (JsonNode rowNode : root.get("rows")) {
+      JsonNode pointNodes = rowNode.get("points");
+      Row row = new Row(rowNode.get("radialVel").asDouble(), pointNodes.size());
+      for (int pointIndex = 0; pointIndex < pointNodes.size(); pointIndex++) {
+        JsonNode pointNode = pointNodes.get(pointIndex);
+        row.distances[pointIndex] = pointNode.get("distance").asDouble();
+        row.armAngles[pointIndex] = pointNode.get("armAngle").asDouble();
+        row.vortex1Vels[pointIndex] = pointNode.get("vortex1Vel").asDouble();
+        row.vortex2Vels[pointIndex] = pointNode.get("vortex2Vel").asDouble();
+      }
+      rows.add(row);
+    }
+    build(rows, root.get("distanceStep").asDouble(), root.get("radialVelStep").asDouble());
+  }
+
+  // Builds the grid from the built in calibration.
+  private void loadDefault() {
+    Row row = new Row(0.0, defaultDistances.length);
+    for (int pointIndex = 0; pointIndex < defaultDistances.length; pointIndex++) {
+      row.distances[pointIndex] = defaultDistances[pointIndex];
+      row.armAngles[pointIndex] = defaultArmAngles[pointIndex];
+      row.vortex1Vels[pointIndex] = defaultFlywheelVel;
+      row.vortex2Vels[pointIndex] = defaultFlywheelVel;
+    }
+    ArrayList<Row> rows = new ArrayList<>();
+    rows.add(row);
+    build(rows, 0.05, 0.25);
+  }
+
+  // Interpolates the calibration rows onto the grid. Each grid point is interpolated along distance within each row, then between the rows along radial velocity.
+  private void build(ArrayList<Row> rows, double _distanceStep, double _radialVelStep) {
+    if (rows.isEmpty() || _distanceStep <= 0.0 || _radialVelStep <= 0.0) {
+      throw new IllegalArgumentException("The shot table needs at least one row and positive grid steps.");
+    }
+    rows.sort((a, b) -> Double.compare(a.radialVel, b.radialVel));
+    double maxDistance = Double.NEGATIVE_INFINITY;
+    minDistance = Double.POSITIVE_INFINITY;
+    for (Row row : rows) {
+      row.sort();
+      minDistance = Math.min(minDistance, row.distances[0]);
+      maxDistance = Math.max(maxDistance, row.distances[row.distances.length - 1]);
+    }
+    distanceStep = _distanceStep;
+    distanceCount = (int) Math.ceil((maxDistance - minDistance)/distanceStep) + 1;
+    minRadialVel = rows.get(0).radialVel;
+    radialVelStep = _radialVelStep;
+    radialVelCount = (int) Math.ceil((rows.get(rows.size() - 1).radialVel - minRadialVel)/radialVelStep) + 1;
+    armAngleGrid = new double[distanceCount*radialVelCount];
+    vortex1VelGrid = new double[distanceCount*radialVelCount];
+    vortex2VelGrid = new double[distanceCount*radialVelCount];
+
+    double[] rowRadialVels = new double[rows.size()];
+    double[] rowValues = new double[rows.size()];
+    for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+      rowRadialVels[rowIndex] = rows.get(rowIndex).radialVel;
+    }
+    for (int gridRow = 0; gridRow < radialVelCount; gridRow++) {
+      double radialVel = minRadialVel + gridRow*radialVelStep;
+      for (int gridColumn = 0; gridColumn < distanceCount; gridColumn++) {
+        double distance = minDistance + gridColumn*distanceStep;
+        int gridIndex = gridRow*distanceCount + gridColumn;
+        for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+          rowValues[rowIndex] = interpolate(rows.get(rowIndex).distances, rows.get(rowIndex).armAngles, distance);
+        }
+        armAngleGrid[gridIndex] = interpolate(rowRadialVels, rowValues, radialVel);
+        for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+          rowValues[rowIndex] = interpolate(rows.get(rowIndex).distances, rows.get(rowIndex).vortex1Vels, distance);
+        }
+        vortex1VelGrid[gridIndex] = interpolate(rowRadialVels, rowValues, radialVel);
+        for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+          rowValues[rowIndex] = interpolate(rows.get(rowIndex).distances, rows.get(rowIndex).vortex2Vels, distance);
+        }
+        vortex2VelGrid[gridIndex] = interpolate(rowRadialVels, rowValues, radialVel);
+      }
+    }
+  }
+
+  // Linear interpolation of ys at x. xs should be sorted with the smallest first. Uses the first or last value outside the range of xs.
+  private static double interpolate(double[] xs, double[] ys, double x) {
+    if (x <= xs[0]) {
+      return ys[0];
+    }
+    for (int index = 1; index < xs.length; index++) {
+      if (x <= xs[index]) {
+        return ys[index - 1] + (ys[index] - ys[index - 1])*(x - xs[index - 1])/(xs[index] - xs[index - 1]);
+      }
+    }
+    return ys[ys.length - 1];
+  }
+
+  // The calibration points that share a radial velocity.
+  private static class Row {
+    private final double radialVel;
+    private double[] distances;
+    private double[] armAngles;
+    private double[] vortex1Vels;
+    private double[] vortex2Vels;
+
+    private Row(double _radialVel, int pointCount) {
+      radialVel = _radialVel;
+      distances = new double[pointCount];
+      armAngles = new double[pointCount];
+      vortex1Vels = new double[pointCount];
+      vortex2Vels = new double[pointCount];
+    }
+
+    // Orders the points by distance, smallest first.
+    private void sort() {
+      Integer[] order = new Integer[distances.length];
+      for (int index = 0; index < order.length; index++) {
+        order[index] = index;
+      }
+      Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+      double[] sortedDistances = new double[order.length];
+      double[] sortedArmAngles = new double[order.length];
+      double[] sortedVortex1Vels = new double[order.length];
+      double[] sortedVortex2Vels = new double[order.length];
+      for (int index = 0; index < order.length; index++) {
+        sortedDistances[index] = distances[order[index]];
+        sortedArmAngles[index] = armAngles[order[index]];
+        sortedVortex1Vels[index] = vortex1Vels[order[index]];
+        sortedVortex2Vels[index] = vortex2Vels[order[index]];
+      }
+      distances = sortedDistances;
+      armAngles = sortedArmAngles;
+      vortex1Vels = sortedVortex1Vels;
+      vortex2Vels = sortedVortex2Vels;
+    }
+  }
+}
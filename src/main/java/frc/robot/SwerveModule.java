@@ -1,49 +1,54 @@
 package frc.robot;
 
-import com.ctre.phoenix6.StatusCode;
-import com.ctre.phoenix6.configs.TalonFXConfiguration;
-import com.ctre.phoenix6.configs.TalonFXConfigurator;
-import com.ctre.phoenix6.controls.MotionMagicDutyCycle;
-import com.ctre.phoenix6.controls.VelocityDutyCycle;
-import com.ctre.phoenix6.hardware.TalonFX;
-import com.ctre.phoenix6.signals.InvertedValue;
-import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
-import edu.wpi.first.wpilibj.AnalogEncoder;
 
 class SwerveModule {
   private static final double correctionFactor = 0.98; // Factor that corrects for real-world deviations from the odometry calculated position of the robot. These can be caused by things like tread wear. Set this value to 1, then make the robot follow a 1 meter path in auto. Set this value to the distance the robot actually traveled.
   private static final double wheelCirc = 4.0*0.0254*Math.PI; // Circumference of the wheel. Unit: meters
-  private static final double turnGearRatio = 150.0/7.0; // Turn motor rotor rotations per turn rotation of the swerve wheel.
-  private static final double driveGearRatio = 300.0/49.0; // Drive motor rotor rotations per drive rotation of the swerve wheel.
-  private final AnalogEncoder wheelEncoder; // The wheel encoder connected the the DIO port
+  static final double turnGearRatio = 150.0/7.0; // Turn motor rotor rotations per turn rotation of the swerve wheel.
+  static final double driveGearRatio = 300.0/49.0; // Drive motor rotor rotations per drive rotation of the swerve wheel.
+  private static final double turnFeedForward = 1.0/100.0; // The duty cycle needed to spin the turn motor rotor at 1 rotation per second. The Falcon 500 free speed is about 100 rotations per second.
+  private final SwerveModuleIO io; // The motors and encoder of the swerve module.
   private final double wheelEncoderZero; // The reading of the wheel encoder when the wheel is pointed forwards. 
-  private final TalonFX driveMotor; // The Falcon 500 motor that controls the driving of the swerve module.
-  private final TalonFX turnMotor; // The Falcon 500 motor that controls the turning of the swerve module.
-  private double turnMotorInitialPos = 0.0; // The turn motor position on start up in falcon rotations.
-  private double driveMotorInitialPos = 0.0; // The drive motor position on start up in falcon rotations.
-  private double wheelInitialPos = 0.0; // The wheel encoder position on start up in degrees.
+  private double turnMotorInitialPos = 0.0; // The turn motor position on start up, or after the turn motor last reset, in falcon rotations.
+  private double driveMotorInitialPos = 0.0; // The drive motor position that corresponds to a distance of 0, in falcon rotations. Re-based after the drive motor resets.
+  private double wheelInitialPos = 0.0; // The wheel encoder position on start up, or after the turn motor last reset, in degrees.
+  private double drivePos = 0.0; // The last distance returned by getDriveMotorPos(). Unit: meters
   private double angleSetpoint = 0.0; // The last calculated turn setpoint of the swerve wheel in degrees. Not bounded within 180/-180.
-  private boolean driveMotorFailure = false; // Whether the drive motor has failed to configure correctly.
-  private boolean turnMotorFailure = false; // Whether the turn motor has failed to configure correctly.
+  private double velSetpoint = 0.0; // The last calculated velocity setpoint of the swerve wheel in meters per second.
 
-  public SwerveModule(int turnID, int driveID, int encoderID, boolean invertDrive, double _wheelEncoderZero, String canbus) {
+  public SwerveModule(SwerveModuleIO _io, double _wheelEncoderZero) {
+    io = _io;
     wheelEncoderZero = _wheelEncoderZero;
-    wheelEncoder = new AnalogEncoder(encoderID);
-    driveMotor = new TalonFX(driveID, canbus);
-    turnMotor = new TalonFX(turnID, canbus);
-    driveMotorFailure = !configDriveMotor(driveMotor, invertDrive, 60.0, 3);
-    turnMotorFailure = !configTurnMotor(turnMotor, true, 60.0, 3);
-    turnMotorInitialPos = turnMotor.getRotorPosition().waitForUpdate(1.0).getValueAsDouble();
-    driveMotorInitialPos = driveMotor.getRotorPosition().waitForUpdate(1.0).getValueAsDouble();
+    turnMotorInitialPos = io.getTurnRotorPos();
+    driveMotorInitialPos = io.getDriveRotorPos();
     wheelInitialPos = getWheelEncoderAngle();
     angleSetpoint = getTurnMotorAngle();
   }
 
+  // Re-seeds the module after one of its motors resets, such as after a brownout. A reset motor counts its rotor position from 0 again, so the offsets taken on start up no longer apply.
+  // The turn offset is re-seeded from the wheel encoder, and the drive offset is re-based so that the distance continues from the last distance read. Should be called each period, after the inputs are read and before the module is used.
+  public void updateResets() {
+    if (io.getTurnMotorReset()) {
+      turnMotorInitialPos = io.getTurnRotorPos();
+      double wheelAngle = getWheelEncoderAngle();
+      wheelInitialPos = wheelAngle + Math.round((angleSetpoint - wheelAngle)/360.0)*360.0; // Keeps the angle within 180 degrees of the setpoint, so the wheel does not unwind a full rotation.
+    }
+    if (io.getDriveMotorReset()) {
+      driveMotorInitialPos = io.getDriveRotorPos() - drivePos*driveGearRatio/(wheelCirc*correctionFactor);
+    }
+  }
+
   // Sets the swerve module to the given state (velocity and angle).
   public void setSMS(SwerveModuleState desiredState) {
+    setSMS(desiredState, 0.0, 0.0);
+  }
+
+  // Sets the swerve module to the given state (velocity and angle). steerVel is the expected rate of change of the module angle in degrees per second, and is used as a feedforward for the turn motor.
+  // driveAcc is the expected acceleration of the wheel in meters per second^2, and is used as a feedforward for the drive motor.
+  public void setSMS(SwerveModuleState desiredState, double steerVel, double driveAcc) {
     double goalAngleFor = desiredState.angle.getDegrees();
     double goalAngleRev = goalAngleFor > 0.0 ? goalAngleFor - 180.0 : goalAngleFor + 180.0; // Instead of rotating to the input angle, the swerve module can rotate to a position 180 degrees off and reverse the input velocity to achieve the same result.
     double angleSetpointMod360 = angleSetpoint - Math.round(angleSetpoint/360.0)*360.0; // Transforms the angle setpoint to a value that is between -180 and 180 degrees. 
@@ -75,10 +80,17 @@ class SwerveModule {
       reverseVel = true;
     }
     double goalVel = reverseVel ? -desiredState.speedMetersPerSecond : desiredState.speedMetersPerSecond;
+    double goalAcc = reverseVel ? -driveAcc : driveAcc;
 
-    setAngle(outputAngle);
-    setVel(goalVel);
+    setAngle(outputAngle, steerVel);
+    setVel(goalVel, goalAcc);
     angleSetpoint = outputAngle;
+    velSetpoint = goalVel;
+  }
+
+  // Returns the last commanded velocity and angle of the module.
+  public SwerveModuleState getSetpointSMS() {
+    return new SwerveModuleState(velSetpoint, Rotation2d.fromDegrees(angleSetpoint));
   }
   
   // Returns the velocity and angle of the module.
@@ -93,22 +105,23 @@ class SwerveModule {
 
   // Returns the velocity of the wheel. Unit: meters per second
   public double getDriveMotorVel() {
-    return driveMotor.getVelocity().getValueAsDouble()*wheelCirc*correctionFactor/driveGearRatio;
+    return io.getDriveRotorVel()*wheelCirc*correctionFactor/driveGearRatio;
   }
 
   // Returns total distance the wheel has rotated. Unit: meters
   public double getDriveMotorPos() {
-    return (driveMotor.getRotorPosition().getValueAsDouble()-driveMotorInitialPos)*wheelCirc*correctionFactor/driveGearRatio;
+    drivePos = (io.getDriveRotorPos()-driveMotorInitialPos)*wheelCirc*correctionFactor/driveGearRatio;
+    return drivePos;
   }
   
   // Returns the angle of the wheel in degrees. 0 degrees corresponds to facing to the front (+x). 90 degrees in facing left (+y). Can return values outside of -180 to 180, corresponding to multiple rotations of the swerve wheel.
   public double getTurnMotorAngle() {
-    return (turnMotor.getRotorPosition().getValueAsDouble()-turnMotorInitialPos)*360.0/turnGearRatio+wheelInitialPos;
+    return (io.getTurnRotorPos()-turnMotorInitialPos)*360.0/turnGearRatio+wheelInitialPos;
   }
   
   // Returns the raw value of the wheel encoder. Range: -180 to 180 degrees. 0 degrees corresponds to facing to the front (+x). 90 degrees in facing left (+y).
   public double getWheelEncoderAngle() {
-    double wheelAngle = wheelEncoder.getAbsolutePosition()*360.0 - wheelEncoderZero;
+    double wheelAngle = io.getWheelEncoderPos()*360.0 - wheelEncoderZero;
     if (wheelAngle > 180.0) {
       wheelAngle = wheelAngle - 360.0;
     } else if (wheelAngle < -180.0) {
@@ -117,92 +130,24 @@ class SwerveModule {
     return wheelAngle;
   }
   
-  // Sets the velocity of the module. Units: meters per second
-  private void setVel(double vel) {
-    driveMotor.setControl(new VelocityDutyCycle(vel*driveGearRatio/(wheelCirc*correctionFactor)).withEnableFOC(true));
+  // Sets the velocity of the module. Units: meters per second for vel, meters per second^2 for acc.
+  private void setVel(double vel, double acc) {
+    io.setDriveVel(vel*driveGearRatio/(wheelCirc*correctionFactor), acc*driveGearRatio/(wheelCirc*correctionFactor));
   }
   
-  // Sets the angle of the module. Units: degrees Can accept values outside of -180 to 180, corresponding to multiple rotations of the swerve wheel.
-  private void setAngle(double angle) {
-    turnMotor.setControl(new MotionMagicDutyCycle(((angle-wheelInitialPos)*turnGearRatio)/360.0+turnMotorInitialPos).withEnableFOC(true));
+  // Sets the angle of the module. Units: degrees Can accept values outside of -180 to 180, corresponding to multiple rotations of the swerve wheel. steerVel is in degrees per second.
+  private void setAngle(double angle, double steerVel) {
+    double feedForward = steerVel*turnGearRatio/360.0*turnFeedForward; // Converts the wheel steering velocity to a turn motor duty cycle.
+    io.setTurnPos(((angle-wheelInitialPos)*turnGearRatio)/360.0+turnMotorInitialPos, feedForward);
   }
 
   // True if the drive motor failed to respond to configuration commands on startup or reboot. Is a likely indicator of motor or CAN failure.
   public boolean getDriveMotorFailure() {
-    return driveMotorFailure;
+    return io.getDriveMotorFailure();
   }
 
   // True if the turn motor failed to respond to configuration commands on startup or reboot. Is a likely indicator of motor or CAN failure.
   public boolean getTurnMotorFailure() {
-    return turnMotorFailure;
-  }
-
-  // Attempts to configure the drive motor. Sets inverts, neutral mode, PID constants, and defines the intiial positions. Returns true if the motor successfully configued.
-  private boolean configDriveMotor(TalonFX motor, boolean invert, double currentLimit, int maxMotorErrors) {
-    // Creates a configurator and config object to configure the motor.
-    TalonFXConfigurator motorConfigurator = motor.getConfigurator();
-    TalonFXConfiguration motorConfigs = new TalonFXConfiguration();
-
-    motorConfigs.MotorOutput.NeutralMode = NeutralModeValue.Brake;
-    motorConfigs.MotorOutput.Inverted = invert ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
-    
-    // Setting current limits
-    motorConfigs.CurrentLimits.SupplyCurrentLimitEnable = true;
-    motorConfigs.CurrentLimits.SupplyCurrentLimit = currentLimit;
-    motorConfigs.CurrentLimits.SupplyCurrentThreshold = currentLimit;
-    motorConfigs.CurrentLimits.SupplyTimeThreshold = 0.5;
-
-    // Setting PID parameters for velocity control
-    motorConfigs.Slot0.kP = 0.008;
-    motorConfigs.Slot0.kI = 0.06;
-    motorConfigs.Slot0.kD = 0.0002;
-    motorConfigs.Slot0.kV = 0.009;
-
-    // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
-    int motorErrors = 0;
-    boolean motorFailure = false;
-    while (motorConfigurator.apply(motorConfigs, 0.03) != StatusCode.OK) {
-      motorErrors++;
-      motorFailure = motorErrors > maxMotorErrors;
-      if (motorFailure) {
-        return false;
-      }
-    }
-    return true;
-  }
-
-  // Attempts to configure the turn motor. Sets inverts, neutral mode, PID constants, and defines the intiial positions. Returns true if the motor successfully configued.
-  private boolean configTurnMotor(TalonFX motor, boolean invert, double currentLimit, int maxMotorErrors) {
-    // Creates a configurator and config object to configure the motor.
-    TalonFXConfigurator motorConfigurator = motor.getConfigurator();
-    TalonFXConfiguration motorConfigs = new TalonFXConfiguration();
-
-    motorConfigs.MotorOutput.NeutralMode = NeutralModeValue.Brake;
-    motorConfigs.MotorOutput.Inverted = invert ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
-
-    // Setting current limits
-    motorConfigs.CurrentLimits.SupplyCurrentLimitEnable = true;
-    motorConfigs.CurrentLimits.SupplyCurrentLimit = currentLimit;
-    motorConfigs.CurrentLimits.SupplyCurrentThreshold = currentLimit;
-    motorConfigs.CurrentLimits.SupplyTimeThreshold = 0.5;
-
-    // Setting Motion Magic parameters
-    motorConfigs.Slot0.kP = 0.8;
-    motorConfigs.Slot0.kI = 2.0;
-    motorConfigs.Slot0.kD = 0.006;
-    motorConfigs.MotionMagic.MotionMagicAcceleration = 1000.0;
-    motorConfigs.MotionMagic.MotionMagicCruiseVelocity = 100.0;
-
-    // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
-    int motorErrors = 0;
-    boolean motorFailure = false;
-    while (motorConfigurator.apply(motorConfigs, 0.03) != StatusCode.OK) {
-      motorErrors++;
-      motorFailure = motorErrors > maxMotorErrors;
-      if (motorFailure) {
-        return false;
-      }
-    }
-    return true;
+    return io.getTurnMotorFailure();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package frc.robot;
+
+// The hardware used by a swerve module. Separates the swerve module logic from the devices so that recorded match data can be replayed through the same logic.
+// Positions are in motor rotor rotations and velocities are in rotor rotations per second.
+interface SwerveModuleIO {
+  // Reads every input of the module and records it. Should be called once at the start of each period. The getters return the values read by the last call,
+  // so everything that reads the module during a period sees the same values, and a replay sees the values the robot did.
+  void updateInputs();
+
+  // Returns the position of the drive motor rotor.
+  double getDriveRotorPos();
+
+  // Returns the velocity of the drive motor rotor.
+  double getDriveRotorVel();
+
+  // Returns the position of the turn motor rotor.
+  double getTurnRotorPos();
+
+  // Returns the raw reading of the absolute wheel encoder. Range: 0 to 1 rotations.
+  double getWheelEncoderPos();
+
+  // Commands the drive motor rotor to a velocity. rotorAcc is the expected acceleration in rotations per second^2, used as a feedforward.
+  void setDriveVel(double rotorVel, double rotorAcc);
+
+  // Commands the turn motor rotor to a position. feedForward is an additional duty cycle applied on top of the position controller.
+  void setTurnPos(double rotorPos, double feedForward);
+
+  // True if the drive motor failed to respond to configuration commands.
+  boolean getDriveMotorFailure();
+
+  // True if the turn motor failed to respond to configuration commands.
+  boolean getTurnMotorFailure();
+
+  // True for the period after the drive motor resets, such as after a brownout. A reset motor counts its rotor position from 0 again.
+  boolean getDriveMotorReset();
+
+  // True for the period after the turn motor resets, such as after a brownout. A reset motor counts its rotor position from 0 again.
+  boolean getTurnMotorReset();
+
+  // Advances the simulated module by one period. Only called in simulation.
+  default void simulationPeriodic() {}
+}
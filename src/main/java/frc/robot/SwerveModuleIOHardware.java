@@ -0,0 +1,239 @@
+package frc.robot;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.configs.TalonFXConfigurator;
+import com.ctre.phoenix6.controls.MotionMagicDutyCycle;
+import com.ctre.phoenix6.controls.VelocityDutyCycle;
+import com.ctre.phoenix6.hardware.TalonFX;
+import com.ctre.phoenix6.signals.InvertedValue;
+import com.ctre.phoenix6.signals.NeutralModeValue;
+import com.ctre.phoenix6.sim.ChassisReference;
+import com.ctre.phoenix6.sim.TalonFXSimState;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.AnalogEncoder;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.AnalogInputSim;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+
+// A swerve module made of two Falcon 500s and an analog absolute encoder. Every input is read from the hardware once per period and recorded so that it can be replayed later.
+class SwerveModuleIOHardware implements SwerveModuleIO {
+  private final AnalogEncoder wheelEncoder; // The wheel encoder connected the the analog port
+  private final TalonFX driveMotor; // The Falcon 500 motor that controls the driving of the swerve module.
+  private final TalonFX turnMotor; // The Falcon 500 motor that controls the turning of the swerve module.
+  private final StatusSignal<Double> driveRotorPos;
+  private final StatusSignal<Double> driveRotorVel;
+  private final StatusSignal<Double> turnRotorPos;
+  private final VelocityDutyCycle driveRequest = new VelocityDutyCycle(0.0).withEnableFOC(true);
+  private final MotionMagicDutyCycle turnRequest = new MotionMagicDutyCycle(0.0).withEnableFOC(true);
+  private final DeviceConfigurator.Device driveConfig; // Configures the drive motor in the background.
+  private final DeviceConfigurator.Device turnConfig; // Configures the turn motor in the background.
+
+  // Simulation models. Null unless the robot is simulated.
+  private AnalogInputSim wheelEncoderSim;
+  private DCMotorSim driveMotorSim; // The drive motor turning the wheel and pushing a quarter of the robot's mass.
+  private DCMotorSim turnMotorSim; // The turn motor steering the wheel.
+
+  // The inputs read by the last call to updateInputs().
+  private double driveRotorPosValue = 0.0;
+  private double driveRotorVelValue = 0.0;
+  private double turnRotorPosValue = 0.0;
+  private double wheelEncoderPosValue = 0.0;
+  private boolean driveMotorResetValue = false;
+  private boolean turnMotorResetValue = false;
+
+  // Records the inputs of the module.
+  private final Telemetry.DoubleChannel driveRotorPosInput;
+  private final Telemetry.DoubleChannel driveRotorVelInput;
+  private final Telemetry.DoubleChannel turnRotorPosInput;
+  private final Telemetry.DoubleChannel wheelEncoderPosInput;
+  private final Telemetry.BooleanChannel driveMotorResetInput;
+  private final Telemetry.BooleanChannel turnMotorResetInput;
+
+  public SwerveModuleIOHardware(String name, int turnID, int driveID, int encoderID, boolean invertDrive, String canbus) {
+    wheelEncoder = new AnalogEncoder(encoderID);
+    driveMotor = new TalonFX(driveID, canbus);
+    turnMotor = new TalonFX(turnID, canbus);
+    driveRotorPos = driveMotor.getRotorPosition();
+    driveRotorVel = driveMotor.getRotorVelocity();
+    turnRotorPos = turnMotor.getRotorPosition();
+    driveConfig = DeviceConfigurator.submit(name + " Drive Motor", () -> {
+      boolean configured = configDriveMotor(driveMotor, invertDrive, 60.0, 3);
+      driveRotorPos.waitForUpdate(1.0); // Makes sure the initial position of the motor is known before it is used.
+      return configured;
+    }, driveMotor::hasResetOccurred);
+    turnConfig = DeviceConfigurator.submit(name + " Turn Motor", () -> {
+      boolean configured = configTurnMotor(turnMotor, true, 60.0, 3);
+      turnRotorPos.waitForUpdate(1.0); // Makes sure the initial position of the motor is known before it is used.
+      return configured;
+    }, turnMotor::hasResetOccurred);
+    driveRotorPosInput = Telemetry.addDouble("Inputs/" + name + " Drive Rotor Position", Telemetry.logOnly);
+    driveRotorVelInput = Telemetry.addDouble("Inputs/" + name + " Drive Rotor Velocity", Telemetry.logOnly);
+    turnRotorPosInput = Telemetry.addDouble("Inputs/" + name + " Turn Rotor Position", Telemetry.logOnly);
+    wheelEncoderPosInput = Telemetry.addDouble("Inputs/" + name + " Wheel Encoder Position", Telemetry.logOnly);
+    driveMotorResetInput = Telemetry.addBoolean("Inputs/" + name + " Drive Motor Reset", Telemetry.logOnly);
+    turnMotorResetInput = Telemetry.addBoolean("Inputs/" + name + " Turn Motor Reset", Telemetry.logOnly);
+    if (RobotBase.isSimulation()) {
+      wheelEncoderSim = new AnalogInputSim(encoderID);
+      driveMotorSim = new DCMotorSim(DCMotor.getFalcon500Foc(1), SwerveModule.driveGearRatio, 0.035); // 55 kg/4 at the radius of a 4 inch wheel.
+      turnMotorSim = new DCMotorSim(DCMotor.getFalcon500Foc(1), SwerveModule.turnGearRatio, 0.004);
+      driveMotor.getSimState().Orientation = invertDrive ? ChassisReference.Clockwise_Positive : ChassisReference.CounterClockwise_Positive;
+      turnMotor.getSimState().Orientation = ChassisReference.Clockwise_Positive; // The turn motor is always inverted.
+    }
+  }
+
+  public void updateInputs() {
+    BaseStatusSignal.refreshAll(driveRotorPos, driveRotorVel, turnRotorPos);
+    driveRotorPosValue = driveRotorPos.getValueAsDouble();
+    driveRotorVelValue = driveRotorVel.getValueAsDouble();
+    turnRotorPosValue = turnRotorPos.getValueAsDouble();
+    wheelEncoderPosValue = wheelEncoder.getAbsolutePosition();
+    driveMotorResetValue = driveConfig.takeReset();
+    turnMotorResetValue = turnConfig.takeReset();
+    driveRotorPosInput.set(driveRotorPosValue);
+    driveRotorVelInput.set(driveRotorVelValue);
+    turnRotorPosInput.set(turnRotorPosValue);
+    wheelEncoderPosInput.set(wheelEncoderPosValue);
+    driveMotorResetInput.set(driveMotorResetValue);
+    turnMotorResetInput.set(turnMotorResetValue);
+  }
+
+  public double getDriveRotorPos() {
+    return driveRotorPosValue;
+  }
+
+  public double getDriveRotorVel() {
+    return driveRotorVelValue;
+  }
+
+  public double getTurnRotorPos() {
+    return turnRotorPosValue;
+  }
+
+  public double getWheelEncoderPos() {
+    return wheelEncoderPosValue;
+  }
+
+  public void setDriveVel(double rotorVel, double rotorAcc) {
+    driveMotor.setControl(driveRequest.withVelocity(rotorVel).withAcceleration(rotorAcc));
+  }
+
+  public void setTurnPos(double rotorPos, double feedForward) {
+    turnMotor.setControl(turnRequest.withPosition(rotorPos).withFeedForward(feedForward));
+  }
+
+  public boolean getDriveMotorFailure() {
+    return driveConfig.failed();
+  }
+
+  public boolean getTurnMotorFailure() {
+    return turnConfig.failed();
+  }
+
+  public boolean getDriveMotorReset() {
+    return driveMotorResetValue;
+  }
+
+  public boolean getTurnMotorReset() {
+    return turnMotorResetValue;
+  }
+
+  // Waits for both motors to finish configuring, so that their initial positions can be read. Returns true if both finished before the timeout. Unit: seconds
+  public boolean waitForConfig(double timeout) {
+    return DeviceConfigurator.waitFor(timeout, driveConfig, turnConfig);
+  }
+
+  // Applies the voltage the motor controllers are outputting to the motor models, then feeds the simulated positions and velocities back to the motor controllers and the wheel encoder.
+  public void simulationPeriodic() {
+    TalonFXSimState driveSimState = driveMotor.getSimState();
+    driveSimState.setSupplyVoltage(RobotController.getBatteryVoltage());
+    driveMotorSim.setInputVoltage(driveSimState.getMotorVoltage());
+    driveMotorSim.update(TimedRobot.kDefaultPeriod);
+    driveSimState.setRawRotorPosition(driveMotorSim.getAngularPositionRotations()*SwerveModule.driveGearRatio);
+    driveSimState.setRotorVelocity(driveMotorSim.getAngularVelocityRPM()/60.0*SwerveModule.driveGearRatio);
+
+    TalonFXSimState turnSimState = turnMotor.getSimState();
+    turnSimState.setSupplyVoltage(RobotController.getBatteryVoltage());
+    turnMotorSim.setInputVoltage(turnSimState.getMotorVoltage());
+    turnMotorSim.update(TimedRobot.kDefaultPeriod);
+    turnSimState.setRawRotorPosition(turnMotorSim.getAngularPositionRotations()*SwerveModule.turnGearRatio);
+    turnSimState.setRotorVelocity(turnMotorSim.getAngularVelocityRPM()/60.0*SwerveModule.turnGearRatio);
+
+    double wheelRotations = turnMotorSim.getAngularPositionRotations();
+    wheelEncoderSim.setVoltage((wheelRotations - Math.floor(wheelRotations))*RobotController.getVoltage5V()); // The analog encoder reports its position as a fraction of the 5V rail.
+  }
+
+  // Attempts to configure the drive motor. Sets inverts, neutral mode, PID constants, and defines the intiial positions. Returns true if the motor successfully configued.
+  private boolean configDriveMotor(TalonFX motor, boolean invert, double currentLimit, int maxMotorErrors) {
+    // Creates a configurator and config object to configure the motor.
+    TalonFXConfigurator motorConfigurator = motor.getConfigurator();
+    TalonFXConfiguration motorConfigs = new TalonFXConfiguration();
+
+    motorConfigs.MotorOutput.NeutralMode = NeutralModeValue.Brake;
+    motorConfigs.MotorOutput.Inverted = invert ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
+    
+    // Setting current limits
+    motorConfigs.CurrentLimits.SupplyCurrentLimitEnable = true;
+    motorConfigs.CurrentLimits.SupplyCurrentLimit = currentLimit;
+    motorConfigs.CurrentLimits.SupplyCurrentThreshold = currentLimit;
+    motorConfigs.CurrentLimits.SupplyTimeThreshold = 0.5;
+
+    // Setting PID parameters for velocity control
+    motorConfigs.Slot0.kP = 0.008;
+    motorConfigs.Slot0.kI = 0.06;
+    motorConfigs.Slot0.kD = 0.0002;
+    motorConfigs.Slot0.kV = 0.009;
+    motorConfigs.Slot0.kA = 0.0012; // Duty cycle per rotor rotation per second^2. Estimated from the Falcon 500 motor constants for a 55 kg robot. Should be refined with a characterization run.
+
+    // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
+    int motorErrors = 0;
+    boolean motorFailure = false;
+    while (DeviceConfigurator.apply(motorConfigurator, motorConfigs, 0.03) != StatusCode.OK) { // Skips the write if the motor already has these configs.
+      motorErrors++;
+      motorFailure = motorErrors > maxMotorErrors;
+      if (motorFailure) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Attempts to configure the turn motor. Sets inverts, neutral mode, PID constants, and defines the intiial positions. Returns true if the motor successfully configued.
+  private boolean configTurnMotor(TalonFX motor, boolean invert, double currentLimit, int maxMotorErrors) {
+    // Creates a configurator and config object to configure the motor.
+    TalonFXConfigurator motorConfigurator = motor.getConfigurator();
+    TalonFXConfiguration motorConfigs = new TalonFXConfiguration();
+
+    motorConfigs.MotorOutput.NeutralMode = NeutralModeValue.Brake;
+    motorConfigs.MotorOutput.Inverted = invert ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
+
+    // Setting current limits
+    motorConfigs.CurrentLimits.SupplyCurrentLimitEnable = true;
+    motorConfigs.CurrentLimits.SupplyCurrentLimit = currentLimit;
+    motorConfigs.CurrentLimits.SupplyCurrentThreshold = currentLimit;
+    motorConfigs.CurrentLimits.SupplyTimeThreshold = 0.5;
+
+    // Setting Motion Magic parameters
+    motorConfigs.Slot0.kP = 0.8;
+    motorConfigs.Slot0.kI = 2.0;
+    motorConfigs.Slot0.kD = 0.006;
+    motorConfigs.MotionMagic.MotionMagicAcceleration = 1000.0;
+    motorConfigs.MotionMagic.MotionMagicCruiseVelocity = 100.0;
+
+    // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
+    int motorErrors = 0;
+    boolean motorFailure = false;
+    while (DeviceConfigurator.apply(motorConfigurator, motorConfigs, 0.03) != StatusCode.OK) { // Skips the write if the motor already has these configs.
+      motorErrors++;
+      motorFailure = motorErrors > maxMotorErrors;
+      if (motorFailure) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
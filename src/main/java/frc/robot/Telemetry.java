@@ -0,0 +1,396 @@
+package frc.robot;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.ctre.phoenix6.SignalLogger;
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
+import edu.wpi.first.networktables.StructArrayPublisher;
+import edu.wpi.first.networktables.StructPublisher;
+import edu.wpi.first.util.datalog.BooleanLogEntry;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import edu.wpi.first.util.datalog.StructArrayLogEntry;
+import edu.wpi.first.util.datalog.StructLogEntry;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+
+// Publishes robot information to NetworkTables and records it to an on-robot log. Each value is registered once as a typed channel. The main loop only hands the latest value to the channel,
+// and a background thread publishes the values that changed at the rate chosen for each channel. Values are published to the SmartDashboard table so existing dashboard layouts keep working.
+// Every change is also written into a preallocated ring buffer along with the timestamp of the period it happened in. The background thread moves those samples into a WPILib DataLog,
+// which DataLogManager writes to a USB drive if one is plugged in, or to /home/lvuser/logs otherwise.
+class Telemetry {
+  public static final double fastRate = 50.0; // Publish rate for control-critical values. Unit: Hz
+  public static final double slowRate = 5.0; // Publish rate for diagnostic values. Unit: Hz
+  public static final double logOnly = 0.0; // Channels with this rate are recorded to the log, but are not published to NetworkTables.
+  private static final double publishPeriod = 0.02; // The period of the publishing thread. Channel rates are rounded to a whole number of publishing periods. Unit: seconds
+  private static final int bufferSize = 64; // The number of samples each channel can hold before the publishing thread records them. Must be a power of 2. 64 samples is over 1 second of data at 50 Hz.
+  private static final String logPrefix = "Telemetry/"; // Prepended to the name of each channel in the log.
+  private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+  private static final CopyOnWriteArrayList<Channel> channels = new CopyOnWriteArrayList<>(); // Every channel that has been created. Safe to iterate from the publishing thread while channels are being added.
+  private static Notifier publisher; // Runs publish() in the background.
+  private static DataLog log; // The on-robot log. Null until start() is called.
+  private static long publishCount = 0; // The number of times publish() has run. Used to divide the publish rate of slower channels.
+  private static volatile long cycleTimestamp = RobotController.getFPGATime(); // The FPGA time at the start of the current period in microseconds. Every sample recorded in a period shares this timestamp. Starts at the time the class is loaded, so that values recorded while the robot is being constructed come first in the log.
+
+  // Starts recording and publishing channels in the background. Should be called once during robotInit().
+  public static void start() {
+    if (publisher == null) {
+      DataLogManager.logNetworkTables(false); // Channels are recorded directly, so NetworkTables does not need to be recorded as well.
+      DataLogManager.start();
+      log = DataLogManager.getLog();
+      DriverStation.startDataLog(log); // Records joystick inputs and the robot mode.
+      SignalLogger.start(); // Records every Phoenix 6 status signal to a hoot file in the same directory.
+      beginCycle();
+      publisher = new Notifier(Telemetry::publish);
+      publisher.setName("Telemetry");
+      publisher.startPeriodic(publishPeriod);
+    }
+  }
+
+  // Marks the start of a new period. Should be called once at the start of each period, before any channels are set.
+  public static void beginCycle() {
+    cycleTimestamp = RobotController.getFPGATime();
+  }
+
+  // Creates a channel that publishes a number. rate is in Hz.
+  public static DoubleChannel addDouble(String name, double rate) {
+    DoubleChannel channel = new DoubleChannel(name, rate == logOnly ? null : table.getDoubleTopic(name).publish(), rate);
+    channels.add(channel);
+    return channel;
+  }
+
+  // Creates a channel that publishes a true/false value. rate is in Hz.
+  public static BooleanChannel addBoolean(String name, double rate) {
+    BooleanChannel channel = new BooleanChannel(name, rate == logOnly ? null : table.getBooleanTopic(name).publish(), rate);
+    channels.add(channel);
+    return channel;
+  }
+
+  // Creates a channel that publishes text, such as the name of a state. rate is in Hz.
+  public static StringChannel addString(String name, double rate) {
+    StringChannel channel = new StringChannel(name, rate == logOnly ? null : table.getStringTopic(name).publish(), rate);
+    channels.add(channel);
+    return channel;
+  }
+
+  // Creates a channel that records an array of up to maxLength numbers to the log. It is not published to NetworkTables. The samples are preallocated, so recording one does not allocate.
+  public static DoubleArrayChannel addDoubleArray(String name, int maxLength) {
+    DoubleArrayChannel channel = new DoubleArrayChannel(name, maxLength);
+    channels.add(channel);
+    return channel;
+  }
+
+  // Creates a channel that publishes a WPILib struct, such as a Pose2d. rate is in Hz.
+  public static <T> StructChannel<T> addStruct(String name, Struct<T> struct, double rate) {
+    StructChannel<T> channel = new StructChannel<>(name, struct, rate == logOnly ? null : table.getStructTopic(name, struct).publish(), rate);
+    channels.add(channel);
+    return channel;
+  }
+
+  // Creates a channel that publishes an array of WPILib structs, such as the states of the swerve modules. rate is in Hz.
+  public static <T> StructArrayChannel<T> addStructArray(String name, Struct<T> struct, double rate) {
+    StructArrayChannel<T> channel = new StructArrayChannel<>(name, struct, rate == logOnly ? null : table.getStructArrayTopic(name, struct).publish(), rate);
+    channels.add(channel);
+    return channel;
+  }
+
+  // Records the buffered samples of every channel, then publishes every channel that is due this period and has changed since it was last published. Runs on the publishing thread.
+  private static void publish() {
+    publishCount++;
+    for (Channel channel : channels) {
+      channel.record(log);
+      if (channel.divider > 0 && publishCount % channel.divider == 0) {
+        channel.publishIfChanged();
+      }
+    }
+  }
+
+  abstract static class Channel {
+    protected final String name;
+    private final long divider; // The number of publishing periods between publishes of this channel. 0 if the channel is not published.
+    protected final long[] sampleTimes = new long[bufferSize]; // The timestamps of the buffered samples in microseconds.
+    protected volatile long head = 0; // The total number of samples written by the main loop. Written only by the main loop.
+    protected long tail = 0; // The total number of samples recorded to the log. Used only by the publishing thread.
+    private long droppedSamples = 0; // The number of samples that were overwritten before they could be recorded.
+
+    private Channel(String _name, double rate) {
+      name = _name;
+      divider = rate == logOnly ? 0 : Math.max(1, Math.round(1.0/(rate*publishPeriod)));
+    }
+
+    // Moves every buffered sample into the log. Samples that were overwritten because the buffer filled up are skipped.
+    void record(DataLog log) {
+      long currentHead = head;
+      if (log == null || currentHead == tail) {
+        return;
+      }
+      if (currentHead - tail > bufferSize) {
+        droppedSamples += currentHead - tail - bufferSize;
+        tail = currentHead - bufferSize;
+      }
+      while (tail < currentHead) {
+        recordSample(log, (int) (tail & (bufferSize - 1)));
+        tail++;
+      }
+    }
+
+    // Returns the number of samples that were lost because the publishing thread fell behind.
+    public long getDroppedSamples() {
+      return droppedSamples;
+    }
+
+    abstract void recordSample(DataLog log, int index);
+
+    abstract void publishIfChanged();
+  }
+
+  static class DoubleChannel extends Channel {
+    private final DoublePublisher publisher;
+    private DoubleLogEntry logEntry; // Created by the publishing thread when the first sample is recorded.
+    private final double[] samples = new double[bufferSize];
+    private volatile double value = 0.0; // The latest value handed off by the main loop.
+    private double publishedValue = 0.0; // The last value sent to NetworkTables.
+    private boolean published = false; // Whether any value has been sent to NetworkTables yet.
+
+    private DoubleChannel(String _name, DoublePublisher _publisher, double rate) {
+      super(_name, rate);
+      publisher = _publisher;
+    }
+
+    // Hands off the latest value. Cheap enough to call every period. Should only be called from the main loop.
+    public void set(double _value) {
+      if (head == 0 || Double.compare(_value, value) != 0) { // Only changes are recorded.
+        int index = (int) (head & (bufferSize - 1));
+        samples[index] = _value;
+        sampleTimes[index] = cycleTimestamp;
+        head++;
+      }
+      value = _value;
+    }
+
+    void recordSample(DataLog log, int index) {
+      if (logEntry == null) {
+        logEntry = new DoubleLogEntry(log, logPrefix + name);
+      }
+      logEntry.append(samples[index], sampleTimes[index]);
+    }
+
+    void publishIfChanged() {
+      double currentValue = value;
+      if (!published || Double.compare(currentValue, publishedValue) != 0) {
+        publisher.set(currentValue);
+        publishedValue = currentValue;
+        published = true;
+      }
+    }
+  }
+
+  static class BooleanChannel extends Channel {
+    private final BooleanPublisher publisher;
+    private BooleanLogEntry logEntry; // Created by the publishing thread when the first sample is recorded.
+    private final boolean[] samples = new boolean[bufferSize];
+    private volatile boolean value = false; // The latest value handed off by the main loop.
+    private boolean publishedValue = false; // The last value sent to NetworkTables.
+    private boolean published = false; // Whether any value has been sent to NetworkTables yet.
+
+    private BooleanChannel(String _name, BooleanPublisher _publisher, double rate) {
+      super(_name, rate);
+      publisher = _publisher;
+    }
+
+    // Hands off the latest value. Cheap enough to call every period. Should only be called from the main loop.
+    public void set(boolean _value) {
+      if (head == 0 || _value != value) { // Only changes are recorded.
+        int index = (int) (head & (bufferSize - 1));
+        samples[index] = _value;
+        sampleTimes[index] = cycleTimestamp;
+        head++;
+      }
+      value = _value;
+    }
+
+    void recordSample(DataLog log, int index) {
+      if (logEntry == null) {
+        logEntry = new BooleanLogEntry(log, logPrefix + name);
+      }
+      logEntry.append(samples[index], sampleTimes[index]);
+    }
+
+    void publishIfChanged() {
+      boolean currentValue = value;
+      if (!published || currentValue != publishedValue) {
+        publisher.set(currentValue);
+        publishedValue = currentValue;
+        published = true;
+      }
+    }
+  }
+
+  static class StringChannel extends Channel {
+    private final StringPublisher publisher;
+    private StringLogEntry logEntry; // Created by the publishing thread when the first sample is recorded.
+    private final String[] samples = new String[bufferSize];
+    private volatile String value = ""; // The latest value handed off by the main loop.
+    private String publishedValue = null; // The last value sent to NetworkTables.
+
+    private StringChannel(String _name, StringPublisher _publisher, double rate) {
+      super(_name, rate);
+      publisher = _publisher;
+    }
+
+    // Hands off the latest value. Cheap enough to call every period. Should only be called from the main loop.
+    public void set(String _value) {
+      if (head == 0 || !_value.equals(value)) { // Only changes are recorded.
+        int index = (int) (head & (bufferSize - 1));
+        samples[index] = _value;
+        sampleTimes[index] = cycleTimestamp;
+        head++;
+      }
+      value = _value;
+    }
+
+    void recordSample(DataLog log, int index) {
+      if (logEntry == null) {
+        logEntry = new StringLogEntry(log, logPrefix + name);
+      }
+      logEntry.append(samples[index], sampleTimes[index]);
+    }
+
+    void publishIfChanged() {
+      String currentValue = value;
+      if (!currentValue.equals(publishedValue)) {
+        publisher.set(currentValue);
+        publishedValue = currentValue;
+      }
+    }
+  }
+
+  static class DoubleArrayChannel extends Channel {
+    private DoubleArrayLogEntry logEntry; // Created by the publishing thread when the first sample is recorded.
+    private final double[][] samples; // Each sample is copied into a preallocated row.
+    private final int[] sampleLengths = new int[bufferSize]; // The number of values in each sample.
+
+    private DoubleArrayChannel(String _name, int maxLength) {
+      super(_name, logOnly);
+      samples = new double[bufferSize][maxLength];
+    }
+
+    // Copies the first length values of the array into the buffer. Cheap enough to call every period. Should only be called from the main loop.
+    public void set(double[] values, int length) {
+      if (head == 0 || !matchesLastSample(values, length)) { // Only changes are recorded.
+        int index = (int) (head & (bufferSize - 1));
+        System.arraycopy(values, 0, samples[index], 0, length);
+        sampleLengths[index] = length;
+        sampleTimes[index] = cycleTimestamp;
+        head++;
+      }
+    }
+
+    private boolean matchesLastSample(double[] values, int length) {
+      int index = (int) ((head - 1) & (bufferSize - 1));
+      return length == sampleLengths[index] && Arrays.equals(values, 0, length, samples[index], 0, length);
+    }
+
+    void recordSample(DataLog log, int index) {
+      if (logEntry == null) {
+        logEntry = new DoubleArrayLogEntry(log, logPrefix + name);
+      }
+      logEntry.append(Arrays.copyOf(samples[index], sampleLengths[index]), sampleTimes[index]); // Runs on the publishing thread, so the copy does not allocate on the main loop.
+    }
+
+    void publishIfChanged() {}
+  }
+
+  static class StructChannel<T> extends Channel {
+    private final Struct<T> struct;
+    private final StructPublisher<T> publisher;
+    private StructLogEntry<T> logEntry; // Created by the publishing thread when the first sample is recorded.
+    private final Object[] samples = new Object[bufferSize];
+    private volatile T value = null; // The latest value handed off by the main loop. Should not be modified after it is handed off.
+    private T publishedValue = null; // The last value sent to NetworkTables.
+
+    private StructChannel(String _name, Struct<T> _struct, StructPublisher<T> _publisher, double rate) {
+      super(_name, rate);
+      struct = _struct;
+      publisher = _publisher;
+    }
+
+    // Hands off the latest value. Cheap enough to call every period. Should only be called from the main loop.
+    public void set(T _value) {
+      if (!_value.equals(value)) { // Only changes are recorded.
+        int index = (int) (head & (bufferSize - 1));
+        samples[index] = _value;
+        sampleTimes[index] = cycleTimestamp;
+        head++;
+      }
+      value = _value;
+    }
+
+    @SuppressWarnings("unchecked")
+    void recordSample(DataLog log, int index) {
+      if (logEntry == null) {
+        logEntry = StructLogEntry.create(log, logPrefix + name, struct);
+      }
+      logEntry.append((T) samples[index], sampleTimes[index]);
+    }
+
+    void publishIfChanged() {
+      T currentValue = value;
+      if (currentValue != null && !currentValue.equals(publishedValue)) {
+        publisher.set(currentValue);
+        publishedValue = currentValue;
+      }
+    }
+  }
+
+  static class StructArrayChannel<T> extends Channel {
+    private final Struct<T> struct;
+    private final StructArrayPublisher<T> publisher;
+    private StructArrayLogEntry<T> logEntry; // Created by the publishing thread when the first sample is recorded.
+    private final Object[] samples = new Object[bufferSize];
+    private volatile T[] value = null; // The latest value handed off by the main loop. Should not be modified after it is handed off.
+    private T[] publishedValue = null; // The last value sent to NetworkTables.
+
+    private StructArrayChannel(String _name, Struct<T> _struct, StructArrayPublisher<T> _publisher, double rate) {
+      super(_name, rate);
+      struct = _struct;
+      publisher = _publisher;
+    }
+
+    // Hands off the latest value. Cheap enough to call every period. Should only be called from the main loop.
+    public void set(T[] _value) {
+      if (!Arrays.equals(_value, value)) { // Only changes are recorded.
+        int index = (int) (head & (bufferSize - 1));
+        samples[index] = _value;
+        sampleTimes[index] = cycleTimestamp;
+        head++;
+      }
+      value = _value;
+    }
+
+    @SuppressWarnings("unchecked")
+    void recordSample(DataLog log, int index) {
+      if (logEntry == null) {
+        logEntry = StructArrayLogEntry.create(log, logPrefix + name, struct);
+      }
+      logEntry.append((T[]) samples[index], sampleTimes[index]);
+    }
+
+    void publishIfChanged() {
+      T[] currentValue = value;
+      if (currentValue != null && !Arrays.equals(currentValue, publishedValue)) {
+        publisher.set(currentValue);
+        publishedValue = currentValue;
+      }
+    }
+  }
+}
@@ -1,34 +1,13 @@
 package frc.robot;
 
-import com.ctre.phoenix6.StatusCode;
-import com.ctre.phoenix6.configs.TalonFXConfiguration;
-import com.ctre.phoenix6.configs.TalonFXConfigurator;
-import com.ctre.phoenix6.controls.MotionMagicDutyCycle;
-import com.ctre.phoenix6.controls.VelocityDutyCycle;
-import com.ctre.phoenix6.hardware.TalonFX;
-import com.ctre.phoenix6.signals.InvertedValue;
-import com.ctre.phoenix6.signals.NeutralModeValue;
-import com.revrobotics.CANSparkFlex;
-import com.revrobotics.REVLibError;
-import com.revrobotics.CANSparkBase.ControlType;
-import com.revrobotics.CANSparkBase.IdleMode;
-import com.revrobotics.CANSparkLowLevel.MotorType;
-import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.math.filter.Debouncer;
+import edu.wpi.first.math.filter.Debouncer.DebounceType;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class Thrower {
-  private final CANSparkFlex vortex1 = new CANSparkFlex(1, MotorType.kBrushless); // The top flywheel motor.
-  private final CANSparkFlex vortex2 = new CANSparkFlex(2, MotorType.kBrushless); // The bottom flywheel motor.
-  private final TalonFX indexMotor = new TalonFX(13, "rio"); // The motor running the intake rollers.
-  private boolean indexMotorFailure = false; // Indicates whether the motor failed to configure on startup.
-  private boolean vortex1Failure = false; // Indicates whether the motor failed to configure on startup.
-  private boolean vortex2Failure = false; // Indicates whether the motor failed to configure on startup.
-
-  // Initializes the proximity sensors. These return false if an object is detected and true if no object is detected.
-  private final DigitalInput sensor1 = new DigitalInput(3); // Sensor closest to the intake. Notes will trigger this sensor first when intaked normally.
-  private final DigitalInput sensor2 = new DigitalInput(4); // Sensor in the middle. Notes will trigger this sensor second when intaked normally.
-  private final DigitalInput sensor3 = new DigitalInput(5); // Sensor closest to the shooter. Notes will trigger this sensor third when intaked normally.
+  private final ThrowerIO io; // The flywheel motors, index motor, and proximity sensors.
+  private final NoteSensors sensors; // The proximity sensors, read once per period.
 
   // Keeps track of the different states of the thrower.
   private enum ThrowerState {
@@ -45,34 +24,88 @@ public class Thrower {
   private final double intakeVel = 50.0; // The number of rotations per second that the motors will spin in reverse when intaking a note.
   private final double ampVel = 75.0; // The number of rotations per second that the motors will spin forwards when scoing a note in the amp.
   private final double scoreVel = 120.0; // The number of rotations per second that the motors will spin forwards when loading a note into the flywheels
-  private final double backUpVel = 20.0; // The number of rotations per second that the motors will spin backwards when reversing a note in the BACK_UP state.
-  private final double allowableFlywheelVelError = 2.0; // The number of rotations per second of error in the flywheel velocity that is acceptable before a note begins to be launched.
-  private final double spinUpDelay = 1.2; // The amount of time in seconds that the thrower motor is allowed to stay at 100% power without attaining the commanded flywheel velocity before the note is thrown. This value should correspond to the amount of time the thrower motor takes to spin up to full speed.
-  private final double throwDelay = 0.25; // The amount of time the flywheel will keep spinning after the note is no longer detected. Ensures the note has exited the flywheel before spinning down.
-  private final double ampDelay = 1.5; // The amount of time the thrower will keep backfeeding after the note is no longer detected. Ensures the note has exited before spinning down.
-  private final double indexMotorOffset = 1.0; // How far the note should be backed off in the BACK_UP state in falcon rotations.
+  private final double backUpVel = 20.0; // The number of rotations per second that the motors will spin backwards once a note reaches sensor 3 while intaking, until the staging move in BACK_UP begins. Also used to back a note off sensor 3 when the staging move cannot be used.
+  static final double allowableFlywheelVelError = 2.0; // The number of rotations per second of error in the flywheel velocity that is acceptable before a note begins to be launched.
+  static final double spinUpDelay = 1.2; // The amount of time in seconds that the thrower motor is allowed to stay at 100% power without attaining the commanded flywheel velocity before the note is thrown. This value should correspond to the amount of time the thrower motor takes to spin up to full speed.
+  static final double noteTravelTime = 0.05; // The time it takes a staged note to reach the flywheels once the index motor starts feeding it. The note is released this long before the flywheels are predicted to be at speed.
+  static final double throwDelay = 0.25; // The longest the flywheel will keep spinning after the note is no longer detected, if the note is not seen leaving the flywheels sooner.
+  static final double ampDelay = 1.5; // The longest the thrower will keep backfeeding after the note is no longer detected, if the note is not seen leaving the rollers sooner.
+  private final double shotDipError = 150.0; // A flywheel this far below its setpoint in rotations per minute is being slowed by a note. Should be tuned from logged shots.
+  private final double shotCurrent = 40.0; // A flywheel motor drawing more than this many amps is pushing a note. Should be tuned from logged shots.
+  private final double ampFreeCurrent = 8.0; // The index motor draws less than this many amps once the note has left the rollers while amp scoring. Should be tuned from logged amp scores.
+  private final double indexSpinUpTime = 0.1; // How long the index motor draws its start up current once it reverses to amp score. Its current is not taken as a note loading it until then. Unit: seconds
+  private final double exitConfirmTime = 0.04; // How long the signature of a note leaving has to hold before the note counts as gone. Unit: seconds
+  private final double indexMotorOffset = 1.0; // How far behind sensor 3 the front of the note is staged in falcon rotations.
+  private final double stagedPosTol = 0.1; // The staging move has finished once the index motor is this close to its goal in falcon rotations.
+
+  private final Debouncer throwExitDebouncer = new Debouncer(exitConfirmTime, DebounceType.kRising); // Confirms that the flywheels have recovered after the note left.
+  private final Debouncer ampExitDebouncer = new Debouncer(exitConfirmTime, DebounceType.kRising); // Confirms that the index motor is running free after the note left.
+  private boolean shotArmed = false; // Whether the flywheels have been at speed during the current THROW. Until then, a flywheel below its setpoint is still spinning up, not slowed by the note.
+  private boolean shotLoadSeen = false; // Whether the flywheels were loaded by a note during the current THROW, after they were at speed.
+  private boolean ampLoadSeen = false; // Whether the index motor was loaded by a note during the current AMP_SCORE, after it finished spinning up.
+  private final FlywheelObserver vortex1Observer = new FlywheelObserver(); // Estimates the true speed of the top flywheel.
+  private final FlywheelObserver vortex2Observer = new FlywheelObserver(); // Estimates the true speed of the bottom flywheel.
 
   private final Timer throwTimer = new Timer(); // Keeps track of how long it has been since the note was last detected in the AMP_SCORE state.
   private final Timer ampTimer = new Timer(); // Keeps track of how long it has been since the note was last detected in the THROW state.
   private final Timer spinUpTimer = new Timer(); // Keeps track of how long the thrower has been in the SPIN_UP state.
+  private final Timer ampSpinUpTimer = new Timer(); // Keeps track of how long the thrower has been in the AMP_SCORE state.
 
   private double vortex1FlywheelVel = 4000.0; // The desired speed of the top flywheel in rotations per minute as a note is being thrown.
   private double vortex2FlywheelVel = 4000.0; // The desired speed of the bottom flywheel in rotations per minute as a note is being thrown.
   private boolean ampScoreCommanded = false; // Returns true if an amp score command was recieved, but not yet executed.
   private boolean throwCommanded = false; // Returns true if a throw command was recieved, but not yet executed. Reverts to false if a note is not detected.
   private boolean disableFlywheel = false; // The flywheel will not spin up if this is true. Used to conserve power.
-  private double indexMotorGoalPos = 0.0; // Stores the goal position of the index motor. Used in the BACK_UP state.
+  private double sensor3EdgePos = 0.0; // The position of the index motor when the front of the last note reached sensor 3 in falcon rotations. The note is staged relative to this position.
+  private boolean sensor3EdgeMeasured = false; // Whether sensor3EdgePos was measured by the sensor 3 interrupt. Without the interrupt it is polled, and can be up to a period of intaking past the edge.
+  private double indexMotorGoalPos = 0.0; // Stores the goal position of the index motor. Used in the BACK_UP and SPIN_UP states.
+
+  // Dashboard channels. Created once so that updateDashboard() only hands values off to the telemetry thread.
+  private final Telemetry.BooleanChannel isSpunUpChannel = Telemetry.addBoolean("Thrower isSpunUp", Telemetry.fastRate);
+  private final Telemetry.BooleanChannel throwCommandedChannel = Telemetry.addBoolean("Thrower throwCommanded", Telemetry.fastRate);
+  private final Telemetry.BooleanChannel ampScoreCommandedChannel = Telemetry.addBoolean("Thrower ampScoreCommanded", Telemetry.fastRate);
+  private final Telemetry.BooleanChannel sensor1Channel = Telemetry.addBoolean("Thrower Sensor 1", Telemetry.fastRate);
+  private final Telemetry.BooleanChannel sensor2Channel = Telemetry.addBoolean("Thrower Sensor 2", Telemetry.fastRate);
+  private final Telemetry.BooleanChannel sensor3Channel = Telemetry.addBoolean("Thrower Sensor 3", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel vortex1VelChannel = Telemetry.addDouble("Thrower Vortex 1 Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel vortex2VelChannel = Telemetry.addDouble("Thrower Vortex 2 Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel vortex1EstimatedVelChannel = Telemetry.addDouble("Thrower Vortex 1 Estimated Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel vortex2EstimatedVelChannel = Telemetry.addDouble("Thrower Vortex 2 Estimated Velocity", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel timeToReadyChannel = Telemetry.addDouble("Thrower Time To Ready", Telemetry.fastRate);
+  private final Telemetry.BooleanChannel indexMotorFailureChannel = Telemetry.addBoolean("Thrower Index Motor Failure", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel vortex1FailureChannel = Telemetry.addBoolean("Thrower Vortex 1 Motor Failure", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel vortex2FailureChannel = Telemetry.addBoolean("Thrower Vortex 2 Motor Failure", Telemetry.slowRate);
+  private final Telemetry.StringChannel stateChannel = Telemetry.addString("Thrower State", Telemetry.fastRate);
+  private final Telemetry.DoubleChannel vortex1SetpointChannel = Telemetry.addDouble("Thrower Vortex 1 Setpoint", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel vortex2SetpointChannel = Telemetry.addDouble("Thrower Vortex 2 Setpoint", Telemetry.slowRate);
+  private final Telemetry.BooleanChannel disableFlywheelChannel = Telemetry.addBoolean("Thrower Flywheel Disabled", Telemetry.slowRate);
+  private final Telemetry.DoubleChannel indexMotorPosChannel = Telemetry.addDouble("Thrower Index Motor Position", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel indexMotorVelChannel = Telemetry.addDouble("Thrower Index Motor Velocity", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel indexMotorGoalPosChannel = Telemetry.addDouble("Thrower Index Motor Goal Position", Telemetry.logOnly);
+  private final CallLog calls = new CallLog("Thrower Calls"); // Records the calls that drive the state machine, so that they can be replayed.
 
   public Thrower() {
-    indexMotorFailure = !configIndexMotor(indexMotor, true, 60.0, 3);
-    vortex1Failure = !configVortex(vortex1, true, 80, 3);
-    vortex2Failure = !configVortex(vortex2, false, 80, 3);
+    this(RobotBase.isSimulation() ? new ThrowerIOSim() : new ThrowerIOHardware());
+  }
+
+  // Creates a thrower from the given hardware. Used to replay recorded matches without the robot.
+  public Thrower(ThrowerIO _io) {
+    io = _io;
+    sensors = new NoteSensors(io);
+  }
+
+  // Reads the motors and proximity sensors. Should be called once at the start of every period, before anything else uses the thrower.
+  public void updateInputs() {
+    calls.add('U');
+    io.updateInputs();
+    sensors.update();
   }
 
   // Should be called once teleopInit() and autoInit() sections of the main robot code. Neccesary for the class to function.
   public void init() {
+    calls.add('I');
     lastState = ThrowerState.DISABLED;
-    if (getSensor1() || getSensor2() || getSensor3()) {
+    if (hasNote()) {
       nextState = ThrowerState.SPIN_UP;
     } else {
       nextState = ThrowerState.INTAKE;
@@ -82,27 +115,42 @@ public class Thrower {
     ampTimer.restart();
     throwCommanded = false;
     ampScoreCommanded = false;
+    vortex1Observer.reset(io.getVortex1Vel());
+    vortex2Observer.reset(io.getVortex2Vel());
   }
 
   // Should be called once teleopPeriodic() and autoPeriodic() sections of the main robot code. Neccesary for the class to function.
   public void periodic() {
+    calls.add('P');
+    vortex1Observer.update(io.getVortex1Vel(), io.getVortex1Voltage());
+    vortex2Observer.update(io.getVortex2Vel(), io.getVortex2Voltage());
     switch (nextState) {
       case THROW:
         if (lastState != ThrowerState.THROW) {
           throwTimer.restart();
+          shotArmed = false;
+          shotLoadSeen = false;
+          throwExitDebouncer.calculate(false);
         }
         lastState = ThrowerState.THROW;
 
-        vortex1.getPIDController().setReference(vortex1FlywheelVel, ControlType.kSmartVelocity, 0);
-        vortex2.getPIDController().setReference(vortex2FlywheelVel, ControlType.kSmartVelocity, 0);
-        indexMotor.setControl(new VelocityDutyCycle(scoreVel).withSlot(0).withEnableFOC(true));
+        io.setFlywheelVel(vortex1FlywheelVel, vortex2FlywheelVel);
+        io.setIndexVel(scoreVel);
 
-        if (getSensor1() || getSensor2() || getSensor3()) {
+        if (hasNote()) {
           throwTimer.restart();
         }
         ampScoreCommanded = false;
 
-        if (throwTimer.get() > throwDelay) {
+        // The note has left once the flywheels were at speed, were then slowed by it, and have since recovered, after the sensors stopped seeing it. A note released on the
+        // spinUpDelay timeout or by isReadyToRelease() reaches flywheels that are still short of their setpoint, so the dip is only looked for once they have been at speed.
+        // If the note passes before then, the timer ends the throw instead.
+        boolean flywheelsLoaded = isFlywheelLoaded(io.getVortex1Vel(), io.getVortex1Current(), vortex1FlywheelVel) || isFlywheelLoaded(io.getVortex2Vel(), io.getVortex2Current(), vortex2FlywheelVel);
+        shotLoadSeen = shotLoadSeen || (shotArmed && flywheelsLoaded);
+        shotArmed = shotArmed || !flywheelsLoaded;
+        boolean shotExited = throwExitDebouncer.calculate(shotLoadSeen && !flywheelsLoaded && !hasNote());
+
+        if (throwTimer.get() > throwDelay || shotExited) {
           nextState = ThrowerState.INTAKE;
         } else {
           nextState = ThrowerState.THROW;
@@ -112,19 +160,27 @@ public class Thrower {
       case AMP_SCORE:
         if (lastState != ThrowerState.AMP_SCORE) {
           ampTimer.restart();
+          ampSpinUpTimer.restart();
+          ampLoadSeen = false;
+          ampExitDebouncer.calculate(false);
         }
         lastState = ThrowerState.AMP_SCORE;
 
-        indexMotor.setControl(new VelocityDutyCycle(-ampVel).withSlot(0).withEnableFOC(true));
-        vortex1.set(0.0);
-        vortex2.set(0.0);
+        io.setIndexVel(-ampVel);
+        io.stopFlywheels();
 
-        if (getSensor1() || getSensor2() || getSensor3()) {
+        if (hasNote()) {
           ampTimer.restart();
         }
         throwCommanded = false;
 
-        if (ampTimer.get() > ampDelay) {
+        // The note has left once the index motor was loaded and is now running free, after the sensors stopped seeing the note. The timer is kept in case this is never seen.
+        // The current drawn while the motor reverses and spins up is not a note, so the load is only looked for once indexSpinUpTime has passed.
+        boolean indexLoaded = ampSpinUpTimer.get() > indexSpinUpTime && io.getIndexCurrent() > ampFreeCurrent;
+        ampLoadSeen = ampLoadSeen || indexLoaded;
+        boolean ampExited = ampExitDebouncer.calculate(ampLoadSeen && !indexLoaded && !hasNote());
+
+        if (ampTimer.get() > ampDelay || ampExited) {
           nextState = ThrowerState.INTAKE;
         } else {
           nextState = ThrowerState.AMP_SCORE;
@@ -134,22 +190,22 @@ public class Thrower {
       case SPIN_UP:
         if (lastState != ThrowerState.SPIN_UP) {
           spinUpTimer.restart();
-          indexMotorGoalPos = indexMotor.getRotorPosition().getValueAsDouble() - indexMotorOffset;
+          if (lastState != ThrowerState.BACK_UP) { // Coming from BACK_UP, the staging move is already under way and keeps its goal.
+            indexMotorGoalPos = io.getIndexRotorPos() - indexMotorOffset;
+          }
         }
         lastState = ThrowerState.SPIN_UP;
 
-        indexMotor.setControl(new MotionMagicDutyCycle(indexMotorGoalPos).withSlot(1).withEnableFOC(true));
+        io.setIndexPos(indexMotorGoalPos);
         if (disableFlywheel) {
-          vortex1.set(0.0);
-          vortex2.set(0.0);
+          io.stopFlywheels();
         } else {
-          vortex1.getPIDController().setReference(vortex1FlywheelVel, ControlType.kSmartVelocity, 0);
-          vortex2.getPIDController().setReference(vortex2FlywheelVel, ControlType.kSmartVelocity, 0);
+          io.setFlywheelVel(vortex1FlywheelVel, vortex2FlywheelVel);
         }
 
-        if (!getSensor1() && !getSensor2() && !getSensor3()) {
+        if (!hasNote()) {
           nextState = ThrowerState.INTAKE;
-        } else if (throwCommanded && (spinUpTimer.get() > spinUpDelay || isSpunUp())) {
+        } else if (throwCommanded && (spinUpTimer.get() > spinUpDelay || isSpunUp() || isReadyToRelease())) {
           nextState = ThrowerState.THROW;
         } else if (ampScoreCommanded) {
           nextState = ThrowerState.AMP_SCORE;
@@ -159,13 +215,27 @@ public class Thrower {
         break;
 
       case BACK_UP:
+        // Stages the note in a single Motion Magic move. The goal is measured from where the index motor was when the front of the note reached sensor 3,
+        // so the note does not need to be backed up until the sensor clears and then moved again.
+        if (lastState != ThrowerState.BACK_UP && sensor3EdgeMeasured) {
+          indexMotorGoalPos = sensor3EdgePos - indexMotorOffset;
+        }
         lastState = ThrowerState.BACK_UP;
 
-        indexMotor.setControl(new VelocityDutyCycle(-backUpVel).withSlot(0).withEnableFOC(true));
-        vortex1.set(0.0);
-        vortex2.set(0.0);
+        // A polled edge can be far enough past the sensor that the move would leave the note on it, as can a move that finishes with the note still on the sensor.
+        // In those cases the note is backed up until sensor 3 clears, and SPIN_UP stages it from there.
+        if (sensor3EdgeMeasured && getSensor3() && Math.abs(io.getIndexRotorPos() - indexMotorGoalPos) < stagedPosTol) {
+          sensor3EdgeMeasured = false;
+        }
+        if (sensor3EdgeMeasured) {
+          io.setIndexPos(indexMotorGoalPos);
+        } else {
+          io.setIndexVel(-backUpVel);
+          indexMotorGoalPos = io.getIndexRotorPos() - indexMotorOffset;
+        }
+        io.stopFlywheels();
 
-        if (!getSensor1() && !getSensor2() && !getSensor3()) {
+        if (!hasNote()) {
           nextState = ThrowerState.INTAKE;
         } else if (!getSensor3()) {
           nextState = ThrowerState.SPIN_UP;
@@ -177,19 +247,27 @@ public class Thrower {
       case INTAKE:
         lastState = ThrowerState.INTAKE;
 
-        indexMotor.setControl(new VelocityDutyCycle(intakeVel).withSlot(0).withEnableFOC(true));
-        vortex1.set(0.0);
-        vortex2.set(0.0);
+        // The sensor 3 interrupt reverses the index motor the moment the note arrives, rather than at the start of the next period.
+        boolean intakeStopped = io.getIntakeStopped();
+        boolean noteAtFlywheels = getSensor3() || intakeStopped;
+        if (noteAtFlywheels) {
+          sensor3EdgeMeasured = intakeStopped;
+          sensor3EdgePos = intakeStopped ? io.getSensor3DetectRotorPos() : io.getIndexRotorPos(); // Without the interrupt, the note is at the sensor now.
+          io.setIndexVel(-backUpVel);
+        } else {
+          io.runIntake(intakeVel, -backUpVel);
+        }
+        io.stopFlywheels();
         
-        // Prevents integer overflow issues.
-        if (indexMotor.getRotorPosition().getValueAsDouble() > 1000.0) {
-          indexMotor.setPosition(0.0);
+        // Prevents integer overflow issues. Not done once a note has arrived, since that would move the position the note is staged from.
+        if (!noteAtFlywheels && io.getIndexRotorPos() > 1000.0) {
+          io.resetIndexPos(0.0);
         }
 
         throwCommanded = false;
         ampScoreCommanded = false;
 
-        if (getSensor3()) {
+        if (noteAtFlywheels) {
           nextState = ThrowerState.BACK_UP;
         } else {
           nextState = ThrowerState.INTAKE;
@@ -207,6 +285,7 @@ public class Thrower {
 
   // Call when a note should be thrown. This will spin up the flywheel and release the note when the flywheel is at speed. flywheelVel is in falcon rotations per second.
   public void commandThrow() {
+    calls.add('T');
     setDisableFlywheel(false);
     if (!throwCommanded && (nextState == ThrowerState.BACK_UP || nextState == ThrowerState.SPIN_UP || nextState == ThrowerState.THROW)) {
       throwCommanded = true;
@@ -216,6 +295,7 @@ public class Thrower {
   
   // Call when the robot is ready to score a note into the amp. This will discharge the note backwards through the intake. 
   public void commandAmpScore() {
+    calls.add('A');
     setDisableFlywheel(true);
     if (!ampScoreCommanded && ((nextState == ThrowerState.BACK_UP || nextState == ThrowerState.SPIN_UP || nextState == ThrowerState.AMP_SCORE))) {
       ampScoreCommanded = true;
@@ -225,6 +305,7 @@ public class Thrower {
 
   // Disables the flywheel if true is passed in. Useful for amp scoring, where the flywheel is not neccessary.
   public void setDisableFlywheel(boolean _disableFlywheel) {
+    calls.add('D', _disableFlywheel ? 1.0 : 0.0);
     if (!_disableFlywheel && disableFlywheel) {
       spinUpTimer.restart();
     }
@@ -233,6 +314,7 @@ public class Thrower {
 
   // Call to set the flywheel velocity to a different value without throwing a note. flywheelVel is in rotations per minute.
   public void setFlywheelVel(double _vortex1Vel, double _vortex2Vel) {
+    calls.add('V', _vortex1Vel, _vortex2Vel);
     if (Math.abs(vortex1FlywheelVel - _vortex1Vel) > allowableFlywheelVelError || Math.abs(vortex2FlywheelVel - _vortex2Vel) > allowableFlywheelVelError) {
       spinUpTimer.restart();
     }
@@ -252,167 +334,98 @@ public class Thrower {
 
   // Returns true if both flywheel motors are at the desired velocity, within the specified tolerance.
   public boolean isSpunUp() {
-    return Math.abs(vortex1.getEncoder().getVelocity() - vortex1FlywheelVel) < allowableFlywheelVelError && Math.abs(vortex2.getEncoder().getVelocity() - vortex2FlywheelVel) < allowableFlywheelVelError;
+    return Math.abs(io.getVortex1Vel() - vortex1FlywheelVel) < allowableFlywheelVelError && Math.abs(io.getVortex2Vel() - vortex2FlywheelVel) < allowableFlywheelVelError;
   }
 
-  // Returns true if sensor 1 on the thrower is triggered.
+  // Returns true if a flywheel is slowed below its setpoint or drawing extra current, which happens while a note is passing through it. Units: RPM for vel and setpoint, amps for current
+  private boolean isFlywheelLoaded(double vel, double current, double setpoint) {
+    return vel < setpoint - shotDipError || current > shotCurrent;
+  }
+
+  // Returns true if both flywheels are predicted to reach the desired velocity by the time a note released now would reach them. Uses the estimated flywheel speeds,
+  // which do not lag behind the wheels the way the encoder velocities do.
+  public boolean isReadyToRelease() {
+    return getTimeToReady() <= noteTravelTime;
+  }
+
+  // Returns a prediction of how long it will take both flywheels to reach the desired velocity, within the specified tolerance. Unit: seconds
+  public double getTimeToReady() {
+    return Math.max(vortex1Observer.getTimeToReady(vortex1FlywheelVel, allowableFlywheelVelError), vortex2Observer.getTimeToReady(vortex2FlywheelVel, allowableFlywheelVelError));
+  }
+
+  // Returns true if sensor 3 on the thrower is triggered.
   public boolean getSensor3() {
-    return !sensor3.get();
+    return sensors.sensor3.get();
   }
 
   // Returns true if sensor 2 on the thrower is triggered.
   public boolean getSensor2() {
-    return !sensor2.get();
+    return sensors.sensor2.get();
   }
 
   // Returns true if sensor 1 on the thrower is triggered.
   public boolean getSensor1() {
-    return !sensor1.get();
+    return sensors.sensor1.get();
+  }
+
+  // Returns true if any of the sensors on the thrower is triggered.
+  public boolean hasNote() {
+    return sensors.hasNote();
+  }
+
+  // Returns the proximity sensors, including when each one last changed.
+  public NoteSensors getSensors() {
+    return sensors;
   }
 
   // Returns true if the index motor failed to configure on start up.
   public boolean getIndexMotorFailure() {
-    return indexMotorFailure;
+    return io.getIndexMotorFailure();
   }
 
   // Returns true if the flywheel vortex motor failed to configure on start up.
   public boolean getVortex1Failure() {
-    return vortex1Failure;
+    return io.getVortex1Failure();
   }
 
   // Returns true if the flywheel vortex motor failed to configure on start up.
   public boolean getVortex2Failure() {
-    return vortex2Failure;
+    return io.getVortex2Failure();
   }
 
-  // Sends information about the thrower to the dashboard each period. This is handled automatically by the thrower class.
-  public void updateDashboard() {
-    SmartDashboard.putBoolean("Thrower isSpunUp", isSpunUp());
-    SmartDashboard.putBoolean("Thrower throwCommanded", isThrowing());
-    SmartDashboard.putBoolean("Thrower ampScoreCommanded", isAmpScoring());
-    SmartDashboard.putBoolean("Thrower Sensor 1", getSensor1());
-    SmartDashboard.putBoolean("Thrower Sensor 2", getSensor2());
-    SmartDashboard.putBoolean("Thrower Sensor 3", getSensor3());
-    SmartDashboard.putNumber("Thrower Vortex 1 Velocity", vortex1.getEncoder().getVelocity());
-    SmartDashboard.putNumber("Thrower Vortex 2 Velocity", vortex2.getEncoder().getVelocity());
-    SmartDashboard.putBoolean("Thrower Index Motor Failure", getIndexMotorFailure());
-    SmartDashboard.putBoolean("Thrower Vortex 1 Motor Failure", getVortex1Failure());
-    SmartDashboard.putBoolean("Thrower Vortex 2 Motor Failure", getVortex2Failure());
+  // Returns the name of the state the thrower will be in next period. Returns an empty string before init() is called.
+  public String getStateName() {
+    return nextState == null ? "" : nextState.name();
   }
 
-  // Attempts to configure the flywheel motors. Sets inverts, neutral mode, PID constants, and current limit. Returns true if the motor successfully configued.
-  private boolean configVortex(CANSparkFlex motor, boolean invert, int currentLimit, int maxMotorErrors) {
-    int motorErrors = 0;
-    while (motor.restoreFactoryDefaults() != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.getPIDController().setP(0.00043, 0) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.getPIDController().setI(0.000004, 0) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.getPIDController().setD(0.0, 0) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.getPIDController().setFF(0.000163, 0) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.getPIDController().setSmartMotionMaxAccel(8000.0, 0) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.getPIDController().setSmartMotionMaxVelocity(6600.0, 0) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.getPIDController().setIMaxAccum(0.05, 0) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.setIdleMode(IdleMode.kBrake) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    while (motor.setSmartCurrentLimit(currentLimit) != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    motor.setInverted(invert);
-    while (motor.burnFlash() != REVLibError.kOk) {
-      motorErrors++;
-      if (motorErrors > maxMotorErrors) {
-        return false;
-      }
-    }
-    Timer.delay(0.8);
-    return true;
+  // Advances the simulated flywheels, index motor, and note by one period. Should be called in simulationPeriodic().
+  public void simulationPeriodic() {
+    io.simulationPeriodic();
   }
 
-  // Attempts to configure the index motor. Sets inverts, neutral mode, and PID constants. Returns true if the motor successfully configued.
-  private boolean configIndexMotor(TalonFX motor, boolean invert, double currentLimit, int maxMotorErrors) {
-    // Creates a configurator and config object to configure the motor.
-    TalonFXConfigurator motorConfigurator = motor.getConfigurator();
-    TalonFXConfiguration motorConfigs = new TalonFXConfiguration();
-
-    motorConfigs.MotorOutput.NeutralMode = NeutralModeValue.Brake;
-    motorConfigs.MotorOutput.Inverted = invert ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
-
-    // Setting current limits
-    motorConfigs.CurrentLimits.SupplyCurrentLimitEnable = true;
-    motorConfigs.CurrentLimits.SupplyCurrentLimit = currentLimit;
-    motorConfigs.CurrentLimits.SupplyCurrentThreshold = currentLimit;
-    motorConfigs.CurrentLimits.SupplyTimeThreshold = 0.5;
-  
-    // Setting Velocity PID parameters
-    motorConfigs.Slot0.kP = 0.008;
-    motorConfigs.Slot0.kI = 0.06;
-    motorConfigs.Slot0.kD = 0.0002;
-    motorConfigs.Slot0.kV = 0.009;
-
-    // Setting Motion Magic parameters
-    motorConfigs.Slot1.kP = 0.8;
-    motorConfigs.Slot1.kI = 2.0;
-    motorConfigs.Slot1.kD = 0.006;
-    motorConfigs.MotionMagic.MotionMagicAcceleration = 75.0;
-    motorConfigs.MotionMagic.MotionMagicCruiseVelocity = 50.0;
-    motorConfigs.MotionMagic.MotionMagicJerk = 400.0;
-
-    // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
-    int motorErrors = 0;
-    boolean motorFailure = false;
-    while (motorConfigurator.apply(motorConfigs, 0.03) != StatusCode.OK) {
-      motorErrors++;
-      motorFailure = motorErrors > maxMotorErrors;
-      if (motorFailure) {
-        return false;
-      }
-    }  
-    return true;
-  } 
-}
\ No newline at end of file
+  // Sends information about the thrower to the dashboard each period. This is handled automatically by the thrower class.
+  public void updateDashboard() {
+    isSpunUpChannel.set(isSpunUp());
+    throwCommandedChannel.set(isThrowing());
+    ampScoreCommandedChannel.set(isAmpScoring());
+    sensor1Channel.set(getSensor1());
+    sensor2Channel.set(getSensor2());
+    sensor3Channel.set(getSensor3());
+    vortex1VelChannel.set(io.getVortex1Vel());
+    vortex2VelChannel.set(io.getVortex2Vel());
+    vortex1EstimatedVelChannel.set(vortex1Observer.getVel());
+    vortex2EstimatedVelChannel.set(vortex2Observer.getVel());
+    timeToReadyChannel.set(Math.min(getTimeToReady(), 10.0)); // Keeps an unreachable setpoint from publishing infinity.
+    indexMotorFailureChannel.set(getIndexMotorFailure());
+    vortex1FailureChannel.set(getVortex1Failure());
+    vortex2FailureChannel.set(getVortex2Failure());
+    stateChannel.set(getStateName());
+    vortex1SetpointChannel.set(vortex1FlywheelVel);
+    vortex2SetpointChannel.set(vortex2FlywheelVel);
+    disableFlywheelChannel.set(disableFlywheel);
+    indexMotorPosChannel.set(io.getIndexRotorPos());
+    indexMotorVelChannel.set(io.getIndexRotorVel());
+    indexMotorGoalPosChannel.set(indexMotorGoalPos);
+    calls.flush();
+  }
+}
@@ -0,0 +1,99 @@
+package frc.robot;
+
+// The hardware used by the thrower. Separates the thrower state machine from the devices so that recorded match data can be replayed through the same logic.
+interface ThrowerIO {
+  // Reads every input of the thrower and records it. Should be called once at the start of each period. The getters return the values read by the last call,
+  // so everything that reads the thrower during a period sees the same values, including the ones set by the sensor interrupts, and a replay sees the values the robot did.
+  void updateInputs();
+
+  // Returns true if sensor 1 (closest to the intake) detects a note.
+  boolean getSensor1();
+
+  // Returns true if sensor 2 (in the middle) detects a note.
+  boolean getSensor2();
+
+  // Returns true if sensor 3 (closest to the flywheels) detects a note.
+  boolean getSensor3();
+
+  // Returns the FPGA time when sensor 1 last started detecting a note, measured by an interrupt rather than by polling. -1 if it never has. Unit: seconds
+  double getSensor1DetectTime();
+
+  // Returns the FPGA time when sensor 2 last started detecting a note, measured by an interrupt rather than by polling. -1 if it never has. Unit: seconds
+  double getSensor2DetectTime();
+
+  // Returns the FPGA time when sensor 3 last started detecting a note, measured by an interrupt rather than by polling. -1 if it never has. Unit: seconds
+  double getSensor3DetectTime();
+
+  // Returns the FPGA time when sensor 1 last stopped detecting a note, measured by an interrupt rather than by polling. -1 if it never has. Unit: seconds
+  double getSensor1ClearTime();
+
+  // Returns the FPGA time when sensor 2 last stopped detecting a note, measured by an interrupt rather than by polling. -1 if it never has. Unit: seconds
+  double getSensor2ClearTime();
+
+  // Returns the FPGA time when sensor 3 last stopped detecting a note, measured by an interrupt rather than by polling. -1 if it never has. Unit: seconds
+  double getSensor3ClearTime();
+
+  // Returns the position of the index motor rotor when sensor 3 last detected a note, measured by the interrupt. Unit: rotations
+  double getSensor3DetectRotorPos();
+
+  // Returns the velocity of the top flywheel motor in rotations per minute.
+  double getVortex1Vel();
+
+  // Returns the velocity of the bottom flywheel motor in rotations per minute.
+  double getVortex2Vel();
+
+  // Returns the voltage the top flywheel motor is applying.
+  double getVortex1Voltage();
+
+  // Returns the voltage the bottom flywheel motor is applying.
+  double getVortex2Voltage();
+
+  // Returns the current drawn by the top flywheel motor in amps.
+  double getVortex1Current();
+
+  // Returns the current drawn by the bottom flywheel motor in amps.
+  double getVortex2Current();
+
+  // Returns the stator current of the index motor in amps.
+  double getIndexCurrent();
+
+  // Returns the position of the index motor rotor in rotations.
+  double getIndexRotorPos();
+
+  // Returns the velocity of the index motor rotor in rotations per second.
+  double getIndexRotorVel();
+
+  // Spins the index motor at the given velocity in rotations per second. Positive values intake a note.
+  void setIndexVel(double rotorVel);
+
+  // Spins the index motor at intakeVel until sensor 3 detects a note, then immediately spins it at reverseVel instead, without waiting for the next period.
+  // Keeps reversing on later calls until a different index motor command is given. Units: rotations per second
+  void runIntake(double intakeVel, double reverseVel);
+
+  // Returns true if, when the inputs were last read, sensor 3 had detected a note while runIntake() was running, and the index motor was reversed. Cleared by any other index motor command.
+  boolean getIntakeStopped();
+
+  // Moves the index motor to the given rotor position using Motion Magic.
+  void setIndexPos(double rotorPos);
+
+  // Redefines the current position of the index motor rotor.
+  void resetIndexPos(double rotorPos);
+
+  // Spins the flywheels at the given velocities in rotations per minute.
+  void setFlywheelVel(double vortex1Vel, double vortex2Vel);
+
+  // Stops powering the flywheels.
+  void stopFlywheels();
+
+  // True if the index motor failed to respond to configuration commands.
+  boolean getIndexMotorFailure();
+
+  // True if the top flywheel motor failed to respond to configuration commands.
+  boolean getVortex1Failure();
+
+  // True if the bottom flywheel motor failed to respond to configuration commands.
+  boolean getVortex2Failure();
+
+  // Advances the simulated thrower by one period. Only called in simulation.
+  default void simulationPeriodic() {}
+}
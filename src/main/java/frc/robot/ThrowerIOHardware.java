@@ -0,0 +1,512 @@
+package frc.robot;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.configs.TalonFXConfigurator;
+import com.ctre.phoenix6.controls.MotionMagicDutyCycle;
+import com.ctre.phoenix6.controls.VelocityDutyCycle;
+import com.ctre.phoenix6.hardware.TalonFX;
+import com.ctre.phoenix6.signals.InvertedValue;
+import com.ctre.phoenix6.signals.NeutralModeValue;
+import com.revrobotics.CANSparkFlex;
+import com.revrobotics.REVLibError;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.CANSparkBase.ControlType;
+import com.revrobotics.CANSparkBase.FaultID;
+import com.revrobotics.CANSparkBase.IdleMode;
+import com.revrobotics.CANSparkLowLevel.MotorType;
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Timer;
+
+// The thrower hardware: two Vortex flywheel motors, a Falcon 500 index motor, and three proximity sensors. Every input is read from the hardware once per period and recorded so that it can be replayed later.
+// The motors are configured in the background, and nothing is read from them during construction, so the constructor does not wait for them.
+class ThrowerIOHardware implements ThrowerIO {
+  // The Smart Velocity parameters of the flywheel motors.
+  private static final double vortexP = 0.00043;
+  private static final double vortexI = 0.000004;
+  private static final double vortexD = 0.0;
+  private static final double vortexFF = 0.000163;
+  private static final double vortexMaxAcc = 8000.0; // Unit: RPM per second
+  private static final double vortexMaxVel = 6600.0; // Unit: RPM
+  private static final double vortexIMaxAccum = 0.05;
+  private final CANSparkFlex vortex1 = new CANSparkFlex(1, MotorType.kBrushless); // The top flywheel motor.
+  private final CANSparkFlex vortex2 = new CANSparkFlex(2, MotorType.kBrushless); // The bottom flywheel motor.
+  protected final TalonFX indexMotor = new TalonFX(13, "rio"); // The motor running the intake rollers.
+  private final StatusSignal<Double> indexRotorPos = indexMotor.getRotorPosition();
+  private final StatusSignal<Double> indexRotorVel = indexMotor.getRotorVelocity();
+  private final StatusSignal<Double> indexCurrent = indexMotor.getStatorCurrent();
+  private final StatusSignal<Double> interruptRotorPos = indexRotorPos.clone(); // Copies of the signals for the interrupt thread. Status signals are not thread safe.
+  private final StatusSignal<Double> interruptRotorVel = indexRotorVel.clone();
+  private final VelocityDutyCycle indexVelRequest = new VelocityDutyCycle(0.0).withSlot(0).withEnableFOC(true);
+  private final MotionMagicDutyCycle indexPosRequest = new MotionMagicDutyCycle(0.0).withSlot(1).withEnableFOC(true);
+  private final DeviceConfigurator.Device indexMotorConfig = DeviceConfigurator.submit("Thrower Index Motor", () -> configIndexMotor(indexMotor, true, 60.0, 3), indexMotor::hasResetOccurred);
+  private final DeviceConfigurator.Device vortex1Config = DeviceConfigurator.submit("Thrower Vortex 1", () -> configVortex(vortex1, true, 80, 3), () -> hasReset(vortex1));
+  private final DeviceConfigurator.Device vortex2Config = DeviceConfigurator.submit("Thrower Vortex 2", () -> configVortex(vortex2, false, 80, 3), () -> hasReset(vortex2));
+
+  // Interrupts on the proximity sensors. They run on their own thread as soon as a sensor changes, instead of waiting for the main loop to poll the sensor.
+  private final AsynchronousInterrupt sensor1Interrupt;
+  private final AsynchronousInterrupt sensor2Interrupt;
+  private final AsynchronousInterrupt sensor3Interrupt;
+  private volatile double sensor1DetectTime = -1.0; // The FPGA time when sensor 1 last detected a note. Unit: seconds
+  private volatile double sensor2DetectTime = -1.0; // The FPGA time when sensor 2 last detected a note. Unit: seconds
+  private volatile double sensor3DetectTime = -1.0; // The FPGA time when sensor 3 last detected a note. Unit: seconds
+  private volatile double sensor1ClearTime = -1.0; // The FPGA time when sensor 1 last stopped detecting a note. Unit: seconds
+  private volatile double sensor2ClearTime = -1.0; // The FPGA time when sensor 2 last stopped detecting a note. Unit: seconds
+  private volatile double sensor3ClearTime = -1.0; // The FPGA time when sensor 3 last stopped detecting a note. Unit: seconds
+  private volatile double sensor3DetectRotorPos = 0.0; // The position of the index motor rotor when sensor 3 last detected a note. Unit: rotations
+
+  // The index motor can be commanded by both the main loop and the sensor 3 interrupt while intaking. Every index motor command holds this lock, which also guards indexVelRequest and indexPosRequest.
+  private final Object indexLock = new Object();
+  private boolean intakeRunning = false; // Whether runIntake() was the last index motor command.
+  private double intakeReverseVel = 0.0; // The velocity the interrupt reverses the index motor at. Unit: rotations per second
+  private volatile boolean intakeStopped = false; // Whether the interrupt has reversed the index motor since runIntake() started. Cleared by any other index motor command.
+
+  // Initializes the proximity sensors. These return false if an object is detected and true if no object is detected.
+  protected final DigitalInput sensor1 = new DigitalInput(3); // Sensor closest to the intake. Notes will trigger this sensor first when intaked normally.
+  protected final DigitalInput sensor2 = new DigitalInput(4); // Sensor in the middle. Notes will trigger this sensor second when intaked normally.
+  protected final DigitalInput sensor3 = new DigitalInput(5); // Sensor closest to the shooter. Notes will trigger this sensor third when intaked normally.
+
+  // The inputs read by the last call to updateInputs().
+  private boolean sensor1Value = false;
+  private boolean sensor2Value = false;
+  private boolean sensor3Value = false;
+  private double sensor1DetectTimeValue = -1.0;
+  private double sensor2DetectTimeValue = -1.0;
+  private double sensor3DetectTimeValue = -1.0;
+  private double sensor1ClearTimeValue = -1.0;
+  private double sensor2ClearTimeValue = -1.0;
+  private double sensor3ClearTimeValue = -1.0;
+  private double sensor3DetectRotorPosValue = 0.0;
+  private boolean intakeStoppedValue = false;
+  private double vortex1VelValue = 0.0;
+  private double vortex2VelValue = 0.0;
+  private double vortex1VoltageValue = 0.0;
+  private double vortex2VoltageValue = 0.0;
+  private double vortex1CurrentValue = 0.0;
+  private double vortex2CurrentValue = 0.0;
+  private double indexCurrentValue = 0.0;
+  private double indexRotorPosValue = 0.0;
+  private double indexRotorVelValue = 0.0;
+
+  // Records the inputs of the thrower.
+  private final Telemetry.BooleanChannel sensor1Input = Telemetry.addBoolean("Inputs/Thrower Sensor 1", Telemetry.logOnly);
+  private final Telemetry.BooleanChannel sensor2Input = Telemetry.addBoolean("Inputs/Thrower Sensor 2", Telemetry.logOnly);
+  private final Telemetry.BooleanChannel sensor3Input = Telemetry.addBoolean("Inputs/Thrower Sensor 3", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel sensor1DetectTimeInput = Telemetry.addDouble("Inputs/Thrower Sensor 1 Detect Time", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel sensor2DetectTimeInput = Telemetry.addDouble("Inputs/Thrower Sensor 2 Detect Time", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel sensor3DetectTimeInput = Telemetry.addDouble("Inputs/Thrower Sensor 3 Detect Time", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel sensor1ClearTimeInput = Telemetry.addDouble("Inputs/Thrower Sensor 1 Clear Time", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel sensor2ClearTimeInput = Telemetry.addDouble("Inputs/Thrower Sensor 2 Clear Time", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel sensor3ClearTimeInput = Telemetry.addDouble("Inputs/Thrower Sensor 3 Clear Time", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel sensor3DetectRotorPosInput = Telemetry.addDouble("Inputs/Thrower Sensor 3 Detect Rotor Position", Telemetry.logOnly);
+  private final Telemetry.BooleanChannel intakeStoppedInput = Telemetry.addBoolean("Inputs/Thrower Intake Stopped", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel vortex1VelInput = Telemetry.addDouble("Inputs/Thrower Vortex 1 Velocity", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel vortex2VelInput = Telemetry.addDouble("Inputs/Thrower Vortex 2 Velocity", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel vortex1VoltageInput = Telemetry.addDouble("Inputs/Thrower Vortex 1 Voltage", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel vortex2VoltageInput = Telemetry.addDouble("Inputs/Thrower Vortex 2 Voltage", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel vortex1CurrentInput = Telemetry.addDouble("Inputs/Thrower Vortex 1 Current", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel vortex2CurrentInput = Telemetry.addDouble("Inputs/Thrower Vortex 2 Current", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel indexCurrentInput = Telemetry.addDouble("Inputs/Thrower Index Current", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel indexRotorPosInput = Telemetry.addDouble("Inputs/Thrower Index Rotor Position", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel indexRotorVelInput = Telemetry.addDouble("Inputs/Thrower Index Rotor Velocity", Telemetry.logOnly);
+
+  public ThrowerIOHardware() {
+    // The sensors read false when a note is detected, so a falling edge is a note arriving and a rising edge is a note leaving.
+    sensor1Interrupt = new AsynchronousInterrupt(sensor1, (rising, falling) -> {
+      if (falling) {
+        sensor1DetectTime = this.sensor1Interrupt.getFallingTimestamp();
+      }
+      if (rising) {
+        sensor1ClearTime = this.sensor1Interrupt.getRisingTimestamp();
+      }
+    });
+    sensor2Interrupt = new AsynchronousInterrupt(sensor2, (rising, falling) -> {
+      if (falling) {
+        sensor2DetectTime = this.sensor2Interrupt.getFallingTimestamp();
+      }
+      if (rising) {
+        sensor2ClearTime = this.sensor2Interrupt.getRisingTimestamp();
+      }
+    });
+    sensor3Interrupt = new AsynchronousInterrupt(sensor3, (rising, falling) -> {
+      if (falling) {
+        onSensor3Detect();
+      }
+      if (rising) {
+        sensor3ClearTime = this.sensor3Interrupt.getRisingTimestamp();
+      }
+    });
+    for (AsynchronousInterrupt interrupt : new AsynchronousInterrupt[] {sensor1Interrupt, sensor2Interrupt, sensor3Interrupt}) {
+      interrupt.setInterruptEdges(true, true);
+      interrupt.enable();
+    }
+  }
+
+  // Runs on the interrupt thread when sensor 3 detects a note. Reverses the index motor right away if the thrower is intaking, so the note does not feed into the flywheels.
+  private void onSensor3Detect() {
+    sensor3DetectTime = sensor3Interrupt.getFallingTimestamp();
+    sensor3DetectRotorPos = BaseStatusSignal.getLatencyCompensatedValue(interruptRotorPos.refresh(), interruptRotorVel.refresh()); // Refreshing only reads the last value received, so this does not wait on the CAN bus.
+    synchronized (indexLock) {
+      if (intakeRunning && !intakeStopped) {
+        intakeStopped = true;
+        indexMotor.setControl(indexVelRequest.withVelocity(intakeReverseVel));
+      }
+    }
+  }
+
+  public void updateInputs() {
+    BaseStatusSignal.refreshAll(indexRotorPos, indexRotorVel, indexCurrent);
+    sensor1Value = !sensor1.get();
+    sensor2Value = !sensor2.get();
+    sensor3Value = !sensor3.get();
+    sensor1DetectTimeValue = sensor1DetectTime;
+    sensor2DetectTimeValue = sensor2DetectTime;
+    intakeStoppedValue = intakeStopped; // Read before the values the interrupt sets ahead of it, so a stopped intake is never paired with an older detection.
+    sensor3DetectTimeValue = sensor3DetectTime;
+    sensor3DetectRotorPosValue = sensor3DetectRotorPos;
+    sensor1ClearTimeValue = sensor1ClearTime;
+    sensor2ClearTimeValue = sensor2ClearTime;
+    sensor3ClearTimeValue = sensor3ClearTime;
+    vortex1VelValue = readVortex1Vel();
+    vortex2VelValue = readVortex2Vel();
+    vortex1VoltageValue = readVortex1Voltage();
+    vortex2VoltageValue = readVortex2Voltage();
+    vortex1CurrentValue = readVortex1Current();
+    vortex2CurrentValue = readVortex2Current();
+    indexCurrentValue = indexCurrent.getValueAsDouble();
+    indexRotorPosValue = indexRotorPos.getValueAsDouble();
+    indexRotorVelValue = indexRotorVel.getValueAsDouble();
+    sensor1Input.set(sensor1Value);
+    sensor2Input.set(sensor2Value);
+    sensor3Input.set(sensor3Value);
+    sensor1DetectTimeInput.set(sensor1DetectTimeValue);
+    sensor2DetectTimeInput.set(sensor2DetectTimeValue);
+    sensor3DetectTimeInput.set(sensor3DetectTimeValue);
+    sensor1ClearTimeInput.set(sensor1ClearTimeValue);
+    sensor2ClearTimeInput.set(sensor2ClearTimeValue);
+    sensor3ClearTimeInput.set(sensor3ClearTimeValue);
+    sensor3DetectRotorPosInput.set(sensor3DetectRotorPosValue);
+    intakeStoppedInput.set(intakeStoppedValue);
+    vortex1VelInput.set(vortex1VelValue);
+    vortex2VelInput.set(vortex2VelValue);
+    vortex1VoltageInput.set(vortex1VoltageValue);
+    vortex2VoltageInput.set(vortex2VoltageValue);
+    vortex1CurrentInput.set(vortex1CurrentValue);
+    vortex2CurrentInput.set(vortex2CurrentValue);
+    indexCurrentInput.set(indexCurrentValue);
+    indexRotorPosInput.set(indexRotorPosValue);
+    indexRotorVelInput.set(indexRotorVelValue);
+  }
+
+  // Reads the velocity of the top flywheel motor in rotations per minute.
+  protected double readVortex1Vel() {
+    return vortex1.getEncoder().getVelocity();
+  }
+
+  // Reads the velocity of the bottom flywheel motor in rotations per minute.
+  protected double readVortex2Vel() {
+    return vortex2.getEncoder().getVelocity();
+  }
+
+  // Reads the voltage the top flywheel motor is applying.
+  protected double readVortex1Voltage() {
+    return vortex1.getAppliedOutput()*vortex1.getBusVoltage();
+  }
+
+  // Reads the voltage the bottom flywheel motor is applying.
+  protected double readVortex2Voltage() {
+    return vortex2.getAppliedOutput()*vortex2.getBusVoltage();
+  }
+
+  // Reads the current drawn by the top flywheel motor in amps.
+  protected double readVortex1Current() {
+    return vortex1.getOutputCurrent();
+  }
+
+  // Reads the current drawn by the bottom flywheel motor in amps.
+  protected double readVortex2Current() {
+    return vortex2.getOutputCurrent();
+  }
+
+  public boolean getSensor1() {
+    return sensor1Value;
+  }
+
+  public boolean getSensor2() {
+    return sensor2Value;
+  }
+
+  public boolean getSensor3() {
+    return sensor3Value;
+  }
+
+  public double getSensor1DetectTime() {
+    return sensor1DetectTimeValue;
+  }
+
+  public double getSensor2DetectTime() {
+    return sensor2DetectTimeValue;
+  }
+
+  public double getSensor3DetectTime() {
+    return sensor3DetectTimeValue;
+  }
+
+  public double getSensor1ClearTime() {
+    return sensor1ClearTimeValue;
+  }
+
+  public double getSensor2ClearTime() {
+    return sensor2ClearTimeValue;
+  }
+
+  public double getSensor3ClearTime() {
+    return sensor3ClearTimeValue;
+  }
+
+  public double getSensor3DetectRotorPos() {
+    return sensor3DetectRotorPosValue;
+  }
+
+  public double getVortex1Vel() {
+    return vortex1VelValue;
+  }
+
+  public double getVortex2Vel() {
+    return vortex2VelValue;
+  }
+
+  public double getVortex1Voltage() {
+    return vortex1VoltageValue;
+  }
+
+  public double getVortex2Voltage() {
+    return vortex2VoltageValue;
+  }
+
+  public double getVortex1Current() {
+    return vortex1CurrentValue;
+  }
+
+  public double getVortex2Current() {
+    return vortex2CurrentValue;
+  }
+
+  public double getIndexCurrent() {
+    return indexCurrentValue;
+  }
+
+  public double getIndexRotorPos() {
+    return indexRotorPosValue;
+  }
+
+  public double getIndexRotorVel() {
+    return indexRotorVelValue;
+  }
+
+  public void setIndexVel(double rotorVel) {
+    synchronized (indexLock) {
+      intakeRunning = false;
+      intakeStopped = false;
+      indexMotor.setControl(indexVelRequest.withVelocity(rotorVel));
+    }
+  }
+
+  public void runIntake(double intakeVel, double reverseVel) {
+    synchronized (indexLock) {
+      if (!intakeRunning) {
+        intakeRunning = true;
+        intakeStopped = false;
+      }
+      intakeReverseVel = reverseVel;
+      indexMotor.setControl(indexVelRequest.withVelocity(intakeStopped ? reverseVel : intakeVel));
+    }
+  }
+
+  public boolean getIntakeStopped() {
+    return intakeStoppedValue;
+  }
+
+  public void setIndexPos(double rotorPos) {
+    synchronized (indexLock) {
+      intakeRunning = false;
+      intakeStopped = false;
+      indexMotor.setControl(indexPosRequest.withPosition(rotorPos));
+    }
+  }
+
+  public void resetIndexPos(double rotorPos) {
+    indexMotor.setPosition(rotorPos);
+  }
+
+  public void setFlywheelVel(double vortex1Vel, double vortex2Vel) {
+    vortex1.getPIDController().setReference(vortex1Vel, ControlType.kSmartVelocity, 0);
+    vortex2.getPIDController().setReference(vortex2Vel, ControlType.kSmartVelocity, 0);
+  }
+
+  public void stopFlywheels() {
+    vortex1.set(0.0);
+    vortex2.set(0.0);
+  }
+
+  public boolean getIndexMotorFailure() {
+    return indexMotorConfig.failed();
+  }
+
+  public boolean getVortex1Failure() {
+    return vortex1Config.failed();
+  }
+
+  public boolean getVortex2Failure() {
+    return vortex2Config.failed();
+  }
+
+  // Attempts to configure the flywheel motors. Sets inverts, neutral mode, PID constants, and current limit. Returns true if the motor successfully configued.
+  // The parameters are only restored, rewritten, and saved to flash if the ones already on the motor are different. This skips the flash write and the wait after it on most boots.
+  private boolean configVortex(CANSparkFlex motor, boolean invert, int currentLimit, int maxMotorErrors) {
+    int motorErrors = 0;
+    boolean changed = !vortexConfigMatches(motor, invert);
+    if (changed) {
+      while (motor.restoreFactoryDefaults() != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.getPIDController().setP(vortexP, 0) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.getPIDController().setI(vortexI, 0) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.getPIDController().setD(vortexD, 0) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.getPIDController().setFF(vortexFF, 0) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.getPIDController().setSmartMotionMaxAccel(vortexMaxAcc, 0) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.getPIDController().setSmartMotionMaxVelocity(vortexMaxVel, 0) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.getPIDController().setIMaxAccum(vortexIMaxAccum, 0) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      while (motor.setIdleMode(IdleMode.kBrake) != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      motor.setInverted(invert);
+    }
+    // The current limit cannot be read back, so it is set on every boot.
+    while (motor.setSmartCurrentLimit(currentLimit) != REVLibError.kOk) {
+      motorErrors++;
+      if (motorErrors > maxMotorErrors) {
+        return false;
+      }
+    }
+    if (changed) {
+      while (motor.burnFlash() != REVLibError.kOk) {
+        motorErrors++;
+        if (motorErrors > maxMotorErrors) {
+          return false;
+        }
+      }
+      Timer.delay(0.8); // Gives the motor time to finish writing its flash. Only delays the thread configuring this motor.
+    }
+    return true;
+  }
+
+  // Returns true if the flywheel motor has reset since the last call. A reset sets a sticky fault on the motor, which is cleared so that the next reset can be detected.
+  private static boolean hasReset(CANSparkFlex motor) {
+    boolean reset = motor.getStickyFault(FaultID.kHasReset);
+    if (reset) {
+      motor.clearFaults();
+    }
+    return reset;
+  }
+
+  // Returns true if the parameters stored on the flywheel motor already match the ones configVortex() sets. A parameter that cannot be read reads as 0, which counts as different for all but kD.
+  private boolean vortexConfigMatches(CANSparkFlex motor, boolean invert) {
+    SparkPIDController pidController = motor.getPIDController();
+    return DeviceConfigurator.valuesMatch(pidController.getP(0), vortexP)
+      && DeviceConfigurator.valuesMatch(pidController.getI(0), vortexI)
+      && DeviceConfigurator.valuesMatch(pidController.getD(0), vortexD)
+      && DeviceConfigurator.valuesMatch(pidController.getFF(0), vortexFF)
+      && DeviceConfigurator.valuesMatch(pidController.getSmartMotionMaxAccel(0), vortexMaxAcc)
+      && DeviceConfigurator.valuesMatch(pidController.getSmartMotionMaxVelocity(0), vortexMaxVel)
+      && DeviceConfigurator.valuesMatch(pidController.getIMaxAccum(0), vortexIMaxAccum)
+      && motor.getIdleMode() == IdleMode.kBrake
+      && motor.getInverted() == invert;
+  }
+
+  // Attempts to configure the index motor. Sets inverts, neutral mode, and PID constants. Returns true if the motor successfully configued.
+  private boolean configIndexMotor(TalonFX motor, boolean invert, double currentLimit, int maxMotorErrors) {
+    // Creates a configurator and config object to configure the motor.
+    TalonFXConfigurator motorConfigurator = motor.getConfigurator();
+    TalonFXConfiguration motorConfigs = new TalonFXConfiguration();
+
+    motorConfigs.MotorOutput.NeutralMode = NeutralModeValue.Brake;
+    motorConfigs.MotorOutput.Inverted = invert ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
+
+    // Setting current limits
+    motorConfigs.CurrentLimits.SupplyCurrentLimitEnable = true;
+    motorConfigs.CurrentLimits.SupplyCurrentLimit = currentLimit;
+    motorConfigs.CurrentLimits.SupplyCurrentThreshold = currentLimit;
+    motorConfigs.CurrentLimits.SupplyTimeThreshold = 0.5;
+  
+    // Setting Velocity PID parameters
+    motorConfigs.Slot0.kP = 0.008;
+    motorConfigs.Slot0.kI = 0.06;
+    motorConfigs.Slot0.kD = 0.0002;
+    motorConfigs.Slot0.kV = 0.009;
+
+    // Setting Motion Magic parameters
+    motorConfigs.Slot1.kP = 0.8;
+    motorConfigs.Slot1.kI = 2.0;
+    motorConfigs.Slot1.kD = 0.006;
+    motorConfigs.MotionMagic.MotionMagicAcceleration = 75.0;
+    motorConfigs.MotionMagic.MotionMagicCruiseVelocity = 50.0;
+    motorConfigs.MotionMagic.MotionMagicJerk = 400.0;
+
+    // Attempts to repeatedly configure the motor up to the number of times indicated by maxMotorFailures
+    int motorErrors = 0;
+    boolean motorFailure = false;
+    while (DeviceConfigurator.apply(motorConfigurator, motorConfigs, 0.03) != StatusCode.OK) { // Skips the write if the motor already has these configs.
+      motorErrors++;
+      motorFailure = motorErrors > maxMotorErrors;
+      if (motorFailure) {
+        return false;
+      }
+    }  
+    return true;
+  } 
+}
@@ -0,0 +1,158 @@
+package frc.robot;
+
+import com.ctre.phoenix6.sim.ChassisReference;
+import com.ctre.phoenix6.sim.TalonFXSimState;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
+
+// The thrower hardware in simulation. The index motor is simulated through its TalonFX sim state, and the proximity sensors through the DIO sim.
+// REVLib does not simulate the Spark Flex, so the flywheels are modeled here with a copy of the Smart Velocity gains configured on the motors.
+// A note is picked up once the intake has been running for pickupTime, then moves past the sensors as the index motor turns.
+class ThrowerIOSim extends ThrowerIOHardware {
+  private static final double flywheelFF = 0.000163; // The feedforward configured on the flywheel motors. Unit: duty cycle per RPM
+  private static final double flywheelP = 0.00043; // The proportional gain configured on the flywheel motors. Unit: duty cycle per RPM of error
+  private static final double flywheelMaxAcc = 8000.0; // The Smart Velocity acceleration limit configured on the flywheel motors. Unit: RPM per second
+  private static final double pickupTime = 1.0; // How long the intake has to run before a note is picked up. Stands in for driving to a note. Unit: seconds
+  private static final double pickupVel = 10.0; // The index motor is considered to be intaking above this velocity. Unit: rotations per second
+
+  // Positions along the path of the note, measured in index motor rotor rotations from where a note first touches the rollers.
+  private static final double noteLength = 3.0; // The length of a note.
+  private static final double sensor1Pos = 2.0;
+  private static final double sensor2Pos = 5.0;
+  private static final double sensor3Pos = 8.0;
+  private static final double flywheelPos = 10.0; // Once the back of the note passes the flywheels, it has been thrown.
+
+  private final FlywheelSim vortex1Sim = new FlywheelSim(DCMotor.getNeoVortex(1), 1.0, 0.002);
+  private final FlywheelSim vortex2Sim = new FlywheelSim(DCMotor.getNeoVortex(1), 1.0, 0.002);
+  private final DCMotorSim indexMotorSim = new DCMotorSim(DCMotor.getFalcon500Foc(1), 1.0, 0.0005);
+  private final DIOSim sensor1Sim = new DIOSim(sensor1);
+  private final DIOSim sensor2Sim = new DIOSim(sensor2);
+  private final DIOSim sensor3Sim = new DIOSim(sensor3);
+  private boolean flywheelsOn = false; // Whether the flywheel motors are under velocity control.
+  private double vortex1Goal = 0.0; // The commanded velocity of the top flywheel. Unit: RPM
+  private double vortex2Goal = 0.0; // The commanded velocity of the bottom flywheel. Unit: RPM
+  private double vortex1Setpoint = 0.0; // The acceleration limited setpoint of the top flywheel. Unit: RPM
+  private double vortex2Setpoint = 0.0; // The acceleration limited setpoint of the bottom flywheel. Unit: RPM
+  private double vortex1Voltage = 0.0; // The voltage applied to the top flywheel motor. Unit: volts
+  private double vortex2Voltage = 0.0; // The voltage applied to the bottom flywheel motor. Unit: volts
+  private boolean hasNote = false; // Whether a note is inside the thrower.
+  private double notePos = 0.0; // The position of the front of the note.
+  private double intakeTime = 0.0; // How long the intake has been running without a note. Unit: seconds
+  private double lastIndexPos = 0.0; // The index motor position in the previous period. Unit: rotations
+
+  public ThrowerIOSim() {
+    indexMotor.getSimState().Orientation = ChassisReference.Clockwise_Positive; // The index motor is inverted.
+    updateSensors();
+  }
+
+  protected double readVortex1Vel() {
+    return vortex1Sim.getAngularVelocityRPM();
+  }
+
+  protected double readVortex2Vel() {
+    return vortex2Sim.getAngularVelocityRPM();
+  }
+
+  protected double readVortex1Voltage() {
+    return vortex1Voltage;
+  }
+
+  protected double readVortex2Voltage() {
+    return vortex2Voltage;
+  }
+
+  protected double readVortex1Current() {
+    return vortex1Sim.getCurrentDrawAmps();
+  }
+
+  protected double readVortex2Current() {
+    return vortex2Sim.getCurrentDrawAmps();
+  }
+
+  public void setFlywheelVel(double vortex1Vel, double vortex2Vel) {
+    super.setFlywheelVel(vortex1Vel, vortex2Vel);
+    flywheelsOn = true;
+    vortex1Goal = vortex1Vel;
+    vortex2Goal = vortex2Vel;
+  }
+
+  public void stopFlywheels() {
+    super.stopFlywheels();
+    flywheelsOn = false;
+  }
+
+  public void simulationPeriodic() {
+    double dt = TimedRobot.kDefaultPeriod;
+    double batteryVoltage = RobotController.getBatteryVoltage();
+    boolean enabled = DriverStation.isEnabled();
+
+    // Flywheels
+    if (enabled && flywheelsOn) {
+      vortex1Setpoint += MathUtil.clamp(vortex1Goal - vortex1Setpoint, -flywheelMaxAcc*dt, flywheelMaxAcc*dt);
+      vortex2Setpoint += MathUtil.clamp(vortex2Goal - vortex2Setpoint, -flywheelMaxAcc*dt, flywheelMaxAcc*dt);
+      vortex1Voltage = getFlywheelVoltage(vortex1Setpoint, vortex1Sim.getAngularVelocityRPM(), batteryVoltage);
+      vortex2Voltage = getFlywheelVoltage(vortex2Setpoint, vortex2Sim.getAngularVelocityRPM(), batteryVoltage);
+    } else { // The next spin up starts from the current velocity.
+      vortex1Setpoint = vortex1Sim.getAngularVelocityRPM();
+      vortex2Setpoint = vortex2Sim.getAngularVelocityRPM();
+      vortex1Voltage = 0.0;
+      vortex2Voltage = 0.0;
+    }
+    vortex1Sim.setInputVoltage(vortex1Voltage);
+    vortex2Sim.setInputVoltage(vortex2Voltage);
+    vortex1Sim.update(dt);
+    vortex2Sim.update(dt);
+
+    // Index motor
+    TalonFXSimState indexSimState = indexMotor.getSimState();
+    indexSimState.setSupplyVoltage(batteryVoltage);
+    indexMotorSim.setInputVoltage(indexSimState.getMotorVoltage());
+    indexMotorSim.update(dt);
+    double indexPos = indexMotorSim.getAngularPositionRotations();
+    double indexVel = indexMotorSim.getAngularVelocityRPM()/60.0;
+    indexSimState.setRawRotorPosition(indexPos);
+    indexSimState.setRotorVelocity(indexVel);
+
+    // Note
+    if (hasNote) {
+      notePos += indexPos - lastIndexPos;
+      if (notePos - noteLength > flywheelPos || notePos < 0.0) { // Thrown through the flywheels, or pushed back out of the intake.
+        hasNote = false;
+      }
+    } else if (indexVel > pickupVel) {
+      intakeTime += dt;
+      if (intakeTime > pickupTime) {
+        hasNote = true;
+        notePos = 0.0;
+        intakeTime = 0.0;
+      }
+    } else {
+      intakeTime = 0.0;
+    }
+    lastIndexPos = indexPos;
+    updateSensors();
+  }
+
+  // Calculates the voltage the Smart Velocity controller would apply to reach the setpoint. Units: RPM for setpoint and vel.
+  private double getFlywheelVoltage(double setpoint, double vel, double batteryVoltage) {
+    return MathUtil.clamp(flywheelFF*setpoint + flywheelP*(setpoint - vel), -1.0, 1.0)*batteryVoltage;
+  }
+
+  // Sets each proximity sensor based on whether the note is in front of it. The sensors read false when an object is detected.
+  private void updateSensors() {
+    sensor1Sim.setValue(!noteCovers(sensor1Pos));
+    sensor2Sim.setValue(!noteCovers(sensor2Pos));
+    sensor3Sim.setValue(!noteCovers(sensor3Pos));
+  }
+
+  // Returns true if the note is covering the given position.
+  private boolean noteCovers(double pos) {
+    return hasNote && notePos >= pos && notePos - noteLength <= pos;
+  }
+}
@@ -0,0 +1,26 @@
+package frc.robot;
+
+// The Limelight values used by the drivetrain. Separates the drivetrain logic from NetworkTables so that recorded match data can be replayed through the same logic.
+interface VisionIO {
+  // Reads every input from the Limelight and records it. Should be called once at the start of each period. The getters return the values read by the last call.
+  void updateInputs();
+
+  // Returns the Limelight frame number. Changes each time the Limelight processes a new frame.
+  long getFrame();
+
+  // Returns true if at least one April Tag is detected.
+  boolean hasTarget();
+
+  // Returns the horizontal width of the box bounding the April Tags in pixels.
+  double getTargetWidth();
+
+  // Returns the vertical height of the box bounding the April Tags in pixels.
+  double getTargetHeight();
+
+  // Returns the area of the box bounding the April Tags in percent of the screen.
+  double getTargetArea();
+
+  // Returns the robot position estimated by the Limelight in the coordinate system of the given alliance: x and y in meters, z in meters, roll, pitch, and yaw in degrees, and the total latency in milliseconds.
+  // The array is reused by the next call to updateInputs(), so it should not be modified or kept.
+  double[] getBotPose(boolean blueAlliance);
+}
@@ -0,0 +1,92 @@
+package frc.robot;
+
+import java.util.Arrays;
+
+// Reads April Tag information published to NetworkTables by a Limelight. Every input is read once per period and recorded so that it can be replayed later.
+class VisionIOLimelight implements VisionIO {
+  private final String name; // The NetworkTables name of the Limelight.
+
+  // The inputs read by the last call to updateInputs(). The pose is read in the coordinate systems of both alliances, since the alliance is only checked when it is used.
+  private long frame = 0;
+  private boolean hasTarget = false;
+  private double targetWidth = 0.0;
+  private double targetHeight = 0.0;
+  private double targetArea = 0.0;
+  private final double[] blueBotPose = new double[7];
+  private final double[] redBotPose = new double[7];
+
+  // Records the inputs of the Limelight. Only the parts of the botpose arrays that are used by the drivetrain are recorded.
+  private final Telemetry.DoubleChannel frameInput = Telemetry.addDouble("Inputs/Limelight Frame", Telemetry.logOnly);
+  private final Telemetry.BooleanChannel hasTargetInput = Telemetry.addBoolean("Inputs/Limelight Has Target", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel targetWidthInput = Telemetry.addDouble("Inputs/Limelight Target Width", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel targetHeightInput = Telemetry.addDouble("Inputs/Limelight Target Height", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel targetAreaInput = Telemetry.addDouble("Inputs/Limelight Target Area", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel blueBotPoseXInput = Telemetry.addDouble("Inputs/Limelight Blue Botpose X", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel blueBotPoseYInput = Telemetry.addDouble("Inputs/Limelight Blue Botpose Y", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel blueBotPoseYawInput = Telemetry.addDouble("Inputs/Limelight Blue Botpose Yaw", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel blueBotPoseLatencyInput = Telemetry.addDouble("Inputs/Limelight Blue Botpose Latency", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel redBotPoseXInput = Telemetry.addDouble("Inputs/Limelight Red Botpose X", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel redBotPoseYInput = Telemetry.addDouble("Inputs/Limelight Red Botpose Y", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel redBotPoseYawInput = Telemetry.addDouble("Inputs/Limelight Red Botpose Yaw", Telemetry.logOnly);
+  private final Telemetry.DoubleChannel redBotPoseLatencyInput = Telemetry.addDouble("Inputs/Limelight Red Botpose Latency", Telemetry.logOnly);
+
+  public VisionIOLimelight(String _name) {
+    name = _name;
+  }
+
+  public void updateInputs() {
+    frame = LimelightHelpers.getLimelightNTTableEntry(name, "hb").getInteger(0);
+    hasTarget = LimelightHelpers.getTV(name);
+    targetWidth = LimelightHelpers.getLimelightNTTableEntry(name, "thor").getDouble(0);
+    targetHeight = LimelightHelpers.getLimelightNTTableEntry(name, "tvert").getDouble(0);
+    targetArea = LimelightHelpers.getTA(name);
+    readBotPose(LimelightHelpers.getBotPose_wpiBlue(name), blueBotPose);
+    readBotPose(LimelightHelpers.getBotPose_wpiRed(name), redBotPose);
+    frameInput.set(frame);
+    hasTargetInput.set(hasTarget);
+    targetWidthInput.set(targetWidth);
+    targetHeightInput.set(targetHeight);
+    targetAreaInput.set(targetArea);
+    blueBotPoseXInput.set(blueBotPose[0]);
+    blueBotPoseYInput.set(blueBotPose[1]);
+    blueBotPoseYawInput.set(blueBotPose[5]);
+    blueBotPoseLatencyInput.set(blueBotPose[6]);
+    redBotPoseXInput.set(redBotPose[0]);
+    redBotPoseYInput.set(redBotPose[1]);
+    redBotPoseYawInput.set(redBotPose[5]);
+    redBotPoseLatencyInput.set(redBotPose[6]);
+  }
+
+  // Copies a botpose array published by the Limelight into botPose. Leaves botPose at 0 if the Limelight has not published a pose yet.
+  private static void readBotPose(double[] published, double[] botPose) {
+    if (published.length < botPose.length) {
+      Arrays.fill(botPose, 0.0);
+    } else {
+      System.arraycopy(published, 0, botPose, 0, botPose.length);
+    }
+  }
+
+  public long getFrame() {
+    return frame;
+  }
+
+  public boolean hasTarget() {
+    return hasTarget;
+  }
+
+  public double getTargetWidth() {
+    return targetWidth;
+  }
+
+  public double getTargetHeight() {
+    return targetHeight;
+  }
+
+  public double getTargetArea() {
+    return targetArea;
+  }
+
+  public double[] getBotPose(boolean blueAlliance) {
+    return blueAlliance ? blueBotPose : redBotPose;
+  }
+}
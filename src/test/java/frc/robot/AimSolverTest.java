@@ -0,0 +1,114 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.hal.HAL;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class AimSolverTest {
+  private static final double speakerX = 0.0; // Unit: meters
+  private static final double speakerY = 5.548; // Unit: meters
+  private static final double maxVel = 5.0; // About the top speed of the robot. Unit: meters per second
+  private static ShotTable shotTable;
+
+  @BeforeAll
+  static void loadShotTable() throws Exception {
+    HAL.initialize(500, 0);
+    shotTable = new ShotTable(new ObjectMapper().readTree("""
+      {
+        "distanceStep": 0.05,
+        "radialVelStep": 0.25,
+        "rows": [
+          {
+            "radialVel": 0.0,
+            "points": [
+              { "distance": 1.0, "armAngle": -8.0, "vortex1Vel": 3500.0, "vortex2Vel": 3500.0 },
+              { "distance": 3.0, "armAngle": 10.0, "vortex1Vel": 4000.0, "vortex2Vel": 4000.0 },
+              { "distance": 6.0, "armAngle": 24.0, "vortex1Vel": 5000.0, "vortex2Vel": 5000.0 }
+            ]
+          }
+        ]
+      }
+      """));
+  }
+
+  @Test
+  void aimsAtSpeakerWhenStopped() {
+    AimSolver solver = new AimSolver(shotTable);
+    solver.solve(3.0, speakerY, 0.0, 0.0, speakerX, speakerY);
+    assertEquals(0.0, Math.IEEEremainder(solver.getHeading() - 180.0, 360.0), 1e-9);
+    assertEquals(0.0, solver.getHeadingRate(), 1e-9);
+    assertEquals(3.0, solver.getDistance(), 1e-9);
+    assertEquals(3.0, solver.getVirtualDistance(), 1e-9);
+    assertEquals(shotTable.getArmAngle(3.0, 0.0), solver.getArmAngle(), 1e-9);
+    assertEquals(shotTable.getVortex1Vel(3.0, 0.0), solver.getVortex1Vel(), 1e-9);
+    assertEquals(shotTable.getVortex2Vel(3.0, 0.0), solver.getVortex2Vel(), 1e-9);
+    assertTrue(solver.getTimeOfFlight() > 0.0);
+  }
+
+  @Test
+  void convergesWhileMoving() {
+    AimSolver solver = new AimSolver(shotTable);
+    AimSolver reference = new AimSolver(shotTable, 20); // Enough secant steps for the solution to stop changing.
+    for (double x = 1.0; x <= 6.0; x += 0.5) {
+      for (double y = 1.0; y <= 8.0; y += 0.5) {
+        for (double direction = 0.0; direction < 360.0; direction += 30.0) {
+          double xVel = maxVel*Math.cos(direction*Math.PI/180.0);
+          double yVel = maxVel*Math.sin(direction*Math.PI/180.0);
+          solver.solve(x, y, xVel, yVel, speakerX, speakerY);
+          reference.solve(x, y, xVel, yVel, speakerX, speakerY);
+          assertEquals(reference.getTimeOfFlight(), solver.getTimeOfFlight(), 1e-4);
+          assertEquals(0.0, Math.IEEEremainder(solver.getHeading() - reference.getHeading(), 360.0), 0.01);
+        }
+      }
+    }
+  }
+
+  @Test
+  void driftCarriesNoteIntoSpeaker() {
+    AimSolver solver = new AimSolver(shotTable);
+    double x = 3.0;
+    double y = 3.0;
+    double xVel = 1.5;
+    double yVel = 2.5;
+    solver.solve(x, y, xVel, yVel, speakerX, speakerY);
+    double heading = solver.getHeading()*Math.PI/180.0;
+    double timeOfFlight = solver.getTimeOfFlight();
+    // The note travels the virtual distance along the heading, and drifts with the robot's velocity while in the air.
+    assertEquals(speakerX, x + xVel*timeOfFlight + solver.getVirtualDistance()*Math.cos(heading), 1e-9);
+    assertEquals(speakerY, y + yVel*timeOfFlight + solver.getVirtualDistance()*Math.sin(heading), 1e-9);
+  }
+
+  @Test
+  void leadsSidewaysMotion() {
+    AimSolver solver = new AimSolver(shotTable);
+    solver.solve(3.0, speakerY, 0.0, 2.0, speakerX, speakerY);
+    assertTrue(solver.getHeading() < -90.0 && solver.getHeading() > -180.0); // Aims below the speaker, since the note drifts up.
+    assertTrue(solver.getHeadingRate() > 0.0);
+  }
+
+  @Test
+  void headingRateMatchesHeadingChange() {
+    AimSolver solver = new AimSolver(shotTable);
+    double dt = 0.001; // Unit: seconds
+    double yVel = 0.5; // Slowly across the line to the speaker, so the time of flight barely changes. The heading rate leaves out that change.
+    solver.solve(3.0, speakerY, 0.0, yVel, speakerX, speakerY);
+    double heading = solver.getHeading();
+    double headingRate = solver.getHeadingRate();
+    solver.solve(3.0, speakerY + yVel*dt, 0.0, yVel, speakerX, speakerY);
+    double measuredRate = Math.IEEEremainder(solver.getHeading() - heading, 360.0)/dt;
+    assertEquals(headingRate, measuredRate, Math.abs(headingRate)*0.02);
+  }
+
+  @Test
+  void aimsCloserWhenMovingTowardSpeaker() {
+    AimSolver solver = new AimSolver(shotTable);
+    solver.solve(4.0, speakerY, -2.0, 0.0, speakerX, speakerY);
+    assertEquals(4.0, solver.getDistance(), 1e-9);
+    assertTrue(solver.getVirtualDistance() < solver.getDistance());
+    assertEquals(shotTable.getArmAngle(solver.getVirtualDistance(), -2.0), solver.getArmAngle(), 1e-9);
+  }
+}
@@ -0,0 +1,112 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+class AutoCompilerTest {
+  private static AutoCompiler.ParsedRoutine parse(String json) throws Exception {
+    return AutoCompiler.parseRoutine(new ObjectMapper().readTree(json));
+  }
+
+  // Parses a routine with one step named "Only", which runs the given action until the given condition is true.
+  private static AutoCompiler.ParsedRoutine parseStep(String action, String condition) throws Exception {
+    return parse("{ \"name\": \"Test\", \"steps\": [ { \"name\": \"Only\", \"run\": [\"" + action + "\"], \"transitions\": [ { \"if\": \"" + condition + "\" } ] } ] }");
+  }
+
+  // Checks that parsing fails with a message that contains the given text.
+  private static void assertRejected(String expectedMessage, Executable parse) {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, parse);
+    assertTrue(e.getMessage().contains(expectedMessage), e.getMessage());
+  }
+
+  @Test
+  void parsesRoutine() throws Exception {
+    AutoCompiler.ParsedRoutine routine = parse("""
+      {
+        "name": "Test",
+        "start": "1.5 5.5 180",
+        "init": ["arm drive"],
+        "steps": [
+          { "name": "Drive", "run": ["driveTo 2.0 here+0.5 speaker"], "transitions": [ { "if": "atDriveGoal and armAtSetpoint", "next": "Shoot" } ] },
+          { "name": "Wait", "transitions": [ { "if": "xAbove 3.0" }, { "next": "End" } ] },
+          { "name": "Shoot", "run": ["aimThrower", "commandThrow if shotReady 0.5 and not hasNote"],
+            "transitions": [ { "if": "noteThrown", "then": ["arm intake"], "next": "Drive" }, { "if": "not always" } ] }
+        ],
+        "end": ["stop"]
+      }
+      """);
+    assertEquals("Test", routine.name);
+    assertArrayEquals(new double[] {1.5, 5.5, 180.0}, routine.start);
+    assertEquals("arm", routine.initActions[0].keyword);
+    assertArrayEquals(new String[] {"drive"}, routine.initActions[0].args);
+    assertEquals("stop", routine.endActions[0].keyword);
+    assertEquals(3, routine.steps.length);
+
+    AutoCompiler.ParsedStep drive = routine.steps[0];
+    assertEquals("Drive", drive.name);
+    assertArrayEquals(new String[] {"2.0", "here+0.5", "speaker"}, drive.actions[0].args);
+    assertNull(drive.actions[0].guard);
+    assertEquals(2, drive.transitions[0].condition.terms.length);
+    assertEquals(2, drive.transitions[0].next);
+
+    AutoCompiler.ParsedStep wait = routine.steps[1];
+    assertEquals(2, wait.transitions[0].next); // Moves on to the following step by default.
+    assertEquals("always", wait.transitions[1].condition.terms[0].command.keyword); // True by default.
+    assertEquals(AutoRoutine.end, wait.transitions[1].next);
+
+    AutoCompiler.ParsedStep shoot = routine.steps[2];
+    AutoCompiler.Command commandThrow = shoot.actions[1];
+    assertEquals("commandThrow", commandThrow.keyword);
+    assertEquals(0, commandThrow.args.length);
+    assertEquals(2, commandThrow.guard.terms.length);
+    assertFalse(commandThrow.guard.terms[0].negated);
+    assertArrayEquals(new String[] {"0.5"}, commandThrow.guard.terms[0].command.args);
+    assertTrue(commandThrow.guard.terms[1].negated);
+    assertEquals("hasNote", commandThrow.guard.terms[1].command.keyword);
+    assertEquals("arm", shoot.transitions[0].actions[0].keyword);
+    assertEquals(0, shoot.transitions[0].next);
+    assertTrue(shoot.transitions[1].condition.terms[0].negated);
+    assertEquals(AutoRoutine.end, shoot.transitions[1].next); // The last step ends the routine by default.
+  }
+
+  @Test
+  void rejectsUnknownAction() {
+    assertRejected("Step \"Only\": Unknown action \"jump\".", () -> parseStep("jump", "always"));
+    assertRejected("Unknown action \"jump 1.0\".", () -> parse("{ \"init\": [\"jump 1.0\"] }"));
+  }
+
+  @Test
+  void rejectsUnknownCondition() {
+    assertRejected("Step \"Only\": Unknown condition \"ready\".", () -> parseStep("stop", "atDriveGoal and ready"));
+    assertRejected("Unknown condition \"ready\".", () -> parseStep("commandThrow if not ready", "always"));
+  }
+
+  @Test
+  void rejectsUnknownNextStep() {
+    assertRejected("There is no step named \"Missing\".", () -> parse("{ \"steps\": [ { \"name\": \"Only\", \"transitions\": [ { \"next\": \"Missing\" } ] } ] }"));
+  }
+
+  @Test
+  void rejectsWrongArgs() {
+    assertRejected("\"driveTo\" takes 3 arguments, but has 2.", () -> parseStep("driveTo 1.0 2.0", "always"));
+    assertRejected("\"stop\" takes 0 arguments, but has 1.", () -> parseStep("stop now", "always"));
+    assertRejected("\"soon\" is not a number.", () -> parseStep("stop", "armSettled soon"));
+    assertRejected("\"yes\" is not true or false.", () -> parseStep("disableFlywheel yes", "always"));
+    assertRejected("There is no path with the index " + Robot.pathNames.length + ".", () -> parseStep("followPath " + Robot.pathNames.length, "always"));
+    assertRejected("There is no path with the index 0.5.", () -> parseStep("followPath 0.5", "always"));
+    assertRejected("There is no trajectory named \"Missing\".", () -> parseStep("followTrajectory Missing", "always"));
+  }
+
+  @Test
+  void rejectsBadStart() {
+    assertRejected("The start \"1.0 2.0\" should be written as \"<x> <y> <heading>\".", () -> parse("{ \"start\": \"1.0 2.0\" }"));
+  }
+}
@@ -0,0 +1,104 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.hal.HAL;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ShotTableTest {
+  private static final double tol = 1e-9;
+  // Two rows of calibration points on a grid with 0.5 meter and 0.5 meter per second steps. The points of the first row are out of order, to check that they are sorted.
+  private static final String table = """
+    {
+      "distanceStep": 0.5,
+      "radialVelStep": 0.5,
+      "rows": [
+        {
+          "radialVel": 1.0,
+          "points": [
+            { "distance": 1.0, "armAngle": 2.0, "vortex1Vel": 3500.0, "vortex2Vel": 3400.0 },
+            { "distance": 3.0, "armAngle": 14.0, "vortex1Vel": 5500.0, "vortex2Vel": 5400.0 }
+          ]
+        },
+        {
+          "radialVel": 0.0,
+          "points": [
+            { "distance": 3.0, "armAngle": 10.0, "vortex1Vel": 4500.0, "vortex2Vel": 4400.0 },
+            { "distance": 1.0, "armAngle": 0.0, "vortex1Vel": 3000.0, "vortex2Vel": 2900.0 },
+            { "distance": 2.0, "armAngle": 4.0, "vortex1Vel": 4000.0, "vortex2Vel": 3900.0 }
+          ]
+        }
+      ]
+    }
+    """;
+
+  @BeforeAll
+  static void initializeHAL() {
+    HAL.initialize(500, 0);
+  }
+
+  private static ShotTable load(String json) throws Exception {
+    return new ShotTable(new ObjectMapper().readTree(json));
+  }
+
+  @Test
+  void matchesCalibrationPoints() throws Exception {
+    ShotTable shotTable = load(table);
+    assertEquals(0.0, shotTable.getArmAngle(1.0, 0.0), tol);
+    assertEquals(4.0, shotTable.getArmAngle(2.0, 0.0), tol);
+    assertEquals(10.0, shotTable.getArmAngle(3.0, 0.0), tol);
+    assertEquals(4000.0, shotTable.getVortex1Vel(2.0, 0.0), tol);
+    assertEquals(3900.0, shotTable.getVortex2Vel(2.0, 0.0), tol);
+    assertEquals(14.0, shotTable.getArmAngle(3.0, 1.0), tol);
+    assertEquals(5400.0, shotTable.getVortex2Vel(3.0, 1.0), tol);
+  }
+
+  @Test
+  void interpolatesAlongDistance() throws Exception {
+    ShotTable shotTable = load(table);
+    assertEquals(2.0, shotTable.getArmAngle(1.5, 0.0), tol); // On a grid point.
+    assertEquals(1.0, shotTable.getArmAngle(1.25, 0.0), tol); // Between grid points.
+    assertEquals(7.0, shotTable.getArmAngle(2.5, 0.0), tol);
+    assertEquals(3750.0, shotTable.getVortex1Vel(1.75, 0.0), tol);
+  }
+
+  @Test
+  void interpolatesAlongRadialVel() throws Exception {
+    ShotTable shotTable = load(table);
+    assertEquals(1.0, shotTable.getArmAngle(1.0, 0.5), tol);
+    assertEquals(0.5, shotTable.getArmAngle(1.0, 0.25), tol);
+    assertEquals(8.0, shotTable.getArmAngle(2.0, 1.0), tol); // The second row has no point at 2 meters, so it is interpolated within the row first.
+    assertEquals(6.0, shotTable.getArmAngle(2.0, 0.5), tol);
+    assertEquals(4500.0, shotTable.getVortex1Vel(2.0, 1.0), tol);
+  }
+
+  @Test
+  void usesNearestEdgeOutsideTable() throws Exception {
+    ShotTable shotTable = load(table);
+    assertEquals(0.0, shotTable.getArmAngle(0.2, 0.0), tol);
+    assertEquals(10.0, shotTable.getArmAngle(6.0, 0.0), tol);
+    assertEquals(0.0, shotTable.getArmAngle(1.0, -2.0), tol);
+    assertEquals(14.0, shotTable.getArmAngle(6.0, 3.0), tol);
+    assertEquals(1.0, shotTable.getMinDistance(), tol);
+    assertEquals(3.0, shotTable.getMaxDistance(), tol);
+  }
+
+  @Test
+  void rejectsInvalidTable() throws Exception {
+    JsonNode noRows = new ObjectMapper().readTree("{ \"distanceStep\": 0.5, \"radialVelStep\": 0.5, \"rows\": [] }");
+    assertThrows(IllegalArgumentException.class, () -> new ShotTable(noRows));
+    assertThrows(IllegalArgumentException.class, () -> load(table.replace("\"distanceStep\": 0.5", "\"distanceStep\": 0.0")));
+  }
+
+  @Test
+  void fallsBackToDefaultCalibration() {
+    ShotTable shotTable = new ShotTable("missingShotTable.json");
+    assertEquals(-4.0, shotTable.getArmAngle(1.58, 0.0), tol);
+    assertEquals(4000.0, shotTable.getVortex1Vel(2.0, 0.0), tol);
+    assertEquals(1.58, shotTable.getMinDistance(), tol);
+  }
+}
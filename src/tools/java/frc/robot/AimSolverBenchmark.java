@@ -0,0 +1,94 @@
+package frc.robot;
+
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.hal.HAL;
+import java.lang.management.ManagementFactory;
+
+// Measures how long AimSolver takes to solve, checks that solving does not allocate, and checks how close its fixed number of iterations gets to the fully converged solution.
+// Sweeps the robot over the scoring area of the field at every direction of travel, up to the robot's top speed. Exits with an error if solving allocates or does not converge.
+// Usage: ./gradlew aimBenchmark
+public class AimSolverBenchmark {
+  private static final double speakerX = 0.0; // Unit: meters
+  private static final double speakerY = 5.548; // Unit: meters
+  private static final int warmupRuns = 20; // The number of sweeps run before measuring, so that the solver is compiled.
+  private static final int measuredRuns = 20; // The number of sweeps that are measured.
+  private static final int referenceIterations = 20; // Enough secant steps for the solution to stop changing.
+  private static final double headingTol = 0.01; // The largest allowed difference from the converged heading. Unit: degrees
+  private static final double timeOfFlightTol = 0.0001; // The largest allowed difference from the converged time of flight. Unit: seconds
+
+  public static void main(String[] args) {
+    HAL.initialize(500, 0);
+    ShotTable shotTable = new ShotTable("shotTable.json");
+    AimSolver solver = new AimSolver(shotTable);
+    AimSolver reference = new AimSolver(shotTable, referenceIterations);
+
+    for (int run = 0; run < warmupRuns; run++) {
+      sweep(solver);
+    }
+
+    ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long solves = 0;
+    long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+    long startTime = System.nanoTime();
+    for (int run = 0; run < measuredRuns; run++) {
+      solves += sweep(solver);
+    }
+    long time = System.nanoTime() - startTime;
+    long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+    // Compares each solution to one iterated until it has stopped changing.
+    double maxHeadingError = 0.0;
+    double maxTimeOfFlightError = 0.0;
+    double maxResidual = 0.0;
+    for (double x = 1.0; x <= 6.0; x += 0.5) {
+      for (double y = 1.0; y <= 8.0; y += 0.5) {
+        for (double speed = 0.0; speed <= Drivetrain.maxVelTeleop; speed += Drivetrain.maxVelTeleop/4.0) {
+          for (double direction = 0.0; direction < 360.0; direction += 30.0) {
+            double xVel = speed*Math.cos(direction*Math.PI/180.0);
+            double yVel = speed*Math.sin(direction*Math.PI/180.0);
+            solver.solve(x, y, xVel, yVel, speakerX, speakerY);
+            reference.solve(x, y, xVel, yVel, speakerX, speakerY);
+            maxHeadingError = Math.max(maxHeadingError, Math.abs(Math.IEEEremainder(solver.getHeading() - reference.getHeading(), 360.0)));
+            maxTimeOfFlightError = Math.max(maxTimeOfFlightError, Math.abs(solver.getTimeOfFlight() - reference.getTimeOfFlight()));
+            maxResidual = Math.max(maxResidual, Math.abs(solver.getResidual()));
+          }
+        }
+      }
+    }
+
+    System.out.println("Solves: " + solves + " with " + AimSolver.defaultIterations + " iterations each");
+    System.out.println("Time per solve: " + String.format("%.1f", (double) time/solves) + " ns");
+    System.out.println("Bytes allocated per solve: " + String.format("%.3f", (double) allocatedBytes/solves));
+    System.out.println("Max heading error: " + String.format("%.4f", maxHeadingError) + " degrees");
+    System.out.println("Max time of flight error: " + String.format("%.5f", maxTimeOfFlightError) + " s");
+    System.out.println("Max final residual: " + String.format("%.5f", maxResidual) + " s");
+
+    boolean passed = true;
+    if (allocatedBytes > 0) {
+      System.out.println("FAILED: solving allocated memory.");
+      passed = false;
+    }
+    if (maxHeadingError > headingTol || maxTimeOfFlightError > timeOfFlightTol) {
+      System.out.println("FAILED: the solver did not converge within " + AimSolver.defaultIterations + " iterations.");
+      passed = false;
+    }
+    System.exit(passed ? 0 : 1);
+  }
+
+  // Solves from every position and velocity in the sweep. Returns the number of solves.
+  private static long sweep(AimSolver solver) {
+    long solves = 0;
+    for (double x = 1.0; x <= 6.0; x += 0.1) {
+      for (double y = 1.0; y <= 8.0; y += 0.1) {
+        for (double direction = 0.0; direction < 360.0; direction += 45.0) {
+          double xVel = Drivetrain.maxVelTeleop*Math.cos(direction*Math.PI/180.0);
+          double yVel = Drivetrain.maxVelTeleop*Math.sin(direction*Math.PI/180.0);
+          solver.solve(x, y, xVel, yVel, speakerX, speakerY);
+          solves++;
+        }
+      }
+    }
+    return solves;
+  }
+}
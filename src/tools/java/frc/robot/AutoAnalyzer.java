@@ -0,0 +1,564 @@
+package frc.robot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Estimates how long each auto routine in the deploy directory takes, without a robot. Each routine is walked step by step on the blue alliance. The drive actions are simulated with the
+// same controllers and limits as Drivetrain, the arm moves with the Motion Magic limits of Arm, and the thrower waits for the flywheel spin up predicted by FlywheelObserver and the
+// timeouts of the Thrower state machine. A step ends at the first of its transitions to come true, and the intake picks up a note when the robot reaches one with the arm down.
+// Prints a timeline of every routine with the time spent on each step, and what the step was waiting on, so routines can be tightened before time on the field.
+// A routine may say where the robot is placed with "start": "<x> <y> <heading>". The thrower times use the Thrower timeouts, so they are upper bounds. Conditions that cannot be predicted, such as the climber limit switches, are assumed to be true at once and marked.
+// Routines are read with AutoCompiler.parseRoutine(), so an unknown action, condition, or step is reported as an error here, the same as it is on the robot.
+// Usage: ./gradlew analyzeAutos [-Proutine=<name>]
+public class AutoAnalyzer {
+  private static final double autoLength = 15.0; // Unit: seconds
+  private static final double horizon = 15.0; // The longest a single step is simulated before it is reported as stuck. Unit: seconds
+  private static final double period = Drivetrain.loopPeriod; // Unit: seconds
+  private static final int maxSteps = 100; // The most steps walked in one routine, in case a routine loops.
+  private static final double speakerY = 5.548; // The y-coordinate of the center of the blue speaker slot. Unit: meters
+  private static final double startX = 1.35; // The x-coordinate of the center of the robot against the front of the subwoofer. Unit: meters
+  private static final double intakeReach = 0.6; // How far behind the center of the robot a note touches the intake rollers. The intake is on the back of the robot. Unit: meters
+  private static final double intakeHalfWidth = 0.3; // How far to either side of the center of the robot a note is picked up. Unit: meters
+  private static final double[][] notePositions = { // The notes on the field at the start of the match, on the blue alliance. Unit: meters
+    {2.90, 4.11}, {2.90, 5.55}, {2.90, 7.00},
+    {8.27, 0.75}, {8.27, 2.43}, {8.27, 4.10}, {8.27, 5.78}, {8.27, 7.46}};
+  private final ShotTable shotTable;
+  private final PathPlannerTrajectory[] paths;
+
+  // The state of the robot as the routine is walked. Times are from the start of auto.
+  private double time = 0.0; // Unit: seconds
+  private double x = 0.0; // Unit: meters
+  private double y = 0.0; // Unit: meters
+  private double heading = 180.0; // Unit: degrees
+  private double armAngle = Robot.armDriveSetpoint; // The angle the arm was at when it last started moving. Unit: degrees
+  private double armTarget = Robot.armDriveSetpoint; // Unit: degrees
+  private double armMoveStart = 0.0; // When the arm last started moving. Unit: seconds
+  private double armArrival = 0.0; // When the arm reaches armTarget. Unit: seconds
+  private double armTimerStart = 0.0; // When the arm timer was last restarted. Unit: seconds
+  private boolean hasNote = true; // Starts with the preloaded note.
+  private double spinUpStart = 0.0; // When the thrower started spinning up for the note it is holding. Unit: seconds
+  private boolean flywheelDisabled = false;
+  private final ArrayList<double[]> notes = new ArrayList<>(); // The notes still on the field.
+  private boolean unpredicted = false; // Whether the current step relies on a condition that cannot be predicted.
+
+  // The result of simulating the drive action of a step. Times are from the start of the step.
+  private final ArrayList<double[]> poses = new ArrayList<>(); // x, y, and heading every period.
+  private double driveDone = 0.0; // When atDriveGoal() becomes true. Unit: seconds
+  private double pickup = Double.POSITIVE_INFINITY; // When a note is picked up during the step. Unit: seconds
+  private double[] pickedNote = null; // The note picked up during the step.
+  private double throwDone = Double.POSITIVE_INFINITY; // When a commanded throw has finished. Unit: seconds
+  private double ampDone = Double.POSITIVE_INFINITY; // When a commanded amp score has finished. Unit: seconds
+
+  public static void main(String[] args) throws IOException {
+    HAL.initialize(500, 0);
+    String routineName = args.length > 0 && !args[0].isEmpty() ? args[0] : null;
+    ShotTable shotTable = new ShotTable("shotTable.json");
+    PathPlannerTrajectory[] paths = new PathPlannerTrajectory[Robot.pathNames.length];
+    for (int pathIndex = 0; pathIndex < paths.length; pathIndex++) {
+      paths[pathIndex] = PathPlannerPath.fromPathFile(Robot.pathNames[pathIndex]).getTrajectory(new ChassisSpeeds(), Rotation2d.fromDegrees(Robot.pathInitialAngles[pathIndex]));
+    }
+    JsonNode root = new ObjectMapper().readTree(new File(Filesystem.getDeployDirectory(), "autos.json"));
+
+    ArrayList<String> summary = new ArrayList<>();
+    for (JsonNode routineNode : root.path("routines")) {
+      String name = routineNode.path("name").asText("Unnamed");
+      if (routineName != null && !routineName.equals(name)) {
+        continue;
+      }
+      System.out.println(name);
+      double total;
+      try {
+        total = new AutoAnalyzer(shotTable, paths).analyze(AutoCompiler.parseRoutine(routineNode));
+      } catch (RuntimeException e) {
+        System.out.println("  Could not analyze the routine. " + e.getMessage());
+        total = Double.NaN;
+      }
+      summary.add(String.format("  %-24s %s", name, Double.isNaN(total) ? "error" : Double.isInfinite(total) ? "does not finish" : String.format("%6.2f s%s", total, total > autoLength ? "  over by " + String.format("%.2f", total - autoLength) + " s" : "")));
+      System.out.println();
+    }
+    System.out.println("Summary");
+    for (String line : summary) {
+      System.out.println(line);
+    }
+    System.exit(0);
+  }
+
+  private AutoAnalyzer(ShotTable _shotTable, PathPlannerTrajectory[] _paths) {
+    shotTable = _shotTable;
+    paths = _paths;
+    for (double[] note : notePositions) {
+      notes.add(note.clone());
+    }
+  }
+
+  // Walks the routine and prints its timeline. Returns the time the routine ends or reaches a step that waits for the end of auto, or infinity if a step never ends.
+  private double analyze(AutoCompiler.ParsedRoutine routine) {
+    HashMap<String, AutoTrajectory> trajectories = routine.trajectories;
+    setStartPose(routine);
+    System.out.println(String.format("  Starting at (%.2f, %.2f) facing %.1f degrees", x, y, heading));
+    System.out.println(String.format("  %-26s %6s %6s %6s %6s %7s  %s", "Step", "Start", "Time", "Drive", "Arm", "Thrower", "Transition"));
+    for (AutoCompiler.Command action : routine.initActions) {
+      applyAction(action);
+    }
+
+    int stepIndex = routine.steps.length > 0 ? 0 : AutoRoutine.end;
+    for (int stepCount = 0; stepIndex != AutoRoutine.end && stepCount < maxSteps; stepCount++) {
+      AutoCompiler.ParsedStep step = routine.steps[stepIndex];
+      String stepName = (stepIndex + 1) + " " + step.name;
+      double stepStart = time;
+      unpredicted = false;
+      simulateStep(step, trajectories);
+
+      // Takes the first transition to come true, the way the routine checks them in order each period.
+      double stepTime = Double.POSITIVE_INFINITY;
+      AutoCompiler.ParsedTransition taken = null;
+      for (AutoCompiler.ParsedTransition transition : step.transitions) {
+        double transitionTime = getConditionTime(transition.condition);
+        if (transitionTime < stepTime) {
+          stepTime = transitionTime;
+          taken = transition;
+        }
+      }
+      double armTime = Math.max(armArrival - stepStart, 0.0);
+      double thrower = Math.min(throwDone, ampDone);
+      if (step.transitions.length == 0) {
+        System.out.println(String.format("  %-26s %6.2f %6s %s %6.2f %s  waits for the end of auto", stepName, stepStart, "-", format(driveDone), armTime, format(thrower)));
+        return time;
+      }
+      if (taken == null) {
+        System.out.println(String.format("  %-26s %6.2f %6s %s %6.2f %s  never ends", stepName, stepStart, "-", format(driveDone), armTime, format(thrower)));
+        return Double.POSITIVE_INFINITY;
+      }
+      System.out.println(String.format("  %-26s %6.2f %6.2f %s %6.2f %s  %s%s", stepName, stepStart, stepTime, format(driveDone), armTime, format(thrower), taken.condition.text, unpredicted ? " (assumed)" : ""));
+
+      // Moves the robot to where it is when the transition is taken, then runs the transition's actions.
+      finishStep(stepTime);
+      for (AutoCompiler.Command action : taken.actions) {
+        applyAction(action);
+      }
+      stepIndex = taken.next;
+    }
+    System.out.println(String.format("  Total: %.2f s, %s", time, time <= autoLength ? String.format("%.2f s to spare", autoLength - time) : String.format("over by %.2f s", time - autoLength)));
+    return time;
+  }
+
+  // Puts the robot where the routine says it starts, or otherwise where the first step drives to, since routines start where the robot was placed to make its first move.
+  // A routine that starts with a move relative to where the robot was placed, and does not say where it starts, is assumed to start against the front of the subwoofer.
+  private void setStartPose(AutoCompiler.ParsedRoutine routine) {
+    x = startX;
+    y = speakerY;
+    heading = 180.0;
+    if (routine.start != null) {
+      x = routine.start[0];
+      y = routine.start[1];
+      heading = routine.start[2];
+      return;
+    }
+    if (routine.steps.length == 0) {
+      return;
+    }
+    for (AutoCompiler.Command action : routine.steps[0].actions) {
+      String[] args = action.args;
+      if (action.keyword.equals("driveTo") && !args[0].startsWith("here") && !args[1].startsWith("here")) {
+        x = Double.parseDouble(args[0]);
+        y = Double.parseDouble(args[1]);
+        heading = args[2].equals("speaker") ? getSpeakerHeading(x, y) : Double.parseDouble(args[2]);
+        return;
+      } else if (action.keyword.equals("followTrajectory")) {
+        AutoTrajectory trajectory = routine.trajectories.get(args[0]);
+        trajectory.sample(0.0, false);
+        x = trajectory.getXPos();
+        y = trajectory.getYPos();
+        heading = trajectory.getHeading();
+        return;
+      }
+    }
+  }
+
+  // Simulates the drive action of the step, starts the other actions, and finds when the intake, arm, and thrower finish.
+  private void simulateStep(AutoCompiler.ParsedStep step, HashMap<String, AutoTrajectory> trajectories) {
+    poses.clear();
+    driveDone = 0.0;
+    pickup = Double.POSITIVE_INFINITY;
+    pickedNote = null;
+    throwDone = Double.POSITIVE_INFINITY;
+    ampDone = Double.POSITIVE_INFINITY;
+    ArrayList<AutoCompiler.Command> guardedActions = new ArrayList<>();
+    AutoCompiler.Command driveAction = null;
+    for (AutoCompiler.Command action : step.actions) {
+      String command = action.keyword;
+      boolean drives = command.equals("driveTo") || command.equals("aimDrive") || command.equals("followTrajectory") || command.equals("followPath") || command.equals("stop");
+      if (drives && action.guard == null) {
+        driveAction = action;
+      } else if (action.guard != null || command.equals("commandThrow") || command.equals("commandAmpScore")) {
+        guardedActions.add(action);
+      } else if (!command.equals("aimThrower")) {
+        applyAction(action);
+      }
+    }
+    simulateDrive(driveAction, trajectories);
+    for (AutoCompiler.Command action : step.actions) {
+      if (action.keyword.equals("aimThrower") && action.guard == null) {
+        double stopTime = Double.isInfinite(driveDone) ? 0.0 : driveDone; // The arm follows the aim as the robot drives, and has settled once the robot stops.
+        double moveTime = hasDriveGoal(driveAction, trajectories) ? 0.0 : stopTime; // Driving to a stop, the arm is sent straight to the aim from the goal when the step starts.
+        moveArm(shotTable.getArmAngle(getSpeakerDistance(getPose(stopTime)), 0.0), moveTime);
+      }
+    }
+    findPickup();
+
+    // Actions that wait on a condition start when it comes true. A throw or amp score is then timed through the thrower state machine.
+    for (AutoCompiler.Command action : guardedActions) {
+      double start = action.guard != null ? getConditionTime(action.guard) : 0.0;
+      String command = action.keyword;
+      if (Double.isInfinite(start)) {
+        continue;
+      }
+      if (command.equals("commandThrow")) {
+        throwDone = getThrowTime(start);
+      } else if (command.equals("commandAmpScore")) {
+        double noteTime = hasNote ? 0.0 : pickup;
+        ampDone = Math.max(start, noteTime) + Thrower.ampDelay;
+      } else {
+        double stepStart = time;
+        time += start;
+        applyAction(action);
+        time = stepStart;
+      }
+    }
+  }
+
+  // Returns when a throw commanded at the given time from the start of the step has finished. The note is released once the flywheels are predicted to be at speed
+  // by the time it reaches them, or after spinUpDelay, and the thrower waits up to throwDelay for it to leave. Unit: seconds from the start of the step
+  private double getThrowTime(double commandTime) {
+    double noteTime = hasNote ? 0.0 : pickup;
+    if (Double.isInfinite(noteTime)) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double spinUpStartTime = hasNote ? spinUpStart - time : pickup;
+    double flywheelVel = 0.5*(shotTable.getVortex1Vel(getSpeakerDistance(getFinalPose()), 0.0) + shotTable.getVortex2Vel(getSpeakerDistance(getFinalPose()), 0.0));
+    double readyTime = flywheelDisabled ? Double.POSITIVE_INFINITY : spinUpStartTime + FlywheelObserver.getSpinUpTime(0.0, flywheelVel, Thrower.allowableFlywheelVelError) - Thrower.noteTravelTime;
+    double release = Math.max(Math.max(commandTime, noteTime), Math.min(readyTime, spinUpStartTime + Thrower.spinUpDelay));
+    return release + Thrower.noteTravelTime + Thrower.throwDelay;
+  }
+
+  // Simulates the drive action for up to the horizon, and records when atDriveGoal() becomes true.
+  private void simulateDrive(AutoCompiler.Command action, HashMap<String, AutoTrajectory> trajectories) {
+    String keyword = action == null ? "stop" : action.keyword;
+    String[] args = action == null ? new String[0] : action.args;
+    switch (keyword) {
+      case "driveTo": {
+        double targetX = parseCoordinate(args[0], x);
+        double targetY = parseCoordinate(args[1], y);
+        boolean aimed = args[2].equals("speaker");
+        double targetHeading = aimed ? 0.0 : Double.parseDouble(args[2]);
+        ProfiledPIDController xController = new ProfiledPIDController(Drivetrain.driveToPosP, 0.0, 0.0, new TrapezoidProfile.Constraints(Drivetrain.maxVelAuto, Drivetrain.maxAccAuto));
+        ProfiledPIDController yController = new ProfiledPIDController(Drivetrain.driveToPosP, 0.0, 0.0, new TrapezoidProfile.Constraints(Drivetrain.maxVelAuto, Drivetrain.maxAccAuto));
+        ProfiledPIDController angleController = new ProfiledPIDController(Drivetrain.driveToAngP, 0.0, 0.0, new TrapezoidProfile.Constraints(Drivetrain.maxAngularVelAuto, Drivetrain.maxAngularAccAuto));
+        double poseX = x;
+        double poseY = y;
+        double poseHeading = heading;
+        xController.reset(poseX, 0.0);
+        yController.reset(poseY, 0.0);
+        angleController.reset(getAngleDistance(poseHeading, aimed ? getSpeakerHeading(poseX, poseY) : targetHeading)*Math.PI/180.0, 0.0);
+        driveDone = Double.POSITIVE_INFINITY;
+        for (double stepTime = 0.0; stepTime < horizon; stepTime += period) {
+          poses.add(new double[] {poseX, poseY, poseHeading});
+          double angleDistance = getAngleDistance(poseHeading, aimed ? getSpeakerHeading(poseX, poseY) : targetHeading);
+          double xVel = xController.calculate(poseX, targetX);
+          double yVel = yController.calculate(poseY, targetY);
+          double angVel = angleController.calculate(angleDistance*Math.PI/180.0, 0.0);
+          boolean atX = Math.abs(poseX - targetX) < Drivetrain.defaultPosTol;
+          boolean atY = Math.abs(poseY - targetY) < Drivetrain.defaultPosTol;
+          boolean atAngle = Math.abs(angleDistance) < Drivetrain.defaultAngTol;
+          if (atX && atY && atAngle) {
+            driveDone = stepTime;
+            break;
+          }
+          poseX += (atX ? 0.0 : clamp(xVel, Drivetrain.maxVelAuto))*period;
+          poseY += (atY ? 0.0 : clamp(yVel, Drivetrain.maxVelAuto))*period;
+          poseHeading += (atAngle ? 0.0 : clamp(angVel, Drivetrain.maxAngularVelAuto))*period*180.0/Math.PI;
+        }
+        break;
+      }
+      case "aimDrive": {
+        double xVel = Double.parseDouble(args[0]);
+        double yVel = Double.parseDouble(args[1]);
+        boolean aimed = args[2].equals("speaker");
+        double targetHeading = aimed ? 0.0 : Double.parseDouble(args[2]);
+        ProfiledPIDController angleController = new ProfiledPIDController(Drivetrain.driveToAngP, 0.0, 0.0, new TrapezoidProfile.Constraints(Drivetrain.maxAngularVelAuto, Drivetrain.maxAngularAccAuto));
+        double poseX = x;
+        double poseY = y;
+        double poseHeading = heading;
+        angleController.reset(getAngleDistance(poseHeading, aimed ? getSpeakerHeading(poseX, poseY) : targetHeading)*Math.PI/180.0, 0.0);
+        driveDone = Double.POSITIVE_INFINITY;
+        for (double stepTime = 0.0; stepTime < horizon; stepTime += period) {
+          poses.add(new double[] {poseX, poseY, poseHeading});
+          double angleDistance = getAngleDistance(poseHeading, aimed ? getSpeakerHeading(poseX, poseY) : targetHeading);
+          double angVel = angleController.calculate(angleDistance*Math.PI/180.0, 0.0);
+          boolean atAngle = Math.abs(angleDistance) < Drivetrain.defaultAngTol;
+          if (atAngle && Double.isInfinite(driveDone)) {
+            driveDone = stepTime; // aimDrive() is at its goal once it faces the heading, even while it keeps driving.
+          }
+          if (atAngle && xVel == 0.0 && yVel == 0.0) {
+            break;
+          }
+          poseX += xVel*period;
+          poseY += yVel*period;
+          poseHeading += (atAngle ? 0.0 : clamp(angVel, Drivetrain.maxAngularVelAuto))*period*180.0/Math.PI;
+        }
+        break;
+      }
+      case "followTrajectory": {
+        AutoTrajectory trajectory = trajectories.get(args[0]);
+        for (double stepTime = 0.0; stepTime < trajectory.getTotalTime() + period; stepTime += period) {
+          trajectory.sample(stepTime, false);
+          poses.add(new double[] {trajectory.getXPos(), trajectory.getYPos(), trajectory.getHeading()});
+        }
+        driveDone = trajectory.getTotalTime();
+        break;
+      }
+      case "followPath": {
+        PathPlannerTrajectory path = paths[Integer.parseInt(args[0])];
+        for (double stepTime = 0.0; stepTime < path.getTotalTimeSeconds() + period; stepTime += period) {
+          PathPlannerTrajectory.State state = path.sample(stepTime);
+          poses.add(new double[] {state.positionMeters.getX(), state.positionMeters.getY(), state.targetHolonomicRotation.getDegrees()});
+        }
+        driveDone = path.getTotalTimeSeconds();
+        break;
+      }
+      default:
+        poses.add(new double[] {x, y, heading});
+        driveDone = 0.0;
+    }
+  }
+
+  // Finds the first time in the step that the robot reaches a note with the arm down to intake it.
+  private void findPickup() {
+    if (hasNote) {
+      return;
+    }
+    for (int poseIndex = 0; poseIndex < poses.size(); poseIndex++) {
+      double stepTime = poseIndex*period;
+      boolean armDown = armTarget <= Robot.armIntakeSetpoint + Arm.armTol && time + stepTime >= armArrival;
+      if (!armDown) {
+        continue;
+      }
+      double[] pose = poses.get(poseIndex);
+      double cos = Math.cos(pose[2]*Math.PI/180.0);
+      double sin = Math.sin(pose[2]*Math.PI/180.0);
+      for (double[] note : notes) {
+        double behind = -((note[0] - pose[0])*cos + (note[1] - pose[1])*sin); // The distance of the note behind the center of the robot.
+        double beside = -(note[0] - pose[0])*sin + (note[1] - pose[1])*cos;
+        if (behind >= 0.0 && behind < intakeReach && Math.abs(beside) < intakeHalfWidth) {
+          pickup = stepTime;
+          pickedNote = note;
+          return;
+        }
+      }
+    }
+  }
+
+  // Moves time and the robot forward to the end of the step, and updates the note the robot is holding.
+  private void finishStep(double stepTime) {
+    double[] pose = getPose(stepTime);
+    boolean thrown = stepTime >= throwDone || stepTime >= ampDone;
+    if (stepTime >= pickup) {
+      hasNote = true;
+      spinUpStart = time + pickup;
+      notes.remove(pickedNote);
+    }
+    if (thrown) {
+      hasNote = false;
+    }
+    x = pose[0];
+    y = pose[1];
+    heading = pose[2];
+    time += stepTime;
+  }
+
+  // Returns the time from the start of the step when the condition comes true, or infinity if it never does within the horizon. Each term is modeled as becoming true at one time
+  // and staying true for the rest of the step, so a negated term is true until then. The condition is true once every term has become true, if no negated term has become false first.
+  private double getConditionTime(AutoCompiler.Condition condition) {
+    double trueFrom = 0.0;
+    double trueUntil = Double.POSITIVE_INFINITY;
+    for (AutoCompiler.Term term : condition.terms) {
+      double termTime = getTermTime(term.command);
+      if (term.negated) {
+        trueUntil = Math.min(trueUntil, termTime);
+      } else {
+        trueFrom = Math.max(trueFrom, termTime);
+      }
+    }
+    return trueFrom < trueUntil ? trueFrom : Double.POSITIVE_INFINITY;
+  }
+
+  // Returns the time from the start of the step when the term, without its "not", comes true.
+  private double getTermTime(AutoCompiler.Command term) {
+    String[] args = term.args;
+    switch (term.keyword) {
+      case "always":
+        return 0.0;
+      case "atDriveGoal":
+      case "atPathEnd":
+        return driveDone;
+      case "armAtSetpoint":
+        return Math.max(armArrival - time, 0.0);
+      case "armSettled":
+        return Math.max(Math.max(armArrival, armTimerStart) + Double.parseDouble(args[0]) - time, 0.0);
+      case "shotReady":
+        return Math.max(driveDone, Math.max(Math.max(armArrival, armTimerStart) + Double.parseDouble(args[0]) - time, 0.0));
+      case "inRange":
+        return getSpeakerDistance(getFinalPose()) < Robot.maxShotDistance ? 0.0 : Double.POSITIVE_INFINITY;
+      case "noteThrown":
+        return hasNote || pickup < Double.POSITIVE_INFINITY ? throwDone : 0.0;
+      case "noteScored":
+        return hasNote || pickup < Double.POSITIVE_INFINITY ? ampDone : 0.0;
+      case "sensor1":
+      case "hasNote":
+        return hasNote ? 0.0 : pickup;
+      case "xAbove": {
+        double limit = Double.parseDouble(args[0]);
+        for (int poseIndex = 0; poseIndex < poses.size(); poseIndex++) {
+          if (poses.get(poseIndex)[0] > limit) {
+            return poseIndex*period;
+          }
+        }
+        return Double.POSITIVE_INFINITY;
+      }
+      case "climbersDown":
+        unpredicted = true;
+        return 0.0;
+      default:
+        throw new IllegalArgumentException("The analyzer does not model the condition \"" + term.keyword + "\".");
+    }
+  }
+
+  // Applies an action that changes the state of the robot at the current time.
+  private void applyAction(AutoCompiler.Command action) {
+    String[] args = action.args;
+    switch (action.keyword) {
+      case "aimThrower":
+        moveArm(shotTable.getArmAngle(getSpeakerDistance(new double[] {x, y, heading}), 0.0), 0.0);
+        break;
+      case "arm":
+        switch (args[0]) {
+          case "drive": moveArm(Robot.armDriveSetpoint, 0.0); break;
+          case "intake": moveArm(Robot.armIntakeSetpoint, 0.0); break;
+          case "amp": moveArm(Robot.armAmpSetpoint, 0.0); break;
+          case "hold": break;
+          default: moveArm(Double.parseDouble(args[0]), 0.0);
+        }
+        break;
+      case "restartArmTimer":
+        armTimerStart = time;
+        break;
+      case "disableFlywheel":
+        flywheelDisabled = args[0].equals("true");
+        break;
+      case "driveTo":
+      case "aimDrive":
+      case "followPath":
+      case "followTrajectory":
+      case "stop":
+      case "commandThrow":
+      case "commandAmpScore":
+      case "resetClimbers":
+        break; // Simulated by simulateStep(), or does not change the timing.
+      default:
+        throw new IllegalArgumentException("The analyzer does not model the action \"" + action.keyword + "\".");
+    }
+  }
+
+  // Whether the drive action takes the robot to a point where it stops, so that aimThrower() aims from there. Matches Drivetrain.hasDriveGoal().
+  private static boolean hasDriveGoal(AutoCompiler.Command driveAction, HashMap<String, AutoTrajectory> trajectories) {
+    if (driveAction == null) {
+      return false;
+    }
+    switch (driveAction.keyword) {
+      case "driveTo":
+      case "followPath":
+        return true;
+      case "followTrajectory":
+        return trajectories.get(driveAction.args[0]).getEndVel() == 0.0;
+      default:
+        return false;
+    }
+  }
+
+  // Starts an arm move at the given time from the start of the step. A move started before the arm arrives starts from where the arm is part way through the last move.
+  private void moveArm(double target, double stepTime) {
+    double moveStart = time + stepTime;
+    double fraction = armArrival > armMoveStart ? Math.min(Math.max((moveStart - armMoveStart)/(armArrival - armMoveStart), 0.0), 1.0) : 1.0;
+    armAngle = armAngle + (armTarget - armAngle)*fraction;
+    armTarget = target;
+    armMoveStart = moveStart;
+    armArrival = moveStart + getArmMoveTime(Math.abs(armTarget - armAngle));
+  }
+
+  // Returns how long a Motion Magic move of the given distance takes. Jerk limiting rounds the corners of the trapezoid profile, which adds about acc/jerk. Unit: seconds
+  private static double getArmMoveTime(double distance) {
+    if (distance < Arm.armTol) {
+      return 0.0;
+    }
+    double rotations = distance*Arm.gearRatio/360.0;
+    double vel = Arm.motionMagicCruiseVel;
+    double acc = Arm.motionMagicAcc;
+    double trapezoidTime = rotations*acc < vel*vel ? 2.0*Math.sqrt(rotations/acc) : rotations/vel + vel/acc;
+    return trapezoidTime + acc/Arm.motionMagicJerk;
+  }
+
+  // Returns the pose at the given time from the start of the step. The last pose is held after the simulated drive ends.
+  private double[] getPose(double stepTime) {
+    if (poses.isEmpty()) {
+      return new double[] {x, y, heading};
+    }
+    int poseIndex = (int) Math.min(Math.round(stepTime/period), poses.size() - 1);
+    return poses.get(Math.max(poseIndex, 0));
+  }
+
+  // Returns the pose where the drive action of the step stops, or its last simulated pose if it does not stop.
+  private double[] getFinalPose() {
+    return getPose(Double.isInfinite(driveDone) ? horizon : driveDone);
+  }
+
+  private static double getSpeakerDistance(double[] pose) {
+    return Math.hypot(pose[0], speakerY - pose[1]);
+  }
+
+  private static double getSpeakerHeading(double poseX, double poseY) {
+    return Math.atan2(speakerY - poseY, -poseX)*180.0/Math.PI;
+  }
+
+  // Parses a coordinate that may be "here", or "here" plus an offset, relative to the given position.
+  private static double parseCoordinate(String word, double here) {
+    if (word.startsWith("here")) {
+      return here + (word.length() > 4 ? Double.parseDouble(word.substring(4)) : 0.0);
+    }
+    return Double.parseDouble(word);
+  }
+
+  // The shortest distance from one angle to another, with the same sign as Drivetrain.getAngleDistance(). Unit: degrees
+  private static double getAngleDistance(double currAngle, double targetAngle) {
+    return Math.IEEEremainder(currAngle - targetAngle, 360.0);
+  }
+
+  private static double clamp(double value, double max) {
+    return Math.max(-max, Math.min(value, max));
+  }
+
+  private static String format(double value) {
+    return Double.isInfinite(value) ? String.format("%6s", "-") : String.format("%6.2f", value);
+  }
+}
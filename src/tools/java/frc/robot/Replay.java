@@ -0,0 +1,494 @@
+package frc.robot;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+// Replays a match log recorded on the robot through the Drivetrain odometry and vision fusion and the Thrower state machine on a desktop.
+// The recorded hardware inputs are fed back through the IO interfaces, and the calls each subsystem recieved are made again in the same order, one period at a time.
+// Time is simulated, so a match replays as fast as the computer can run it. The outputs of every period are written to a CSV file.
+// If the CSV file of an earlier replay is given, the two are compared so that changes to the code can be checked against real match data.
+// Usage: ./gradlew replay -PreplayLog=<log.wpilog> [-PreplayOutput=<output.csv>] [-PreplayBaseline=<baseline.csv>]
+public class Replay {
+  private static final String[] moduleNames = {"Front Left", "Front Right", "Back Right", "Back Left"}; // Must match the names used by Drivetrain.
+  private static final double poseTol = 0.001; // The difference in the robot position between two replays that is reported as a change. Unit: meters or degrees
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Usage: Replay <log.wpilog> [output.csv] [baseline.csv]");
+      return;
+    }
+    String outputPath = args.length > 1 ? args[1] : "replay.csv";
+    ReplayLog log = new ReplayLog(args[0]);
+
+    HAL.initialize(500, 0);
+    SimHooks.pauseTiming(); // Time only advances when the replay steps it.
+    SimHooks.restartTiming();
+
+    long[] cycleTimes = log.getCycleTimes("Robot Cycle", "Drivetrain Calls", "Thrower Calls");
+    if (cycleTimes.length == 0) {
+      System.out.println("The log does not contain any recorded periods.");
+      return;
+    }
+
+    // Creates the subsystems from the recorded inputs. Values recorded before the first period were read while the robot was being constructed.
+    log.setTime(Long.MIN_VALUE);
+    SwerveModuleIO[] moduleIOs = new SwerveModuleIO[moduleNames.length];
+    for (int moduleIndex = 0; moduleIndex < moduleNames.length; moduleIndex++) {
+      moduleIOs[moduleIndex] = new SwerveModuleIOReplay(log, moduleNames[moduleIndex]);
+    }
+    Drivetrain swerve = new Drivetrain(moduleIOs, new GyroIOReplay(log), new VisionIOReplay(log));
+    ThrowerIOReplay throwerIO = new ThrowerIOReplay(log);
+    Thrower thrower = new Thrower(throwerIO);
+
+    long startTime = System.nanoTime();
+    try (PrintWriter output = new PrintWriter(outputPath)) {
+      output.println("time,x,y,angle,thrower state,index command,vortex 1 command,vortex 2 command");
+      for (long cycleTime : cycleTimes) {
+        log.setTime(cycleTime);
+        SimHooks.stepTiming(Math.max(0.0, (cycleTime - RobotController.getFPGATime())/1000000.0)); // Moves the simulated clock to the start of the recorded period.
+        setAlliance(log);
+
+        double[] drivetrainCalls = log.getDoubleArray("Drivetrain Calls", new double[0]);
+        for (int callIndex = 0; callIndex < drivetrainCalls.length; callIndex = CallLog.getNextCall(drivetrainCalls, callIndex)) {
+          double[] callArgs = CallLog.getArgs(drivetrainCalls, callIndex);
+          switch (CallLog.getCall(drivetrainCalls, callIndex)) {
+            case 'D': swerve.drive(callArgs[0], callArgs[1], callArgs[2], callArgs[3] != 0.0, callArgs[4], callArgs[5], callArgs[6], callArgs[7]); break;
+            case 'I': swerve.updateInputs(); break;
+            case 'O': swerve.updateOdometry(); break;
+            case 'V': swerve.addVisionEstimate(callArgs[0], callArgs[1], callArgs[2]); break;
+            case 'R': swerve.resetCalibration(); break;
+            case 'A': swerve.addCalibrationEstimate(); break;
+            case 'P': swerve.pushCalibration(); break;
+            case 'G': swerve.resetGyro(); break;
+          }
+        }
+        double[] throwerCalls = log.getDoubleArray("Thrower Calls", new double[0]);
+        for (int callIndex = 0; callIndex < throwerCalls.length; callIndex = CallLog.getNextCall(throwerCalls, callIndex)) {
+          double[] callArgs = CallLog.getArgs(throwerCalls, callIndex);
+          switch (CallLog.getCall(throwerCalls, callIndex)) {
+            case 'U': thrower.updateInputs(); break;
+            case 'I': thrower.init(); break;
+            case 'P': thrower.periodic(); break;
+            case 'T': thrower.commandThrow(); break;
+            case 'A': thrower.commandAmpScore(); break;
+            case 'D': thrower.setDisableFlywheel(callArgs[0] != 0.0); break;
+            case 'V': thrower.setFlywheelVel(callArgs[0], callArgs[1]); break;
+          }
+        }
+        swerve.updateDash();
+        thrower.updateDashboard();
+
+        output.println(cycleTime/1000000.0 + "," + swerve.getXPos() + "," + swerve.getYPos() + "," + swerve.getFusedAng() + "," + thrower.getStateName() + ","
+          + throwerIO.indexCommand + "," + throwerIO.vortex1Command + "," + throwerIO.vortex2Command);
+      }
+    }
+    double replayTime = (System.nanoTime() - startTime)/1.0e9;
+    double matchTime = (cycleTimes[cycleTimes.length - 1] - cycleTimes[0])/1.0e6;
+    System.out.printf("Replayed %d periods (%.1f s of robot time) in %.2f s, %.0fx real time. Outputs written to %s%n", cycleTimes.length, matchTime, replayTime, matchTime/Math.max(replayTime, 1e-9), outputPath);
+
+    if (args.length > 2) {
+      compare(args[2], outputPath);
+    }
+  }
+
+  // Sets the simulated alliance to the one recorded on the robot.
+  private static void setAlliance(ReplayLog log) {
+    if (log.getBoolean("isRedAllaince", false)) {
+      DriverStationSim.setAllianceStationId(AllianceStationID.Red1);
+    } else if (log.getBoolean("isBlueAllaince", false)) {
+      DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+    } else {
+      DriverStationSim.setAllianceStationId(AllianceStationID.Unknown);
+    }
+    DriverStationSim.notifyNewData();
+    DriverStation.refreshData();
+  }
+
+  // Compares the outputs of two replays and prints where they differ.
+  private static void compare(String baselinePath, String outputPath) throws IOException {
+    ArrayList<String[]> baseline = readCSV(baselinePath);
+    ArrayList<String[]> current = readCSV(outputPath);
+    if (baseline.size() != current.size()) {
+      System.out.println("The baseline has " + baseline.size() + " periods and this replay has " + current.size() + ". Only the shared periods are compared.");
+    }
+    String[] header = current.get(0);
+    double maxPosError = 0.0; // Unit: meters
+    double maxAngError = 0.0; // Unit: degrees
+    String maxPosErrorTime = "";
+    String[] firstDifference = new String[header.length]; // The time each column first differed. Null if the column never differed.
+    int differentPeriods = 0;
+    for (int row = 1; row < Math.min(baseline.size(), current.size()); row++) {
+      String[] baselineRow = baseline.get(row);
+      String[] currentRow = current.get(row);
+      double posError = Math.hypot(Double.parseDouble(currentRow[1]) - Double.parseDouble(baselineRow[1]), Double.parseDouble(currentRow[2]) - Double.parseDouble(baselineRow[2]));
+      double angError = Math.abs(Double.parseDouble(currentRow[3]) - Double.parseDouble(baselineRow[3]));
+      angError = Math.min(angError, 360.0 - angError);
+      if (posError > maxPosError) {
+        maxPosError = posError;
+        maxPosErrorTime = currentRow[0];
+      }
+      maxAngError = Math.max(maxAngError, angError);
+      boolean different = posError > poseTol || angError > poseTol;
+      for (int column = 4; column < header.length; column++) {
+        if (!currentRow[column].equals(baselineRow[column])) {
+          different = true;
+          if (firstDifference[column] == null) {
+            firstDifference[column] = currentRow[0];
+          }
+        }
+      }
+      if (different) {
+        differentPeriods++;
+      }
+    }
+    System.out.printf("Compared to %s: %d periods differ. Max position difference %.4f m at %s s. Max angle difference %.3f deg.%n", baselinePath, differentPeriods, maxPosError, maxPosErrorTime, maxAngError);
+    for (int column = 4; column < header.length; column++) {
+      if (firstDifference[column] != null) {
+        System.out.println("  " + header[column] + " first differs at " + firstDifference[column] + " s");
+      }
+    }
+  }
+
+  private static ArrayList<String[]> readCSV(String path) throws IOException {
+    ArrayList<String[]> rows = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        rows.add(line.split(",", -1));
+      }
+    }
+    return rows;
+  }
+
+  // Returns the recorded inputs of a swerve module. Commands are ignored.
+  private static class SwerveModuleIOReplay implements SwerveModuleIO {
+    private final ReplayLog log;
+    private final String name;
+    private double driveRotorPos = 0.0;
+    private double driveRotorVel = 0.0;
+    private double turnRotorPos = 0.0;
+    private double wheelEncoderPos = 0.0;
+    private boolean driveMotorReset = false;
+    private boolean turnMotorReset = false;
+
+    private SwerveModuleIOReplay(ReplayLog _log, String _name) {
+      log = _log;
+      name = _name;
+    }
+
+    public void updateInputs() {
+      driveRotorPos = log.getDouble("Inputs/" + name + " Drive Rotor Position", 0.0);
+      driveRotorVel = log.getDouble("Inputs/" + name + " Drive Rotor Velocity", 0.0);
+      turnRotorPos = log.getDouble("Inputs/" + name + " Turn Rotor Position", 0.0);
+      wheelEncoderPos = log.getDouble("Inputs/" + name + " Wheel Encoder Position", 0.0);
+      driveMotorReset = log.getBoolean("Inputs/" + name + " Drive Motor Reset", false);
+      turnMotorReset = log.getBoolean("Inputs/" + name + " Turn Motor Reset", false);
+    }
+
+    public double getDriveRotorPos() {
+      return driveRotorPos;
+    }
+
+    public double getDriveRotorVel() {
+      return driveRotorVel;
+    }
+
+    public double getTurnRotorPos() {
+      return turnRotorPos;
+    }
+
+    public double getWheelEncoderPos() {
+      return wheelEncoderPos;
+    }
+
+    public void setDriveVel(double rotorVel, double rotorAcc) {}
+
+    public void setTurnPos(double rotorPos, double feedForward) {}
+
+    public boolean getDriveMotorFailure() {
+      return log.getBoolean(name + " Swerve Module Drive Motor Failure", false);
+    }
+
+    public boolean getTurnMotorFailure() {
+      return log.getBoolean(name + " Swerve Module Turn Motor Failure", false);
+    }
+
+    public boolean getDriveMotorReset() {
+      return driveMotorReset;
+    }
+
+    public boolean getTurnMotorReset() {
+      return turnMotorReset;
+    }
+  }
+
+  // Returns the recorded inputs of the gyro.
+  private static class GyroIOReplay implements GyroIO {
+    private final ReplayLog log;
+    private double yaw = 0.0;
+    private double pitch = 0.0;
+    private double roll = 0.0;
+
+    private GyroIOReplay(ReplayLog _log) {
+      log = _log;
+    }
+
+    public void updateInputs() {
+      yaw = log.getDouble("Inputs/Gyro Yaw", 0.0);
+      pitch = log.getDouble("Inputs/Gyro Pitch", 0.0);
+      roll = log.getDouble("Inputs/Gyro Roll", 0.0);
+    }
+
+    public double getYaw() {
+      return yaw;
+    }
+
+    public double getPitch() {
+      return pitch;
+    }
+
+    public double getRoll() {
+      return roll;
+    }
+
+    public void setYaw(double _yaw) {} // The recorded yaw already includes any resets.
+  }
+
+  // Returns the recorded inputs of the Limelight.
+  private static class VisionIOReplay implements VisionIO {
+    private final ReplayLog log;
+    private long frame = 0;
+    private boolean hasTarget = false;
+    private double targetWidth = 0.0;
+    private double targetHeight = 0.0;
+    private double targetArea = 0.0;
+    private final double[] blueBotPose = new double[7];
+    private final double[] redBotPose = new double[7];
+
+    private VisionIOReplay(ReplayLog _log) {
+      log = _log;
+    }
+
+    public void updateInputs() {
+      frame = (long) log.getDouble("Inputs/Limelight Frame", 0.0);
+      hasTarget = log.getBoolean("Inputs/Limelight Has Target", false);
+      targetWidth = log.getDouble("Inputs/Limelight Target Width", 0.0);
+      targetHeight = log.getDouble("Inputs/Limelight Target Height", 0.0);
+      targetArea = log.getDouble("Inputs/Limelight Target Area", 0.0);
+      readBotPose("Blue", blueBotPose);
+      readBotPose("Red", redBotPose);
+    }
+
+    // Reads the recorded parts of the botpose array of an alliance.
+    private void readBotPose(String alliance, double[] botPose) {
+      botPose[0] = log.getDouble("Inputs/Limelight " + alliance + " Botpose X", 0.0);
+      botPose[1] = log.getDouble("Inputs/Limelight " + alliance + " Botpose Y", 0.0);
+      botPose[5] = log.getDouble("Inputs/Limelight " + alliance + " Botpose Yaw", 0.0);
+      botPose[6] = log.getDouble("Inputs/Limelight " + alliance + " Botpose Latency", 0.0);
+    }
+
+    public long getFrame() {
+      return frame;
+    }
+
+    public boolean hasTarget() {
+      return hasTarget;
+    }
+
+    public double getTargetWidth() {
+      return targetWidth;
+    }
+
+    public double getTargetHeight() {
+      return targetHeight;
+    }
+
+    public double getTargetArea() {
+      return targetArea;
+    }
+
+    public double[] getBotPose(boolean blueAlliance) {
+      return blueAlliance ? blueBotPose : redBotPose;
+    }
+  }
+
+  // Returns the recorded inputs of the thrower and keeps the last command sent to each motor so that it can be written to the output.
+  private static class ThrowerIOReplay implements ThrowerIO {
+    private final ReplayLog log;
+    private String indexCommand = "";
+    private double vortex1Command = 0.0; // Unit: rotations per minute
+    private double vortex2Command = 0.0; // Unit: rotations per minute
+    private boolean sensor1 = false;
+    private boolean sensor2 = false;
+    private boolean sensor3 = false;
+    private double sensor1DetectTime = -1.0;
+    private double sensor2DetectTime = -1.0;
+    private double sensor3DetectTime = -1.0;
+    private double sensor1ClearTime = -1.0;
+    private double sensor2ClearTime = -1.0;
+    private double sensor3ClearTime = -1.0;
+    private double sensor3DetectRotorPos = 0.0;
+    private boolean intakeStopped = false;
+    private double vortex1Vel = 0.0;
+    private double vortex2Vel = 0.0;
+    private double vortex1Voltage = 0.0;
+    private double vortex2Voltage = 0.0;
+    private double vortex1Current = 0.0;
+    private double vortex2Current = 0.0;
+    private double indexCurrent = 0.0;
+    private double indexRotorPos = 0.0;
+    private double indexRotorVel = 0.0;
+
+    private ThrowerIOReplay(ReplayLog _log) {
+      log = _log;
+    }
+
+    public void updateInputs() {
+      sensor1 = log.getBoolean("Inputs/Thrower Sensor 1", false);
+      sensor2 = log.getBoolean("Inputs/Thrower Sensor 2", false);
+      sensor3 = log.getBoolean("Inputs/Thrower Sensor 3", false);
+      sensor1DetectTime = log.getDouble("Inputs/Thrower Sensor 1 Detect Time", -1.0);
+      sensor2DetectTime = log.getDouble("Inputs/Thrower Sensor 2 Detect Time", -1.0);
+      sensor3DetectTime = log.getDouble("Inputs/Thrower Sensor 3 Detect Time", -1.0);
+      sensor1ClearTime = log.getDouble("Inputs/Thrower Sensor 1 Clear Time", -1.0);
+      sensor2ClearTime = log.getDouble("Inputs/Thrower Sensor 2 Clear Time", -1.0);
+      sensor3ClearTime = log.getDouble("Inputs/Thrower Sensor 3 Clear Time", -1.0);
+      sensor3DetectRotorPos = log.getDouble("Inputs/Thrower Sensor 3 Detect Rotor Position", 0.0);
+      intakeStopped = log.getBoolean("Inputs/Thrower Intake Stopped", false);
+      vortex1Vel = log.getDouble("Inputs/Thrower Vortex 1 Velocity", 0.0);
+      vortex2Vel = log.getDouble("Inputs/Thrower Vortex 2 Velocity", 0.0);
+      vortex1Voltage = log.getDouble("Inputs/Thrower Vortex 1 Voltage", 0.0);
+      vortex2Voltage = log.getDouble("Inputs/Thrower Vortex 2 Voltage", 0.0);
+      vortex1Current = log.getDouble("Inputs/Thrower Vortex 1 Current", 0.0);
+      vortex2Current = log.getDouble("Inputs/Thrower Vortex 2 Current", 0.0);
+      indexCurrent = log.getDouble("Inputs/Thrower Index Current", 0.0);
+      indexRotorPos = log.getDouble("Inputs/Thrower Index Rotor Position", 0.0);
+      indexRotorVel = log.getDouble("Inputs/Thrower Index Rotor Velocity", 0.0);
+    }
+
+    public boolean getSensor1() {
+      return sensor1;
+    }
+
+    public boolean getSensor2() {
+      return sensor2;
+    }
+
+    public boolean getSensor3() {
+      return sensor3;
+    }
+
+    public double getSensor1DetectTime() {
+      return sensor1DetectTime;
+    }
+
+    public double getSensor2DetectTime() {
+      return sensor2DetectTime;
+    }
+
+    public double getSensor3DetectTime() {
+      return sensor3DetectTime;
+    }
+
+    public double getSensor1ClearTime() {
+      return sensor1ClearTime;
+    }
+
+    public double getSensor2ClearTime() {
+      return sensor2ClearTime;
+    }
+
+    public double getSensor3ClearTime() {
+      return sensor3ClearTime;
+    }
+
+    public double getSensor3DetectRotorPos() {
+      return sensor3DetectRotorPos;
+    }
+
+    public double getVortex1Vel() {
+      return vortex1Vel;
+    }
+
+    public double getVortex2Vel() {
+      return vortex2Vel;
+    }
+
+    public double getVortex1Voltage() {
+      return vortex1Voltage;
+    }
+
+    public double getVortex2Voltage() {
+      return vortex2Voltage;
+    }
+
+    public double getVortex1Current() {
+      return vortex1Current;
+    }
+
+    public double getVortex2Current() {
+      return vortex2Current;
+    }
+
+    public double getIndexCurrent() {
+      return indexCurrent;
+    }
+
+    public double getIndexRotorPos() {
+      return indexRotorPos;
+    }
+
+    public double getIndexRotorVel() {
+      return indexRotorVel;
+    }
+
+    public void setIndexVel(double rotorVel) {
+      indexCommand = "velocity " + rotorVel;
+    }
+
+    public void setIndexPos(double rotorPos) {
+      indexCommand = "position " + rotorPos;
+    }
+
+    public void runIntake(double intakeVel, double reverseVel) {
+      indexCommand = getIntakeStopped() ? "velocity " + reverseVel : "velocity " + intakeVel;
+    }
+
+    public boolean getIntakeStopped() {
+      return intakeStopped;
+    }
+
+    public void resetIndexPos(double rotorPos) {}
+
+    public void setFlywheelVel(double vortex1Vel, double vortex2Vel) {
+      vortex1Command = vortex1Vel;
+      vortex2Command = vortex2Vel;
+    }
+
+    public void stopFlywheels() {
+      vortex1Command = 0.0;
+      vortex2Command = 0.0;
+    }
+
+    public boolean getIndexMotorFailure() {
+      return log.getBoolean("Thrower Index Motor Failure", false);
+    }
+
+    public boolean getVortex1Failure() {
+      return log.getBoolean("Thrower Vortex 1 Motor Failure", false);
+    }
+
+    public boolean getVortex2Failure() {
+      return log.getBoolean("Thrower Vortex 2 Motor Failure", false);
+    }
+  }
+}
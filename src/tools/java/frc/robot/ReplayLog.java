@@ -0,0 +1,164 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+
+// Reads a log recorded by Telemetry so that it can be replayed. Every entry is loaded into memory. Values are looked up at the current replay time,
+// and the most recent value recorded at or before that time is returned. Telemetry only records values when they change, so a value holds until the next one is recorded.
+class ReplayLog {
+  private static final String logPrefix = "Telemetry/"; // Telemetry prepends this to the name of each channel in the log.
+  private final HashMap<String, Entry> entries = new HashMap<>(); // Every channel in the log, keyed by channel name.
+  private long time = 0; // The current replay time in microseconds.
+
+  public ReplayLog(String path) throws IOException {
+    DataLogReader reader = new DataLogReader(path);
+    if (!reader.isValid()) {
+      throw new IOException(path + " is not a WPILib data log");
+    }
+    HashMap<Integer, Entry> entriesByID = new HashMap<>();
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        DataLogRecord.StartRecordData startData = record.getStartData();
+        if (startData.name.startsWith(logPrefix)) {
+          Entry entry = new Entry(startData.type);
+          entriesByID.put(startData.entry, entry);
+          entries.put(startData.name.substring(logPrefix.length()), entry);
+        }
+      } else if (!record.isControl()) {
+        Entry entry = entriesByID.get(record.getEntry());
+        if (entry != null) {
+          entry.add(record);
+        }
+      }
+    }
+    for (Entry entry : entries.values()) {
+      entry.finish();
+    }
+  }
+
+  // Sets the time values are looked up at. Unit: microseconds
+  public void setTime(long _time) {
+    time = _time;
+  }
+
+  // Returns the timestamps of every period recorded in the given channels, in order. Unit: microseconds
+  public long[] getCycleTimes(String... names) {
+    TreeSet<Long> times = new TreeSet<>();
+    for (String name : names) {
+      Entry entry = entries.get(name);
+      if (entry != null) {
+        for (long sampleTime : entry.times) {
+          times.add(sampleTime);
+        }
+      }
+    }
+    long[] cycleTimes = new long[times.size()];
+    int cycleIndex = 0;
+    for (long cycleTime : times) {
+      cycleTimes[cycleIndex++] = cycleTime;
+    }
+    return cycleTimes;
+  }
+
+  // Returns true if the log contains the given channel.
+  public boolean has(String name) {
+    return entries.containsKey(name);
+  }
+
+  // Returns the value of a number channel at the current time, or defaultValue if nothing was recorded.
+  public double getDouble(String name, double defaultValue) {
+    Object value = get(name);
+    return value instanceof Double ? (Double) value : defaultValue;
+  }
+
+  // Returns the value of a true/false channel at the current time, or defaultValue if nothing was recorded.
+  public boolean getBoolean(String name, boolean defaultValue) {
+    Object value = get(name);
+    return value instanceof Boolean ? (Boolean) value : defaultValue;
+  }
+
+  // Returns the value of a text channel at the current time, or defaultValue if nothing was recorded.
+  public String getString(String name, String defaultValue) {
+    Object value = get(name);
+    return value instanceof String ? (String) value : defaultValue;
+  }
+
+  // Returns the value of a number array channel at the current time, or defaultValue if nothing was recorded.
+  public double[] getDoubleArray(String name, double[] defaultValue) {
+    Object value = get(name);
+    return value instanceof double[] ? (double[]) value : defaultValue;
+  }
+
+  // Returns the most recent value of a channel at or before the current time. Returns the first value of the channel if the current time is before it was first recorded.
+  private Object get(String name) {
+    Entry entry = entries.get(name);
+    if (entry == null || entry.times.length == 0) {
+      return null;
+    }
+    int index = Arrays.binarySearch(entry.times, time);
+    if (index < 0) {
+      index = Math.max(0, -index - 2); // The index of the last sample before the current time.
+    } else {
+      while (index + 1 < entry.times.length && entry.times[index + 1] == time) { // Uses the last sample if more than one was recorded at the same time.
+        index++;
+      }
+    }
+    return entry.values.get(index);
+  }
+
+  // The samples of a single channel.
+  private static class Entry {
+    private final String type;
+    private final ArrayList<Long> sampleTimes = new ArrayList<>();
+    private long[] times = new long[0];
+    private final ArrayList<Object> values = new ArrayList<>();
+
+    private Entry(String _type) {
+      type = _type;
+    }
+
+    private void add(DataLogRecord record) {
+      Object value;
+      switch (type) {
+        case "double":
+          value = record.getDouble();
+          break;
+        case "boolean":
+          value = record.getBoolean();
+          break;
+        case "string":
+          value = record.getString();
+          break;
+        case "double[]":
+          value = record.getDoubleArray();
+          break;
+        default: // Structs are not needed to replay the robot.
+          return;
+      }
+      sampleTimes.add(record.getTimestamp());
+      values.add(value);
+    }
+
+    // Sorts the samples by time. Samples are recorded in order within a channel, so a stable sort keeps samples with the same timestamp in the order they were recorded.
+    private void finish() {
+      Integer[] order = new Integer[sampleTimes.size()];
+      for (int index = 0; index < order.length; index++) {
+        order[index] = index;
+      }
+      Arrays.sort(order, (a, b) -> Long.compare(sampleTimes.get(a), sampleTimes.get(b)));
+      times = new long[order.length];
+      ArrayList<Object> sortedValues = new ArrayList<>(order.length);
+      for (int index = 0; index < order.length; index++) {
+        times[index] = sampleTimes.get(order[index]);
+        sortedValues.add(values.get(order[index]));
+      }
+      values.clear();
+      values.addAll(sortedValues);
+    }
+  }
+}